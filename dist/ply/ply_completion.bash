@@ -71,7 +71,7 @@ _ply_completion() {
     fi
     aliases="${defaultaliases} ${projectaliases}"
     configtasks="get get-all describe set append prepend rm"
-    tasks="init --version --usage --help update ${configtasks} ${aliases}"
+    tasks="init --version --usage --help update daemon ${configtasks} ${aliases}"
     defaultcontexts=$(find $PLY_HOME/config/ -type f -name "*.properties" | \
     sed 's/\(\/.*\/\)\(.*\)\.properties/-P\2/' | sed 's/\./#/')
     if [ -d ${projectdir}/config/ ]; then
@@ -1,5 +1,8 @@
 package net.ocheyedan.ply.script;
 
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.Props;
+
 import java.io.File;
 
 /**
@@ -12,7 +15,7 @@ import java.io.File;
 public class Clean {
 
     public static void main(String[] args) {
-        Clean clean = new Clean(System.getenv("ply_project.build.dir"));
+        Clean clean = new Clean(Props.get("build.dir", Context.named("project")).value());
         clean.invoke();
     }
 
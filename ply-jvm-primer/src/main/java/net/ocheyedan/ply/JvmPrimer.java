@@ -1,7 +1,12 @@
 package net.ocheyedan.ply;
 
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
 
 /**
  * User: blangel
@@ -10,18 +15,24 @@ import java.lang.reflect.Method;
  *
  * Waits for a character to be sent via {@link System#in} and as soon as a character is sent, treats the first
  * argument to {@literal args} as the main-class and invokes as appropriate.
+ *
+ * If no arguments are given, the {@literal JVM} is considered generic; after the character is sent the class-path,
+ * main-class and arguments are read from {@link System#in} (as length-prefixed {@literal UTF-8} strings) and the
+ * main-class is loaded from that class-path within its own class-loader.
  */
 public class JvmPrimer {
 
     /**
-     * @param args [0] = main-class, rest are arguments to that main-class
+     * @param args [0] = main-class, rest are arguments to that main-class; or empty to read them from
+     *             {@link System#in} upon go-ahead.
      */
     public static void main(String[] args) throws Throwable {
-        if ((args == null) || (args.length < 1)) {
+        if (args == null) {
             throw new AssertionError("Expecting a main-class in args[0].");
         }
-        String mainClassName = args[0];
-        String[] mainClassArgs = new String[args.length - 1];
+        boolean generic = (args.length < 1);
+        String mainClassName = (generic ? null : args[0]);
+        String[] mainClassArgs = new String[generic ? 0 : args.length - 1];
         if (mainClassArgs.length > 0) {
             System.arraycopy(args, 1, mainClassArgs, 0, mainClassArgs.length);
         }
@@ -33,7 +44,25 @@ public class JvmPrimer {
         }
 
         // ok, got go-ahead, invoke main class
-        Class<?> mainClass = Class.forName(mainClassName);
+        Class<?> mainClass;
+        if (generic) {
+            // note, DataInputStream does not buffer so only the request itself is consumed from stdin
+            DataInputStream request = new DataInputStream(System.in);
+            URL[] classpath = new URL[request.readInt()];
+            for (int i = 0; i < classpath.length; i++) {
+                classpath[i] = new File(readString(request)).toURI().toURL();
+            }
+            mainClassName = readString(request);
+            mainClassArgs = new String[request.readInt()];
+            for (int i = 0; i < mainClassArgs.length; i++) {
+                mainClassArgs[i] = readString(request);
+            }
+            ClassLoader loader = new URLClassLoader(classpath, JvmPrimer.class.getClassLoader());
+            Thread.currentThread().setContextClassLoader(loader);
+            mainClass = Class.forName(mainClassName, true, loader);
+        } else {
+            mainClass = Class.forName(mainClassName);
+        }
         Method method = mainClass.getMethod("main", String[].class);
         try {
             method.invoke(null, new Object[]{ mainClassArgs });
@@ -42,4 +71,10 @@ public class JvmPrimer {
         }
     }
 
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
 }
@@ -2,10 +2,14 @@ package net.ocheyedan.ply;
 
 import java.io.*;
 import java.net.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * User: blangel
@@ -159,9 +163,11 @@ public final class FileUtil {
         } else {
             try {
                 File tmp = File.createTempFile("ply-", ".tmp");
-                if (download(url, headers, tmp, name, intoName, true)) {
+                // the temporary file's name is never downloaded again, so an interrupted download is not left to resume
+                if (download(url, headers, tmp, name, intoName, true, null, false, false)) {
                     return tmp.getPath();
                 } else {
+                    tmp.delete();
                     return null;
                 }
             } catch (IOException ioe) {
@@ -170,8 +176,20 @@ public final class FileUtil {
         }
     }
 
+    /**
+     * The checksum sidecar files consulted to verify a download (in order of preference) and their digest algorithms.
+     */
+    private static final String[][] CHECKSUMS = { { ".sha1", "SHA1" }, { ".md5", "MD5" } };
+
     /**
      * Downloads the {@code remoteUrl} and saves to {@code into} file.
+     * <p/>
+     * The download is streamed into a partial file (alongside {@code into}) private to this download, which is renamed
+     * to {@code into} only once complete; so {@code into} is never left incomplete, even when several threads or
+     * processes download it at once.  An interrupted download leaves its partial file (and the remote file's
+     * {@literal ETag} or {@literal Last-Modified} value) for the next download of {@code into} to claim and resume via
+     * an HTTP range request; the request is conditional ({@literal If-Range}) so that a remote file which has since
+     * changed is downloaded in full rather than spliced onto the partial file.
      * @param remoteUrl to download
      * @param headers to use when making a connection to {@code remoteUrl}
      * @param into the location into which to download
@@ -181,29 +199,288 @@ public final class FileUtil {
      * @return true if the file was successfully downloaded and saved {@code into}, false otherwise
      */
     public static boolean download(URL remoteUrl, Map<String, String> headers, File into, String name, String intoName, boolean ignoreFNF) {
-        if (remoteUrl == null) {
+        return download(remoteUrl, headers, into, name, intoName, ignoreFNF, null, false, true);
+    }
+
+    /**
+     * @see #download(URL, Map, File, String, String, boolean)
+     * @param notFound if not null, set to true if the download failed because {@code remoteUrl} does not exist (as
+     *                 opposed to failing because of a network or verification error)
+     * @param verify true to verify the download against the {@literal .sha1} or {@literal .md5} checksum of the file,
+     *               if the remote location provides one; each costs a request so only artifacts should be verified
+     *               and not metadata (like poms), for which repositories typically provide no checksums
+     */
+    public static boolean download(URL remoteUrl, Map<String, String> headers, File into, String name, String intoName,
+                                   boolean ignoreFNF, AtomicBoolean notFound, boolean verify) {
+        return download(remoteUrl, headers, into, name, intoName, ignoreFNF, notFound, verify, true);
+    }
+
+    /**
+     * @see #download(URL, Map, File, String, String, boolean, AtomicBoolean, boolean)
+     * @param resumable false if {@code into} will not be downloaded again, in which case an interrupted download is
+     *                  deleted rather than left to be resumed
+     */
+    private static boolean download(URL remoteUrl, Map<String, String> headers, File into, String name, String intoName,
+                                    boolean ignoreFNF, AtomicBoolean notFound, boolean verify, boolean resumable) {
+        if ((remoteUrl == null) || (into == null)) {
             return false;
         }
+        File directory = into.getAbsoluteFile().getParentFile();
+        File interrupted = new File(directory, "." + into.getName() + ".part");
+        File interruptedValidator = new File(directory, "." + into.getName() + ".part.validator");
+        File partial;
+        try {
+            directory.mkdirs();
+            partial = File.createTempFile("." + into.getName() + ".", ".part", directory);
+        } catch (IOException ioe) {
+            Output.print("^error^ Could not create a partial file within %s", directory.getAbsolutePath());
+            Output.print(ioe);
+            return false;
+        }
+        // claim the partial file of an interrupted download, if any; only one download's rename can succeed
+        String validator = null;
+        if (resumable && interrupted.renameTo(partial)) {
+            validator = readValidator(interruptedValidator);
+            interruptedValidator.delete();
+        }
+        long resumeFrom = ((validator == null) ? 0L : partial.length());
         InputStream stream;
+        long length;
         try {
-            stream = downloadToStream(remoteUrl, headers);
+            URLConnection urlConnection = openConnection(remoteUrl, headers);
+            if ((resumeFrom > 0L) && (urlConnection instanceof HttpURLConnection)) {
+                HttpURLConnection httpConnection = (HttpURLConnection) urlConnection;
+                httpConnection.addRequestProperty("Range", "bytes=" + resumeFrom + "-");
+                httpConnection.addRequestProperty("If-Range", validator);
+                int responseCode = httpConnection.getResponseCode();
+                if (responseCode == 416) { // range not satisfiable; the partial file is unusable
+                    httpConnection.disconnect();
+                    partial.delete();
+                    return download(remoteUrl, headers, into, name, intoName, ignoreFNF, notFound, verify, resumable);
+                } else if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+                    resumeFrom = 0L; // range not supported or the remote file changed, download in full
+                }
+            } else {
+                resumeFrom = 0L;
+            }
+            stream = urlConnection.getInputStream();
+            validator = getValidator(urlConnection);
+            length = getContentLength(urlConnection);
         } catch (FileNotFoundException fnfe) {
             Output.print("^dbug^ Failed to download URL [ %s ] - FileNotFoundException - %s", remoteUrl.toString(), fnfe.getMessage());
+            if (notFound != null) {
+                notFound.set(true);
+            }
             if (!ignoreFNF) {
                 Output.print(fnfe);
             }
+            partial.delete();
             return false;
         } catch (UnknownHostException uhe) {
             Output.print("^error^ Could not download %s; remote URL %s not accessible", name, intoName, remoteUrl.getHost());
             Output.print(uhe);
             Output.print("");
+            interrupt(partial, (resumable ? validator : null), interrupted, interruptedValidator);
             return false;
         } catch (IOException ioe) {
             Output.print(ioe); // TODO - parse exception and more gracefully handle http-errors.
+            interrupt(partial, (resumable ? validator : null), interrupted, interruptedValidator);
+            return false;
+        }
+        if (resumeFrom > 0L) {
+            Output.print("^info^ Resuming download of %s from %s...", name, intoName);
+        } else {
+            Output.print("^info^ Downloading %s from %s...", name, intoName);
+        }
+        if (!transfer(stream, partial, (resumeFrom > 0L))) {
+            interrupt(partial, (resumable ? validator : null), interrupted, interruptedValidator);
+            return false;
+        }
+        // a connection closed early may read as the end of the stream rather than fail
+        if ((length != -1L) && (partial.length() != (resumeFrom + length))) {
+            Output.print("^error^ Download of %s from %s ended before it completed.", name, intoName);
+            interrupt(partial, (resumable ? validator : null), interrupted, interruptedValidator);
+            return false;
+        }
+        if (verify && !verify(remoteUrl, headers, partial, name)) {
+            partial.delete();
+            return false;
+        }
+        if (!partial.renameTo(into) && !(into.delete() && partial.renameTo(into))) {
+            Output.print("^error^ Could not move downloaded %s to %s", name, into.getAbsolutePath());
+            partial.delete();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Leaves {@code partial} as the partial file of an interrupted download so that it may be resumed; unless it has
+     * no content or its remote file's {@code validator} is unknown, in which case it could not be resumed and is
+     * deleted.
+     * @param partial the partial file of the interrupted download
+     * @param validator the {@literal ETag} or {@literal Last-Modified} value of the remote file, or null if unknown
+     * @param interrupted the location of partial files of interrupted downloads
+     * @param interruptedValidator the location of {@code validator}
+     */
+    private static void interrupt(File partial, String validator, File interrupted, File interruptedValidator) {
+        if ((validator == null) || (partial.length() == 0L)) {
+            partial.delete();
+            return;
+        }
+        try {
+            Writer writer = new OutputStreamWriter(new FileOutputStream(interruptedValidator), "UTF-8");
+            try {
+                writer.write(validator);
+            } finally {
+                writer.close();
+            }
+        } catch (IOException ioe) {
+            partial.delete();
+            return;
+        }
+        if (!partial.renameTo(interrupted) && !(interrupted.delete() && partial.renameTo(interrupted))) {
+            partial.delete();
+        }
+    }
+
+    /**
+     * @param urlConnection the connected connection
+     * @return the strong {@literal ETag} or else the {@literal Last-Modified} value of the response, or null if it
+     *         has neither
+     */
+    private static String getValidator(URLConnection urlConnection) {
+        String etag = urlConnection.getHeaderField("ETag");
+        if ((etag != null) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return urlConnection.getHeaderField("Last-Modified");
+    }
+
+    /**
+     * @param urlConnection the connection to the remote file
+     * @return the length of the content of {@code urlConnection} or -1 if unknown
+     */
+    private static long getContentLength(URLConnection urlConnection) {
+        String length = urlConnection.getHeaderField("Content-Length");
+        if (length == null) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException nfe) {
+            return -1L;
+        }
+    }
+
+    /**
+     * @param file containing the validator written by {@link #interrupt(File, String, File, File)}
+     * @return the validator or null if it could not be read
+     */
+    private static String readValidator(File file) {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String validator = reader.readLine();
+                return (((validator == null) || validator.isEmpty()) ? null : validator);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException ioe) {
+            return null;
+        }
+    }
+
+    /**
+     * Streams {@code from} into {@code to}; if the transfer fails {@code to} is left as is so that it may be resumed.
+     * @param from the stream to transfer
+     * @param to the file into which to transfer {@code from}
+     * @param append true to append to {@code to}; false to replace its content
+     * @return true if the transfer completed
+     */
+    private static boolean transfer(InputStream from, File to, boolean append) {
+        ReadableByteChannel source = Channels.newChannel(from);
+        FileOutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(to, append);
+            FileChannel channel = outputStream.getChannel();
+            long position = channel.size();
+            long transferred;
+            // a blocking source only reads no bytes at its end
+            while ((transferred = channel.transferFrom(source, position, 1L << 20)) > 0L) {
+                position += transferred;
+            }
+            return true;
+        } catch (IOException ioe) {
+            Output.print("^error^ Could not copy stream to %s", to.getAbsolutePath());
+            Output.print(ioe);
             return false;
+        } finally {
+            try {
+                source.close();
+                if (outputStream != null) {
+                    outputStream.close();
+                }
+            } catch (IOException ioe) {
+                throw new AssertionError(ioe);
+            }
+        }
+    }
+
+    /**
+     * @param remoteUrl from which {@code file} was downloaded
+     * @param headers to use when making a connection to the checksum of {@code remoteUrl}
+     * @param file the downloaded file
+     * @param name of the file being downloaded
+     * @return false if the remote location provides a checksum for {@code remoteUrl} which does not match
+     *         {@code file}; true otherwise
+     */
+    private static boolean verify(URL remoteUrl, Map<String, String> headers, File file, String name) {
+        if (remoteUrl.getQuery() != null) {
+            return true; // checksums are only published alongside plain artifact paths
+        }
+        for (String[] checksum : CHECKSUMS) {
+            String expected = readChecksum(remoteUrl, headers, checksum[0]);
+            if (expected == null) {
+                continue;
+            }
+            String actual = getHash(file, checksum[1]);
+            if (expected.equalsIgnoreCase(actual)) {
+                Output.print("^dbug^ Verified %s checksum of %s", checksum[1], name);
+                return true;
+            }
+            Output.print("^error^ Checksum mismatch for %s [ expected %s but was %s ], discarding download.", name,
+                    expected.toLowerCase(), actual.toLowerCase());
+            return false;
+        }
+        Output.print("^dbug^ No checksum found for %s, not verified.", name);
+        return true;
+    }
+
+    /**
+     * @param remoteUrl for which to read the checksum
+     * @param headers to use when making a connection to the checksum
+     * @param suffix of the checksum sidecar file
+     * @return the checksum or null if there is none
+     */
+    private static String readChecksum(URL remoteUrl, Map<String, String> headers, String suffix) {
+        try {
+            InputStream stream = downloadToStream(new URL(remoteUrl.toString() + suffix), headers);
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(stream, "US-ASCII"));
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+                // either just the checksum or the checksum followed by the file name
+                String checksum = line.trim().split("\\s+")[0];
+                return (checksum.matches("[0-9a-fA-F]{32}|[0-9a-fA-F]{40}") ? checksum : null);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException ioe) {
+            return null;
         }
-        Output.print("^info^ Downloading %s from %s...", name, intoName);
-        return FileUtil.copy(stream, into);
     }
 
     public static URL getUrl(String path) {
@@ -235,6 +512,10 @@ public final class FileUtil {
     }
 
     public static InputStream downloadToStream(URL remoteUrl, Map<String, String> headers) throws IOException {
+        return openConnection(remoteUrl, headers).getInputStream();
+    }
+
+    private static URLConnection openConnection(URL remoteUrl, Map<String, String> headers) throws IOException {
         // TODO - proxy info (see http://download.oracle.com/javase/6/docs/technotes/guides/net/proxies.html)
         URLConnection urlConnection = remoteUrl.openConnection();
         if (headers != null) {
@@ -242,7 +523,7 @@ public final class FileUtil {
                 urlConnection.addRequestProperty(key, headers.get(key));
             }
         }
-        return urlConnection.getInputStream();
+        return urlConnection;
     }
 
     /**
@@ -425,15 +706,23 @@ public final class FileUtil {
     }
 
     public static String getSha1Hash(File file) {
+        return getHash(file, "SHA1");
+    }
+
+    /**
+     * @param file to hash
+     * @param algorithm the digest algorithm (i.e., {@literal SHA1} or {@literal MD5})
+     * @return the hex-encoded digest of {@code file}'s content
+     */
+    public static String getHash(File file, String algorithm) {
         InputStream fileInputStream = null;
         try {
-            MessageDigest hash = MessageDigest.getInstance("SHA1");
+            MessageDigest hash = MessageDigest.getInstance(algorithm);
             fileInputStream = new BufferedInputStream(new FileInputStream(file));
             DigestInputStream digestInputStream = new DigestInputStream(fileInputStream, hash);
             byte[] buffer = new byte[8192];
             while (digestInputStream.read(buffer, 0, buffer.length) != -1) { }
-            byte[] sha1 = hash.digest();
-            return BitUtil.toHexString(sha1);
+            return BitUtil.toHexString(hash.digest());
         } catch (NoSuchAlgorithmException nsae) {
             throw new AssertionError(nsae);
         } catch (FileNotFoundException fnfe) {
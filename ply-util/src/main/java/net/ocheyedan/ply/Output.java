@@ -9,8 +9,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * User: blangel
@@ -88,21 +86,24 @@ public final class Output {
     }
 
     /**
-     * A regex {@link java.util.regex.Pattern} paired with its corresponding output string.
+     * A term-code's output string (and output string when color is not used) and, for log statements, its level.
      */
     private static final class TermCode {
-        private final Pattern pattern;
         private final String output;
         private final String nonColoredOutput;
-        private TermCode(Pattern pattern, String output, String nonColoredOutput) {
-            this.pattern = pattern;
+        private final AtomicBoolean level;
+        private TermCode(String output, String nonColoredOutput) {
+            this(output, nonColoredOutput, null);
+        }
+        private TermCode(String output, String nonColoredOutput, AtomicBoolean level) {
             this.output = output;
             this.nonColoredOutput = nonColoredOutput;
+            this.level = level;
         }
     }
 
     /**
-     * Used to queue messages before {@link Output#init()} has been called.
+     * Used to queue messages before {@link Output#init()} has been called (or while deferred).
      */
     private static final class Message {
         private static enum Type { Line, NoLine, Exec }
@@ -116,11 +117,34 @@ public final class Output {
         }
     }
 
+    /**
+     * The messages printed by a thread while it was deferring its output (@see {@link Output#defer()}).
+     */
+    public static final class Deferred {
+        private final List<Message> messages;
+        private Deferred(List<Message> messages) {
+            this.messages = messages;
+        }
+        /**
+         * Prints the deferred messages, in the order in which they were printed, as if printed now.
+         */
+        public void print() {
+            for (Message message : messages) {
+                Output.print(message);
+            }
+        }
+    }
+
     /**
      * The queue of {@link Message} objects which have been accumulated before the {@link Output#init()} has been called.
      */
     private static final List<Message> queue = new ArrayList<Message>();
 
+    /**
+     * The messages printed by the current thread since it called {@link #defer()}, or null if it is not deferring.
+     */
+    private static final ThreadLocal<List<Message>> deferred = new ThreadLocal<List<Message>>();
+
     /**
      * Configurable log level variables.
      */
@@ -145,17 +169,25 @@ public final class Output {
     private static final AtomicBoolean beingPiped = new AtomicBoolean(false);
 
     /**
-     * A mapping of easily identifiable words to a {@link TermCode} object for colored output.
+     * A mapping of easily identifiable words (the text between the carets; i.e., {@literal b} for {@literal ^b^}) to
+     * a {@link TermCode} object for colored output.
      */
     private static final Map<String, TermCode> TERM_CODES = new HashMap<String, TermCode>();
 
+    /**
+     * The length of the longest key within {@link #TERM_CODES} (i.e., {@literal magenta}).
+     */
+    private static final int TERM_CODE_MAX_LENGTH = 7;
+
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
     /**
      * Set to true when {@link #init()} has been called.
      */
     private static AtomicBoolean inited = new AtomicBoolean(false);
     static {
         // if this is not ply itself - init straight-away
-        if ("ply".equals(System.getenv("ply_ply.invoker"))) {
+        if ("ply".equals(Props.getenv("ply_ply.invoker"))) {
             init();
         }
     }
@@ -211,24 +243,24 @@ public final class Output {
         Output.coloredOutput.set(useColor);
         // TODO - what are the range of terminal values and what looks best for each?
         String terminalBold = ("xterm".equals(terminal) ? "1" : "0");
-        TERM_CODES.put("ply", new TermCode(Pattern.compile("\\^ply\\^"), "[\u001b[0;33mply\u001b[0m]", "[ply]"));
-        TERM_CODES.put("error", new TermCode(Pattern.compile("\\^error\\^"), "[\u001b[1;31merr!\u001b[0m]", "[err!]"));
-        TERM_CODES.put("warn", new TermCode(Pattern.compile("\\^warn\\^"), "[\u001b[1;33mwarn\u001b[0m]", "[warn]"));
-        TERM_CODES.put("info", new TermCode(Pattern.compile("\\^info\\^"), "[\u001b[1;34minfo\u001b[0m]", "[info]"));
-        TERM_CODES.put("dbug", new TermCode(Pattern.compile("\\^dbug\\^"), "[\u001b[1;30mdbug\u001b[0m]", "[dbug]"));
-        TERM_CODES.put("reset", new TermCode(Pattern.compile("\\^r\\^"), "\u001b[0m", ""));
-        TERM_CODES.put("bold", new TermCode(Pattern.compile("\\^b\\^"), "\u001b[1m", ""));
-        TERM_CODES.put("normal", new TermCode(Pattern.compile("\\^n\\^"), "\u001b[2m", ""));
-        TERM_CODES.put("inverse", new TermCode(Pattern.compile("\\^i\\^"), "\u001b[7m", ""));
-        TERM_CODES.put("black", new TermCode(Pattern.compile("\\^black\\^"), "\u001b[" + terminalBold + ";30m", ""));
-        TERM_CODES.put("grey", new TermCode(Pattern.compile("\\^grey\\^"), "\u001b[1;30m", ""));
-        TERM_CODES.put("red", new TermCode(Pattern.compile("\\^red\\^"),  "\u001b[" + terminalBold + ";31m", ""));
-        TERM_CODES.put("green", new TermCode(Pattern.compile("\\^green\\^"), "\u001b[" + terminalBold + ";32m", ""));
-        TERM_CODES.put("yellow", new TermCode(Pattern.compile("\\^yellow\\^"), "\u001b[" + terminalBold + ";33m", ""));
-        TERM_CODES.put("blue", new TermCode(Pattern.compile("\\^blue\\^"), "\u001b[" + terminalBold + ";34m", ""));
-        TERM_CODES.put("magenta", new TermCode(Pattern.compile("\\^magenta\\^"), "\u001b[" + terminalBold + ";35m", ""));
-        TERM_CODES.put("cyan", new TermCode(Pattern.compile("\\^cyan\\^"), "\u001b[" + terminalBold + ";36m", ""));
-        TERM_CODES.put("white", new TermCode(Pattern.compile("\\^white\\^"), "\u001b[" + terminalBold + ";37m", ""));
+        TERM_CODES.put("ply", new TermCode("[\u001b[0;33mply\u001b[0m]", "[ply]"));
+        TERM_CODES.put("error", new TermCode("[\u001b[1;31merr!\u001b[0m]", "[err!]"));
+        TERM_CODES.put("warn", new TermCode("[\u001b[1;33mwarn\u001b[0m]", "[warn]", warnLevel));
+        TERM_CODES.put("info", new TermCode("[\u001b[1;34minfo\u001b[0m]", "[info]", infoLevel));
+        TERM_CODES.put("dbug", new TermCode("[\u001b[1;30mdbug\u001b[0m]", "[dbug]", dbugLevel));
+        TERM_CODES.put("r", new TermCode("\u001b[0m", ""));
+        TERM_CODES.put("b", new TermCode("\u001b[1m", ""));
+        TERM_CODES.put("n", new TermCode("\u001b[2m", ""));
+        TERM_CODES.put("i", new TermCode("\u001b[7m", ""));
+        TERM_CODES.put("black", new TermCode("\u001b[" + terminalBold + ";30m", ""));
+        TERM_CODES.put("grey", new TermCode("\u001b[1;30m", ""));
+        TERM_CODES.put("red", new TermCode("\u001b[" + terminalBold + ";31m", ""));
+        TERM_CODES.put("green", new TermCode("\u001b[" + terminalBold + ";32m", ""));
+        TERM_CODES.put("yellow", new TermCode("\u001b[" + terminalBold + ";33m", ""));
+        TERM_CODES.put("blue", new TermCode("\u001b[" + terminalBold + ";34m", ""));
+        TERM_CODES.put("magenta", new TermCode("\u001b[" + terminalBold + ";35m", ""));
+        TERM_CODES.put("cyan", new TermCode("\u001b[" + terminalBold + ";36m", ""));
+        TERM_CODES.put("white", new TermCode("\u001b[" + terminalBold + ";37m", ""));
         drainQueue();
     }
 
@@ -237,20 +269,59 @@ public final class Output {
      */
     private static void drainQueue() {
         for (Message message : queue) {
-            switch (message.type) {
-                case Line:
-                    print(message.message, message.args); break;
-                case NoLine:
-                    printNoLine(message.message, message.args); break;
-                case Exec:
-                    printFromExec(message.message, message.args); break;
-                default:
-                    throw new AssertionError(String.format("Unknown Message.Type %s", message.type));
-            }
+            print(message);
+        }
+    }
+
+    private static void print(Message message) {
+        switch (message.type) {
+            case Line:
+                print(message.message, message.args); break;
+            case NoLine:
+                printNoLine(message.message, message.args); break;
+            case Exec:
+                printFromExec(message.message, message.args); break;
+            default:
+                throw new AssertionError(String.format("Unknown Message.Type %s", message.type));
+        }
+    }
+
+    /**
+     * Holds, rather than prints, the messages subsequently printed by the current thread until it calls
+     * {@link #undefer()}; i.e., so that work done ahead of time on another thread prints exactly as, and when, it
+     * would have had the work been done serially.
+     */
+    public static void defer() {
+        deferred.set(new ArrayList<Message>());
+    }
+
+    /**
+     * Stops deferring the messages of the current thread.
+     * @return the messages printed by the current thread since it called {@link #defer()}
+     */
+    public static Deferred undefer() {
+        List<Message> messages = deferred.get();
+        deferred.remove();
+        return new Deferred(messages == null ? new ArrayList<Message>(0) : messages);
+    }
+
+    /**
+     * @param message to defer
+     * @return true if the current thread is deferring its messages, in which case {@code message} has been deferred
+     */
+    private static boolean deferred(Message message) {
+        List<Message> messages = deferred.get();
+        if (messages == null) {
+            return false;
         }
+        messages.add(message);
+        return true;
     }
 
     public static void print(String message, Object ... args) {
+        if (deferred(new Message(message, Message.Type.Line, args))) {
+            return;
+        }
         if (!inited.get()) {
             queue.add(new Message(message, Message.Type.Line, args));
             return;
@@ -263,6 +334,9 @@ public final class Output {
     }
 
     public static void printNoLine(String message, Object ... args) {
+        if (deferred(new Message(message, Message.Type.NoLine, args))) {
+            return;
+        }
         if (!inited.get()) {
             queue.add(new Message(message, Message.Type.NoLine, args));
             return;
@@ -287,6 +361,9 @@ public final class Output {
     }
 
     static void printFromExec(String message, Object ... args) {
+        if (deferred(new Message(message, Message.Type.Exec, args))) {
+            return;
+        }
         if (!inited.get()) {
             queue.add(new Message(message, Message.Type.Exec, args));
             return;
@@ -320,24 +397,92 @@ public final class Output {
 
     static String resolve(String message, Object[] args) {
         String formatted = String.format(message, args);
-        // TODO - fix!  this case fails: ^cyan^warn^r^ if ^warn^ is evaluated first...really meant for ^cyan^ and ^r^
-        // TODO - to be resolved
-        for (String key : TERM_CODES.keySet()) {
-            TermCode termCode = TERM_CODES.get(key);
-            Matcher matcher = termCode.pattern.matcher(formatted);
-            if (matcher.find()) {
-                if (("warn".equals(key) && !warnLevel.get()) || ("info".equals(key) && !infoLevel.get())
-                        || ("dbug".equals(key) && !dbugLevel.get())) {
-                    // this is a log statement for a disabled log-level, skip.
-                    return null;
-                }
-                if (decorated.get()) {
-                    String output = isColoredOutput() ? termCode.output : termCode.nonColoredOutput;
-                    formatted = matcher.replaceAll(output);
-                }
+        StringBuilder resolved = new StringBuilder(formatted.length() + 32);
+        return (resolve(formatted, resolved) ? resolved.toString() : null);
+    }
+
+    /**
+     * Appends {@code line}, as outputted by a script, to {@code into} exactly as
+     * {@link #printFromExec(String, Object...)} would have printed it; allowing many lines to be printed at once.
+     * @param into the buffer to which to append
+     * @param prefix the resolved prefix for the script's lines (i.e., its name)
+     * @param line outputted by the script
+     * @return false if {@link #init()} has yet to be called (in which case nothing is appended and
+     *         {@link #printFromExec(String, Object...)} should be used)
+     */
+    static boolean appendFromExec(StringBuilder into, String prefix, String line) {
+        if (!inited.get()) {
+            return false;
+        }
+        if (!decorated.get()) {
+            into.append(line).append(LINE_SEPARATOR);
+            return true;
+        }
+        boolean noLine = line.contains("^no_line^");
+        boolean noPrefix = line.contains("^no_prefix^");
+        if (noLine) {
+            line = replaceFirst(line, "^no_line^");
+        }
+        if (noPrefix) {
+            line = replaceFirst(line, "^no_prefix^");
+        }
+        int mark = into.length();
+        if (!noPrefix) {
+            into.append(prefix);
+        }
+        if (!resolve(line, into)) {
+            into.setLength(mark);
+        } else if (!noLine) {
+            into.append(LINE_SEPARATOR);
+        }
+        return true;
+    }
+
+    private static String replaceFirst(String value, String token) {
+        int index = value.indexOf(token);
+        return (index == -1 ? value : value.substring(0, index) + value.substring(index + token.length()));
+    }
+
+    /**
+     * Appends {@code formatted} to {@code into} replacing term-codes in one left-to-right pass (so that, i.e.,
+     * {@literal ^cyan^warn^r^} is read as {@literal ^cyan^} and {@literal ^r^} and not as {@literal ^warn^}).
+     * @param formatted to resolve
+     * @param into the buffer to which to append
+     * @return false if {@code formatted} is a log statement for a disabled log-level (in which case nothing is appended)
+     */
+    private static boolean resolve(String formatted, StringBuilder into) {
+        int mark = into.length();
+        boolean decorated = Output.decorated.get();
+        boolean colored = isColoredOutput();
+        int from = 0, caret;
+        while ((caret = formatted.indexOf('^', from)) != -1) {
+            int closing = formatted.indexOf('^', caret + 1);
+            if (closing == -1) {
+                break;
+            }
+            TermCode termCode = ((closing - caret - 1) > TERM_CODE_MAX_LENGTH ? null
+                    : TERM_CODES.get(formatted.substring(caret + 1, closing)));
+            if (termCode == null) {
+                // the closing caret may itself open a term-code
+                into.append(formatted, from, closing);
+                from = closing;
+                continue;
+            }
+            if ((termCode.level != null) && !termCode.level.get()) {
+                // this is a log statement for a disabled log-level, skip.
+                into.setLength(mark);
+                return false;
+            }
+            into.append(formatted, from, caret);
+            if (decorated) {
+                into.append(colored ? termCode.output : termCode.nonColoredOutput);
+            } else {
+                into.append(formatted, caret, closing + 1);
             }
+            from = closing + 1;
         }
-        return formatted;
+        into.append(formatted, from, formatted.length());
+        return true;
     }
 
     /**
@@ -35,7 +35,14 @@ public final class PwdUtil {
     private static final int PWD_REQUEST_TOKEN_LENGTH = PWD_REQUEST_TOKEN.length();
     private static final Charset CHARSET = Charset.forName("UTF-8");
 
-    private static final Request REQUEST = new Request();
+    /**
+     * Per-thread as executions' output may be read concurrently (i.e., {@literal parallel(...)} groupings).
+     */
+    private static final ThreadLocal<Request> REQUEST = new ThreadLocal<Request>() {
+        @Override protected Request initialValue() {
+            return new Request();
+        }
+    };
 
     /**
      * Parses {@code line} and if it starts with {@link #PWD_REQUEST_TOKEN} then strips the prefix and returns
@@ -46,14 +53,15 @@ public final class PwdUtil {
      *         the user.
      */
     public static Request isPwdRequest(String line) {
+        Request request = REQUEST.get();
         if (line.startsWith(PWD_REQUEST_TOKEN)) {
-            REQUEST.pwd.set(true);
-            REQUEST.line.set(line.substring(PWD_REQUEST_TOKEN_LENGTH));
+            request.pwd.set(true);
+            request.line.set(line.substring(PWD_REQUEST_TOKEN_LENGTH));
         } else {
-            REQUEST.pwd.set(false);
-            REQUEST.line.set(line);
+            request.pwd.set(false);
+            request.line.set(line);
         }
-        return REQUEST;
+        return request;
     }
 
     /**
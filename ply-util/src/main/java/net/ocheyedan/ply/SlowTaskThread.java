@@ -3,6 +3,7 @@ package net.ocheyedan.ply;
 import net.ocheyedan.ply.input.InterruptibleInputReader;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.Props;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -212,7 +213,7 @@ public final class SlowTaskThread {
         }
 
         @Override public void run() {
-            final boolean invokedByPly = "ply".equals(System.getenv("ply_ply.invoker"));
+            final boolean invokedByPly = "ply".equals(Props.getenv("ply_ply.invoker"));
             try {
                 Thread.sleep(wait);
                 if (Thread.currentThread().isInterrupted()) {
@@ -16,6 +16,8 @@ import java.io.File;
 import java.net.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -82,10 +84,22 @@ public final class Deps {
          */
         final Set<String> unversionedResolvedAlreadyVisited;
 
-        private FillGraphState() {
+        /**
+         * The dependencies resolved ahead of filling the graph.
+         */
+        final Prefetch prefetch;
+
+        /**
+         * Records the filling of the graph so that it can be locked.
+         */
+        final LockFile.Recording recording;
+
+        private FillGraphState(Prefetch prefetch) {
             this.resolved = new ConcurrentHashMap<DependencyAtom, Dep>();
             this.unversionedResolved = new ConcurrentHashMap<String, Set<Dep>>();
             this.unversionedResolvedAlreadyVisited = new HashSet<String>();
+            this.prefetch = prefetch;
+            this.recording = new LockFile.Recording();
         }
     }
 
@@ -208,10 +222,32 @@ public final class Deps {
                                                                RepositoryRegistry repositoryRegistry,
                                                                String classifier, boolean failMissingDependency,
                                                                ConflictingVersionVisitor conflictingVersionVisitor) {
+        // a graph resolved with failures ignored is not locked as its resolution printed what could not be resolved
+        LockFile lockFile = ((failMissingDependency && !"false".equalsIgnoreCase(Props.get("resolve.lock", Context.named("depmngr")).value()))
+                ? LockFile.of(dependencyAtoms, exclusionAtoms, repositoryRegistry, classifier) : null);
+        if (lockFile != null) {
+            DirectedAcyclicGraph<Dep> locked = lockFile.read(conflictingVersionVisitor);
+            if (locked != null) {
+                return locked;
+            }
+        }
         DirectedAcyclicGraph<Dep> dependencyDAG = new DirectedAcyclicGraph<Dep>();
         Set<String> alreadyPrinted = new HashSet<String>((exclusionAtoms == null ? 16 : exclusionAtoms.size()));
-        fillDependencyGraph(null, dependencyAtoms, exclusionAtoms, classifier, repositoryRegistry, dependencyDAG, new FillGraphState(),
-                alreadyPrinted, false, failMissingDependency, conflictingVersionVisitor);
+        // resolve the graph's dependencies concurrently and then fill the graph serially (so that the graph, and any
+        // messages printed while filling it, are the same regardless of the order in which resolution completes)
+        RepositoryIndex.configure(getInt("resolve.miss.ttl", 86400));
+        Prefetch prefetch = Prefetch.resolve(dependencyAtoms, exclusionAtoms, classifier, repositoryRegistry,
+                getInt("resolve.parallelism", 8), getInt("resolve.parallelism.per.host", 4));
+        FillGraphState state = new FillGraphState(prefetch);
+        try {
+            fillDependencyGraph(null, dependencyAtoms, exclusionAtoms, classifier, repositoryRegistry, dependencyDAG, state,
+                    alreadyPrinted, false, failMissingDependency, conflictingVersionVisitor);
+        } finally {
+            RepositoryIndex.storeAll();
+        }
+        if (lockFile != null) {
+            lockFile.write(dependencyDAG, state.recording);
+        }
         return dependencyDAG;
     }
 
@@ -261,6 +297,7 @@ public final class Deps {
                 if (!alreadyPrinted.contains(key)) {
                     alreadyPrinted.add(key);
                     Output.print("^info^ Skipping excluded dependency ^b^%s^r^.", dependencyAtom.toString());
+                    state.recording.excluded(dependencyAtom);
                 }
                 continue; // non-direct dependency listed in exclusions, skip
             } else if ((parentVertex == null) && exclusionAtoms.contains(dependencyAtom)) {
@@ -274,8 +311,15 @@ public final class Deps {
                 if (state.resolved.containsKey(dependencyAtom)) {
                     resolvedDep = state.resolved.get(dependencyAtom);
                 } else {
-                    resolvedDep = resolveDependency(dependencyAtom, classifier, repositoryRegistry, (pomSufficient || dependencyAtom.transientDep),
-                                                failMissingDependency);
+                    if (state.prefetch.contains(dependencyAtom, (pomSufficient || dependencyAtom.transientDep))) {
+                        resolvedDep = state.prefetch.get(dependencyAtom);
+                        if ((resolvedDep == null) && failMissingDependency) {
+                            printNotFound(dependencyAtom, repositoryRegistry);
+                        }
+                    } else {
+                        resolvedDep = resolveDependency(dependencyAtom, classifier, repositoryRegistry, (pomSufficient || dependencyAtom.transientDep),
+                                                    failMissingDependency);
+                    }
                     if (resolvedDep != null) {
                         state.resolved.put(dependencyAtom, resolvedDep);
                     }
@@ -290,6 +334,7 @@ public final class Deps {
                 if ((resolvedDep == null) && !failMissingDependency) {
                     if (Output.isInfo()) {
                         Output.print("^info^ Could not resolve dependency ^b^%s^r^.", dependencyAtom.toString());
+                        printKnownMissing("info", dependencyAtom, repositoryRegistry);
                         String path = getPathAsString(parentVertex, dependencyAtom);
                         if (path != null) {
                             Output.print("^info^ path to unresolved dependency [ %s ].", path);
@@ -312,6 +357,7 @@ public final class Deps {
             if (parentVertex != null) {
                 try {
                     graph.addEdge(parentVertex, vertex);
+                    state.recording.edge(parentVertex.getValue(), resolvedDep);
                 } catch (Graph.CycleException gce) {
                     Output.print("^error^ circular dependency [ %s ].", getCycleAsString(gce));
                     SystemExit.exit(1);
@@ -330,6 +376,7 @@ public final class Deps {
                 }
                 if (diffVersionDep != null) {
                     conflictingVersionVisitor.visit(diffVersionDep, resolvedDep, parentVertex, dependencyAtom, graph);
+                    state.recording.conflict(diffVersionDep, resolvedDep, parentVertex, dependencyAtom);
                     state.unversionedResolvedAlreadyVisited.add(resolvedDep.toString());
                 }
             }
@@ -340,6 +387,24 @@ public final class Deps {
         }
     }
 
+    /**
+     * @param name of the {@literal depmngr} property
+     * @param defaultValue to use if the property is not set or is invalid
+     * @return the integer value of the {@literal depmngr} property named {@code name}
+     */
+    private static int getInt(String name, int defaultValue) {
+        String value = Props.get(name, Context.named("depmngr")).value();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            Output.print("^warn^ Invalid ^b^%s^r^ value [ %s ], defaulting to %d.", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
     private static void warnAboutMultipleVersions(Dep diffVersionDep, Dep resolvedDep, Vertex<Dep> parentVertex,
                                                   DependencyAtom dependencyAtom, Graph<Dep> graph) {
         Vertex<Dep> diffVersionParent = graph.getVertex(diffVersionDep).getAnyParent();
@@ -449,15 +514,46 @@ public final class Deps {
         }
 
         if (failMissingDependency) {
-            Output.print("^error^ Dependency ^b^%s^r^ not found in any repository; ensure repositories are accessible.", dependencyAtom.toString());
-            Output.print("^error^ Project's local repository is ^b^%s^r^.", localRepo.toString());
-            int remoteRepoSize = repositoryRegistry.remoteRepositories.size();
-            Output.print("^error^ Project has ^b^%d^r^ other repositor%s %s", remoteRepoSize, (remoteRepoSize != 1 ? "ies" : "y"),
-                    (remoteRepoSize > 0 ? repositoryRegistry.remoteRepositories.toString() : ""));
+            printNotFound(dependencyAtom, repositoryRegistry);
         }
         return null;
     }
 
+    private static void printNotFound(DependencyAtom dependencyAtom, RepositoryRegistry repositoryRegistry) {
+        Output.print("^error^ Dependency ^b^%s^r^ not found in any repository; ensure repositories are accessible.", dependencyAtom.toString());
+        Output.print("^error^ Project's local repository is ^b^%s^r^.", repositoryRegistry.localRepository.toString());
+        int remoteRepoSize = repositoryRegistry.remoteRepositories.size();
+        Output.print("^error^ Project has ^b^%d^r^ other repositor%s %s", remoteRepoSize, (remoteRepoSize != 1 ? "ies" : "y"),
+                (remoteRepoSize > 0 ? repositoryRegistry.remoteRepositories.toString() : ""));
+        printKnownMissing("error", dependencyAtom, repositoryRegistry);
+    }
+
+    /**
+     * Prints, at {@code level}, the repositories which were not consulted for {@code dependencyAtom} as it was
+     * remembered as missing from them (@see {@link RepositoryIndex}), if any.
+     */
+    private static void printKnownMissing(String level, DependencyAtom dependencyAtom, RepositoryRegistry repositoryRegistry) {
+        if (repositoryRegistry.remoteRepositories == null) {
+            return;
+        }
+        String artifactKey = RepositoryIndex.key(dependencyAtom);
+        String pomKey = RepositoryIndex.key(dependencyAtom.with("pom"));
+        List<RepositoryAtom> skipped = new ArrayList<RepositoryAtom>(repositoryRegistry.remoteRepositories.size());
+        for (RepositoryAtom remoteRepo : repositoryRegistry.remoteRepositories) {
+            RepositoryIndex repositoryIndex = RepositoryIndex.of(remoteRepo);
+            if (repositoryIndex.isKnownMissing(artifactKey) || repositoryIndex.isKnownMissing(pomKey)) {
+                skipped.add(remoteRepo);
+            }
+        }
+        if (skipped.isEmpty()) {
+            return;
+        }
+        Output.print("^%s^ Did not look up ^b^%s^r^ within %s as it was found missing from %s within the last ^b^%d^r^ seconds (^b^depmngr.resolve.miss.ttl^r^).",
+                level, dependencyAtom.toString(), skipped.toString(), (skipped.size() == 1 ? "it" : "them"),
+                RepositoryIndex.getMissTtlSeconds());
+        Output.print("^%s^ To look it up again, run with ^b^-Pdepmngr.resolve.miss.ttl=0^r^.", level);
+    }
+
     private static Dep resolveDependency(DependencyAtom dependencyAtom, String classifier, RepositoryRegistry repositoryRegistry,
                                          RepositoryAtom localRepo, boolean pomSufficient) {
         LocalPaths localPaths = LocalPaths.get(dependencyAtom, localRepo);
@@ -483,18 +579,36 @@ public final class Deps {
     private static Dep resolveDependencyFromRemoteRepos(DependencyAtom dependencyAtom, String classifier,
                                                         RepositoryRegistry repositoryRegistry, LocalPaths localPaths,
                                                         File localDepFile) {
+        // consult the repositories in their declared order, skipping those from which the artifact is known to be missing
         List<RepositoryAtom> nonLocalRepos = repositoryRegistry.remoteRepositories;
+        String artifactKey = RepositoryIndex.key(dependencyAtom);
         for (RepositoryAtom remoteRepo : nonLocalRepos) {
+            RepositoryIndex repositoryIndex = RepositoryIndex.of(remoteRepo);
+            if (repositoryIndex.isMissing(artifactKey)) {
+                Output.print("^dbug^ Skipping repo %s for %s; known to be missing.", remoteRepo.toString(), dependencyAtom.toString());
+                continue;
+            }
             String remotePathDir = getDependencyDirectoryPathForRepo(dependencyAtom, remoteRepo);
-            if (downloadDependencyFromRemoteRepo(remoteRepo, remotePathDir, dependencyAtom, localDepFile)) {
-                return resolveDependency(dependencyAtom, classifier, remoteRepo, remotePathDir, localPaths.localDirPath);
+            Semaphore permit = Prefetch.permit(remoteRepo);
+            permit.acquireUninterruptibly();
+            try {
+                AtomicBoolean notFound = new AtomicBoolean(false);
+                if (downloadDependencyFromRemoteRepo(remoteRepo, remotePathDir, dependencyAtom, localDepFile, notFound)) {
+                    repositoryIndex.hit(artifactKey);
+                    return resolveDependency(dependencyAtom, classifier, remoteRepo, remotePathDir, localPaths.localDirPath);
+                } else if (notFound.get()) {
+                    repositoryIndex.miss(artifactKey);
+                }
+            } finally {
+                permit.release();
             }
         }
         return null;
     }
 
     private static boolean downloadDependencyFromRemoteRepo(RepositoryAtom remoteRepo, String remotePathDir,
-                                                            DependencyAtom dependencyAtom, File localDepFile) {
+                                                            DependencyAtom dependencyAtom, File localDepFile,
+                                                            AtomicBoolean notFound) {
         String unauthRemotePath = FileUtil.pathFromParts(remotePathDir, dependencyAtom.getArtifactName());
         Auth auth = remoteRepo.getAuth();
         String remotePath;
@@ -510,10 +624,9 @@ public final class Deps {
             if (!auth.downloadFile(remotePathDir, remoteUrl, headers, localDepFile, dependencyAtom.toString(), remoteRepo.toString(), true)) {
                 return false;
             }
-        } else if (!FileUtil.download(remoteUrl, headers, localDepFile, dependencyAtom.toString(), remoteRepo.toString(), true)) {
+        } else if (!FileUtil.download(remoteUrl, headers, localDepFile, dependencyAtom.toString(), remoteRepo.toString(), true, notFound, true)) {
             return false;
         }
-        // TODO - verify checksum
         return true;
     }
 
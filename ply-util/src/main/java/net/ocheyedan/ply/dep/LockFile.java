@@ -0,0 +1,403 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A resolved dependency graph persisted so that resolving the same dependencies against the same repositories
+ * is a single read rather than a walk of the local repository for every artifact of the graph.  The lock file is
+ * named by a checksum of everything resolution depends upon (the direct dependencies, exclusions, classifier and
+ * repositories) and is reused verbatim so long as neither the artifact nor the dependencies files of any
+ * {@link Dep} it references has changed (by length or modification time) within the local repository; a re-published
+ * snapshot or locally installed artifact, or one whose dependencies have changed, invalidates the lock.
+ *
+ * The file is binary; a magic number and version followed by each {@link Dep} of the graph (in the graph's vertex
+ * order) with the stamp of its files (@see {@link #stamp(Dep)}), the graph's edges (in the order they were added, so that the parents and
+ * children of each vertex are ordered as when resolved) and the messages printed while resolving (the skipped
+ * exclusions and version conflicts) which are replayed upon reuse.  Lock files are stored within
+ * {@literal ~/.ply/locks}; those not reused within {@link #STALE_MILLIS} are removed as new ones are written.
+ */
+final class LockFile {
+
+    /**
+     * Records the edges added to, and messages printed while, filling a dependency graph.
+     */
+    static final class Recording {
+
+        private final List<Dep[]> edges = new ArrayList<Dep[]>();
+
+        /**
+         * Either the {@link DependencyAtom} of a skipped exclusion or a {@link Conflict}.
+         */
+        private final List<Object> events = new ArrayList<Object>();
+
+        void edge(Dep from, Dep to) {
+            edges.add(new Dep[] { from, to });
+        }
+
+        void excluded(DependencyAtom dependencyAtom) {
+            events.add(dependencyAtom);
+        }
+
+        void conflict(Dep diffVersionDep, Dep resolvedDep, Vertex<Dep> parentVertex, DependencyAtom dependencyAtom) {
+            events.add(new Conflict(diffVersionDep, resolvedDep, (parentVertex == null ? null : parentVertex.getValue()),
+                                    dependencyAtom));
+        }
+    }
+
+    private static final class Conflict {
+
+        private final Dep diffVersionDep;
+
+        private final Dep resolvedDep;
+
+        private final Dep parent;
+
+        private final DependencyAtom dependencyAtom;
+
+        private Conflict(Dep diffVersionDep, Dep resolvedDep, Dep parent, DependencyAtom dependencyAtom) {
+            this.diffVersionDep = diffVersionDep;
+            this.resolvedDep = resolvedDep;
+            this.parent = parent;
+            this.dependencyAtom = dependencyAtom;
+        }
+    }
+
+    private static final int MAGIC = 0x504C594C; // PLYL
+
+    private static final int VERSION = 2;
+
+    private static final byte EXCLUDED = 1;
+
+    private static final byte CONFLICT = 2;
+
+    private static final long STALE_MILLIS = 30L * 24L * 60L * 60L * 1000L;
+
+    private static final File LOCK_DIR = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "locks");
+
+    /**
+     * @param dependencyAtoms the direct dependencies
+     * @param exclusionAtoms the {@link DependencyAtom} excluded when resolving transitive dependencies
+     * @param repositoryRegistry the repositories consulted when resolving
+     * @param classifier used when resolving transitive dependencies, or null
+     * @return the lock file for resolving {@code dependencyAtoms} with the given exclusions, repositories and classifier
+     */
+    static LockFile of(List<DependencyAtom> dependencyAtoms, Set<DependencyAtom> exclusionAtoms,
+                       RepositoryRegistry repositoryRegistry, String classifier) {
+        StringBuilder key = new StringBuilder(dependencyAtoms.size() * 64);
+        key.append(VERSION).append('\n').append(classifier).append('\n');
+        for (DependencyAtom dependencyAtom : dependencyAtoms) {
+            key.append(dependencyAtom.toString()).append('|').append(dependencyAtom.artifactName).append('\n');
+        }
+        key.append('\n');
+        if (exclusionAtoms != null) {
+            for (String exclusion : sorted(exclusionAtoms)) {
+                key.append(exclusion).append('\n');
+            }
+        }
+        key.append('\n');
+        append(key, repositoryRegistry.localRepository);
+        if (repositoryRegistry.remoteRepositories != null) {
+            for (RepositoryAtom remoteRepository : repositoryRegistry.remoteRepositories) {
+                append(key, remoteRepository);
+            }
+        }
+        key.append('\n');
+        if (repositoryRegistry.syntheticRepository != null) {
+            Map<String, List<DependencyAtom>> synthetic = new TreeMap<String, List<DependencyAtom>>();
+            for (Map.Entry<DependencyAtom, List<DependencyAtom>> entry : repositoryRegistry.syntheticRepository.entrySet()) {
+                synthetic.put(entry.getKey().toString(), entry.getValue());
+            }
+            for (Map.Entry<String, List<DependencyAtom>> entry : synthetic.entrySet()) {
+                key.append(entry.getKey()).append('=').append(entry.getValue()).append('\n');
+            }
+        }
+        try {
+            byte[] checksum = MessageDigest.getInstance("SHA1").digest(key.toString().getBytes("UTF-8"));
+            return new LockFile(new File(LOCK_DIR, BitUtil.toHexString(checksum) + ".lock"));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+    private static List<String> sorted(Collection<DependencyAtom> dependencyAtoms) {
+        List<String> sorted = new ArrayList<String>(dependencyAtoms.size());
+        for (DependencyAtom dependencyAtom : dependencyAtoms) {
+            sorted.add(dependencyAtom.toString());
+        }
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    private static void append(StringBuilder key, RepositoryAtom repositoryAtom) {
+        if (repositoryAtom != null) {
+            key.append(repositoryAtom.getResolvedType()).append(':').append(repositoryAtom.repositoryUri).append('\n');
+        }
+    }
+
+    private final File file;
+
+    private LockFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads the locked graph, replaying to {@code conflictingVersionVisitor} (and printing) the messages printed when
+     * the graph was resolved.
+     * @param conflictingVersionVisitor visitor of each version conflict within the graph
+     * @return the locked graph or null if there is no lock file or if any of its artifacts have changed
+     */
+    DirectedAcyclicGraph<Dep> read(ConflictingVersionVisitor conflictingVersionVisitor) {
+        if (!file.exists()) {
+            return null;
+        }
+        DirectedAcyclicGraph<Dep> graph = new DirectedAcyclicGraph<Dep>();
+        List<Object> events;
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16384));
+            try {
+                if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+                    return null;
+                }
+                int size = input.readInt();
+                List<Dep> deps = new ArrayList<Dep>(size);
+                for (int i = 0; i < size; i++) {
+                    DependencyAtom dependencyAtom = readAtom(input);
+                    String localRepositoryDirectory = readString(input);
+                    String stamp = readString(input);
+                    int dependencies = input.readInt();
+                    List<DependencyAtom> dependencyAtoms = new ArrayList<DependencyAtom>(dependencies);
+                    for (int j = 0; j < dependencies; j++) {
+                        dependencyAtoms.add(readAtom(input));
+                    }
+                    Dep dep = new Dep(dependencyAtom, dependencyAtoms, localRepositoryDirectory);
+                    if (!stamp(dep).equals(stamp)) {
+                        Output.print("^dbug^ Dependency lock %s is out of date; %s has changed.", file.getName(),
+                                dependencyAtom.toString());
+                        return null;
+                    }
+                    deps.add(dep);
+                    graph.addVertex(dep);
+                }
+                for (int edges = input.readInt(); edges > 0; edges--) {
+                    graph.addEdge(graph.getVertex(deps.get(input.readInt())), graph.getVertex(deps.get(input.readInt())));
+                }
+                int eventCount = input.readInt();
+                events = new ArrayList<Object>(eventCount);
+                for (int i = 0; i < eventCount; i++) {
+                    byte type = input.readByte();
+                    if (type == EXCLUDED) {
+                        events.add(readAtom(input));
+                    } else if (type == CONFLICT) {
+                        Dep diffVersionDep = deps.get(input.readInt());
+                        Dep resolvedDep = deps.get(input.readInt());
+                        int parent = input.readInt();
+                        events.add(new Conflict(diffVersionDep, resolvedDep, (parent == -1 ? null : deps.get(parent)),
+                                                readAtom(input)));
+                    } else {
+                        return null;
+                    }
+                }
+            } finally {
+                input.close();
+            }
+        } catch (IOException ioe) {
+            return null;
+        } catch (Graph.CycleException ce) {
+            return null;
+        } catch (RuntimeException re) { // truncated or otherwise corrupt lock file; simply resolve
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        Output.print("^dbug^ Using dependency lock %s.", file.getName());
+        for (Object event : events) {
+            if (event instanceof DependencyAtom) {
+                Output.print("^info^ Skipping excluded dependency ^b^%s^r^.", event.toString());
+            } else {
+                Conflict conflict = (Conflict) event;
+                conflictingVersionVisitor.visit(conflict.diffVersionDep, conflict.resolvedDep,
+                        (conflict.parent == null ? null : graph.getVertex(conflict.parent)), conflict.dependencyAtom, graph);
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Stores {@code graph}, ignoring any failure to do so.
+     * @param graph the resolved dependency graph
+     * @param recording the edges added to, and messages printed while, resolving {@code graph}
+     */
+    void write(DirectedAcyclicGraph<Dep> graph, Recording recording) {
+        List<Vertex<Dep>> vertices = graph.getVertices();
+        Map<Dep, Integer> indices = new HashMap<Dep, Integer>(vertices.size() * 2);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(vertices.size() * 256);
+        DataOutputStream output = new DataOutputStream(bytes);
+        File temp = null;
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(vertices.size());
+            for (Vertex<Dep> vertex : vertices) {
+                Dep dep = vertex.getValue();
+                indices.put(dep, indices.size());
+                writeAtom(output, dep.dependencyAtom);
+                writeString(output, dep.localRepositoryDirectory);
+                writeString(output, stamp(dep));
+                output.writeInt(dep.dependencies.size());
+                for (DependencyAtom dependencyAtom : dep.dependencies) {
+                    writeAtom(output, dependencyAtom);
+                }
+            }
+            output.writeInt(recording.edges.size());
+            for (Dep[] edge : recording.edges) {
+                output.writeInt(index(edge[0], indices));
+                output.writeInt(index(edge[1], indices));
+            }
+            output.writeInt(recording.events.size());
+            for (Object event : recording.events) {
+                if (event instanceof DependencyAtom) {
+                    output.writeByte(EXCLUDED);
+                    writeAtom(output, (DependencyAtom) event);
+                } else {
+                    Conflict conflict = (Conflict) event;
+                    output.writeByte(CONFLICT);
+                    output.writeInt(index(conflict.diffVersionDep, indices));
+                    output.writeInt(index(conflict.resolvedDep, indices));
+                    output.writeInt(conflict.parent == null ? -1 : index(conflict.parent, indices));
+                    writeAtom(output, conflict.dependencyAtom);
+                }
+            }
+            output.flush();
+            if (!LOCK_DIR.exists() && !LOCK_DIR.mkdirs()) {
+                return;
+            }
+            temp = File.createTempFile("lock", ".tmp", LOCK_DIR);
+            OutputStream stream = new FileOutputStream(temp);
+            try {
+                bytes.writeTo(stream);
+            } finally {
+                stream.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                temp.delete();
+                return;
+            }
+            removeStale();
+        } catch (IOException ioe) {
+            if (temp != null) {
+                temp.delete();
+            }
+        } catch (IllegalStateException ise) {
+            // a dependency referenced outside of the graph; simply do not lock
+        }
+    }
+
+    /**
+     * Removes the lock file, if any.
+     */
+    void delete() {
+        file.delete();
+    }
+
+    /**
+     * @param dep for which to create a stamp
+     * @return the length and modification time of {@code dep}'s artifact and of each of its dependencies files
+     *         (one per scope) within its local repository directory, which changes if any of these files change
+     */
+    private static String stamp(Dep dep) {
+        StringBuilder stamp = new StringBuilder(128);
+        stamp(stamp, FileUtil.fromParts(dep.localRepositoryDirectory, dep.dependencyAtom.getArtifactName()));
+        File[] files = (dep.localRepositoryDirectory == null ? null : new File(dep.localRepositoryDirectory).listFiles());
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("dependencies") && name.endsWith(".properties")) {
+                    stamp(stamp, file);
+                }
+            }
+        }
+        return stamp.toString();
+    }
+
+    private static void stamp(StringBuilder stamp, File file) {
+        stamp.append(file.getName()).append(':');
+        if (file.exists()) {
+            stamp.append(file.length()).append(':').append(file.lastModified());
+        } else {
+            stamp.append('-');
+        }
+        stamp.append('|');
+    }
+
+    private static int index(Dep dep, Map<Dep, Integer> indices) {
+        Integer index = indices.get(dep);
+        if (index == null) {
+            throw new IllegalStateException();
+        }
+        return index;
+    }
+
+    private static void writeAtom(DataOutputStream output, DependencyAtom dependencyAtom) throws IOException {
+        writeString(output, dependencyAtom.namespace);
+        writeString(output, dependencyAtom.name);
+        writeString(output, dependencyAtom.version);
+        writeString(output, dependencyAtom.artifactName);
+        output.writeBoolean(dependencyAtom.transientDep);
+    }
+
+    private static DependencyAtom readAtom(DataInputStream input) throws IOException {
+        String namespace = readString(input);
+        String name = readString(input);
+        String version = readString(input);
+        String artifactName = readString(input);
+        return new DependencyAtom(namespace, name, version, artifactName, input.readBoolean());
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == -1) {
+            return null;
+        } else if (length < -1) {
+            throw new IOException("Corrupt lock file.");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void removeStale() {
+        File[] files = LOCK_DIR.listFiles();
+        if (files == null) {
+            return;
+        }
+        long stale = System.currentTimeMillis() - STALE_MILLIS;
+        for (File file : files) {
+            if ((file.getName().endsWith(".lock") || file.getName().endsWith(".tmp")) && (file.lastModified() < stale)) {
+                file.delete();
+            }
+        }
+    }
+
+}
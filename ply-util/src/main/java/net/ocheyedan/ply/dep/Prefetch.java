@@ -0,0 +1,218 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.Output;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Resolves the transitive dependencies of a set of direct dependencies breadth-first and concurrently so that
+ * {@link Deps} can then assemble the dependency graph (depth-first, in declaration order, as it always has) from
+ * already resolved {@link Dep} objects rather than resolving, and likely downloading, each in turn.
+ * <p/>
+ * Each {@link DependencyAtom} is resolved at most once; the dependencies of each resolved {@link Dep} are submitted
+ * as it completes, subject to the same transient and exclusion rules as graph assembly.  The output of each resolution
+ * (i.e., download progress and errors) is deferred (@see {@link Output#defer()}) and printed only once assembly
+ * reaches the dependency so that the output is the same as had assembly resolved it itself.  A dependency which could
+ * not be resolved is recorded as such, and reported during assembly, rather than being resolved again; one whose
+ * resolution threw is simply absent and is resolved again during assembly.
+ * <p/>
+ * Connections to each remote repository host are limited (@see {@link #permit(RepositoryAtom)}) regardless of the
+ * number of resolving threads.
+ */
+final class Prefetch {
+
+    /**
+     * A {@link Dep} resolved ahead of graph assembly.
+     */
+    private static final class Resolved {
+
+        private final Dep dep;
+
+        /**
+         * True if it sufficed to resolve only the pom of the dependency.
+         */
+        private final boolean pomSufficient;
+
+        /**
+         * The output of the resolution.
+         */
+        private final Output.Deferred output;
+
+        /**
+         * @param dep the resolved dependency or null if it could not be resolved
+         * @param pomSufficient true if it sufficed to resolve only the pom of the dependency
+         * @param output the output of the resolution
+         */
+        private Resolved(Dep dep, boolean pomSufficient, Output.Deferred output) {
+            this.dep = dep;
+            this.pomSufficient = pomSufficient;
+            this.output = output;
+        }
+    }
+
+    /**
+     * The connection limits of each remote repository host.
+     */
+    private static final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>(4, 1.0f);
+
+    /**
+     * The maximum number of concurrent connections to any one remote repository host.
+     */
+    private static volatile int connectionsPerHost = Integer.MAX_VALUE;
+
+    /**
+     * An empty prefetch; every dependency is resolved during assembly.
+     */
+    static final Prefetch None = new Prefetch(Collections.<DependencyAtom, Resolved>emptyMap());
+
+    /**
+     * Resolves {@code dependencyAtoms} and their transitive dependencies using {@code parallelism} threads.
+     * @param dependencyAtoms the direct dependencies
+     * @param exclusionAtoms the {@link DependencyAtom} to exclude when resolving transitive dependencies
+     * @param classifier to use when resolving transitive dependencies, or null
+     * @param repositoryRegistry the repositories to consult
+     * @param parallelism the number of threads with which to resolve
+     * @param perHost the maximum number of concurrent connections to any one remote repository host
+     * @return the resolved dependencies
+     */
+    static Prefetch resolve(List<DependencyAtom> dependencyAtoms, Set<DependencyAtom> exclusionAtoms,
+                            final String classifier, final RepositoryRegistry repositoryRegistry, int parallelism,
+                            int perHost) {
+        if ((parallelism < 2) || repositoryRegistry.isEmpty()) {
+            return None;
+        }
+        if (repositoryRegistry.remoteRepositories != null) {
+            for (RepositoryAtom remoteRepository : repositoryRegistry.remoteRepositories) {
+                if (remoteRepository.getAuth() != null) {
+                    return None; // authentication may prompt for credentials, resolve serially
+                }
+            }
+        }
+        if (exclusionAtoms == null) {
+            exclusionAtoms = Collections.emptySet();
+        }
+        connectionsPerHost = Math.max(1, perHost);
+        hosts.clear();
+        long start = System.currentTimeMillis();
+        Map<DependencyAtom, Resolved> resolved = new HashMap<DependencyAtom, Resolved>(dependencyAtoms.size() * 4);
+        Set<DependencyAtom> submitted = new HashSet<DependencyAtom>(dependencyAtoms.size() * 4);
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ply-dep-resolve");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<Resolved> completion = new ExecutorCompletionService<Resolved>(workers);
+        Map<Future<Resolved>, DependencyAtom> running = new HashMap<Future<Resolved>, DependencyAtom>();
+        try {
+            for (DependencyAtom dependencyAtom : dependencyAtoms) {
+                if (!exclusionAtoms.contains(dependencyAtom) && submitted.add(dependencyAtom)) {
+                    running.put(submit(completion, dependencyAtom, classifier, repositoryRegistry,
+                            dependencyAtom.transientDep), dependencyAtom);
+                }
+            }
+            while (!running.isEmpty()) {
+                Future<Resolved> completed = completion.take();
+                DependencyAtom dependencyAtom = running.remove(completed);
+                Resolved result = completed.get();
+                if (result == null) {
+                    continue;
+                }
+                resolved.put(dependencyAtom, result);
+                if ((result.dep == null) || dependencyAtom.transientDep) {
+                    continue; // transient dependencies are not recurred upon
+                }
+                for (DependencyAtom dependency : result.dep.dependencies) {
+                    if (dependency.transientDep || exclusionAtoms.contains(dependency.withoutClassifier())
+                            || exclusionAtoms.contains(dependency) || !submitted.add(dependency)) {
+                        continue;
+                    }
+                    running.put(submit(completion, dependency, classifier, repositoryRegistry, true), dependency);
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ee) {
+            Output.print(ee.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        Output.print("^dbug^ Resolved ^b^%d^r^ dependenc%s with ^b^%d^r^ threads in ^b^%d ms^r^.", resolved.size(),
+                (resolved.size() == 1 ? "y" : "ies"), parallelism, (System.currentTimeMillis() - start));
+        return new Prefetch(resolved);
+    }
+
+    private static Future<Resolved> submit(CompletionService<Resolved> completion, final DependencyAtom dependencyAtom,
+                                           final String classifier, final RepositoryRegistry repositoryRegistry,
+                                           final boolean pomSufficient) {
+        return completion.submit(new Callable<Resolved>() {
+            @Override public Resolved call() {
+                Output.defer();
+                Dep dep;
+                try {
+                    dep = Deps.resolveDependency(dependencyAtom, classifier, repositoryRegistry, pomSufficient, false);
+                } catch (Throwable t) {
+                    Output.undefer();
+                    Output.print("^dbug^ Could not resolve %s ahead of assembly: %s", dependencyAtom.toString(), t.getMessage());
+                    return null; // resolved again, and reported, during assembly
+                }
+                return new Resolved(dep, pomSufficient, Output.undefer());
+            }
+        });
+    }
+
+    /**
+     * @param repositoryAtom to which a connection will be made
+     * @return the permits of connections to {@code repositoryAtom}'s host
+     */
+    static Semaphore permit(RepositoryAtom repositoryAtom) {
+        String host = ((repositoryAtom.repositoryUri == null) || (repositoryAtom.repositoryUri.getHost() == null)
+                ? repositoryAtom.toString() : repositoryAtom.repositoryUri.getHost());
+        Semaphore permit = hosts.get(host);
+        if (permit == null) {
+            permit = new Semaphore(connectionsPerHost, true);
+            Semaphore existing = hosts.putIfAbsent(host, permit);
+            permit = (existing == null ? permit : existing);
+        }
+        return permit;
+    }
+
+    private final Map<DependencyAtom, Resolved> resolved;
+
+    private Prefetch(Map<DependencyAtom, Resolved> resolved) {
+        this.resolved = resolved;
+    }
+
+    /**
+     * @param dependencyAtom to check
+     * @param pomSufficient if true, then a {@link Dep} resolved from only its pom suffices
+     * @return true if {@code dependencyAtom} was resolved (or could not be resolved) as assembly would itself have;
+     *         i.e., false if it was not attempted, if its resolution threw or if it was resolved from only its pom
+     *         (or failed to be resolved while requiring its artifact) and {@code pomSufficient} is false (true)
+     */
+    boolean contains(DependencyAtom dependencyAtom, boolean pomSufficient) {
+        Resolved result = resolved.get(dependencyAtom);
+        if (result == null) {
+            return false;
+        }
+        if (result.dep == null) {
+            return (result.pomSufficient || !pomSufficient);
+        }
+        return (pomSufficient || !result.pomSufficient || dependencyAtom.equals(result.dep.dependencyAtom));
+    }
+
+    /**
+     * Prints the output of the resolution of {@code dependencyAtom}; i.e., as assembly would have had it resolved
+     * {@code dependencyAtom} itself.
+     * @param dependencyAtom to retrieve, which must be {@link #contains(DependencyAtom, boolean)}
+     * @return the {@link Dep} resolved for {@code dependencyAtom} or null if it could not be resolved
+     */
+    Dep get(DependencyAtom dependencyAtom) {
+        Resolved result = resolved.get(dependencyAtom);
+        result.output.print();
+        return result.dep;
+    }
+
+}
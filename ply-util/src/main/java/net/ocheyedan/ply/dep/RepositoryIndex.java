@@ -0,0 +1,230 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFileReader;
+import net.ocheyedan.ply.props.PropFiles;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The artifacts recently found to be missing from a remote repository.  An artifact missing from a repository is
+ * not looked up again within that repository until its miss has expired (@see {@link #configure(int)}) so that a
+ * dependency residing within the last of several repositories does not cost a failed request of each of the others
+ * every time it is resolved.  Repositories are always consulted in their declared order; the index only skips a
+ * repository known to lack an artifact and never lets a later repository take precedence over an earlier one which
+ * has the artifact.
+ * <p/>
+ * Only misses of repositories accessed over http(s) and without authentication are remembered; a file-based
+ * repository is cheap to consult and may be published to at any time.  The index of each repository is stored as a
+ * properties file within {@literal ~/.ply/repositories} named by a checksum of the repository's uri; each property
+ * maps an artifact (as {@literal namespace:name:version:artifactName}) to the time, in milliseconds, at which it was
+ * found missing.
+ */
+final class RepositoryIndex {
+
+    private static final File INDEX_DIR = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "repositories");
+
+    private static final ConcurrentMap<String, RepositoryIndex> indices = new ConcurrentHashMap<String, RepositoryIndex>(4, 1.0f);
+
+    /**
+     * The time, in milliseconds, for which a miss is remembered.
+     */
+    private static volatile long missTtl = 24L * 60L * 60L * 1000L;
+
+    /**
+     * @param missTtlSeconds the time, in seconds, for which an artifact missing from a repository is remembered;
+     *                       0 (or less) to neither remember nor consult misses
+     */
+    static void configure(int missTtlSeconds) {
+        missTtl = Math.max(0L, missTtlSeconds * 1000L);
+    }
+
+    /**
+     * @param repositoryAtom for which to retrieve the index
+     * @return the index of {@code repositoryAtom}, loading it if this is its first use
+     */
+    static RepositoryIndex of(RepositoryAtom repositoryAtom) {
+        String key = repositoryAtom.getPropertyName();
+        RepositoryIndex index = indices.get(key);
+        if (index == null) {
+            index = new RepositoryIndex(repositoryAtom);
+            RepositoryIndex existing = indices.putIfAbsent(key, index);
+            index = (existing == null ? index : existing);
+        }
+        return index;
+    }
+
+    /**
+     * Stores each changed index and prints, at debug level, the lookups of each repository since the last call.
+     */
+    static void storeAll() {
+        for (RepositoryIndex index : indices.values()) {
+            index.store();
+        }
+    }
+
+    /**
+     * @param dependencyAtom the artifact of which to key
+     * @return the key of {@code dependencyAtom}'s artifact
+     */
+    static String key(DependencyAtom dependencyAtom) {
+        return String.format("%s:%s:%s:%s", dependencyAtom.namespace, dependencyAtom.name, dependencyAtom.version,
+                             dependencyAtom.getArtifactName());
+    }
+
+    private final String repository;
+
+    private final File file;
+
+    private final boolean rememberMisses;
+
+    private final PropFile index;
+
+    private boolean changed;
+
+    private int sessionHits;
+
+    private int sessionMisses;
+
+    private int sessionSkipped;
+
+    private RepositoryIndex(RepositoryAtom repositoryAtom) {
+        this.repository = repositoryAtom.toString();
+        this.file = new File(INDEX_DIR, name(repositoryAtom) + ".properties");
+        String scheme = (repositoryAtom.repositoryUri == null ? null : repositoryAtom.repositoryUri.getScheme());
+        this.rememberMisses = ((repositoryAtom.getAuth() == null)
+                && ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme)));
+        this.index = load(file);
+    }
+
+    /**
+     * @param key of the artifact (@see {@link #key(DependencyAtom)})
+     * @return true if the artifact was found missing from this repository within the miss time-to-live, in which
+     *         case it should not be looked up
+     */
+    synchronized boolean isMissing(String key) {
+        if (!rememberMisses || (missTtl == 0L) || !index.contains(key)) {
+            return false;
+        }
+        long missedAt = getLong(index, key);
+        if ((System.currentTimeMillis() - missedAt) < missTtl) {
+            sessionSkipped++;
+            return true;
+        }
+        index.remove(key);
+        changed = true;
+        return false;
+    }
+
+    /**
+     * @param key of the artifact (@see {@link #key(DependencyAtom)})
+     * @return true if the artifact is remembered as missing from this repository; same as {@link #isMissing(String)}
+     *         without recording a skipped lookup
+     */
+    synchronized boolean isKnownMissing(String key) {
+        return (rememberMisses && (missTtl > 0L) && index.contains(key)
+                && ((System.currentTimeMillis() - getLong(index, key)) < missTtl));
+    }
+
+    /**
+     * @return the time, in seconds, for which a miss is remembered
+     */
+    static long getMissTtlSeconds() {
+        return (missTtl / 1000L);
+    }
+
+    /**
+     * Records that the artifact of {@code key} was found within this repository.
+     * @param key of the artifact (@see {@link #key(DependencyAtom)})
+     */
+    synchronized void hit(String key) {
+        sessionHits++;
+        if (index.remove(key) != null) {
+            changed = true;
+        }
+    }
+
+    /**
+     * Records that the artifact of {@code key} does not exist within this repository.
+     * @param key of the artifact (@see {@link #key(DependencyAtom)})
+     */
+    synchronized void miss(String key) {
+        sessionMisses++;
+        if (rememberMisses && (missTtl > 0L)) {
+            index.set(key, String.valueOf(System.currentTimeMillis()));
+            changed = true;
+        }
+    }
+
+    private synchronized void store() {
+        if ((sessionHits + sessionMisses + sessionSkipped) > 0) {
+            Output.print("^dbug^ Repository %s: ^b^%d^r^ hit%s, ^b^%d^r^ miss%s, ^b^%d^r^ skipped as known missing.",
+                    repository, sessionHits, (sessionHits == 1 ? "" : "s"), sessionMisses, (sessionMisses == 1 ? "" : "es"),
+                    sessionSkipped);
+            sessionHits = sessionMisses = sessionSkipped = 0;
+        }
+        if (!changed) {
+            return;
+        }
+        removeExpired();
+        if (PropFiles.store(index, file.getPath(), true)) {
+            changed = false;
+        }
+    }
+
+    private void removeExpired() {
+        long expired = System.currentTimeMillis() - missTtl;
+        List<String> remove = new ArrayList<String>();
+        for (PropFile.Prop prop : index.props()) {
+            if ((missTtl == 0L) || (getLong(index, prop.name) < expired)) {
+                remove.add(prop.name);
+            }
+        }
+        for (String name : remove) {
+            index.remove(name);
+        }
+    }
+
+    private static PropFile load(File file) {
+        PropFile index = new PropFile(Context.named("repositories"), PropFile.Loc.Local);
+        if (file.exists()) {
+            try {
+                PropFiles.load(file.getPath(), index, false, false);
+            } catch (PropFileReader.Invalid i) {
+                Output.print("^dbug^ Ignoring invalid repository index %s.", file.getPath());
+                return new PropFile(Context.named("repositories"), PropFile.Loc.Local);
+            }
+        }
+        return index;
+    }
+
+    private static long getLong(PropFile propFile, String name) {
+        try {
+            return Long.parseLong(propFile.get(name).value());
+        } catch (NumberFormatException nfe) {
+            return 0L;
+        }
+    }
+
+    private static String name(RepositoryAtom repositoryAtom) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA1");
+            return BitUtil.toHexString(digest.digest(repositoryAtom.getPropertyName().getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+}
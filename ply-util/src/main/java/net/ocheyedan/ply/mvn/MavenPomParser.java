@@ -9,15 +9,8 @@ import net.ocheyedan.ply.input.Resources;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.PropFile;
 import net.ocheyedan.ply.props.Scope;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-import org.xml.sax.SAXParseException;
-
-import javax.print.Doc;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+
+import javax.xml.stream.XMLStreamException;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
@@ -31,7 +24,8 @@ import java.util.regex.Pattern;
  *
  * Responsible for parsing {@literal Maven} pom files, resolving all dependencies including the dependencies'
  * {@literal groupId}, {@literal artifactId} and {@literal version} from any property values reference-able from
- * the pom file.  Parsing a given pom will resolve parent pom information if present.
+ * the pom file.  Parsing a given pom will resolve parent pom information if present.  Poms are read by streaming
+ * and cached (@see {@link PomCache}) so that a parent or imported pom shared by many dependencies is read once.
  *
  * This parser is rudimentary and is definitely a work in progress
  */
@@ -178,7 +172,7 @@ public class MavenPomParser {
         }
 
         private Map<String, Map<String, String>> resolveDeps(MavenPomParser parser, RepositoryAtom repositoryAtom)
-                throws ParserConfigurationException, IOException, SAXException {
+                throws IOException, XMLStreamException {
             resolveImports(parser, repositoryAtom);
             Map<String, Map<String, String>> deps = new HashMap<String, Map<String, String>>(mavenIncompleteDeps.size());
             for (Incomplete incomplete : mavenIncompleteDeps.values()) {
@@ -188,7 +182,7 @@ public class MavenPomParser {
         }
 
         private void resolveImports(MavenPomParser parser, RepositoryAtom repositoryAtom)
-                throws ParserConfigurationException, IOException, SAXException {
+                throws IOException, XMLStreamException {
             for (Incomplete incomplete : mavenIncompleteDeps.values()) {
                 if ("import".equals(incomplete.scope)) {
                     String filteredVersion = filterVersion(incomplete.version, this);
@@ -305,7 +299,7 @@ public class MavenPomParser {
     }
 
     public ParseResult parse(String pomUrlPath, RepositoryAtom repositoryAtom)
-            throws ParserConfigurationException, IOException, SAXException {
+            throws IOException, XMLStreamException {
         ParseResult parseResult = new ParseResult();
         PomUri pomUri = new PomUri(null, pomUrlPath, false);
         parse(pomUri, repositoryAtom, parseResult);
@@ -313,7 +307,7 @@ public class MavenPomParser {
     }
 
     private void parse(PomUri pomUri, RepositoryAtom repositoryAtom, ParseResult parseResult)
-            throws ParserConfigurationException, IOException, SAXException {
+            throws IOException, XMLStreamException {
         if ((pomUri.relativeUrl != null) && !pomUri.relativeUrl.isEmpty()) {
             try {
                 parse(pomUri.relativeUrl, pomUri, repositoryAtom, parseResult);
@@ -326,13 +320,10 @@ public class MavenPomParser {
     }
 
     private void parse(String pomUrlPath, PomUri pomUri, RepositoryAtom repositoryAtom, ParseResult parseResult)
-            throws ParserConfigurationException, IOException, SAXException {
+            throws IOException, XMLStreamException {
         Map<String, String> headers = repositoryAtom.getAuthHeaders();
-        Resource pomResource = Resources.parse(pomUrlPath, headers);
         try {
-            InputStream stream = pomResource.open();
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
-            NodeList pomChildren = document.getDocumentElement().getChildNodes();
+            PomElement project = PomCache.get(pomUrlPath, headers);
             // store the parent pom url so that recursive processing is done after the entire current pom is analyzed
             // so that any local property filtering (i.e., version) can be done.
             PomUri parentPomUri = null;
@@ -343,9 +334,8 @@ public class MavenPomParser {
             // similar to the parent version, need to store the parent's groupId
             AtomicReference<String> parentGroupId = new AtomicReference<String>("");
             String localGroupId = null, localArtifactId = null, packaging = null;
-            for (int i = 0; i < pomChildren.getLength(); i++) {
-                Node child = pomChildren.item(i);
-                String nodeName = child.getNodeName();
+            for (PomElement child : project.children()) {
+                String nodeName = child.name;
                 if ("dependencyManagement".equals(nodeName)) {
                     parseDependencyManagement(child, parseResult, repositoryAtom);
                 } else if ("dependencies".equals(nodeName)) {
@@ -354,14 +344,14 @@ public class MavenPomParser {
                     parseRepositories(child, parseResult);
                 } else if ("properties".equals(nodeName)) {
                     parseProperties(child, parseResult);
-                } else if ("groupId".equals(nodeName) && !"${parent.groupId}".equals(child.getTextContent().trim())) {
-                    localGroupId = child.getTextContent().trim();
+                } else if ("groupId".equals(nodeName) && !"${parent.groupId}".equals(child.text().trim())) {
+                    localGroupId = child.text().trim();
                 } else if ("artifactId".equals(nodeName)) {
-                    localArtifactId = child.getTextContent().trim();
-                } else if ("version".equals(nodeName) && !"${parent.version}".equals(child.getTextContent().trim())) {
-                    localVersion = Version.resolve(child.getTextContent().trim(), getMetadataBaseUrl(pomUrlPath), headers);
+                    localArtifactId = child.text().trim();
+                } else if ("version".equals(nodeName) && !"${parent.version}".equals(child.text().trim())) {
+                    localVersion = Version.resolve(child.text().trim(), getMetadataBaseUrl(pomUrlPath), headers);
                 } else if ("packaging".equals(nodeName)) {
-                    packaging = child.getTextContent().trim();
+                    packaging = child.text().trim();
                 } else if ("parent".equals(nodeName)) { // parent
                     parentPomUri = parseParentPomUrlPath(child, repositoryAtom, pomUri, parentGroupId, parentVersion);
                 } else if ("build".equals(nodeName)) {
@@ -399,49 +389,42 @@ public class MavenPomParser {
                 version = filterVersion(version, parseResult);
                 parseResult.mavenProperties.put("project.version", version);
             }
-        } catch (SAXParseException saxpe) {
+        } catch (XMLStreamException xmlse) {
             Output.print("^error^ Could not parse %s", pomUrlPath);
-            InputStream stream = pomResource.open();
-            if (stream != null) {
-                Output.print("^dbug^   From content:");
-                BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
-                boolean likelyRedirect = false;
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if ((line != null) && line.contains("<html>")) {
-                        likelyRedirect = true;
+            Resource pomResource = Resources.parse(pomUrlPath, headers);
+            try {
+                InputStream stream = pomResource.open();
+                if (stream != null) {
+                    Output.print("^dbug^   From content:");
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(stream));
+                    boolean likelyRedirect = false;
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if ((line != null) && line.contains("<html>")) {
+                            likelyRedirect = true;
+                        }
+                        Output.print("^dbug^   %s", line);
+                    }
+                    if (likelyRedirect) {
+                        Output.print("^error^ Received unexpected response from host; ^red^perhaps internet is not connected.^r^");
+                        throw new RuntimeException(xmlse);
                     }
-                    Output.print("^dbug^   %s", line);
-                }
-                if (likelyRedirect) {
-                    Output.print("^error^ Received unexpected response from host; ^red^perhaps internet is not connected.^r^");
-                    throw new RuntimeException(saxpe);
                 }
+            } finally {
+                pomResource.close();
             }
-            throw saxpe;
-        } finally {
-            pomResource.close();
+            throw xmlse;
         }
     }
 
     private void parseMavenImport(ParseResult.Incomplete incomplete, ParseResult importParse,
                                   String pomUrlPath, RepositoryAtom repositoryAtom, ParseResult parseResult)
-            throws ParserConfigurationException, IOException, SAXException {
-        Map<String, String> headers = repositoryAtom.getAuthHeaders();
-        Resource pomResource = Resources.parse(pomUrlPath, headers);
-        try {
-            InputStream stream = pomResource.open();
-            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(stream);
-            NodeList pomChildren = document.getDocumentElement().getChildNodes();
-            for (int i = 0; i < pomChildren.getLength(); i++) {
-                Node child = pomChildren.item(i);
-                String nodeName = child.getNodeName();
-                if ("dependencyManagement".equals(nodeName)) {
-                    parseDependencyManagementForImport(incomplete, importParse, child, parseResult, repositoryAtom);
-                }
+            throws IOException, XMLStreamException {
+        PomElement project = PomCache.get(pomUrlPath, repositoryAtom.getAuthHeaders());
+        for (PomElement child : project.children()) {
+            if ("dependencyManagement".equals(child.name)) {
+                parseDependencyManagementForImport(incomplete, importParse, child, parseResult, repositoryAtom);
             }
-        } finally {
-            pomResource.close();
         }
     }
 
@@ -463,57 +446,50 @@ public class MavenPomParser {
         return (repoUrl + (repoUrl.endsWith("/") ? "" : "/") + groupId.replaceAll("\\.", "/") + "/" + artifactId);
     }
 
-    private void parseDependencyManagement(Node dependencyManagementNode, ParseResult parseResult, RepositoryAtom repositoryAtom) {
-        NodeList dependencyManagementChildren = dependencyManagementNode.getChildNodes();
-        for (int i = 0; i < dependencyManagementChildren.getLength(); i++) {
-            Node dependenciesNode = dependencyManagementChildren.item(i);
-            if ("dependencies".equals(dependenciesNode.getNodeName())) {
+    private void parseDependencyManagement(PomElement dependencyManagementNode, ParseResult parseResult, RepositoryAtom repositoryAtom) {
+        for (PomElement dependenciesNode : dependencyManagementNode.children()) {
+            if ("dependencies".equals(dependenciesNode.name)) {
                 parseDependencies(dependenciesNode, parseResult, repositoryAtom, true);
                 break;
             }
         }
     }
 
-    private void parseDependencyManagementForImport(ParseResult.Incomplete incomplete, ParseResult importParse, Node dependencyManagementNode,
+    private void parseDependencyManagementForImport(ParseResult.Incomplete incomplete, ParseResult importParse, PomElement dependencyManagementNode,
                                                     ParseResult parseResult, RepositoryAtom repositoryAtom) {
-        NodeList dependencyManagementChildren = dependencyManagementNode.getChildNodes();
-        for (int i = 0; i < dependencyManagementChildren.getLength(); i++) {
-            Node dependenciesNode = dependencyManagementChildren.item(i);
-            if ("dependencies".equals(dependenciesNode.getNodeName())) {
+        for (PomElement dependenciesNode : dependencyManagementNode.children()) {
+            if ("dependencies".equals(dependenciesNode.name)) {
                 parseDependenciesForImport(incomplete, importParse, dependenciesNode, parseResult, repositoryAtom);
                 break;
             }
         }
     }
 
-    private void parseDependencies(Node dependenciesNode, ParseResult parseResult, RepositoryAtom repositoryAtom, boolean resolutionOnly) {
-        NodeList dependencies = dependenciesNode.getChildNodes();
-        for (int i = 0; i < dependencies.getLength(); i++) {
-            if (!"dependency".equals(dependencies.item(i).getNodeName())) {
+    private void parseDependencies(PomElement dependenciesNode, ParseResult parseResult, RepositoryAtom repositoryAtom, boolean resolutionOnly) {
+        for (PomElement dependencyNode : dependenciesNode.children()) {
+            if (!"dependency".equals(dependencyNode.name)) {
                 continue;
             }
-            NodeList dependencyNode = dependencies.item(i).getChildNodes();
             String groupId = "", artifactId = "", version = "", classifier = "", type = "", scope = "", optional = "";
             Boolean systemPath = null;
-            for (int j = 0; j < dependencyNode.getLength(); j++) {
-                Node child = dependencyNode.item(j);
-                if ("groupId".equals(child.getNodeName())) {
-                    groupId = child.getTextContent().trim();
-                } else if ("artifactId".equals(child.getNodeName())) {
-                    artifactId = child.getTextContent().trim();
-                } else if ("version".equals(child.getNodeName())) {
-                    version = child.getTextContent().trim();
-                } else if ("classifier".equals(child.getNodeName())) {
-                    classifier = child.getTextContent().trim();
-                } else if ("type".equals(child.getNodeName())) {
-                    type = child.getTextContent().trim();
-                } else if ("scope".equals(child.getNodeName())) {
-                    scope = child.getTextContent().trim();
-                } else if ("optional".equals(child.getNodeName())) {
-                    optional = child.getTextContent().trim();
-                } else if ("systemPath".equals(child.getNodeName())) {
+            for (PomElement child : dependencyNode.children()) {
+                if ("groupId".equals(child.name)) {
+                    groupId = child.text().trim();
+                } else if ("artifactId".equals(child.name)) {
+                    artifactId = child.text().trim();
+                } else if ("version".equals(child.name)) {
+                    version = child.text().trim();
+                } else if ("classifier".equals(child.name)) {
+                    classifier = child.text().trim();
+                } else if ("type".equals(child.name)) {
+                    type = child.text().trim();
+                } else if ("scope".equals(child.name)) {
+                    scope = child.text().trim();
+                } else if ("optional".equals(child.name)) {
+                    optional = child.text().trim();
+                } else if ("systemPath".equals(child.name)) {
                     systemPath = true;
-                } else if ("exclusions".equals(dependencies.item(i).getNodeName())) {
+                } else if ("exclusions".equals(child.name)) {
                     // ply treats exclusions much differently than maven, balk here and force project to specify explicitly
                 }
             }
@@ -524,27 +500,24 @@ public class MavenPomParser {
         }
     }
 
-    private void parseDependenciesForImport(ParseResult.Incomplete incomplete, ParseResult importParse, Node dependenciesNode,
+    private void parseDependenciesForImport(ParseResult.Incomplete incomplete, ParseResult importParse, PomElement dependenciesNode,
                                             ParseResult parseResult, RepositoryAtom repositoryAtom) {
-        NodeList dependencies = dependenciesNode.getChildNodes();
-        for (int i = 0; i < dependencies.getLength(); i++) {
-            if (!"dependency".equals(dependencies.item(i).getNodeName())) {
+        for (PomElement dependencyNode : dependenciesNode.children()) {
+            if (!"dependency".equals(dependencyNode.name)) {
                 continue;
             }
-            NodeList dependencyNode = dependencies.item(i).getChildNodes();
             String groupId = "", artifactId = "", version = "", classifier = "", type = "";
-            for (int j = 0; j < dependencyNode.getLength(); j++) {
-                Node child = dependencyNode.item(j);
-                if ("groupId".equals(child.getNodeName())) {
-                    groupId = child.getTextContent().trim();
-                } else if ("artifactId".equals(child.getNodeName())) {
-                    artifactId = child.getTextContent().trim();
-                } else if ("version".equals(child.getNodeName())) {
-                    version = child.getTextContent().trim();
-                } else if ("classifier".equals(child.getNodeName())) {
-                    classifier = child.getTextContent().trim();
-                } else if ("type".equals(child.getNodeName())) {
-                    type = child.getTextContent().trim();
+            for (PomElement child : dependencyNode.children()) {
+                if ("groupId".equals(child.name)) {
+                    groupId = child.text().trim();
+                } else if ("artifactId".equals(child.name)) {
+                    artifactId = child.text().trim();
+                } else if ("version".equals(child.name)) {
+                    version = child.text().trim();
+                } else if ("classifier".equals(child.name)) {
+                    classifier = child.text().trim();
+                } else if ("type".equals(child.name)) {
+                    type = child.text().trim();
                 }
             }
             if (parseResult.containsDep(groupId, artifactId, classifier, type)) {
@@ -562,20 +535,17 @@ public class MavenPomParser {
      * @param repositoriesNode the {@literal <repositories>} tag
      * @param parseResult into which to place parsed repository urls.
      */
-    private void parseRepositories(Node repositoriesNode, ParseResult parseResult) {
-        NodeList repositories = repositoriesNode.getChildNodes();
-        for (int i = 0; i < repositories.getLength(); i++) {
-            if (!"repository".equals(repositories.item(i).getNodeName())) {
+    private void parseRepositories(PomElement repositoriesNode, ParseResult parseResult) {
+        for (PomElement repositoryNode : repositoriesNode.children()) {
+            if (!"repository".equals(repositoryNode.name)) {
                 continue;
             }
-            NodeList repositoryNode = repositories.item(i).getChildNodes();
             String repoUrl = "", layout = "";
-            for (int j = 0; j < repositoryNode.getLength(); j++) {
-                Node child = repositoryNode.item(j);
-                if ("url".equals(child.getNodeName())) {
-                    repoUrl = child.getTextContent().trim();
-                } else if ("layout".equals(child.getNodeName())) {
-                    layout = child.getTextContent().trim();
+            for (PomElement child : repositoryNode.children()) {
+                if ("url".equals(child.name)) {
+                    repoUrl = child.text().trim();
+                } else if ("layout".equals(child.name)) {
+                    layout = child.text().trim();
                 }
             }
             if (!repoUrl.isEmpty() && (layout.isEmpty() || "default".equals(layout))) {
@@ -586,37 +556,33 @@ public class MavenPomParser {
         }
     }
 
-    private void parseBuild(Node buildNode, ParseResult parseResult) {
-        NodeList build = buildNode.getChildNodes();
-        for (int i = 0; i < build.getLength(); i++) {
-            Node child = build.item(i);
-            String nodeName = child.getNodeName();
+    private void parseBuild(PomElement buildNode, ParseResult parseResult) {
+        for (PomElement child : buildNode.children()) {
+            String nodeName = child.name;
             // TODO - all the following need to be filtered (but should be after all other parsing).
             if ("directory".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.directory", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.directory", child.text().trim());
             } else if ("outputDirectory".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.outputDirectory", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.outputDirectory", child.text().trim());
             } else if ("sourceDirectory".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.sourceDirectory", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.sourceDirectory", child.text().trim());
             } else if ("testOutputDirectory".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.testOutputDirectory", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.testOutputDirectory", child.text().trim());
             } else if ("testSourceDirectory".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.testSourceDirectory", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.testSourceDirectory", child.text().trim());
             } else if ("finalName".equals(nodeName)) {
-                parseResult.mavenProperties.put("project.build.finalName", child.getTextContent().trim());
+                parseResult.mavenProperties.put("project.build.finalName", child.text().trim());
             }
             // TODO - resources / testResources [ requires ply to support multiple-resource dirs ]
         }
     }
 
-    private void parseModules(Node modulesNode, ParseResult parseResult) {
-        NodeList modules = modulesNode.getChildNodes();
-        for (int i = 0; i < modules.getLength(); i++) {
-            if (!"module".equals(modules.item(i).getNodeName())) {
+    private void parseModules(PomElement modulesNode, ParseResult parseResult) {
+        for (PomElement moduleNode : modulesNode.children()) {
+            if (!"module".equals(moduleNode.name)) {
                 continue;
             }
-            Node moduleNode = modules.item(i);
-            parseResult.modules.add(moduleNode.getTextContent());
+            parseResult.modules.add(moduleNode.text());
         }
     }
 
@@ -675,33 +641,29 @@ public class MavenPomParser {
         return version;
     }
 
-    private void parseProperties(Node propertiesNode, ParseResult parseResult) {
-        NodeList properties = propertiesNode.getChildNodes();
-        for (int i = 0; i < properties.getLength(); i++) {
-            Node child = properties.item(i);
+    private void parseProperties(PomElement propertiesNode, ParseResult parseResult) {
+        for (PomElement child : propertiesNode.children()) {
             // iterating child->parent, per maven, child overrides parent, only place in if not already exists.
-            if (!parseResult.mavenProperties.containsKey(child.getNodeName())) {
-                parseResult.mavenProperties.put(child.getNodeName(), child.getTextContent().trim());
+            if (!parseResult.mavenProperties.containsKey(child.name)) {
+                parseResult.mavenProperties.put(child.name, child.text().trim());
             }
         }
     }
 
-    private PomUri parseParentPomUrlPath(Node parent, RepositoryAtom repositoryAtom, PomUri self,
+    private PomUri parseParentPomUrlPath(PomElement parent, RepositoryAtom repositoryAtom, PomUri self,
                                          AtomicReference<String> parentGroupId, AtomicReference<String> parentVersion) {
-        NodeList children = parent.getChildNodes();
         String groupId = "", artifactId = "", version = "", relativePath = "";
-        for (int i = 0; i < children.getLength(); i++) {
-            Node child = children.item(i);
-            if ("groupId".equals(child.getNodeName())) {
-                groupId = child.getTextContent().trim();
+        for (PomElement child : parent.children()) {
+            if ("groupId".equals(child.name)) {
+                groupId = child.text().trim();
                 parentGroupId.set(groupId);
-            } else if ("artifactId".equals(child.getNodeName())) {
-                artifactId = child.getTextContent().trim();
-            } else if ("version".equals(child.getNodeName())) {
-                version = child.getTextContent().trim();
+            } else if ("artifactId".equals(child.name)) {
+                artifactId = child.text().trim();
+            } else if ("version".equals(child.name)) {
+                version = child.text().trim();
                 parentVersion.set(version);
-            } else if ("relativePath".equals(child.getNodeName())) {
-                relativePath = child.getTextContent().trim();
+            } else if ("relativePath".equals(child.name)) {
+                relativePath = child.text().trim();
             }
         }
 
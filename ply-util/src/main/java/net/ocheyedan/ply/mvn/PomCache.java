@@ -0,0 +1,161 @@
+package net.ocheyedan.ply.mvn;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.input.Resource;
+import net.ocheyedan.ply.input.Resources;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caches parsed pom files (as {@link PomElement}) by their location (the repository and the pom's coordinates) so
+ * that a parent or imported pom shared by many dependencies (a common parent or bill-of-materials, say) is retrieved
+ * and parsed once rather than once per dependency referencing it.
+ * <p/>
+ * Every pom is cached in-process.  Poms of released versions within remote ({@literal http(s)}) repositories never
+ * change and so are also cached on disk, within {@literal ~/.ply/poms}, named by a checksum of their location; the
+ * file is binary, a magic number and version followed by the materialized elements.  Cached poms not used within
+ * {@link #STALE_MILLIS} are removed as new ones are written (once per process).
+ */
+final class PomCache {
+
+    private static final int MAGIC = 0x504C5950; // PLYP
+
+    private static final int VERSION = 1;
+
+    private static final long STALE_MILLIS = 30L * 24L * 60L * 60L * 1000L;
+
+    private static final File POM_DIR = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "poms");
+
+    private static final AtomicBoolean staleRemoved = new AtomicBoolean(false);
+
+    private static final ConcurrentMap<String, PomElement> parsed = new ConcurrentHashMap<String, PomElement>(64, 0.75f);
+
+    /**
+     * @param pomUrlPath the location of the pom
+     * @param headers to use when retrieving {@code pomUrlPath}
+     * @return the parsed pom at {@code pomUrlPath}
+     * @throws FileNotFoundException if there is no pom at {@code pomUrlPath}
+     * @throws IOException on failure to retrieve {@code pomUrlPath}
+     * @throws XMLStreamException if the pom at {@code pomUrlPath} is not well-formed
+     */
+    static PomElement get(String pomUrlPath, Map<String, String> headers) throws IOException, XMLStreamException {
+        PomElement pom = parsed.get(pomUrlPath);
+        if (pom != null) {
+            return pom;
+        }
+        File file = (isImmutable(pomUrlPath) ? file(pomUrlPath) : null);
+        pom = (file == null ? null : load(file));
+        if (pom == null) {
+            Resource pomResource = Resources.parse(pomUrlPath, headers);
+            try {
+                InputStream stream = pomResource.open();
+                if (stream == null) {
+                    throw new FileNotFoundException(pomUrlPath);
+                }
+                pom = PomElement.read(stream);
+            } finally {
+                pomResource.close();
+            }
+            if (file != null) {
+                store(file, pom);
+            }
+        }
+        PomElement existing = parsed.putIfAbsent(pomUrlPath, pom);
+        return (existing == null ? pom : existing);
+    }
+
+    private static boolean isImmutable(String pomUrlPath) {
+        return ((pomUrlPath.startsWith("http:") || pomUrlPath.startsWith("https:"))
+                && !pomUrlPath.contains("SNAPSHOT"));
+    }
+
+    private static File file(String pomUrlPath) {
+        try {
+            byte[] checksum = MessageDigest.getInstance("SHA1").digest(pomUrlPath.getBytes("UTF-8"));
+            return new File(POM_DIR, BitUtil.toHexString(checksum) + ".pom");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+    private static PomElement load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+                return null;
+            }
+            PomElement pom = PomElement.read(input);
+            file.setLastModified(System.currentTimeMillis()); // used, not stale
+            return pom;
+        } catch (IOException ioe) {
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException ioe) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static void store(File file, PomElement pom) {
+        File temp = null;
+        try {
+            if (!POM_DIR.exists() && !POM_DIR.mkdirs()) {
+                return;
+            }
+            temp = File.createTempFile("pom", ".tmp", POM_DIR);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            try {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                pom.write(output);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                temp.delete();
+                return;
+            }
+            if (staleRemoved.compareAndSet(false, true)) {
+                removeStale();
+            }
+        } catch (IOException ioe) {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private static void removeStale() {
+        File[] files = POM_DIR.listFiles();
+        if (files == null) {
+            return;
+        }
+        long stale = System.currentTimeMillis() - STALE_MILLIS;
+        for (File file : files) {
+            if ((file.getName().endsWith(".pom") || file.getName().endsWith(".tmp")) && (file.lastModified() < stale)) {
+                file.delete();
+            }
+        }
+    }
+
+    private PomCache() { }
+
+}
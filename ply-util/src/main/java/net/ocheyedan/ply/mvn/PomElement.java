@@ -0,0 +1,207 @@
+package net.ocheyedan.ply.mvn;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * An element of a {@literal Maven} pom file.  Poms are read by streaming (StAX) and only the elements which
+ * {@link MavenPomParser} uses are materialized; every other element (plugins, profiles, reporting, developers,
+ * exclusions, etc.) is skipped without being built.  Elements are immutable and so may be shared between parsers
+ * (@see {@link PomCache}).
+ */
+final class PomElement {
+
+    /**
+     * The children of the {@literal <project>} element which are materialized.
+     */
+    private static final Set<String> PROJECT = new HashSet<String>(Arrays.asList("parent", "groupId", "artifactId",
+            "version", "packaging", "properties", "dependencies", "dependencyManagement", "repositories", "modules",
+            "build"));
+
+    /**
+     * The children of the {@literal <build>} element which are materialized.
+     */
+    private static final Set<String> BUILD = new HashSet<String>(Arrays.asList("directory", "outputDirectory",
+            "sourceDirectory", "testOutputDirectory", "testSourceDirectory", "finalName"));
+
+    /**
+     * The children of a {@literal <repository>} element which are materialized.
+     */
+    private static final Set<String> REPOSITORY = new HashSet<String>(Arrays.asList("url", "layout"));
+
+    private static final XMLInputFactory FACTORY;
+    static {
+        FACTORY = XMLInputFactory.newInstance();
+        FACTORY.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+    }
+
+    /**
+     * @param stream of the pom file
+     * @return the materialized {@literal <project>} element of the pom read from {@code stream}
+     * @throws XMLStreamException if the content of {@code stream} is not well-formed
+     */
+    static PomElement read(InputStream stream) throws XMLStreamException {
+        XMLStreamReader reader;
+        synchronized (FACTORY) {
+            reader = FACTORY.createXMLStreamReader(stream);
+        }
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                    return read(reader, "");
+                }
+            }
+            throw new XMLStreamException("No root element.");
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads the element at which {@code reader} is positioned (and its materialized children) up to, and including,
+     * its end element.
+     */
+    private static PomElement read(XMLStreamReader reader, String parentPath) throws XMLStreamException {
+        String name = reader.getLocalName();
+        String path = parentPath + "/" + name;
+        StringBuilder text = new StringBuilder();
+        List<PomElement> children = null;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    if (materialize(path, reader.getLocalName())) {
+                        PomElement child = read(reader, path);
+                        if (!parentPath.isEmpty()) { // the root's text is never used, don't accumulate the document
+                            text.append(child.text);
+                        }
+                        if (children == null) {
+                            children = new ArrayList<PomElement>(4);
+                        }
+                        children.add(child);
+                    } else {
+                        skip(reader);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    text.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    return new PomElement(name, text.toString(),
+                            (children == null ? Collections.<PomElement>emptyList() : children));
+            }
+        }
+        throw new XMLStreamException("Unexpected end of document within " + path);
+    }
+
+    /**
+     * @param parentPath the path of the element containing {@code name}
+     * @param name of the element
+     * @return true if the element named {@code name} within {@code parentPath} is used by {@link MavenPomParser}
+     */
+    private static boolean materialize(String parentPath, String name) {
+        if ("/project".equals(parentPath)) {
+            return PROJECT.contains(name);
+        } else if ("/project/build".equals(parentPath)) {
+            return BUILD.contains(name);
+        } else if (parentPath.endsWith("/repositories/repository")) {
+            return REPOSITORY.contains(name);
+        }
+        return !"exclusions".equals(name);
+    }
+
+    /**
+     * Skips the element at which {@code reader} is positioned, up to and including its end element.
+     */
+    private static void skip(XMLStreamReader reader) throws XMLStreamException {
+        int depth = 1;
+        while ((depth > 0) && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    /**
+     * @param input from which to read an element written by {@link #write(DataOutputStream)}
+     * @return the element
+     * @throws IOException on failure to read
+     */
+    static PomElement read(DataInputStream input) throws IOException {
+        String name = input.readUTF();
+        String text = readString(input);
+        int size = input.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt pom element.");
+        }
+        List<PomElement> children = (size == 0 ? Collections.<PomElement>emptyList() : new ArrayList<PomElement>(size));
+        for (int i = 0; i < size; i++) {
+            children.add(read(input));
+        }
+        return new PomElement(name, text, children);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt pom element.");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    final String name;
+
+    private final String text;
+
+    private final List<PomElement> children;
+
+    private PomElement(String name, String text, List<PomElement> children) {
+        this.name = name;
+        this.text = text;
+        this.children = Collections.unmodifiableList(children);
+    }
+
+    /**
+     * @return the text of this element and its materialized descendants, as with {@link org.w3c.dom.Node#getTextContent()}
+     */
+    String text() {
+        return text;
+    }
+
+    /**
+     * @return the materialized child elements of this element
+     */
+    List<PomElement> children() {
+        return children;
+    }
+
+    /**
+     * @param output to which to write this element and its children
+     * @throws IOException on failure to write
+     */
+    void write(DataOutputStream output) throws IOException {
+        output.writeUTF(name);
+        byte[] bytes = text.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+        output.writeInt(children.size());
+        for (PomElement child : children) {
+            child.write(output);
+        }
+    }
+
+}
@@ -2,9 +2,7 @@ package net.ocheyedan.ply.props;
 
 import net.ocheyedan.ply.Output;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -25,6 +23,11 @@ public final class AdHoc {
      */
     static final Map<Scope, Map<Context, PropFile>> adHocProps = new ConcurrentHashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
 
+    /**
+     * The names, by context, of the ad-hoc properties added since last {@link #drainAdded()}.
+     */
+    private static final Map<Context, Set<String>> added = new HashMap<Context, Set<String>>(4, 1.0f);
+
     /**
      * Parses {@code adHocProps} and adds them to the set of ad-hoc properties.
      * @param adHocProps to parse and add to the set of ad-hoc properties
@@ -109,6 +112,17 @@ public final class AdHoc {
         return adHocPropFiles;
     }
 
+    /**
+     * @return the names, by context, of the ad-hoc properties added since the last call to this method
+     */
+    static Map<Context, Set<String>> drainAdded() {
+        synchronized (added) {
+            Map<Context, Set<String>> drained = new HashMap<Context, Set<String>>(added);
+            added.clear();
+            return drained;
+        }
+    }
+
     /**
      * @return all ad-hoc properties.
      */
@@ -157,6 +171,14 @@ public final class AdHoc {
                              context, propScope.getAdHocSuffix(), propName, adHocProp.value(), propValue, adHocProp.value());
             } else {
                 adHocPropFile.add(propName, propValue);
+                synchronized (added) {
+                    Set<String> names = added.get(propContext);
+                    if (names == null) {
+                        names = new HashSet<String>(4);
+                        added.put(propContext, names);
+                    }
+                    names.add(propName);
+                }
             }
         } catch (Exception e) {
             Output.print("^error^ Could not parse ad-hoc property ^b^%s^r^.", prop);
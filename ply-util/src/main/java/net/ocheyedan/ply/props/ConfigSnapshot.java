@@ -0,0 +1,331 @@
+package net.ocheyedan.ply.props;
+
+import net.ocheyedan.ply.FileUtil;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A compiled, binary, form of the {@literal .properties} files of a configuration directory which {@link Loader} can
+ * read without parsing.  The snapshot records the name, modification time and length of each file it was compiled
+ * from and is only used if these still match the files within the directory.
+ *
+ * The snapshot is laid out as a header (magic number, version, the configuration directory's path, file count and
+ * each file's name, modification time and length), a string table (the count, the offset of each string and then the
+ * {@literal UTF-8} bytes of all distinct strings) and lastly, for each file, its property count followed by the
+ * string-table indices of each property's name, value and comments.  The file is read with one read and decoded in
+ * place; each file's properties upon first access of that file and strings once each, as referenced.  This is
+ * cheaper, within a newly started {@literal JVM}, than
+ * memory-mapping the file (which initializes much of {@literal NIO}) or than a checksum of the path (which initializes
+ * the security providers).
+ *
+ * Snapshots are stored within {@literal ~/.ply/snapshots} named by the hash-code of the configuration directory's
+ * path.  They are not stored within the project's build directory as its location is itself a property (and so is not
+ * known until the configuration has been loaded) and as it is removed by the {@literal clean} script.
+ */
+final class ConfigSnapshot {
+
+    private static final int MAGIC = 0x504C5943; // PLYC
+
+    private static final int VERSION = 1;
+
+    /**
+     * Files modified this recently are not compiled into a snapshot as a subsequent modification within the
+     * granularity of the file-system's modification time would go unnoticed.
+     */
+    private static final long RACY_MILLIS = 2000L;
+
+    private static final File SNAPSHOT_DIR = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "snapshots");
+
+    /**
+     * @param configurationDirectory for which to retrieve the snapshot
+     * @return the snapshot for {@code configurationDirectory}
+     */
+    static ConfigSnapshot of(File configurationDirectory) {
+        String path = FileUtil.getCanonicalPath(configurationDirectory);
+        return new ConfigSnapshot(new File(SNAPSHOT_DIR, Integer.toHexString(path.hashCode()) + ".snapshot"), path);
+    }
+
+    private final File file;
+
+    /**
+     * The canonical path of the configuration directory; recorded as distinct directories may share a hash-code.
+     */
+    private final String path;
+
+    /**
+     * The modification time and length of each file as of the last {@link #read(File[], PropFile.Loc)}.
+     */
+    private long[] lastModified;
+
+    private long[] lengths;
+
+    private ConfigSnapshot(File file, String path) {
+        this.file = file;
+        this.path = path;
+    }
+
+    /**
+     * @param files the {@literal .properties} files of the configuration directory, sorted by name
+     * @param loc of the properties being loaded
+     * @return the {@link PropFile} objects (in the order of {@code files}), each loaded from the snapshot upon first
+     *         access, or null if there is no snapshot or if it is out of date with respect to {@code files}
+     */
+    List<PropFile> read(File[] files, PropFile.Loc loc) {
+        stamp(files);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            byte[] bytes = new byte[(int) file.length()];
+            InputStream input = new FileInputStream(file);
+            try {
+                int read = 0;
+                while (read < bytes.length) {
+                    int count = input.read(bytes, read, bytes.length - read);
+                    if (count == -1) {
+                        return null;
+                    }
+                    read += count;
+                }
+            } finally {
+                input.close();
+            }
+            return read(new Input(bytes), files, loc);
+        } catch (IOException ioe) {
+            return null;
+        } catch (RuntimeException re) { // truncated or otherwise corrupt snapshot; simply reload
+            return null;
+        }
+    }
+
+    private List<PropFile> read(Input input, File[] files, PropFile.Loc loc) throws IOException {
+        if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+            return null;
+        }
+        int pathLength = input.readInt();
+        if (!path.equals(input.readString(input.position, pathLength))) {
+            return null;
+        }
+        input.position += pathLength;
+        if (input.readInt() != files.length) {
+            return null;
+        }
+        int[] nameIndices = new int[files.length];
+        for (int i = 0; i < files.length; i++) {
+            nameIndices[i] = input.readInt();
+            if ((input.readLong() != lastModified[i]) || (input.readLong() != lengths[i])) {
+                return null;
+            }
+        }
+        final StringTable strings = new StringTable(input);
+        List<PropFile> propFiles = new ArrayList<PropFile>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            if (!files[i].getName().equals(strings.get(nameIndices[i]))) {
+                return null;
+            }
+            final int position = input.position;
+            int props = input.readInt();
+            if ((props < 0) || ((input.position += (props * 12)) > input.bytes.length)) {
+                return null;
+            }
+            propFiles.add(Loader.create(files[i].getName(), loc, new PropFile.Source() {
+                @Override public void load(PropFile into) {
+                    long start = System.nanoTime();
+                    Input input = new Input(strings.input.bytes);
+                    input.position = position;
+                    try {
+                        for (int props = input.readInt(); props > 0; props--) {
+                            String name = strings.get(input.readInt());
+                            String value = strings.get(input.readInt());
+                            into.add(name, value, strings.get(input.readInt()));
+                        }
+                    } catch (UnsupportedEncodingException uee) {
+                        throw new AssertionError(uee);
+                    }
+                    Loader.loaded(into, start);
+                }
+            }));
+        }
+        return propFiles;
+    }
+
+    /**
+     * Records the modification time and length of each of {@code files}; the snapshot is valid (and may be written)
+     * only for these values.
+     * @param files the {@literal .properties} files of the configuration directory, sorted by name
+     */
+    private void stamp(File[] files) {
+        lastModified = new long[files.length];
+        lengths = new long[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastModified[i] = files[i].lastModified();
+            lengths[i] = files[i].length();
+        }
+    }
+
+    /**
+     * Stores the snapshot, ignoring any failure to do so.  Nothing is stored if any of {@code files} has changed
+     * since {@link #read(File[], PropFile.Loc)} was called.
+     * @param files the {@literal .properties} files of the configuration directory, sorted by name
+     * @param propFiles the loaded {@code files} (in the same order)
+     */
+    void write(File[] files, List<PropFile> propFiles) {
+        if ((lastModified == null) || (lastModified.length != files.length)) {
+            return;
+        }
+        long racy = System.currentTimeMillis() - RACY_MILLIS;
+        for (int i = 0; i < files.length; i++) {
+            if ((lastModified[i] > racy) || (files[i].lastModified() != lastModified[i])
+                    || (files[i].length() != lengths[i])) {
+                return;
+            }
+        }
+        Map<String, Integer> indices = new HashMap<String, Integer>();
+        List<String> strings = new ArrayList<String>();
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(files.length * 24 + 12);
+        ByteArrayOutputStream propBytes = new ByteArrayOutputStream(4096);
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        DataOutputStream props = new DataOutputStream(propBytes);
+        File temp = null;
+        try {
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+            byte[] pathBytes = path.getBytes("UTF-8");
+            header.writeInt(pathBytes.length);
+            header.write(pathBytes);
+            header.writeInt(files.length);
+            for (int i = 0; i < files.length; i++) {
+                header.writeInt(index(files[i].getName(), indices, strings));
+                header.writeLong(lastModified[i]);
+                header.writeLong(lengths[i]);
+                PropFile propFile = propFiles.get(i);
+                props.writeInt(propFile.size());
+                for (PropFile.Prop prop : propFile.props()) {
+                    props.writeInt(index(prop.name, indices, strings));
+                    props.writeInt(index(prop.unfilteredValue, indices, strings));
+                    props.writeInt(index(prop.comments(), indices, strings));
+                }
+            }
+            ByteArrayOutputStream stringBytes = new ByteArrayOutputStream(strings.size() * 16);
+            int[] offsets = new int[strings.size() + 1];
+            for (int i = 0; i < strings.size(); i++) {
+                stringBytes.write(strings.get(i).getBytes("UTF-8"));
+                offsets[i + 1] = stringBytes.size();
+            }
+            header.writeInt(strings.size());
+            for (int offset : offsets) {
+                header.writeInt(offset);
+            }
+            header.flush();
+            props.flush();
+
+            if (!SNAPSHOT_DIR.exists() && !SNAPSHOT_DIR.mkdirs()) {
+                return;
+            }
+            temp = File.createTempFile("snapshot", ".tmp", SNAPSHOT_DIR);
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                headerBytes.writeTo(output);
+                stringBytes.writeTo(output);
+                propBytes.writeTo(output);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                temp.delete();
+            }
+        } catch (IOException ioe) {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Removes the snapshot, if any.
+     */
+    void delete() {
+        file.delete();
+    }
+
+    private static int index(String value, Map<String, Integer> indices, List<String> strings) {
+        String string = (value == null ? "" : value);
+        Integer index = indices.get(string);
+        if (index == null) {
+            index = strings.size();
+            indices.put(string, index);
+            strings.add(string);
+        }
+        return index;
+    }
+
+    /**
+     * A position within the bytes of a snapshot.
+     */
+    private static final class Input {
+
+        private final byte[] bytes;
+
+        private int position;
+
+        private Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int readInt() {
+            byte[] bytes = this.bytes;
+            int position = this.position;
+            this.position = position + 4;
+            return ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+                    | ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+        }
+
+        private long readLong() {
+            return (((long) readInt()) << 32) | (readInt() & 0xFFFFFFFFL);
+        }
+
+        private String readString(int offset, int length) throws UnsupportedEncodingException {
+            if ((offset < 0) || (length < 0) || ((offset + length) > bytes.length)) {
+                throw new IndexOutOfBoundsException();
+            }
+            return new String(bytes, offset, length, "UTF-8");
+        }
+    }
+
+    /**
+     * The string table of a snapshot; each string is decoded upon first reference.
+     */
+    private static final class StringTable {
+
+        private final Input input;
+
+        private final int start;
+
+        private final int[] offsets;
+
+        private final String[] decoded;
+
+        private StringTable(Input input) {
+            int size = input.readInt();
+            this.offsets = new int[size + 1];
+            for (int i = 0; i <= size; i++) {
+                offsets[i] = input.readInt();
+            }
+            this.decoded = new String[size];
+            this.input = input;
+            this.start = input.position;
+            input.position += offsets[size];
+        }
+
+        private String get(int index) throws UnsupportedEncodingException {
+            String value = decoded[index];
+            if (value == null) {
+                value = input.readString(start + offsets[index], offsets[index + 1] - offsets[index]);
+                decoded[index] = value;
+            }
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,206 @@
+package net.ocheyedan.ply.props;
+
+import net.ocheyedan.ply.BitUtil;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A file of the resolved properties exported to a script by ply (keyed as they would be as environment variables;
+ * i.e., {@literal ply_context.name}).  Rather than one environment variable per property, ply may export only
+ * {@link #KEY} (the path of the file) in which case {@link Props#getenv()} merges the file's content with the
+ * system environment upon first access.
+ *
+ * The file is binary; a magic number, version and count followed by each key and value as a length-prefixed
+ * {@literal UTF-8} string.  Files are named by the checksum of their content so that an unchanged set of properties
+ * is exported with an unchanged environment (which warm processes of {@literal ply} are matched by) and may be reused
+ * by subsequent invocations.  Files not reused within {@link #STALE_MILLIS} are removed as new ones are written.
+ * As the properties may include secrets, the files (and their directory) are only accessible by their owner.
+ */
+public final class EnvironmentFile {
+
+    /**
+     * The environment variable holding the path of the file.
+     */
+    public static final String KEY = "ply_ply.env.file";
+
+    private static final int MAGIC = 0x504C5945; // PLYE
+
+    private static final int VERSION = 1;
+
+    private static final String SUFFIX = ".env";
+
+    private static final long STALE_MILLIS = 7L * 24L * 60L * 60L * 1000L;
+
+    /**
+     * The lazily merged system environment and file content (if any).
+     */
+    private static volatile Map<String, String> environment = null;
+
+    /**
+     * @return the system environment merged with the content of the file named by {@link #KEY} (if set)
+     */
+    static Map<String, String> getenv() {
+        Map<String, String> environment = EnvironmentFile.environment;
+        if (environment == null) {
+            synchronized (EnvironmentFile.class) {
+                environment = EnvironmentFile.environment;
+                if (environment == null) {
+                    environment = load(System.getenv());
+                    EnvironmentFile.environment = environment;
+                }
+            }
+        }
+        return environment;
+    }
+
+    private static Map<String, String> load(Map<String, String> system) {
+        String path = system.get(KEY);
+        if (path == null) {
+            return system;
+        }
+        try {
+            Map<String, String> merged = new HashMap<String, String>(system);
+            merged.putAll(read(new File(path)));
+            return Collections.unmodifiableMap(merged);
+        } catch (IOException ioe) {
+            // cannot use Output as it itself resolves properties from the environment
+            System.err.printf("Could not read ply properties from %s: %s%n", path, ioe.getMessage());
+            return system;
+        }
+    }
+
+    /**
+     * @param file to read
+     * @return the properties within {@code file}
+     * @throws IOException if {@code file} could not be read or is not an environment file
+     */
+    public static Map<String, String> read(File file) throws IOException {
+        // read with a stream rather than memory-mapped; mapping initializes much of NIO which, within a newly started
+        // JVM, costs more than reading the file (@see ConfigSnapshot)
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 16384));
+        try {
+            if ((input.readInt() != MAGIC) || (input.readInt() != VERSION)) {
+                throw new IOException("Not an environment file.");
+            }
+            int size = input.readInt();
+            Map<String, String> properties = new HashMap<String, String>(Math.max(16, (int) (size / 0.75f) + 1));
+            for (int i = 0; i < size; i++) {
+                String key = readString(input);
+                properties.put(key, readString(input));
+            }
+            return properties;
+        } catch (EOFException eofe) {
+            throw new IOException("Truncated environment file.");
+        } finally {
+            input.close();
+        }
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt environment file.");
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Writes {@code properties} into {@code directory} unless an identical file already exists there.
+     * @param properties to write
+     * @param directory into which to write the file
+     * @return the file containing {@code properties}
+     * @throws IOException if the file could not be written
+     */
+    public static File write(Map<String, String> properties, File directory) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(properties.size() * 64);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeInt(properties.size());
+        for (Map.Entry<String, String> entry : new TreeMap<String, String>(properties).entrySet()) {
+            writeString(output, entry.getKey());
+            writeString(output, entry.getValue());
+        }
+        output.flush();
+        byte[] content = bytes.toByteArray();
+        File file = new File(directory, checksum(content) + SUFFIX);
+        if (file.exists() && (file.length() == content.length)) {
+            restrictToOwner(file, false);
+            file.setLastModified(System.currentTimeMillis());
+            return file;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s.", directory.getPath()));
+        }
+        restrictToOwner(directory, true);
+        File temp = File.createTempFile("env", ".tmp", directory);
+        FileOutputStream stream = null;
+        try {
+            restrictToOwner(temp, false); // before writing, the properties may include secrets
+            stream = new FileOutputStream(temp);
+            stream.write(content);
+        } catch (IOException ioe) {
+            if (stream != null) {
+                stream.close();
+            }
+            temp.delete();
+            throw ioe;
+        }
+        stream.close();
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            temp.delete();
+            throw new IOException(String.format("Could not create %s.", file.getPath()));
+        }
+        removeStale(directory);
+        return file;
+    }
+
+    /**
+     * Makes {@code file} readable and writable (and for a directory, listable) only by its owner.
+     * @param file to restrict
+     * @param directory true if {@code file} is a directory
+     * @throws IOException if {@code file} could not be restricted
+     */
+    private static void restrictToOwner(File file, boolean directory) throws IOException {
+        if (!(file.setReadable(false, false) && file.setReadable(true, true)
+                && file.setWritable(false, false) && file.setWritable(true, true)
+                && (!directory || (file.setExecutable(false, false) && file.setExecutable(true, true))))) {
+            throw new IOException(String.format("Could not restrict %s to its owner.", file.getPath()));
+        }
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String checksum(byte[] content) {
+        try {
+            return BitUtil.toHexString(MessageDigest.getInstance("SHA1").digest(content));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        }
+    }
+
+    private static void removeStale(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long stale = System.currentTimeMillis() - STALE_MILLIS;
+        for (File file : files) {
+            if ((file.getName().endsWith(SUFFIX) || file.getName().endsWith(".tmp")) && (file.lastModified() < stale)) {
+                file.delete();
+            }
+        }
+    }
+
+    private EnvironmentFile() { }
+
+}
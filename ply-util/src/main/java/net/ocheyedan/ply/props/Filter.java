@@ -3,11 +3,10 @@ package net.ocheyedan.ply.props;
 import net.ocheyedan.ply.Output;
 
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * User: blangel
@@ -35,19 +34,88 @@ public final class Filter {
         }
     }
 
+    /**
+     * Identifies a filtered value; the unfiltered value, the identifier given by the caller and the
+     * {@link PropFileChain#version()} of the filter-consultant (so that entries for changed properties are never
+     * matched and simply age out of the cache).  The unfiltered value is referenced, not copied, and its hash-code
+     * is cached by {@link String} itself.
+     */
+    private static final class Key {
+        private final String unfiltered;
+        private final String uniqueIdentifier;
+        private final long version;
+        private final int hashCode;
+        private Key(String unfiltered, String uniqueIdentifier, long version) {
+            this.unfiltered = unfiltered;
+            this.uniqueIdentifier = uniqueIdentifier;
+            this.version = version;
+            this.hashCode = (31 * ((31 * unfiltered.hashCode()) + uniqueIdentifier.hashCode())) + (int) (version ^ (version >>> 32));
+        }
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return (hashCode == key.hashCode) && (version == key.version)
+                    && uniqueIdentifier.equals(key.uniqueIdentifier) && unfiltered.equals(key.unfiltered);
+        }
+        @Override public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * A least-recently-used cache of filtered values bounded both by its number of entries and by the total length
+     * of the values it holds (as, for instance, the {@literal filter-file} script filters entire files).
+     */
+    private static final class Cache {
+        private static final int MAX_ENTRIES = 4096;
+        private static final int MAX_WEIGHT = 1 << 20; // in characters
+        private final LinkedHashMap<Key, FilterResult> entries = new LinkedHashMap<Key, FilterResult>(256, 0.75f, true);
+        private int weight;
+        private synchronized FilterResult get(Key key) {
+            return entries.get(key);
+        }
+        private synchronized void put(Key key, FilterResult value) {
+            int entryWeight = weigh(key, value);
+            if (entryWeight > (MAX_WEIGHT / 8)) {
+                return; // not worth evicting many smaller entries
+            }
+            FilterResult existing = entries.put(key, value);
+            if (existing != null) {
+                weight -= weigh(key, existing);
+            }
+            weight += entryWeight;
+            Iterator<Map.Entry<Key, FilterResult>> iterator = entries.entrySet().iterator();
+            while (((entries.size() > MAX_ENTRIES) || (weight > MAX_WEIGHT)) && iterator.hasNext()) {
+                Map.Entry<Key, FilterResult> eldest = iterator.next();
+                weight -= weigh(eldest.getKey(), eldest.getValue());
+                iterator.remove();
+            }
+        }
+        private static int weigh(Key key, FilterResult value) {
+            return key.unfiltered.length() + value.filteredResult.length() + value.filteredResultMarked.length();
+        }
+    }
+
     public static final String DECORATOR = "_^$f$^_";
     public static final String DECORATOR_SCOPED = "_^$fs$^_";
     public static final String DECORATOR_END = "_$^f^$_";
 
-    private static final Map<String, String> cache = new ConcurrentHashMap<String, String>();
-    private static final Map<String, String> cacheDecorated = new ConcurrentHashMap<String, String>();
-
-    private static final Pattern propertyPlaceholderRegex = Pattern.compile("\\$\\{(.*?)\\}");
+    private static final Cache cache = new Cache();
 
     /**
-     * Contains cache-keys currently being resolved - used to detect circular references.
+     * Contains, for the current thread, the cache-keys currently being resolved - used to detect circular references
+     * (resolving a placeholder may itself filter other property values, @see {@link PropFileChain#get(String)}).
      */
-    private static final Set<String> resolvingCacheKeys = new HashSet<String>(2, 1.0f);
+    private static final ThreadLocal<Set<Key>> resolvingCacheKeys = new ThreadLocal<Set<Key>>() {
+        @Override protected Set<Key> initialValue() {
+            return new HashSet<Key>(4);
+        }
+    };
 
     /**
      * Filters {@code unfiltered} with the property values within {@code filterConsultant} and returns a copy
@@ -99,88 +167,136 @@ public final class Filter {
                     "| uniqueIdentifier = %s | filterConsultant = %s ].", toFilter, context, uniqueIdentifier,
                     (filterConsultant == null ? "null" : "map")));
         }
-        if (!toFilter.contains("${")) {
+        int placeholderStart = toFilter.indexOf("${");
+        if (placeholderStart == -1) {
             return new FilterResult(toFilter, toFilter, false);
         }
-        String cacheKey = getKey(toFilter, uniqueIdentifier);
-        if (cache.containsKey(cacheKey)) {
-            return new FilterResult(cache.get(cacheKey), cacheDecorated.get(cacheKey), false);
+        Key cacheKey = new Key(toFilter, uniqueIdentifier, getVersion(filterConsultant));
+        FilterResult cached = cache.get(cacheKey);
+        if (cached != null) {
+            return cached;
         }
-        if (!resolvingCacheKeys.add(cacheKey)) {
+        Set<Key> resolving = resolvingCacheKeys.get();
+        if (!resolving.add(cacheKey)) {
             throw new Circular();
         }
-        String filtered = toFilter;
-        String filteredMarked = toFilter;
-        Matcher matcher = propertyPlaceholderRegex.matcher(toFilter);
-        while (matcher.find()) {
-            String propertyPlaceholder = matcher.group(1);
-            // first, check the {@code context} directly
-            PropFileChain chain = filterConsultant.get(context);
-            if (chain != null) {
-                PropFile.Prop resolved = chain.get(propertyPlaceholder);
-                if (resolved != PropFile.Prop.Empty) {
-                    filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                            Matcher.quoteReplacement(resolved.value()));
-                    boolean scoped = isScoped(resolved);
-                    filteredMarked = filteredMarked.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                            Matcher.quoteReplacement(String.format("%s%s%s", (scoped ? DECORATOR_SCOPED : DECORATOR), resolved.value(), DECORATOR_END)));
-                    continue; // found!
+        try {
+            StringBuilder filtered = new StringBuilder(toFilter.length() + 32);
+            StringBuilder filteredMarked = new StringBuilder(toFilter.length() + 64);
+            int copied = 0;
+            while (placeholderStart != -1) {
+                int placeholderEnd = findPlaceholderEnd(toFilter, placeholderStart + 2);
+                if (placeholderEnd == -1) {
+                    // no terminating '}' on the same line, not a placeholder; try the next '${'
+                    placeholderStart = toFilter.indexOf("${", placeholderStart + 1);
+                    continue;
                 }
-            }
-            // next, parse propertyPlaceholder for a context and, if one exists, check against that
-            int contextIndex = propertyPlaceholder.indexOf(".");
-            if (contextIndex != -1) {
-                Context contextWithinPropertyPlaceholder = Context.named(propertyPlaceholder.substring(0, contextIndex));
-                String propertyPlaceholderWithoutContext = propertyPlaceholder.substring(contextIndex + 1);
-                chain = filterConsultant.get(contextWithinPropertyPlaceholder);
-                if (chain != null) {
-                    PropFile.Prop resolved = chain.get(propertyPlaceholderWithoutContext);
-                    if (resolved != PropFile.Prop.Empty) {
-                        filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                                Matcher.quoteReplacement(resolved.value()));
-                        boolean scoped = isScoped(resolved);
-                        filteredMarked = filteredMarked.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                                Matcher.quoteReplacement(String.format("%s%s%s", (scoped ? DECORATOR_SCOPED : DECORATOR), resolved.value(), DECORATOR_END)));
-                        continue; // found!
-                    }
+                filtered.append(toFilter, copied, placeholderStart);
+                filteredMarked.append(toFilter, copied, placeholderStart);
+                copied = placeholderEnd + 1;
+                String propertyPlaceholder = toFilter.substring(placeholderStart + 2, placeholderEnd);
+                if (!resolve(propertyPlaceholder, context, filterConsultant, filtered, filteredMarked)) {
+                    Output.print("^warn^ No filter-value found for property ^b^%s^r^", propertyPlaceholder);
+                    filtered.append(toFilter, placeholderStart, copied);
+                    filteredMarked.append(toFilter, placeholderStart, copied);
                 }
+                placeholderStart = toFilter.indexOf("${", copied);
             }
-            // next, check if the property is a system property
-            String replacement = System.getProperty(propertyPlaceholder);
-            if (replacement != null) {
-                filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                        Matcher.quoteReplacement(replacement));
-                filteredMarked = filteredMarked.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                        Matcher.quoteReplacement(String.format("%s%s%s", DECORATOR, replacement, DECORATOR_END)));
-                continue;
+            filtered.append(toFilter, copied, toFilter.length());
+            filteredMarked.append(toFilter, copied, toFilter.length());
+            String filteredResult = filtered.toString();
+            String filteredResultMarked = filteredMarked.toString();
+            cache.put(cacheKey, new FilterResult(filteredResult, filteredResultMarked, false));
+            return new FilterResult(filteredResult, filteredResultMarked, true);
+        } finally {
+            resolving.remove(cacheKey);
+        }
+    }
+
+    /**
+     * @param value containing a placeholder
+     * @param from the index after the placeholder's {@literal ${}
+     * @return the index of the placeholder's terminating {@literal }} or -1 if a line terminator is encountered first
+     *         (or there is no terminating {@literal }})
+     */
+    private static int findPlaceholderEnd(String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            switch (value.charAt(i)) {
+                case '}':
+                    return i;
+                case '\n': case '\r': case '\u0085': case '\u2028': case '\u2029':
+                    return -1;
             }
+        }
+        return -1;
+    }
+
+    /**
+     * Resolves {@code propertyPlaceholder} and appends its value to {@code filtered} and its decorated value to
+     * {@code filteredMarked}.  The placeholder is resolved against, in order, {@code context}, the context named
+     * by its prefix (if any), the system properties and lastly the environment variables.
+     * @return true if {@code propertyPlaceholder} was resolved (and the values appended)
+     */
+    private static boolean resolve(String propertyPlaceholder, Context context, Map<Context, PropFileChain> filterConsultant,
+                                   StringBuilder filtered, StringBuilder filteredMarked) {
+        if (propertyPlaceholder.isEmpty()) {
+            return false;
+        }
+        // first, check the {@code context} directly
+        PropFileChain chain = filterConsultant.get(context);
+        if (chain != null) {
+            PropFile.Prop resolved = chain.get(propertyPlaceholder);
+            if (resolved != PropFile.Prop.Empty) {
+                append(resolved.value(), isScoped(resolved), filtered, filteredMarked);
+                return true;
+            }
+        }
+        // next, parse propertyPlaceholder for a context and, if one exists, check against that
+        int contextIndex = propertyPlaceholder.indexOf('.');
+        if (contextIndex != -1) {
+            chain = filterConsultant.get(Context.named(propertyPlaceholder.substring(0, contextIndex)));
+            if (chain != null) {
+                PropFile.Prop resolved = chain.get(propertyPlaceholder.substring(contextIndex + 1));
+                if (resolved != PropFile.Prop.Empty) {
+                    append(resolved.value(), isScoped(resolved), filtered, filteredMarked);
+                    return true;
+                }
+            }
+        }
+        // next, check if the property is a system property
+        String replacement = System.getProperty(propertyPlaceholder);
+        if (replacement == null) {
             // lastly, check if the property is an environment variable
             replacement = System.getenv(propertyPlaceholder);
-            if (replacement != null) {
-                filtered = filtered.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                        Matcher.quoteReplacement(replacement));
-                filteredMarked = filteredMarked.replaceAll(Pattern.quote("${" + propertyPlaceholder + "}"),
-                        Matcher.quoteReplacement(String.format("%s%s%s", DECORATOR, replacement, DECORATOR_END)));
-            } else {
-                Output.print("^warn^ No filter-value found for property ^b^%s^r^", propertyPlaceholder);
-            }
         }
-        cache.put(cacheKey, filtered);
-        cacheDecorated.put(cacheKey, filteredMarked);
-        resolvingCacheKeys.remove(cacheKey);
-        return new FilterResult(filtered, filteredMarked, true);
+        if (replacement != null) {
+            append(replacement, false, filtered, filteredMarked);
+            return true;
+        }
+        return false;
     }
 
-    private static boolean isScoped(PropFile.Prop prop) {
-        return !Scope.Default.equals(prop.scope());
+    private static void append(String value, boolean scoped, StringBuilder filtered, StringBuilder filteredMarked) {
+        filtered.append(value);
+        filteredMarked.append(scoped ? DECORATOR_SCOPED : DECORATOR).append(value).append(DECORATOR_END);
     }
 
-    private static String getKey(String unfiltered, String uniqueIdentifier) {
-        return String.format("%s#%s", unfiltered, uniqueIdentifier);
+    private static boolean isScoped(PropFile.Prop prop) {
+        return !Scope.Default.equals(prop.scope());
     }
 
-    static void clearCache() {
-        cache.clear();
+    /**
+     * As versions are drawn from one increasing sequence, the greatest version of the chains changes whenever any
+     * of them changes.
+     * @param filterConsultant the property values used to filter
+     * @return the greatest {@link PropFileChain#version()} within {@code filterConsultant}
+     */
+    static long getVersion(Map<Context, PropFileChain> filterConsultant) {
+        long version = 0L;
+        for (PropFileChain chain : filterConsultant.values()) {
+            version = Math.max(version, chain.version());
+        }
+        return version;
     }
 
     private Filter() { }
@@ -9,6 +9,8 @@ import java.io.FilenameFilter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User: blangel
@@ -17,7 +19,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *
  * Loads properties files into {@link PropFileChain} objects.  This class caches loaded properties according to the
  * project's local configuration directory from which they were loaded and keeps them mapped by {@link Context}
- * and {@link Scope} to allow for easy retrieval.
+ * and {@link Scope} to allow for easy retrieval.  Configuration directories are indexed by context and scope when
+ * scanned but each properties file is only read upon first access of its properties so that callers only pay for the
+ * contexts they use.
  */
 final class Loader {
 
@@ -35,6 +39,17 @@ final class Loader {
     private static final AtomicBoolean systemCacheLoaded = new AtomicBoolean(false);
     private static final Map<Scope, Map<Context, PropFile>> systemCache = new ConcurrentHashMap<Scope, Map<Context, PropFile>>(3, 1.0f);
 
+    /**
+     * The files from which each configuration directory was loaded, keyed by the directory's canonical path.
+     */
+    private static final Map<String, Scanned> scanned = new ConcurrentHashMap<String, Scanned>(3, 1.0f);
+
+    /**
+     * The number of {@link PropFile} objects loaded (from files or snapshots) and the time spent doing so.
+     */
+    private static final AtomicInteger contextsLoaded = new AtomicInteger(0);
+    private static final AtomicLong loadNanos = new AtomicLong(0L);
+
     /**
      * Loads the properties from {@code configurationDirectory} and chains them with the system and ad-hoc properties.
      * @param configurationDirectory from which to load local properties
@@ -79,9 +94,118 @@ final class Loader {
         cache.remove(cacheKey);
     }
 
+    /**
+     * Re-reads those properties files of {@code configurationDirectory} (and of the system configuration directory)
+     * which have been modified, added or removed since they were loaded.  Each such file replaces its predecessor
+     * within the cached {@link PropFileChain} objects of its context and scope (which changes the chains' versions and
+     * so invalidates values filtered against them) and the filtered caches of the affected chains are cleared; all other
+     * properties remain loaded.  If a file of a new context or scope has been added, the affected cached properties are
+     * instead discarded and will be reloaded upon next access.
+     * <p/>
+     * This is intended for long-lived uses of the properties (i.e., a daemon or a watch loop) which may call it before
+     * each use; when nothing has changed it costs a listing of, and a status of each file within, the directories.
+     * @param configurationDirectory from which local properties were loaded
+     * @return true if any properties have changed since loaded
+     */
+    static boolean refresh(File configurationDirectory) {
+        String cacheKey = FileUtil.getCanonicalPath(configurationDirectory);
+        Map<Scope, Map<Context, PropFileChain>> loaded = cache.get(cacheKey);
+        if (loaded == null) {
+            return false;
+        }
+        synchronized (scanned) {
+            boolean refreshed = false;
+            Scanned system = scanned.get(FileUtil.getCanonicalPath(PlyUtil.SYSTEM_CONFIG_DIR));
+            if (system != null) {
+                Boolean systemRefreshed = refresh(system, systemCache, cache.values());
+                if (systemRefreshed == null) {
+                    systemCache.clear();
+                    systemCacheLoaded.set(false);
+                    cache.clear();
+                    return true;
+                }
+                refreshed = systemRefreshed;
+            }
+            Scanned local = scanned.get(cacheKey);
+            if ((local != null) && (local != system)) {
+                Boolean localRefreshed = refresh(local, null, Collections.singleton(loaded));
+                if (localRefreshed == null) {
+                    cache.remove(cacheKey);
+                    return true;
+                }
+                refreshed = (refreshed || localRefreshed);
+            }
+            return refreshed;
+        }
+    }
+
+    /**
+     * @param scanned the files from which the directory was loaded
+     * @param files the loaded {@link PropFile} objects of the directory to update (if any)
+     * @param loaded the chains into which the directory's files have been chained
+     * @return true if any file has changed, false if none have and null if a file has been added for which there is
+     *         no chain (in which case nothing has been updated)
+     */
+    private static Boolean refresh(Scanned scanned, Map<Scope, Map<Context, PropFile>> files,
+                                   Collection<Map<Scope, Map<Context, PropFileChain>>> loaded) {
+        File[] current = list(scanned.directory);
+        List<PropFile> changed = new ArrayList<PropFile>(2);
+        Set<String> removed = new HashSet<String>(scanned.stamps.keySet());
+        for (File file : current) {
+            long[] stamp = scanned.stamps.get(file.getName());
+            removed.remove(file.getName());
+            if ((stamp == null) || (stamp[0] != file.lastModified()) || (stamp[1] != file.length())) {
+                changed.add(create(file.getName(), scanned.loc, parser(file)));
+            }
+        }
+        for (String name : removed) {
+            changed.add(create(name, scanned.loc, null));
+        }
+        if (changed.isEmpty()) {
+            return false;
+        }
+        for (PropFile propFile : changed) {
+            for (Map<Scope, Map<Context, PropFileChain>> chains : loaded) {
+                Map<Context, PropFileChain> contexts = chains.get(propFile.scope());
+                if ((contexts == null) || !contexts.containsKey(propFile.context())) {
+                    return null;
+                }
+            }
+        }
+        for (PropFile propFile : changed) {
+            boolean isRemoved = removed.contains(PropFiles.getFileName(propFile));
+            for (Map<Scope, Map<Context, PropFileChain>> chains : loaded) {
+                chains.get(propFile.scope()).get(propFile.context()).set(isRemoved ? PropFile.Empty : propFile, scanned.loc);
+            }
+            if (files != null) {
+                Map<Context, PropFile> contexts = files.get(propFile.scope());
+                if (isRemoved && (contexts != null)) {
+                    contexts.remove(propFile.context());
+                } else if (!isRemoved) {
+                    if (contexts == null) {
+                        contexts = new ConcurrentHashMap<Context, PropFile>(12, 1.0f);
+                        files.put(propFile.scope(), contexts);
+                    }
+                    contexts.put(propFile.context(), propFile);
+                }
+            }
+            Output.print("^dbug^ Refreshed ^b^%s%s^r^ (%s) properties; %s.", propFile.context().name,
+                    propFile.scope().getAdHocSuffix(), scanned.loc.name().toLowerCase(), (isRemoved ? "removed" : "changed"));
+        }
+        for (Map<Scope, Map<Context, PropFileChain>> chains : loaded) {
+            for (Map<Context, PropFileChain> contexts : chains.values()) {
+                for (PropFileChain chain : contexts.values()) {
+                    chain.invalidateFilteredCache(); // filtered values may depend upon the changed properties
+                }
+            }
+        }
+        scanned.stamp(current);
+        return true;
+    }
+
     private static boolean shouldLoadFromEnv(File configDirectory) {
         return ((configDirectory == PlyUtil.LOCAL_CONFIG_DIR)
-                && (System.getenv("ply_ply.invoker") != null));
+                && (Props.getenv("ply_ply.invoker") != null));
     }
 
     /**
@@ -96,7 +220,7 @@ final class Loader {
         props.put(scope, contexts);
         Map<Context, PropFile> propFiles = new ConcurrentHashMap<Context, PropFile>(13, 1.0f);
         
-        Map<String, String> env = System.getenv();
+        Map<String, String> env = Props.getenv();
         for (String key : env.keySet()) {
             if (!key.startsWith("ply_")) {
                 continue; // non-ply property
@@ -246,40 +370,167 @@ final class Loader {
     }
 
     /**
-     * Loads all {@literal .properties} files from {@code configurationDirectory} and creates a {@link PropFile}
-     * for the extracted context and scope (according to the file name) at {@code loc}
+     * Indexes all {@literal .properties} files from {@code configurationDirectory} by creating a {@link PropFile} for
+     * the extracted context and scope (according to the file name) at {@code loc}.  Each {@link PropFile} is loaded
+     * upon first access; from the directory's {@link ConfigSnapshot} if it is up to date, otherwise by parsing its file
+     * (@see {@link #parse(File[], PropFile.Loc, ConfigSnapshot)}).
      * @param configurationDirectory from which to load properties files
      * @param loc at which the loading is occurring
-     * @param into the map to store the loaded {@link PropFile} objects
+     * @param into the map to store the {@link PropFile} objects
      */
     private static void load(File configurationDirectory, PropFile.Loc loc, Map<Scope, Map<Context, PropFile>> into) {
+        File[] subFiles = list(configurationDirectory);
+        Scanned scan = new Scanned(configurationDirectory, loc);
+        scan.stamp(subFiles);
+        scanned.put(FileUtil.getCanonicalPath(configurationDirectory), scan);
+        ConfigSnapshot snapshot = ConfigSnapshot.of(configurationDirectory);
+        List<PropFile> propFiles = snapshot.read(subFiles, loc);
+        if (propFiles == null) {
+            propFiles = parse(subFiles, loc, snapshot);
+        }
+        for (PropFile propFile : propFiles) {
+            Map<Context, PropFile> contexts = into.get(propFile.scope());
+            if (contexts == null) {
+                contexts = new HashMap<Context, PropFile>(12, 1.0f);
+                into.put(propFile.scope(), contexts);
+            }
+            contexts.put(propFile.context(), propFile);
+        }
+    }
+
+    /**
+     * @param configurationDirectory to list
+     * @return the {@literal .properties} files of {@code configurationDirectory} sorted by name
+     */
+    private static File[] list(File configurationDirectory) {
         File[] subFiles = configurationDirectory.listFiles(PROPERTIES_FILENAME_FILTER);
         if (subFiles == null) {
-            return;
+            return new File[0];
         }
+        List<File> files = new ArrayList<File>(subFiles.length);
         for (File subFile : subFiles) {
-            if (subFile.isDirectory()) {
-                continue;
+            if (!subFile.isDirectory()) {
+                files.add(subFile);
             }
-            String fileName = subFile.getName();
-            int index = fileName.lastIndexOf(".properties"); // not == -1 because of {@link #PROPERTIES_FILENAME_FILTER}
-            fileName = fileName.substring(0, index);
-            Context context; Scope scope = Scope.Default;
-            if (fileName.lastIndexOf(".") != -1) {
-                index = fileName.lastIndexOf(".");
-                context = new Context(fileName.substring(0, index));
-                scope = new Scope(fileName.substring(index + 1));
-            } else {
-                context = new Context(fileName.substring(0, index));
+        }
+        subFiles = files.toArray(new File[files.size()]);
+        Arrays.sort(subFiles);
+        return subFiles;
+    }
+
+    /**
+     * As the snapshot can only be rewritten from all files of the directory, the first access of any of the returned
+     * {@link PropFile} objects parses all of {@code files} and rewrites {@code snapshot}.  Subsequent invocations will
+     * then load only the accessed files from the snapshot.
+     * @param files the {@literal .properties} files to parse, sorted by name
+     * @param loc at which the loading is occurring
+     * @param snapshot to rewrite once {@code files} have been parsed
+     * @return a {@link PropFile} for each of {@code files} which is parsed upon first access
+     */
+    private static List<PropFile> parse(final File[] files, PropFile.Loc loc, final ConfigSnapshot snapshot) {
+        final List<PropFile> propFiles = new ArrayList<PropFile>(files.length);
+        final AtomicBoolean accessed = new AtomicBoolean(false);
+        for (final File file : files) {
+            final PropFile.Source parser = parser(file);
+            propFiles.add(create(file.getName(), loc, new PropFile.Source() {
+                @Override public void load(PropFile into) {
+                    parser.load(into);
+                    if (!accessed.getAndSet(true)) {
+                        for (PropFile propFile : propFiles) {
+                            propFile.isEmpty(); // loads the file, if not already loaded
+                        }
+                        snapshot.write(files, propFiles);
+                    }
+                }
+            }));
+        }
+        return propFiles;
+    }
+
+    /**
+     * @param file to parse
+     * @return a {@link PropFile.Source} which parses {@code file}
+     */
+    private static PropFile.Source parser(final File file) {
+        return new PropFile.Source() {
+            @Override public void load(PropFile into) {
+                long start = System.nanoTime();
+                PropFiles.load(FileUtil.getCanonicalPath(file), into);
+                loaded(into, start);
             }
-            Map<Context, PropFile> contexts = into.get(scope);
-            if (contexts == null) {
-                contexts = new HashMap<Context, PropFile>(12, 1.0f);
-                into.put(scope, contexts);
+        };
+    }
+
+    /**
+     * Records, and prints within debug output, the loading of {@code propFile}.
+     * @param propFile which has been loaded
+     * @param startNanos the value of {@link System#nanoTime()} at which the loading started
+     */
+    static void loaded(PropFile propFile, long startNanos) {
+        long nanos = (System.nanoTime() - startNanos);
+        int contexts = contextsLoaded.incrementAndGet();
+        long totalNanos = loadNanos.addAndGet(nanos);
+        if (Output.isDebug()) {
+            Output.print("^dbug^ Loaded ^b^%s%s^r^ (%s) properties in ^b^%.2f ms^r^ [ ^b^%d^r^ context%s loaded in ^b^%.2f ms^r^ ]",
+                    propFile.context().name, propFile.scope().getAdHocSuffix(), propFile.loc().name().toLowerCase(),
+                    (nanos / 1000000.0d), contexts, (contexts == 1 ? "" : "s"), (totalNanos / 1000000.0d));
+        }
+    }
+
+    /**
+     * @param fileName of the {@literal .properties} file
+     * @param loc of the properties file
+     * @return an empty {@link PropFile} for the context and scope extracted from {@code fileName}
+     */
+    static PropFile create(String fileName, PropFile.Loc loc) {
+        return create(fileName, loc, null);
+    }
+
+    /**
+     * @param fileName of the {@literal .properties} file
+     * @param loc of the properties file
+     * @param source from which to load the properties upon first access or null to create an empty file
+     * @return a {@link PropFile} for the context and scope extracted from {@code fileName}
+     */
+    static PropFile create(String fileName, PropFile.Loc loc, PropFile.Source source) {
+        fileName = fileName.substring(0, fileName.lastIndexOf(".properties"));
+        Context context; Scope scope = Scope.Default;
+        int index = fileName.lastIndexOf(".");
+        if (index != -1) {
+            context = new Context(fileName.substring(0, index));
+            scope = new Scope(fileName.substring(index + 1));
+        } else {
+            context = new Context(fileName);
+        }
+        return (source == null ? new PropFile(context, scope, loc) : new PropFile(context, scope, loc, source));
+    }
+
+    /**
+     * The {@literal .properties} files, and their modification time and length, from which a configuration directory
+     * was loaded (@see {@link #refresh(File)}).
+     */
+    private static final class Scanned {
+
+        private final File directory;
+
+        private final PropFile.Loc loc;
+
+        /**
+         * Mapping of file name to its modification time and length.
+         */
+        private volatile Map<String, long[]> stamps;
+
+        private Scanned(File directory, PropFile.Loc loc) {
+            this.directory = directory;
+            this.loc = loc;
+        }
+
+        private void stamp(File[] files) {
+            Map<String, long[]> stamps = new HashMap<String, long[]>(files.length * 2);
+            for (File file : files) {
+                stamps.put(file.getName(), new long[] { file.lastModified(), file.length() });
             }
-            PropFile propFile = new PropFile(context, scope, loc);
-            PropFiles.load(FileUtil.getCanonicalPath(subFile), propFile);
-            contexts.put(context, propFile);
+            this.stamps = stamps;
         }
     }
 
@@ -1,14 +1,6 @@
 package net.ocheyedan.ply.props;
 
-import net.ocheyedan.ply.EmptyConcurrentMap;
-
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * User: blangel
@@ -36,32 +28,37 @@ public final class PropFile {
         public final String name;
         public final String unfilteredValue;
         private final Impl owner;
-        private final AtomicReference<String> comments;
-        private final AtomicReference<String> filteredValue;
-        private final AtomicReference<String> filteredValueMarked;
+        private volatile String comments;
+        private final String filteredValue;
+        private final String filteredValueMarked;
         
         Prop(Impl owner, String name, String unfilteredValue, String comments) {
+            this(owner, name, unfilteredValue, comments, unfilteredValue, unfilteredValue);
+        }
+
+        private Prop(Impl owner, String name, String unfilteredValue, String comments, String filteredValue,
+                     String filteredValueMarked) {
             if ((name == null) || (owner == null)) {
                 throw new NullPointerException("Properties' names cannot be null.");
             }
             this.name = name;
             this.unfilteredValue = unfilteredValue;
             this.owner = owner;
-            this.comments = new AtomicReference<String>(comments);
-            this.filteredValue = new AtomicReference<String>(unfilteredValue);
-            this.filteredValueMarked = new AtomicReference<String>(unfilteredValue);
+            this.comments = comments;
+            this.filteredValue = filteredValue;
+            this.filteredValueMarked = filteredValueMarked;
         }
         
         public final String comments() {
-            return comments.get();
+            return comments;
         }
         
         public final String value() {
-            return this.filteredValue.get();
+            return this.filteredValue;
         }
 
         public final String valueDecorated() {
-            return this.filteredValueMarked.get();
+            return this.filteredValueMarked;
         }
         
         public final Context context() {
@@ -77,15 +74,12 @@ public final class PropFile {
         }
         
         final Prop withComments(String comments) {
-            this.comments.set(comments);
+            this.comments = comments;
             return this;
         }
 
         final Prop with(String filteredValue, String filteredValueMarked) {
-            Prop filtered = new Prop(this.owner, this.name, this.unfilteredValue, this.comments.get());
-            filtered.filteredValue.set(filteredValue);
-            filtered.filteredValueMarked.set(filteredValueMarked);
-            return filtered;
+            return new Prop(this.owner, this.name, this.unfilteredValue, this.comments, filteredValue, filteredValueMarked);
         }
 
         @Override public boolean equals(Object o) {
@@ -130,9 +124,14 @@ public final class PropFile {
      */
     private static class Impl {
         
-        private static final Impl Empty = new Impl(Context.named(""), Scope.Default, Loc.System,
-                                                   EmptyConcurrentMap.<String, Prop>get(), Collections.<Prop>emptyList()) {
+        private static final Impl Empty = new Impl(Context.named(""), Scope.Default, Loc.System) {
             
+            @Override protected Prop add(String name, String value, String comments) {
+                throw new UnsupportedOperationException();
+            }
+            @Override protected Prop set(String name, String value) {
+                throw new UnsupportedOperationException();
+            }
             @Override protected boolean contains(String name) {
                 return false;
             }
@@ -145,6 +144,9 @@ public final class PropFile {
             @Override protected boolean isEmpty() {
                 return true;
             }
+            @Override protected Prop remove(String name) {
+                return null;
+            }
             @Override protected Iterator<Prop> iterator() {
                 return EmptyIterator;
             }
@@ -162,76 +164,56 @@ public final class PropFile {
 
         private final Loc loc;
 
-        private final ConcurrentMap<String, Prop> props;
-
-        private final List<Prop> order;
+        private final PropTable props;
 
         private Impl(Context context, Scope scope, Loc loc) {
-            this(context, scope, loc, new ConcurrentHashMap<String, Prop>(), new ArrayList<Prop>());
-        }
-        
-        private Impl(Context context, Scope scope, Loc loc, ConcurrentMap<String, Prop> props, List<Prop> order) {
             this.context = context;
             this.scope = scope;
             this.loc = loc;
-            this.props = props;
-            this.order = order;
+            this.props = new PropTable();
         }
 
-        private Prop add(String name, String value, String comments, Integer at) {
+        protected Prop add(String name, String value, String comments) {
             name = name.trim();
             Prop prop = new Prop(this, name, value, comments);
-            Prop existing;
-            if ((existing = this.props.putIfAbsent(name, prop)) == null) {
-                if (at == null) {
-                    this.order.add(prop);
-                } else {
-                    this.order.add(at, prop);
-                }
-            } else {
-                prop = existing;
-            }
-            return prop;
+            Prop existing = props.putIfAbsent(prop);
+            return (existing == null ? prop : existing);
         }
         
-        private Prop set(String name, String value) {
-            Prop newlyAdded;
-            if (props.containsKey(name)) {
-                int index = order.indexOf(props.get(name));
-                Prop old = remove(name);
-                newlyAdded = add(name, value, old.comments(), index);
-            } else {
-                newlyAdded = add(name, value, "", null);
+        protected Prop set(String name, String value) {
+            Prop existing = props.get(name);
+            if (existing != null) {
+                Prop replacement = new Prop(this, name, value, existing.comments());
+                if (props.replace(replacement) != null) {
+                    return replacement;
+                }
             }
-            return newlyAdded;
+            return add(name, value, "");
         }
         
         protected boolean contains(String name) {
-            return props.containsKey(name);
+            return (props.get(name) != null);
         }
 
         protected Prop get(String name) {
-            return (props.containsKey(name) ? props.get(name) : Prop.Empty);
+            Prop prop = props.get(name);
+            return (prop == null ? Prop.Empty : prop);
         }
         
         protected int size() {
-            return order.size();
+            return props.size();
         }
         
         protected boolean isEmpty() {
-            return order.isEmpty();
+            return (props.size() == 0);
         }
         
-        private Prop remove(String name) {
-            Prop removed = props.remove(name);
-            if (removed != null) {
-                order.remove(removed);       
-            }
-            return removed;
+        protected Prop remove(String name) {
+            return props.remove(name);
         }
 
         protected Iterator<Prop> iterator() {
-            return order.iterator();
+            return props.iterator();
         }
 
         @Override public boolean equals(Object o) {
@@ -276,9 +258,37 @@ public final class PropFile {
         }
     };
     
+    /**
+     * A deferred source of a {@link PropFile} object's properties; consulted upon first access of the properties.
+     */
+    static interface Source {
+
+        /**
+         * Adds the properties of this source to {@code into}.
+         * @param into the {@link PropFile} to load
+         */
+        void load(PropFile into);
+
+    }
+
     private final Impl delegate;
     
     private final Iterable<Prop> props;
+
+    /**
+     * The source of this file's properties, if yet to be loaded, otherwise null.
+     */
+    private volatile Source source;
+
+    /**
+     * The thread loading {@link #source}, if any.
+     */
+    private Thread loading;
+
+    /**
+     * Changed upon every modification of this file's properties (@see {@link PropFileChain#version()}).
+     */
+    private volatile long version;
     
     /**
      * Creates a {@link PropFile} for the given {@code context} and {@code loc} with the {@link Scope#Default} scope.
@@ -296,9 +306,22 @@ public final class PropFile {
      * @param loc of the properties file.
      */
     public PropFile(Context context, Scope scope, Loc loc) {
-        this(context, scope, loc, null);
+        this(context, scope, loc, (Impl) null);
     }
     
+    /**
+     * Creates a {@link PropFile} for the given {@code context}, {@code loc} and {@code scope} whose properties are
+     * loaded from {@code source} upon first access.
+     * @param context of the properties file.
+     * @param scope of the properties file.
+     * @param loc of the properties file.
+     * @param source from which to load the properties.
+     */
+    PropFile(Context context, Scope scope, Loc loc, Source source) {
+        this(context, scope, loc, (Impl) null);
+        this.source = source;
+    }
+
     private PropFile(Context context, Scope scope, Loc loc, Impl delegate) {
         if ((context == null) || (scope == null) || (loc == null)) {
             throw new NullPointerException("Context|Scope|Loc cannot be null.");
@@ -306,11 +329,57 @@ public final class PropFile {
         this.delegate = (delegate == null ? new Impl(context, scope, loc) : delegate);
         this.props = new Iterable<Prop>() {
             @Override public Iterator<Prop> iterator() {
-                return PropFile.this.delegate.iterator();
+                return PropFile.this.delegate().iterator();
             }
         };
     }
 
+    /**
+     * @return {@link #delegate} having first loaded it from {@link #source} if necessary
+     */
+    private Impl delegate() {
+        if ((source != null) && (loading != Thread.currentThread())) {
+            load();
+        }
+        return delegate;
+    }
+
+    private synchronized void load() {
+        Source source = this.source;
+        if (source == null) {
+            return;
+        }
+        loading = Thread.currentThread();
+        try {
+            source.load(this);
+        } finally {
+            loading = null;
+            this.source = null;
+            modified();
+        }
+    }
+
+    private void modified() {
+        if (loading == null) { // once loaded, rather than upon each property added while loading
+            version = PropFileChain.nextVersion();
+        }
+    }
+
+    /**
+     * @return the version of this file's properties; greater than any previous version of this file
+     */
+    final long version() {
+        return version;
+    }
+
+    /**
+     * @return true if this file's properties have been loaded (i.e., it was not created with a {@link Source} or
+     *         its properties have since been accessed)
+     */
+    final boolean isLoaded() {
+        return (source == null);
+    }
+
     /**
      * Adds a property named {@code name} with value {@code value} to this properties file.
      * <p/>
@@ -326,7 +395,9 @@ public final class PropFile {
      *         property named {@code name} (i.e., if {@link #contains(String)} returns true for {@code name}).
      */
     public final Prop add(String name, String value) {
-        return delegate.add(name, value, "", null);
+        Prop prop = delegate().add(name, value, "");
+        modified();
+        return prop;
     }
 
     /**
@@ -347,7 +418,9 @@ public final class PropFile {
      *         property named {@code name} (i.e., if {@link #contains(String)} returns true for {@code name}).
      */
     public final Prop add(String name, String value, String comments) {
-        return delegate.add(name, value, comments, null);
+        Prop prop = delegate().add(name, value, comments);
+        modified();
+        return prop;
     }
 
     /**
@@ -358,7 +431,9 @@ public final class PropFile {
      * @return the {@link Prop} with new value {@code value}
      */
     public final Prop set(String name, String value) {
-        return delegate.set(name, value);
+        Prop prop = delegate().set(name, value);
+        modified();
+        return prop;
     }
 
     /**
@@ -366,7 +441,7 @@ public final class PropFile {
      * @return true if {@code name} is within this properties file.
      */
     public final boolean contains(String name) {
-        return delegate.contains(name);
+        return delegate().contains(name);
     }
 
     /**
@@ -375,21 +450,21 @@ public final class PropFile {
      *         {@link Prop#Empty} if it cannot be found.
      */
     public final Prop get(String name) {
-        return delegate.get(name);
+        return delegate().get(name);
     }
 
     /**
      * @return the amount of properties within this file.
      */
     public final int size() {
-        return delegate.size();
+        return delegate().size();
     }
 
     /**
      * @return true if {@link #size()} == 0.
      */
     public boolean isEmpty() {
-        return delegate.isEmpty();
+        return delegate().isEmpty();
     }
 
     /**
@@ -398,7 +473,9 @@ public final class PropFile {
      * @return the existing {@link Prop} or null if there was no property named {@code name} in this properties file
      */
     public final Prop remove(String name) {
-        return delegate.remove(name);
+        Prop removed = delegate().remove(name);
+        modified();
+        return removed;
     }
 
     /**
@@ -416,6 +493,10 @@ public final class PropFile {
         return delegate.scope;
     }
 
+    final Loc loc() {
+        return delegate.loc;
+    }
+
     @Override public final boolean equals(Object o) {
         if (this == o) {
             return true;
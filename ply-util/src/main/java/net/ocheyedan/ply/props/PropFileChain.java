@@ -2,6 +2,7 @@ package net.ocheyedan.ply.props;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * User: blangel
@@ -33,9 +34,102 @@ import java.util.concurrent.ConcurrentHashMap;
  * <p/>
  * Additionally, since filtering is applied against chains of the same {@link Context}, this class contains a mapping
  * to the filtered value for each given {@link PropFile.Prop} object within the chain.
+ * <p/>
+ * Each chain carries a {@link #version()} which changes whenever the chain (or its default chain) or any of its
+ * {@link PropFile} objects is changed or its filtered cache invalidated, allowing values filtered against the chain to be
+ * cached elsewhere (@see {@link Filter}).
+ * <p/>
+ * Iterating a chain resolves and filters each of its properties; the result is kept as an immutable, flattened, view
+ * of the chain (@see {@link Resolved}) which serves subsequent iterations and lookups until the version of any chain
+ * consulted when filtering changes.
  */
 public final class PropFileChain {
 
+    /**
+     * The sequence from which chain versions are drawn; a version is never reused by any chain.
+     */
+    private static final AtomicLong VERSIONS = new AtomicLong(0L);
+
+    /**
+     * @return a new version; greater than any previous version
+     */
+    static long nextVersion() {
+        return VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * The resolved, filtered, properties of a chain in iteration order, indexed by name within an open-addressed
+     * (linear probing) table.  Immutable once built.
+     */
+    private static final class Resolved {
+
+        /**
+         * The version of the chains consulted when filtering at the time the view was built.
+         */
+        private final long version;
+
+        private final PropFile.Prop[] props;
+
+        /**
+         * Indices into {@link #props} (offset by one so that zero denotes an empty slot); the length is a power of two
+         * at least twice the number of properties.
+         */
+        private final int[] table;
+
+        private Resolved(long version, List<PropFile.Prop> props) {
+            this.version = version;
+            this.props = props.toArray(new PropFile.Prop[props.size()]);
+            int capacity = 4;
+            while (capacity < (this.props.length * 2)) {
+                capacity <<= 1;
+            }
+            this.table = new int[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < this.props.length; i++) {
+                int slot = hash(this.props[i].name) & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = i + 1;
+            }
+        }
+
+        /**
+         * @param named the name of the property
+         * @return the property named {@code named} or {@link PropFile.Prop#Empty} if there is no such property
+         */
+        private PropFile.Prop get(String named) {
+            int mask = table.length - 1;
+            for (int slot = hash(named) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+                PropFile.Prop prop = props[table[slot] - 1];
+                if (prop.name.equals(named)) {
+                    return prop;
+                }
+            }
+            return PropFile.Prop.Empty;
+        }
+
+        private Iterator<PropFile.Prop> iterator() {
+            return new Iterator<PropFile.Prop>() {
+                private int index = 0;
+                @Override public boolean hasNext() {
+                    return (index < props.length);
+                }
+                @Override public PropFile.Prop next() {
+                    return (index < props.length ? props[index++] : PropFile.Prop.Empty);
+                }
+                @Override public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        private static int hash(String name) {
+            int hash = name.hashCode();
+            return hash ^ (hash >>> 16);
+        }
+    }
+
     /**
      * Internal representation of the chain's data.  This nested class exists so that {@link PropFileChain}
      * can be marked final but yet the root, empty, default delegate can be an extension which always returns
@@ -56,6 +150,9 @@ public final class PropFileChain {
             @Override protected Iterator<PropFile.Prop> iterator() {
                 return PropFile.EmptyIterator;
             }
+            @Override protected long version() {
+                return 0L;
+            }
         };
 
         /**
@@ -109,6 +206,15 @@ public final class PropFileChain {
         private final Map<Context, PropFileChain> filterConsultant;
         
         private final Map<String, PropFile.Prop> filteredCache;
+
+        /**
+         * The names within {@link #filteredCache} whose values reference other properties.
+         */
+        private final Set<String> filteredReferences;
+
+        private volatile long version;
+
+        private volatile Resolved resolved;
         
         private Impl(Impl defaultChain, Map<Context, PropFileChain> filterConsultant) {
             chain = new ArrayList<PropFile>(3);
@@ -118,10 +224,11 @@ public final class PropFileChain {
             this.defaultChain = defaultChain;
             this.filterConsultant = filterConsultant;
             this.filteredCache = new ConcurrentHashMap<String, PropFile.Prop>();
+            this.filteredReferences = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            this.version = VERSIONS.incrementAndGet();
         }
         
         private void set(PropFile propFile, PropFile.Loc at) {
-            filteredCache.clear(); // invalidation of filter cache
             switch (at) {
                 case AdHoc:
                     chain.set(0, propFile); break;
@@ -132,18 +239,57 @@ public final class PropFileChain {
                 default:
                     throw new AssertionError(String.format("Unsupported PropFile.Loc value %s", at.name()));
             }
+            invalidateFilteredCache();
         }
         
+        private void invalidateFilteredCache() {
+            filteredCache.clear();
+            filteredReferences.clear();
+            version = VERSIONS.incrementAndGet();
+        }
+
+        private void invalidateFilteredCache(Collection<String> names) {
+            for (String name : names) {
+                filteredCache.remove(name);
+            }
+            for (Iterator<String> iterator = filteredReferences.iterator(); iterator.hasNext(); ) {
+                filteredCache.remove(iterator.next());
+                iterator.remove();
+            }
+            version = VERSIONS.incrementAndGet();
+        }
+
+        private void cache(String named, PropFile.Prop prop) {
+            filteredCache.put(named, prop);
+            if ((prop.unfilteredValue != null) && (prop.unfilteredValue.indexOf("${") != -1)) {
+                filteredReferences.add(named);
+            }
+        }
+
+        protected long version() {
+            long version = this.version;
+            for (PropFile propFile : chain) {
+                version = Math.max(version, propFile.version());
+            }
+            return Math.max(version, defaultChain.version());
+        }
+
         protected PropFile.Prop get(String named) {
             if (filteredCache.containsKey(named)) {
                 return filteredCache.get(named);
             }
+            Resolved resolved = this.resolved;
+            if ((resolved != null) && (resolved.version == resolvedVersion())) {
+                PropFile.Prop prop = resolved.get(named);
+                cache(named, prop);
+                return prop;
+            }
             PropFile.Prop unfiltered = internalGet(named);
             PropFile.Prop filtered = unfiltered;
             if (PropFile.Prop.Empty != unfiltered) {
                 filtered = Filter.filter(unfiltered, String.valueOf(System.identityHashCode(this)), filterConsultant);
             }
-            filteredCache.put(named, filtered);
+            cache(named, filtered);
             return filtered;
         }
         
@@ -161,15 +307,41 @@ public final class PropFileChain {
         }
 
         protected Iterator<PropFile.Prop> iterator() {
-            return new ImplIterator(chain, defaultChain) {
-                @Override public PropFile.Prop next() {
-                    if (!incremented) {
-                        hasNext();
+            return resolved().iterator();
+        }
+
+        /**
+         * @return the {@link Resolved} view of this chain, building it if there is none or if it is out of date
+         */
+        private Resolved resolved() {
+            long version = resolvedVersion();
+            Resolved resolved = this.resolved;
+            if ((resolved == null) || (resolved.version != version)) {
+                List<PropFile.Prop> props = new ArrayList<PropFile.Prop>();
+                Iterator<PropFile.Prop> iterator = new ImplIterator(chain, defaultChain) {
+                    @Override public PropFile.Prop next() {
+                        if (!incremented) {
+                            hasNext();
+                        }
+                        incremented = false;
+                        return get(current.name); //ensures filtering happens...
                     }
-                    incremented = false;
-                    return get(current.name); //ensures filtering happens...
+                };
+                while (iterator.hasNext()) {
+                    props.add(iterator.next());
                 }
-            };
+                resolved = new Resolved(version, props);
+                this.resolved = resolved;
+            }
+            return resolved;
+        }
+
+        /**
+         * @return the version against which the {@link Resolved} view is valid; as filtered values depend upon other
+         *         chains, this is the version of all the chains consulted when filtering as well as this chain's
+         */
+        private long resolvedVersion() {
+            return Math.max(version(), Filter.getVersion(filterConsultant));
         }
         
     }
@@ -238,7 +410,23 @@ public final class PropFileChain {
      * Clears the filtered cache of property values.
      */
     final void invalidateFilteredCache() {
-        delegate.filteredCache.clear();
+        delegate.invalidateFilteredCache();
+    }
+
+    /**
+     * Removes from the filtered cache the values of {@code names} and any values which reference other properties
+     * (as these may have been filtered against the values of {@code names}); all other cached values are retained.
+     * @param names of the properties whose values have changed
+     */
+    final void invalidateFilteredCache(Collection<String> names) {
+        delegate.invalidateFilteredCache(names);
+    }
+
+    /**
+     * @return the version of this chain; greater than any previous version of this chain
+     */
+    final long version() {
+        return delegate.version();
     }
     
 }
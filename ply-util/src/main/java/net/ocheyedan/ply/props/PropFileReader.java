@@ -3,6 +3,7 @@ package net.ocheyedan.ply.props;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 
 /**
  * User: blangel
@@ -41,101 +42,221 @@ public interface PropFileReader {
      * whitespace is not allowed as the start of the key (it will be trimmed by this implementation).
      */
     static final PropFileReader Default = new PropFileReader() {
-        
-        class ParseResult {
-            private final Boolean complete;
-            private final String key;
-            private final String value;
-            private ParseResult(Boolean complete, String key, String value) {
-                this.complete = complete;
-                this.key = key;
-                this.value = value;
-            }
-        }
 
         @Override public void load(BufferedReader reader, PropFile into) throws IOException {
             if ((reader == null) || (into == null)) {
                 throw new NullPointerException("The BufferedReader and PropFile cannot be null.");
             }
-            String line;
-            StringBuilder commentsBuffer = new StringBuilder();
-            ParseResult parsing = null;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() && (parsing == null)) {
-                    // continue;
-                } else if (line.startsWith("#")) {
-                    if (commentsBuffer.length() > 0) {
-                        commentsBuffer.append("\n");
-                    }
-                    commentsBuffer.append(line.substring(1));
-                } else {
-                    ParseResult parsedLine = parse(line);
-                    if (parsing != null) {
-                        if (!parsedLine.key.isEmpty()) {
-                            throw new Invalid(parsedLine.key, into.context().name, "Properties may only have one key.");
-                        }
-                        parsing = new ParseResult(false, parsing.key, String.format("%s%s", parsing.value, parsedLine.value));
-                    } else {
-                        parsing = parsedLine;
-                    }
-                    if (parsedLine.complete) {
-                        if (parsing.key.isEmpty()) {
-                            throw new Invalid(line, into.context().name, "Keys must be non-empty.");
-                        } else if (into.contains(parsing.key)) {
-                            throw new Invalid(parsing.key, into.context().name, "Keys must be unique.");
+            new Parser(reader, into).parse();
+        }
+
+    };
+
+    /**
+     * The implementation of {@link #Default}.  Rather than reading line by line, characters are read in bulk into one
+     * buffer within which lines are found (terminated, as with {@link BufferedReader#readLine()}, by {@literal \n},
+     * {@literal \r} or {@literal \r\n}), trimmed and parsed in place.  Keys, values and comments are accumulated
+     * within reused {@link StringBuilder} objects so that the only allocations per property are its resulting strings.
+     */
+    static final class Parser {
+
+        private final Reader reader;
+
+        private final PropFile into;
+
+        private char[] buffer = new char[8192];
+
+        /**
+         * The start of the unparsed characters and the end of the read characters within {@link #buffer}.
+         */
+        private int position, limit;
+
+        /**
+         * True if the last line ended with {@literal \r}, in which case a subsequent {@literal \n} is skipped.
+         */
+        private boolean skipLineFeed;
+
+        private final StringBuilder comments = new StringBuilder();
+
+        private final StringBuilder lineKey = new StringBuilder();
+
+        private final StringBuilder lineValue = new StringBuilder();
+
+        /**
+         * The key and value of the property being parsed, which spans lines if they end with a backslash.
+         */
+        private final StringBuilder key = new StringBuilder(), value = new StringBuilder();
+
+        private boolean parsing;
+
+        Parser(Reader reader, PropFile into) {
+            this.reader = reader;
+            this.into = into;
+        }
+
+        void parse() throws IOException {
+            while (true) {
+                int lineEnd = findLineEnd();
+                if (lineEnd == -1) {
+                    if (!fill()) {
+                        if (position < limit) {
+                            parseLine(position, limit);
+                            position = limit;
                         }
-                        into.add(parsing.key.trim(), parsing.value.trim(), commentsBuffer.toString());
-                        parsing = null;
-                        commentsBuffer = new StringBuilder();
+                        return;
                     }
+                    continue;
                 }
+                int lineStart = position;
+                position = lineEnd + 1;
+                skipLineFeed = (buffer[lineEnd] == '\r');
+                parseLine(lineStart, lineEnd);
             }
         }
 
+        /**
+         * @return the index of the terminator of the line starting at {@link #position} or -1 if the line is not
+         *         terminated within the read characters
+         */
+        private int findLineEnd() {
+            char[] buffer = this.buffer;
+            if (skipLineFeed && (position < limit)) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+            }
+            for (int i = position; i < limit; i++) {
+                char character = buffer[i];
+                if ((character == '\n') || (character == '\r')) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Moves the unparsed characters to the start of the {@link #buffer} (growing it if it is full) and reads more.
+         * @return false if the end of the stream has been reached
+         */
+        private boolean fill() throws IOException {
+            int remaining = limit - position;
+            if (remaining == buffer.length) {
+                char[] grown = new char[buffer.length * 2];
+                System.arraycopy(buffer, position, grown, 0, remaining);
+                buffer = grown;
+            } else if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, remaining);
+            }
+            position = 0;
+            limit = remaining;
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read == -1) {
+                return false;
+            }
+            limit += read;
+            return true;
+        }
+
+        private void parseLine(int start, int end) {
+            char[] buffer = this.buffer;
+            // trim as with String#trim()
+            while ((start < end) && (buffer[start] <= ' ')) {
+                start++;
+            }
+            while ((start < end) && (buffer[end - 1] <= ' ')) {
+                end--;
+            }
+            if ((start == end) && !parsing) {
+                return;
+            }
+            if ((start < end) && (buffer[start] == '#')) {
+                if (comments.length() > 0) {
+                    comments.append('\n');
+                }
+                comments.append(buffer, start + 1, end - start - 1);
+                return;
+            }
+            boolean complete = parseEntry(start, end);
+            if (parsing) {
+                if (lineKey.length() > 0) {
+                    throw new Invalid(lineKey.toString(), into.context().name, "Properties may only have one key.");
+                }
+            } else {
+                key.setLength(0);
+                key.append(lineKey);
+                value.setLength(0);
+                parsing = true;
+            }
+            value.append(lineValue);
+            if (complete) {
+                if (key.length() == 0) {
+                    throw new Invalid(new String(buffer, start, end - start), into.context().name, "Keys must be non-empty.");
+                }
+                String name = key.toString();
+                if (into.contains(name)) {
+                    throw new Invalid(name, into.context().name, "Keys must be unique.");
+                }
+                into.add(name.trim(), value.toString().trim(), comments.toString());
+                comments.setLength(0);
+                parsing = false;
+            }
+        }
+
+        /**
+         * Parses the (trimmed) line into {@link #lineKey} and {@link #lineValue}.  The key is delimited by the first
+         * unescaped '=' character.  Escaped '=' characters and, within the key, escaped ':' and ' ' characters are
+         * un-escaped; all other escapes are retained.
+         * @return false if the line's value ends with a backslash (which is removed); i.e., if the value continues
+         *         onto the next line
+         */
         @SuppressWarnings("fallthrough")
-        private ParseResult parse(String line) {
-            StringBuilder buffer = new StringBuilder();
-            String key = "", value;
+        private boolean parseEntry(int start, int end) {
+            char[] buffer = this.buffer;
+            StringBuilder into = lineValue;
+            into.setLength(0);
+            lineKey.setLength(0);
             boolean isEscaped = false;
-            for (char character : line.toCharArray()) {
+            for (int i = start; i < end; i++) {
+                char character = buffer[i];
                 switch (character) {
                     case '\\':
                         isEscaped = true;
                         break;
                     case '=':
-                        if (isEscaped || !key.isEmpty()) {
-                            buffer.append('=');
+                        if (isEscaped || (lineKey.length() > 0)) {
+                            into.append('=');
                         } else {
-                            key = buffer.toString();
-                            buffer = new StringBuilder();
+                            lineKey.append(into);
+                            into.setLength(0);
                         }
                         isEscaped = false;
                         break;
                     case ':':
                     case ' ':
-                        if (isEscaped && key.isEmpty()) {
+                        if (isEscaped && (lineKey.length() == 0)) {
                             isEscaped = false; // eliminate ':' and ' ' escapes within key to conform to {@link Properties}
                         }
                     default:
                         if (isEscaped) {
-                            buffer.append('\\');
+                            into.append('\\');
                         }
-                        buffer.append(character);
+                        into.append(character);
                         isEscaped = false;
                 }
             }
             if (isEscaped) {
-                buffer.append('\\');
+                into.append('\\');
             }
-            value = buffer.toString();
-            if (value.endsWith("\\")) {
-                return new ParseResult(false, key, value.substring(0, value.length() - 1));
-            } else {
-                return new ParseResult(true, key, value);
+            int length = into.length();
+            if ((length > 0) && (into.charAt(length - 1) == '\\')) {
+                into.setLength(length - 1);
+                return false;
             }
+            return true;
         }
-    };
+
+    }
 
     /**
      * Caller is responsible for calling {@link java.io.BufferedReader#close()}.
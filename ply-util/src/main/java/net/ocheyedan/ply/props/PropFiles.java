@@ -5,6 +5,7 @@ import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.SystemExit;
 
 import java.io.*;
+import java.util.Arrays;
 
 /**
  * User: blangel
@@ -183,6 +184,10 @@ public final class PropFiles {
     /**
      * Stores {@code propFile} into {@code to} with the given {@code comment}.  If {@code create} is true
      * then {@code to} will be created if it does not exist (including necessary directories).
+     * <p/>
+     * The content is rendered in memory first; if {@code to} already has exactly this content it is left untouched
+     * (neither its content nor its modification time change).  Otherwise the content is written to a temporary file
+     * alongside {@code to} which then replaces {@code to} so that readers never observe a partially written file.
      *
      * @param propFile       to store
      * @param propFileWriter to use to store the {@code propFile} to {@code to}.
@@ -197,16 +202,17 @@ public final class PropFiles {
         }
         to = FileUtil.stripFileUriPrefix(to);
         File propertiesFile = new File(to);
-        BufferedWriter writer = null;
         try {
-            if (create && !propertiesFile.exists()) {
-                propertiesFile.getParentFile().mkdirs();
-                propertiesFile.createNewFile();
-            } else if (!create && !propertiesFile.exists()) {
+            if (!create && !propertiesFile.exists()) {
                 return false;
             }
-            writer = new BufferedWriter(new FileWriter(propertiesFile));
+            ByteArrayOutputStream content = new ByteArrayOutputStream(Math.max(64, propFile.size() * 48));
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(content));
             propFileWriter.store(writer, propFile, useFiltered);
+            writer.close();
+            if (!isContentOf(propertiesFile, content)) {
+                replace(propertiesFile.getCanonicalFile(), content);
+            }
             return true;
         } catch (FileNotFoundException fnfe) {
             Output.print("Cannot store properties file, %s, it does not exist.", to);
@@ -214,16 +220,66 @@ public final class PropFiles {
         } catch (IOException ioe) {
             Output.print("^error^ Cannot store properties file, %s", to);
             Output.print(ioe);
-        } finally {
-            if (writer != null) {
-                try {
-                    writer.close();
-                } catch (IOException ioe) {
-                    throw new AssertionError(ioe);
+        }
+        return false;
+    }
+
+    /**
+     * @param file to check
+     * @param content the expected content
+     * @return true if {@code file} exists and consists of exactly {@code content}
+     * @throws IOException if {@code file} could not be read
+     */
+    private static boolean isContentOf(File file, ByteArrayOutputStream content) throws IOException {
+        if (!file.isFile() || (file.length() != content.size())) {
+            return false;
+        }
+        byte[] existing = new byte[content.size()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < existing.length) {
+                int count = input.read(existing, read, existing.length - read);
+                if (count == -1) {
+                    return false;
                 }
+                read += count;
+            }
+        } finally {
+            input.close();
+        }
+        return Arrays.equals(existing, content.toByteArray());
+    }
+
+    /**
+     * Writes {@code content} to a temporary file within the directory of {@code file} and then renames it to
+     * {@code file}, creating the directory if necessary.
+     * @param file to replace
+     * @param content to write
+     * @throws IOException if {@code file} could not be replaced
+     */
+    private static void replace(File file, ByteArrayOutputStream content) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s.", directory.getPath()));
+        }
+        // the leading '.' ensures the temporary file is not loaded as a properties file (@see Loader)
+        File temp = File.createTempFile("." + file.getName(), ".tmp", directory);
+        try {
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                content.writeTo(output);
+            } finally {
+                output.close();
+            }
+            if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+                throw new IOException(String.format("Could not replace %s.", file.getPath()));
+            }
+        } finally {
+            if (temp.exists()) {
+                temp.delete();
             }
         }
-        return false;
     }
 
     /**
@@ -0,0 +1,203 @@
+package net.ocheyedan.ply.props;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The storage of a {@link PropFile}; an insertion-ordered mapping of name to {@link PropFile.Prop}.
+ * <p/>
+ * The properties are kept, in insertion order, within a single array and indexed by name within an open-addressed
+ * (linear probing) table of positions into that array.  As each {@link PropFile.Prop} carries its own name, there are
+ * no per-entry objects beyond the properties themselves.  Replacing a property keeps its position and removing a
+ * property leaves an empty position (both without shifting the remaining properties); empty positions are reclaimed
+ * when the table is next rebuilt.
+ * <p/>
+ * All access is synchronized except for iteration which is over the properties as of the creation of the iterator
+ * (properties replaced or removed thereafter may or may not be observed by the iterator).
+ */
+final class PropTable {
+
+    /**
+     * A slot within {@link #table} whose property has been removed.
+     */
+    private static final int REMOVED = -1;
+
+    /**
+     * The properties in insertion order; null at positions whose property has been removed.
+     */
+    private PropFile.Prop[] props;
+
+    /**
+     * The number of positions used within {@link #props} (including those since removed).
+     */
+    private int used;
+
+    /**
+     * The number of properties.
+     */
+    private int size;
+
+    /**
+     * The position of each property within {@link #props} offset by one (zero denotes an empty slot and
+     * {@link #REMOVED} a removed one).  The length is a power of two at least twice {@link #used}.
+     */
+    private int[] table;
+
+    PropTable() {
+        this.props = new PropFile.Prop[8];
+        this.table = new int[16];
+    }
+
+    /**
+     * @param name of the property
+     * @return the property named {@code name} or null if there is no such property
+     */
+    synchronized PropFile.Prop get(String name) {
+        int slot = slot(name);
+        return (slot == -1 ? null : props[table[slot] - 1]);
+    }
+
+    /**
+     * Adds {@code prop} after all existing properties unless a property of the same name already exists.
+     * @param prop to add
+     * @return the existing property of the same name as {@code prop} or null if {@code prop} was added
+     */
+    synchronized PropFile.Prop putIfAbsent(PropFile.Prop prop) {
+        int slot = slot(prop.name);
+        if (slot != -1) {
+            return props[table[slot] - 1];
+        }
+        if ((used == props.length) || ((used + 1) * 2 > table.length)) {
+            rebuild(size + 1);
+        }
+        props[used++] = prop;
+        size++;
+        insert(prop.name, used);
+        return null;
+    }
+
+    /**
+     * Replaces the property of the same name as {@code prop} with {@code prop}, retaining its position.
+     * @param prop to replace the existing property
+     * @return the replaced property or null if there was none (in which case {@code prop} is not added)
+     */
+    synchronized PropFile.Prop replace(PropFile.Prop prop) {
+        int slot = slot(prop.name);
+        if (slot == -1) {
+            return null;
+        }
+        int position = table[slot] - 1;
+        PropFile.Prop replaced = props[position];
+        props[position] = prop;
+        return replaced;
+    }
+
+    /**
+     * @param name of the property to remove
+     * @return the removed property or null if there was no property named {@code name}
+     */
+    synchronized PropFile.Prop remove(String name) {
+        int slot = slot(name);
+        if (slot == -1) {
+            return null;
+        }
+        int position = table[slot] - 1;
+        PropFile.Prop removed = props[position];
+        props[position] = null;
+        table[slot] = REMOVED;
+        size--;
+        return removed;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    synchronized Iterator<PropFile.Prop> iterator() {
+        final PropFile.Prop[] props = this.props;
+        final int used = this.used;
+        return new Iterator<PropFile.Prop>() {
+            private int position = 0;
+            @Override public boolean hasNext() {
+                while ((position < used) && (props[position] == null)) {
+                    position++;
+                }
+                return (position < used);
+            }
+            @Override public PropFile.Prop next() {
+                while (position < used) {
+                    PropFile.Prop next = props[position++];
+                    if (next != null) {
+                        return next;
+                    }
+                }
+                throw new NoSuchElementException();
+            }
+            @Override public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * @param name of the property
+     * @return the slot within {@link #table} of the property named {@code name} or -1 if there is no such property
+     */
+    private int slot(String name) {
+        int mask = table.length - 1;
+        for (int slot = hash(name) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int position = table[slot];
+            if ((position != REMOVED) && props[position - 1].name.equals(name)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(String name, int position) {
+        int mask = table.length - 1;
+        int slot = hash(name) & mask;
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = position;
+    }
+
+    /**
+     * Compacts {@link #props} (into a new array so that existing iterators are unaffected) and rebuilds
+     * {@link #table} with capacity for at least {@code capacity} properties.
+     * @param capacity the number of properties for which to make room
+     */
+    private void rebuild(int capacity) {
+        int length = props.length;
+        while (length < capacity) {
+            length <<= 1;
+        }
+        if (length < (capacity + (capacity >> 1))) {
+            length <<= 1; // leave room to grow
+        }
+        PropFile.Prop[] compacted = new PropFile.Prop[length];
+        int count = 0;
+        for (int i = 0; i < used; i++) {
+            if (props[i] != null) {
+                compacted[count++] = props[i];
+            }
+        }
+        int tableLength = 16;
+        while (tableLength < (length * 2)) {
+            tableLength <<= 1;
+        }
+        props = compacted;
+        used = count;
+        table = new int[tableLength];
+        for (int i = 0; i < count; i++) {
+            insert(compacted[i].name, i + 1);
+        }
+    }
+
+    private static int hash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+}
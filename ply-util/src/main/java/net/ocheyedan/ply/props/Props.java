@@ -5,6 +5,7 @@ import net.ocheyedan.ply.PlyUtil;
 import java.io.File;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static net.ocheyedan.ply.props.PropFile.Prop;
@@ -198,10 +199,41 @@ public final class Props {
      *         variable is not set.
      */
     public static Scope getScope() {
-        String scope = System.getenv("ply_ply.scope"); // cannot use Props itself as this is called internally while resolving
+        String scope = getenv("ply_ply.scope"); // cannot use Props itself as this is called internally while resolving
         return (scope == null ? Scope.Default : new Scope(scope));
     }
 
+    /**
+     * The resolved properties, keyed as exported to scripts by ply (i.e., {@literal ply_context.name}), to use in lieu
+     * of {@link System#getenv()}.  Set by ply when running a script in-process (where the environment cannot be set).
+     */
+    private static volatile Map<String, String> environment = null;
+
+    /**
+     * @param environment to use in lieu of {@link System#getenv()} when resolving the properties exported by ply
+     */
+    public static void useEnvironment(Map<String, String> environment) {
+        Props.environment = (environment == null ? null : Collections.unmodifiableMap(environment));
+    }
+
+    /**
+     * @return the environment from which to resolve the properties exported by ply; this is {@link System#getenv()}
+     *         (merged with the {@link EnvironmentFile} handed off by ply, if any) unless
+     *         {@link #useEnvironment(java.util.Map)} has been called.
+     */
+    public static Map<String, String> getenv() {
+        Map<String, String> environment = Props.environment;
+        return (environment == null ? EnvironmentFile.getenv() : environment);
+    }
+
+    /**
+     * @param name of the environment variable
+     * @return the value of {@code name} within {@link #getenv()}
+     */
+    public static String getenv(String name) {
+        return getenv().get(name);
+    }
+
     /**
      * For use by {@link AdHoc} when alias resolution adds ad-hoc properties for which there never was
      * a {@link PropFileChain} object created (i.e., {@link AdHoc#produceFor(java.util.Map, java.util.Map)} was never
@@ -237,7 +269,8 @@ public final class Props {
     /**
      * For each {@link PropFileChain} associated with {@code configDirectory}, clears the filtered cache of property
      * values.  This is done to force filter of property values when ad-hoc properties are added via alias
-     * resolution.
+     * resolution.  Values filtered by {@link Filter} against these chains are invalidated by the change in the chains'
+     * {@link PropFileChain#version()}; values filtered for other configuration directories remain cached.
      * @param configDirectory for which to clear the filtered cache of all associated {@link PropFileChain} objects.
      */
     static void invalidateFilteredCaches(File configDirectory) {
@@ -249,9 +282,30 @@ public final class Props {
                 chain.invalidateFilteredCache();
             }
         }
-        Filter.clearCache();
     }
     
+    /**
+     * For each {@link PropFileChain} associated with {@code configDirectory}, removes from the filtered cache those
+     * values which may have changed as ad-hoc properties were added via alias resolution (@see
+     * {@link PropFileChain#invalidateFilteredCache(java.util.Collection)}).  The ad-hoc {@link PropFile} objects are
+     * shared by every chain of their context, so the added properties are already visible; this only discards values
+     * filtered before they were added, leaving the remainder of each chain's filtered cache intact.
+     * @param configDirectory for which to clear the affected filtered values of all associated {@link PropFileChain}
+     *                        objects.
+     */
+    static void invalidateAdHocFilteredCaches(File configDirectory) {
+        Map<Context, Set<String>> added = AdHoc.drainAdded();
+        Map<Scope, Map<Context, PropFileChain>> loaded = Loader.load(configDirectory);
+        for (Scope scope : loaded.keySet()) {
+            Map<Context, PropFileChain> contexts = loaded.get(scope);
+            for (Context context : contexts.keySet()) {
+                Set<String> names = added.get(context);
+                PropFileChain chain = contexts.get(context);
+                chain.invalidateFilteredCache(names == null ? Collections.<String>emptySet() : names);
+            }
+        }
+    }
+
     private Props() { }
 
 }
\ No newline at end of file
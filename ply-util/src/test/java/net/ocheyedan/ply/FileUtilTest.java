@@ -1,16 +1,23 @@
 package net.ocheyedan.ply;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
 import org.junit.Test;
 
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Collections;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static junit.framework.Assert.*;
 
@@ -213,5 +220,182 @@ public class FileUtilTest {
         assertEquals("DA39A3EE5E6B4B0D3255BFEF95601890AFD80709", hash);
     }
 
+    @Test
+    public void downloadVerifiedAndResumed() throws IOException, InterruptedException {
+        final byte[] content = new byte[100000];
+        new Random(7L).nextBytes(content);
+        final Map<String, byte[]> files = new HashMap<String, byte[]>();
+        files.put("/artifact.jar", content);
+        File source = File.createTempFile("ply-test", ".jar");
+        FileOutputStream sourceStream = new FileOutputStream(source);
+        sourceStream.write(content);
+        sourceStream.close();
+        files.put("/artifact.jar.sha1", (FileUtil.getSha1Hash(source).toLowerCase() + "  artifact.jar\n").getBytes("UTF-8"));
+        files.put("/corrupt.jar", content);
+        files.put("/corrupt.jar.md5", "d41d8cd98f00b204e9800998ecf8427e\n".getBytes("UTF-8"));
+        final List<String> ranges = Collections.synchronizedList(new ArrayList<String>()); // the ranges served
+        final List<String> requested = Collections.synchronizedList(new ArrayList<String>()); // the ranges requested
+        final List<String> paths = Collections.synchronizedList(new ArrayList<String>()); // the paths requested
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        ExecutorService handlers = Executors.newFixedThreadPool(4);
+        server.setExecutor(handlers);
+        server.createContext("/", new HttpHandler() {
+            @Override public void handle(HttpExchange exchange) throws IOException {
+                paths.add(exchange.getRequestURI().getPath());
+                if ("/truncated.jar".equals(exchange.getRequestURI().getPath())) {
+                    exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                    exchange.sendResponseHeaders(200, content.length);
+                    exchange.getResponseBody().write(content, 0, 1000);
+                    exchange.getResponseBody().flush();
+                    exchange.close(); // before the whole of the content is sent
+                    return;
+                }
+                byte[] file = files.get(exchange.getRequestURI().getPath());
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                if (range != null) {
+                    requested.add(range);
+                }
+                exchange.getResponseHeaders().add("ETag", "\"v1\"");
+                if (file == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else if ((range != null) && "\"v1\"".equals(ifRange)) {
+                    ranges.add(range);
+                    int from = Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                    exchange.sendResponseHeaders(206, file.length - from);
+                    exchange.getResponseBody().write(file, from, file.length - from);
+                } else {
+                    exchange.sendResponseHeaders(200, file.length);
+                    exchange.getResponseBody().write(file);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+        final File directory = new File(System.getProperty("java.io.tmpdir"), "ply-download-test-" + System.nanoTime());
+        final Map<String, String> empty = Collections.emptyMap();
+        try {
+            final String base = "http://127.0.0.1:" + server.getAddress().getPort();
+            final File into = new File(directory, "artifact.jar");
+            assertFalse(FileUtil.download(new URL(base + "/artifact.jar"), empty, null, "artifact", "test", true));
+            assertTrue(FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true));
+            assertEquals(FileUtil.getSha1Hash(source), FileUtil.getSha1Hash(into));
+            assertTrue(requested.isEmpty());
+            // checksums are only requested when verifying
+            assertEquals(Collections.singletonList("/artifact.jar"), paths);
+            assertTrue(FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true, null, true));
+            assertEquals(Arrays.asList("/artifact.jar", "/artifact.jar", "/artifact.jar.sha1"), paths);
+
+            // a partial download is resumed if the remote file is unchanged
+            assertTrue(into.delete());
+            File partial = new File(directory, ".artifact.jar.part");
+            File validator = new File(directory, ".artifact.jar.part.validator");
+            write(partial, content, 40000);
+            write(validator, "\"v1\"".getBytes("UTF-8"), 4);
+            assertTrue(FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true));
+            assertEquals(Collections.singletonList("bytes=40000-"), ranges);
+            assertEquals(FileUtil.getSha1Hash(source), FileUtil.getSha1Hash(into));
+            assertFalse(partial.exists());
+            assertFalse(validator.exists());
+
+            // but downloaded in full if the remote file has changed since
+            assertTrue(into.delete());
+            byte[] stale = new byte[40000];
+            write(partial, stale, stale.length);
+            write(validator, "\"v0\"".getBytes("UTF-8"), 4);
+            assertTrue(FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true));
+            assertEquals(2, requested.size());
+            assertEquals(1, ranges.size());
+            assertEquals(FileUtil.getSha1Hash(source), FileUtil.getSha1Hash(into));
+            assertFalse(partial.exists());
+
+            // and not resumed at all if the remote file's validator is unknown
+            assertTrue(into.delete());
+            write(partial, stale, stale.length);
+            assertTrue(FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true));
+            assertEquals(2, requested.size());
+            assertEquals(FileUtil.getSha1Hash(source), FileUtil.getSha1Hash(into));
+            assertFalse(partial.exists());
+
+            // concurrent downloads of the same file do not interfere with one another
+            assertTrue(into.delete());
+            final AtomicInteger downloaded = new AtomicInteger(0);
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(new Runnable() {
+                    @Override public void run() {
+                        try {
+                            if (FileUtil.download(new URL(base + "/artifact.jar"), empty, into, "artifact", "test", true)) {
+                                downloaded.incrementAndGet();
+                            }
+                        } catch (MalformedURLException murle) {
+                            throw new AssertionError(murle);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(4, downloaded.get());
+            assertEquals(FileUtil.getSha1Hash(source), FileUtil.getSha1Hash(into));
+            assertEquals(Collections.singletonList("artifact.jar"), Arrays.asList(directory.list()));
+
+            // a download not matching its checksum is discarded
+            File corrupt = new File(directory, "corrupt.jar");
+            assertFalse(FileUtil.download(new URL(base + "/corrupt.jar"), empty, corrupt, "corrupt", "test", true, null, true));
+            assertFalse(corrupt.exists());
+            assertEquals(Collections.singletonList("artifact.jar"), Arrays.asList(directory.list()));
+
+            // as is a missing file
+            AtomicBoolean notFound = new AtomicBoolean(false);
+            assertFalse(FileUtil.download(new URL(base + "/missing.jar"), empty, new File(directory, "missing.jar"),
+                    "missing", "test", true, notFound, true));
+            assertTrue(notFound.get());
+            assertEquals(Collections.singletonList("artifact.jar"), Arrays.asList(directory.list()));
+
+            // an interrupted download is left to be resumed
+            assertFalse(FileUtil.download(new URL(base + "/truncated.jar"), empty, new File(directory, "truncated.jar"),
+                    "truncated", "test", true));
+            assertTrue(new File(directory, ".truncated.jar.part").exists());
+            assertTrue(new File(directory, ".truncated.jar.part.validator").exists());
+
+            // unless downloaded to a temporary file, which will not be downloaded again
+            File tmp = new File(System.getProperty("java.io.tmpdir"));
+            List<String> before = Arrays.asList(tmp.list());
+            paths.clear();
+            assertNull(FileUtil.getLocalPath(new URL(base + "/truncated.jar"), empty, "truncated", "test"));
+            assertEquals(before.size(), tmp.list().length);
+            assertTrue(before.containsAll(Arrays.asList(tmp.list())));
+            // nor are metadata downloads verified
+            String path = FileUtil.getLocalPath(new URL(base + "/artifact.jar"), empty, "artifact", "test");
+            assertNotNull(path);
+            assertTrue(new File(path).delete());
+            assertEquals(Arrays.asList("/truncated.jar", "/artifact.jar"), paths);
+        } finally {
+            server.stop(0);
+            handlers.shutdownNow();
+            source.delete();
+            File[] downloaded = directory.listFiles();
+            if (downloaded != null) {
+                for (File file : downloaded) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void write(File file, byte[] content, int length) throws IOException {
+        FileOutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(content, 0, length);
+        } finally {
+            stream.close();
+        }
+    }
 
 }
@@ -0,0 +1,66 @@
+package net.ocheyedan.ply;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+
+public class OutputTest {
+
+    static {
+        Output.init("false", "true", "warn,info", false);
+    }
+
+    @Test
+    public void resolve() {
+        assertEquals("[warn] a warning", Output.resolve("^warn^ %s", new Object[] { "a warning" }));
+        assertEquals("[info] bold and reset", Output.resolve("^info^ ^b^bold^r^ and ^r^reset", new Object[0]));
+        assertEquals("not a ^code^ nor ^", Output.resolve("not a ^code^ nor ^", new Object[0]));
+        assertEquals("^[err!]", Output.resolve("^^error^", new Object[0]));
+        // disabled log-level
+        assertNull(Output.resolve("^dbug^ %s", new Object[] { "debugging" }));
+        // the term-codes are read left-to-right; this is ^cyan^ and ^r^ and not ^warn^
+        assertEquals("warn", Output.resolve("^cyan^warn^r^", new Object[0]));
+        assertEquals("a ^dbug", Output.resolve("a ^b^^dbug", new Object[0]));
+    }
+
+    @Test
+    public void appendFromExec() {
+        String separator = System.getProperty("line.separator");
+        StringBuilder buffer = new StringBuilder();
+        assertTrue(Output.appendFromExec(buffer, "[script] ", "^b^line^r^ one"));
+        assertTrue(Output.appendFromExec(buffer, "[script] ", "^dbug^ skipped"));
+        assertTrue(Output.appendFromExec(buffer, "[script] ", "^no_prefix^two"));
+        assertTrue(Output.appendFromExec(buffer, "[script] ", "^no_line^three"));
+        assertTrue(Output.appendFromExec(buffer, "[script] ", "^no_prefix^^no_line^, four"));
+        assertEquals("[script] line one" + separator + "two" + separator + "[script] three, four", buffer.toString());
+    }
+
+    @Test
+    public void defer() throws UnsupportedEncodingException {
+        String separator = System.getProperty("line.separator");
+        PrintStream stdout = System.out;
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printed, true, "UTF-8"));
+        try {
+            Output.defer();
+            Output.print("^info^ %s", "first");
+            Output.printNoLine("second");
+            Output.print("^dbug^ skipped");
+            Output.Deferred deferred = Output.undefer();
+            assertEquals("", printed.toString("UTF-8"));
+            Output.print("^warn^ not deferred");
+            deferred.print();
+            assertEquals("[warn] not deferred" + separator + "[info] first" + separator + "second",
+                    printed.toString("UTF-8"));
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+}
@@ -14,8 +14,11 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
 import static junit.framework.Assert.assertNull;
 import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: blangel
@@ -129,4 +132,53 @@ public class DepsTest {
         assertEquals(3, resolved.size());
     }
 
+    @Test
+    public void prefetch() throws URISyntaxException {
+        MavenPomParser parser = new MavenPomParser();
+        String plyUtilPath = FileUtil.pathFromParts(PlyUtil.LOCAL_PROJECT_DIR.getAbsolutePath(), "..");
+        if (!plyUtilPath.contains("ply-util")) {
+            plyUtilPath = plyUtilPath.replace(".ply", FileUtil.pathFromParts("ply-util", ".ply"));
+        }
+        String repoPath = FileUtil.pathFromParts(plyUtilPath, "src", "test", "resources", "mock-mvn-repo");
+        RepositoryAtom mockRepo = new RepositoryAtom(repoPath, new URI("file://" + repoPath), RepositoryAtom.Type.maven);
+
+        MavenPom pom = parser.parsePom("file://" + repoPath + "/net/sf/ehcache/ehcache-core/2.2.0/ehcache-core-2.2.0.pom", mockRepo);
+        List<DependencyAtom> deps = Deps.parse(pom.dependencies, null);
+        Map<DependencyAtom, List<DependencyAtom>> synthetic = new HashMap<DependencyAtom, List<DependencyAtom>>(1);
+        DependencyAtom stax = new DependencyAtom("stax", "stax-api", "1.0.1");
+        for (DependencyAtom atom : deps) {
+            if ("slf4j-api".equals(atom.name)) {
+                synthetic.put(atom, Collections.singletonList(stax));
+            }
+        }
+        RepositoryRegistry registry = new RepositoryRegistry(mockRepo, null, synthetic);
+
+        // the transitive dependencies are resolved as well and match those resolved serially
+        Prefetch prefetch = Prefetch.resolve(deps, Collections.<DependencyAtom>emptySet(), null, registry, 4, 2);
+        List<DependencyAtom> all = new ArrayList<DependencyAtom>(deps);
+        all.add(stax);
+        for (DependencyAtom atom : all) {
+            assertTrue(prefetch.contains(atom, true));
+            Dep prefetched = prefetch.get(atom);
+            assertNotNull(prefetched);
+            Dep serial = Deps.resolveDependency(atom, null, registry, (atom.transientDep || (atom == stax)), false);
+            assertEquals(serial.toVersionString(), prefetched.toVersionString());
+            assertEquals(serial.dependencies, prefetched.dependencies);
+        }
+
+        // excluded transitive dependencies are not resolved
+        prefetch = Prefetch.resolve(deps, Collections.singleton(stax), null, registry, 4, 2);
+        assertFalse(prefetch.contains(stax, true));
+        // nor is anything when resolving serially
+        assertFalse(Prefetch.resolve(deps, Collections.<DependencyAtom>emptySet(), null, registry, 1, 2).contains(deps.get(0), true));
+
+        // a dependency which could not be resolved is recorded as such, for as strict a resolution as was attempted
+        DependencyAtom missing = new DependencyAtom("net.ocheyedan", "missing", "1.0");
+        prefetch = Prefetch.resolve(Arrays.asList(missing, deps.get(0)), Collections.<DependencyAtom>emptySet(), null,
+                new RepositoryRegistry(mockRepo, Collections.<RepositoryAtom>emptyList(), synthetic), 4, 2);
+        assertTrue(prefetch.contains(missing, false));
+        assertNull(prefetch.get(missing));
+        assertFalse(prefetch.contains(missing, true));
+    }
+
 }
@@ -0,0 +1,106 @@
+package net.ocheyedan.ply.dep;
+
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+public class LockFileTest {
+
+    @Test public void writeAndRead() throws IOException, Graph.CycleException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "ply-lock-file-test-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        DependencyAtom a = new DependencyAtom("ns", "a", "1.0");
+        DependencyAtom b = new DependencyAtom("ns", "b", "1.0");
+        DependencyAtom c = new DependencyAtom("ns", "c", "2.0", "c-2.0.pom", true);
+        RepositoryAtom repo = new RepositoryAtom(directory.getPath(), directory.toURI(), RepositoryAtom.Type.ply);
+        RepositoryRegistry registry = new RepositoryRegistry(repo, Collections.<RepositoryAtom>emptyList(), null);
+        LockFile lockFile = LockFile.of(Arrays.asList(a, b), Collections.<DependencyAtom>emptySet(), registry, null);
+        try {
+            assertNull(lockFile.read(null));
+            write(new File(directory, a.getArtifactName()), "a");
+            write(new File(directory, b.getArtifactName()), "b");
+            Dep depA = new Dep(a, Arrays.asList(b, c), directory.getPath());
+            Dep depB = new Dep(b, Collections.singletonList(c), directory.getPath());
+            Dep depC = new Dep(c, Collections.<DependencyAtom>emptyList(), directory.getPath());
+            DirectedAcyclicGraph<Dep> graph = new DirectedAcyclicGraph<Dep>();
+            LockFile.Recording recording = new LockFile.Recording();
+            Vertex<Dep> vertexA = graph.addVertex(depA);
+            Vertex<Dep> vertexB = graph.addVertex(depB);
+            Vertex<Dep> vertexC = graph.addVertex(depC);
+            graph.addEdge(vertexB, vertexC);
+            recording.edge(depB, depC);
+            graph.addEdge(vertexA, vertexB);
+            recording.edge(depA, depB);
+            graph.addEdge(vertexA, vertexC);
+            recording.edge(depA, depC);
+            recording.conflict(depB, depC, vertexA, c);
+            lockFile.write(graph, recording);
+
+            final List<String> conflicts = new ArrayList<String>();
+            ConflictingVersionVisitor visitor = new ConflictingVersionVisitor() {
+                @Override public void visit(Dep diffVersionDep, Dep resolvedDep, Vertex<Dep> parentVertex,
+                                            DependencyAtom dependencyAtom, Graph<Dep> graph) {
+                    conflicts.add(diffVersionDep + "|" + resolvedDep + "|" + parentVertex.getValue() + "|" + dependencyAtom);
+                }
+            };
+            DirectedAcyclicGraph<Dep> locked = lockFile.read(visitor);
+            assertNotNull(locked);
+            assertEquals(graph.toString(), locked.toString());
+            List<Vertex<Dep>> vertices = locked.getVertices();
+            assertEquals(3, vertices.size());
+            assertEquals(c, vertices.get(2).getValue().dependencyAtom);
+            assertTrue(vertices.get(2).getValue().dependencyAtom.transientDep);
+            assertEquals(Arrays.asList(b, c), vertices.get(0).getValue().dependencies);
+            assertEquals(directory.getPath(), vertices.get(1).getValue().localRepositoryDirectory);
+            // parents are ordered as the edges were added
+            assertEquals(depB, vertices.get(2).getAnyParent().getValue());
+            assertEquals(Collections.singletonList("ns:b|ns:c|ns:a|" + c.toString()), conflicts);
+
+            // a changed dependencies file invalidates the lock, even though no artifact has changed
+            write(new File(directory, "dependencies.properties"), "ns\\:c=2.0");
+            assertNull(lockFile.read(null));
+            lockFile.write(graph, recording);
+            assertNotNull(lockFile.read(visitor));
+            // as does an artifact re-published with the same length
+            File artifactB = new File(directory, b.getArtifactName());
+            long modified = artifactB.lastModified();
+            write(artifactB, "B");
+            assertTrue(artifactB.setLastModified(modified - 10000L));
+            assertNull(lockFile.read(null));
+            lockFile.write(graph, recording);
+            assertNotNull(lockFile.read(visitor));
+            // a changed artifact invalidates the lock
+            write(new File(directory, b.getArtifactName()), "changed");
+            assertNull(lockFile.read(null));
+            // and differently ordered dependencies are locked separately
+            assertNull(LockFile.of(Arrays.asList(b, a), Collections.<DependencyAtom>emptySet(), registry, null).read(null));
+        } finally {
+            lockFile.delete();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+
+}
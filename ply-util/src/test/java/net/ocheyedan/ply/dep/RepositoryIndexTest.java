@@ -0,0 +1,54 @@
+package net.ocheyedan.ply.dep;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.net.URI;
+
+import static junit.framework.Assert.*;
+
+public class RepositoryIndexTest {
+
+    @Test public void misses() {
+        long unique = System.nanoTime();
+        RepositoryAtom first = new RepositoryAtom("http://first/" + unique, URI.create("http://first/" + unique), RepositoryAtom.Type.maven);
+        RepositoryAtom second = new RepositoryAtom("http://second/" + unique, URI.create("http://second/" + unique), RepositoryAtom.Type.maven);
+        File directory = new File(System.getProperty("java.io.tmpdir"), "ply-repository-index-test-" + unique);
+        RepositoryAtom file = new RepositoryAtom(directory.getPath(), directory.toURI(), RepositoryAtom.Type.ply);
+        String key = RepositoryIndex.key(new DependencyAtom("ns", "a", "1.0"));
+        RepositoryIndex.configure(60);
+
+        RepositoryIndex firstIndex = RepositoryIndex.of(first);
+        assertSame(firstIndex, RepositoryIndex.of(first));
+        assertFalse(firstIndex.isMissing(key));
+        firstIndex.miss(key);
+        assertTrue(firstIndex.isMissing(key));
+        assertTrue(firstIndex.isKnownMissing(key));
+        // misses are per repository and per artifact
+        assertFalse(RepositoryIndex.of(second).isMissing(key));
+        assertFalse(firstIndex.isMissing(RepositoryIndex.key(new DependencyAtom("ns", "a", "1.1"))));
+
+        // a hit forgets the miss
+        firstIndex.hit(key);
+        assertFalse(firstIndex.isMissing(key));
+        assertFalse(firstIndex.isKnownMissing(key));
+
+        // misses of file-based repositories are never remembered
+        RepositoryIndex fileIndex = RepositoryIndex.of(file);
+        fileIndex.miss(key);
+        assertFalse(fileIndex.isMissing(key));
+
+        // nor are they (nor consulted) when the time-to-live is 0; i.e., -Pdepmngr.resolve.miss.ttl=0
+        firstIndex.miss(key);
+        RepositoryIndex.configure(0);
+        try {
+            assertFalse(firstIndex.isKnownMissing(key));
+            assertFalse(firstIndex.isMissing(key));
+            firstIndex.miss(key);
+            assertFalse(firstIndex.isMissing(key));
+        } finally {
+            RepositoryIndex.configure(86400);
+        }
+    }
+
+}
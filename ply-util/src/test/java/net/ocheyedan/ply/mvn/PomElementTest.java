@@ -0,0 +1,65 @@
+package net.ocheyedan.ply.mvn;
+
+import org.junit.Test;
+
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class PomElementTest {
+
+    private static final String POM = "<?xml version=\"1.0\"?>\n"
+            + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n"
+            + "  <!-- comment -->\n"
+            + "  <groupId>ns</groupId>\n"
+            + "  <artifactId>a</artifactId>\n"
+            + "  <version> 1.0 </version>\n"
+            + "  <developers><developer><name>skipped</name></developer></developers>\n"
+            + "  <dependencies>\n"
+            + "    <dependency>\n"
+            + "      <groupId>ns</groupId><artifactId>b</artifactId><version><![CDATA[2.0]]></version>\n"
+            + "      <exclusions><exclusion><groupId>ns</groupId><artifactId>c</artifactId></exclusion></exclusions>\n"
+            + "    </dependency>\n"
+            + "  </dependencies>\n"
+            + "  <repositories><repository><id>skipped</id><url>http://repo</url></repository></repositories>\n"
+            + "  <build><finalName>a-final</finalName><plugins><plugin><artifactId>skipped</artifactId></plugin></plugins></build>\n"
+            + "</project>";
+
+    @Test public void read() throws XMLStreamException, IOException {
+        PomElement project = PomElement.read(new ByteArrayInputStream(POM.getBytes("UTF-8")));
+        assertProject(project);
+
+        // round-trip through the binary form cached on disk
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        project.write(output);
+        output.flush();
+        assertProject(PomElement.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    @Test(expected = XMLStreamException.class) public void malformed() throws XMLStreamException, IOException {
+        PomElement.read(new ByteArrayInputStream("<html><body>redirect".getBytes("UTF-8")));
+    }
+
+    private static void assertProject(PomElement project) {
+        assertEquals("project", project.name);
+        List<PomElement> children = project.children();
+        assertEquals(6, children.size()); // developers is not materialized
+        assertEquals("groupId", children.get(0).name);
+        assertEquals("ns", children.get(0).text());
+        assertEquals(" 1.0 ", children.get(2).text());
+        PomElement dependency = children.get(3).children().get(0);
+        assertEquals("dependency", dependency.name);
+        assertEquals(3, dependency.children().size()); // exclusions are not materialized
+        assertEquals("2.0", dependency.children().get(2).text());
+        PomElement repository = children.get(4).children().get(0);
+        assertEquals(1, repository.children().size());
+        assertEquals("http://repo", repository.children().get(0).text());
+        PomElement build = children.get(5);
+        assertEquals(1, build.children().size());
+        assertEquals("a-final", build.children().get(0).text());
+    }
+
+}
@@ -0,0 +1,80 @@
+package net.ocheyedan.ply.props;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class ConfigSnapshotTest {
+
+    @Test public void writeAndRead() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "ply-config-snapshot-test-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        try {
+            File[] files = new File[] {
+                write(directory, "compiler.properties", "# the source directory\nsrc.dir=src/main/java\nwarnings=true\n"),
+                write(directory, "project.test.properties", "name=caf\u00e9\nempty=\n")
+            };
+            Arrays.sort(files);
+            List<PropFile> propFiles = new ArrayList<PropFile>();
+            for (File file : files) {
+                PropFile propFile = Loader.create(file.getName(), PropFile.Loc.Local);
+                PropFiles.load(file.getPath(), propFile);
+                propFiles.add(propFile);
+            }
+            ConfigSnapshot snapshot = ConfigSnapshot.of(directory);
+            assertNull(snapshot.read(files, PropFile.Loc.Local));
+            snapshot.write(files, propFiles);
+
+            List<PropFile> read = snapshot.read(files, PropFile.Loc.Local);
+            assertNotNull(read);
+            assertEquals(2, read.size());
+            PropFile compiler = read.get(0);
+            assertEquals(Context.named("compiler"), compiler.context());
+            assertEquals(Scope.Default, compiler.scope());
+            assertEquals("src/main/java", compiler.get("src.dir").value());
+            assertEquals(propFiles.get(0).get("src.dir").comments(), compiler.get("src.dir").comments());
+            assertEquals("true", compiler.get("warnings").value());
+            PropFile project = read.get(1);
+            assertEquals(Context.named("project"), project.context());
+            assertEquals(Scope.named("test"), project.scope());
+            assertEquals(propFiles.get(1).get("name").value(), project.get("name").value());
+            assertEquals("", project.get("empty").value());
+
+            // a modified file invalidates the snapshot
+            assertTrue(files[1].setLastModified(files[1].lastModified() - 10000L));
+            assertNull(snapshot.read(files, PropFile.Loc.Local));
+            // as does a removed file
+            assertNull(snapshot.read(new File[] { files[0] }, PropFile.Loc.Local));
+        } finally {
+            ConfigSnapshot.of(directory).delete();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static File write(File directory, String name, String content) throws IOException {
+        File file = new File(directory, name);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        // snapshots ignore recently modified files
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 60000L));
+        return file;
+    }
+
+}
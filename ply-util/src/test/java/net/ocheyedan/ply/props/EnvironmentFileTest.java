@@ -0,0 +1,79 @@
+package net.ocheyedan.ply.props;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+
+public class EnvironmentFileTest {
+
+    @Test public void writeAndRead() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "ply-environment-file-test-" + System.nanoTime());
+        try {
+            Map<String, String> properties = new HashMap<String, String>();
+            properties.put("ply_ply.invoker", "ply");
+            properties.put("ply_compiler.src.dir", "src/main/java");
+            properties.put("ply_project.name", "caf\u00e9");
+            properties.put("ply_project.empty", "");
+
+            File file = EnvironmentFile.write(properties, directory);
+            assertTrue(file.exists());
+            assertEquals(properties, EnvironmentFile.read(file));
+            // only accessible by the owner
+            assertPermissions("700", directory);
+            assertPermissions("600", file);
+
+            // identical content is written to the same file
+            Map<String, String> copy = new HashMap<String, String>(properties);
+            assertEquals(file, EnvironmentFile.write(copy, directory));
+
+            copy.put("ply_project.name", "other");
+            File other = EnvironmentFile.write(copy, directory);
+            assertFalse(file.equals(other));
+            assertEquals(copy, EnvironmentFile.read(other));
+            assertEquals(properties, EnvironmentFile.read(file));
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void assertPermissions(String expected, File file) throws IOException {
+        if (!new File("/usr/bin/stat").exists()) {
+            return;
+        }
+        Process stat = new ProcessBuilder("/usr/bin/stat", "-c", "%a", file.getPath()).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(stat.getInputStream(), "UTF-8"));
+        try {
+            assertEquals(expected, reader.readLine());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test public void readInvalid() throws IOException {
+        File file = File.createTempFile("ply-environment-file-test", ".env");
+        try {
+            FileOutputStream output = new FileOutputStream(file);
+            output.write("ply_ply.invoker=ply".getBytes("UTF-8"));
+            output.close();
+            try {
+                EnvironmentFile.read(file);
+                fail("Expected an IOException");
+            } catch (IOException ioe) {
+                // expected
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+}
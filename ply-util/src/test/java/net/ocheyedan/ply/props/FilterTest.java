@@ -338,7 +338,7 @@ public class FilterTest {
         // ensure there's nothing vestigial in the resolvingCacheKeys property
         Field resolvingCacheKeysField = Filter.class.getDeclaredField("resolvingCacheKeys");
         resolvingCacheKeysField.setAccessible(true);
-        Set<String> resolvingCacheKeys = (Set<String>) resolvingCacheKeysField.get(null);
+        Set<String> resolvingCacheKeys = ((ThreadLocal<Set<String>>) resolvingCacheKeysField.get(null)).get();
         Assert.assertEquals(0, resolvingCacheKeys.size());
 
         // test circular reference
@@ -350,6 +350,7 @@ public class FilterTest {
         } catch (Filter.Circular pffc) {
             // expected
         }
+        Assert.assertEquals(0, resolvingCacheKeys.size());
         
         // test scenario where non-scoped context has a value dependent upon a scoped context value
         filterConsultant.clear();
@@ -379,4 +380,55 @@ public class FilterTest {
 
     }
 
+    @Test
+    public void filterPlaceholderSyntax() {
+        Map<Context, PropFileChain> filterConsultant = new ConcurrentHashMap<Context, PropFileChain>(2, 1.0f);
+        PropFileChain chain = new PropFileChain(filterConsultant);
+        PropFile container = new PropFile(Context.named("syntax"), PropFile.Loc.System);
+        container.add("dir", "usr/src");
+        container.add("$special", "a$1\\b");
+        chain.set(container, PropFile.Loc.System);
+        filterConsultant.put(Context.named("syntax"), chain);
+        Context context = Context.named("syntax");
+
+        // repeated placeholders
+        assertEquals("usr/src:usr/src", Filter.filter("${dir}:${dir}", context, "syntax", filterConsultant));
+        // replacement values are not interpreted (i.e., as regex replacements)
+        assertEquals("[a$1\\b]", Filter.filter("[${$special}]", context, "syntax", filterConsultant));
+        // unterminated and unresolvable placeholders are left as is
+        assertEquals("${dir", Filter.filter("${dir", context, "syntax", filterConsultant));
+        assertEquals("$usr/src}", Filter.filter("$${dir}}", context, "syntax", filterConsultant));
+        assertEquals("${not.a.prop-x} usr/src", Filter.filter("${not.a.prop-x} ${dir}", context, "syntax", filterConsultant));
+        assertEquals("${} usr/src", Filter.filter("${} ${dir}", context, "syntax", filterConsultant));
+        // placeholders do not span lines
+        assertEquals("${di\nr} usr/src", Filter.filter("${di\nr} ${dir}", context, "syntax", filterConsultant));
+        assertEquals("${${dir}", Filter.filter("${${dir}", context, "syntax", filterConsultant));
+    }
+
+    @Test
+    public void filterCacheInvalidatedByChainVersion() {
+        Map<Context, PropFileChain> filterConsultant = new ConcurrentHashMap<Context, PropFileChain>(2, 1.0f);
+        PropFileChain chain = new PropFileChain(filterConsultant);
+        PropFile container = new PropFile(Context.named("versioned"), PropFile.Loc.System);
+        container.add("dir", "before");
+        chain.set(container, PropFile.Loc.System);
+        filterConsultant.put(Context.named("versioned"), chain);
+        Context context = Context.named("versioned");
+
+        long version = chain.version();
+        assertEquals("before/x", Filter.filter("${dir}/x", context, "versioned", filterConsultant));
+
+        PropFile adHoc = new PropFile(Context.named("versioned"), PropFile.Loc.AdHoc);
+        adHoc.add("dir", "after");
+        chain.set(adHoc, PropFile.Loc.AdHoc);
+        Assert.assertTrue(chain.version() > version);
+        assertEquals("after/x", Filter.filter("${dir}/x", context, "versioned", filterConsultant));
+
+        // a change to the default chain changes the version of the chains delegating to it
+        PropFileChain scoped = new PropFileChain(chain, filterConsultant);
+        version = scoped.version();
+        chain.invalidateFilteredCache();
+        Assert.assertTrue(scoped.version() > version);
+    }
+
 }
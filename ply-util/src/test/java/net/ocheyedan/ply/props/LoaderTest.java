@@ -4,12 +4,15 @@ import net.ocheyedan.ply.FileUtil;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 
 /**
@@ -282,4 +285,111 @@ public class LoaderTest {
         
     }
 
+    @Test
+    public void loadLazily() throws NoSuchMethodException, IllegalAccessException, InvocationTargetException,
+                                    IOException {
+        Method loadMethod = Loader.class.getDeclaredMethod("load", File.class, PropFile.Loc.class, Map.class);
+        loadMethod.setAccessible(true);
+
+        File configurationDirectory = new File(System.getProperty("java.io.tmpdir"), "ply-loader-test-" + System.nanoTime());
+        assertTrue(configurationDirectory.mkdirs());
+        try {
+            write(new File(configurationDirectory, "compiler.properties"), "src.dir=src/main/java\n");
+            write(new File(configurationDirectory, "project.test.properties"), "name=loader\n");
+            Map<Scope, Map<Context, PropFile>> propFiles = new ConcurrentHashMap<Scope, Map<Context, PropFile>>();
+            loadMethod.invoke(null, configurationDirectory, PropFile.Loc.Local, propFiles);
+
+            // without a snapshot, the first access parses every file (so that the snapshot can be written)
+            PropFile compiler = propFiles.get(Scope.Default).get(Context.named("compiler"));
+            PropFile project = propFiles.get(Scope.named("test")).get(Context.named("project"));
+            assertFalse(compiler.isLoaded());
+            assertFalse(project.isLoaded());
+            assertEquals("src/main/java", compiler.get("src.dir").value());
+            assertTrue(compiler.isLoaded());
+            assertTrue(project.isLoaded());
+
+            // with a snapshot, only the accessed files are loaded
+            propFiles.clear();
+            loadMethod.invoke(null, configurationDirectory, PropFile.Loc.Local, propFiles);
+            compiler = propFiles.get(Scope.Default).get(Context.named("compiler"));
+            project = propFiles.get(Scope.named("test")).get(Context.named("project"));
+            assertFalse(compiler.isLoaded());
+            assertFalse(project.isLoaded());
+            assertEquals("src/main/java", compiler.get("src.dir").value());
+            assertTrue(compiler.isLoaded());
+            assertFalse(project.isLoaded());
+            assertEquals(1, project.size());
+            assertTrue(project.isLoaded());
+        } finally {
+            ConfigSnapshot.of(configurationDirectory).delete();
+            File[] files = configurationDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            configurationDirectory.delete();
+        }
+    }
+
+    @Test
+    public void refresh() throws IOException {
+        File configurationDirectory = new File(System.getProperty("java.io.tmpdir"), "ply-loader-test-" + System.nanoTime());
+        assertTrue(configurationDirectory.mkdirs());
+        try {
+            File compilerFile = new File(configurationDirectory, "compiler.properties");
+            write(compilerFile, "src.dir=src/main/java\nwarnings=${compiler.src.dir}\n");
+            write(new File(configurationDirectory, "project.properties"), "name=loader\n");
+            write(new File(configurationDirectory, "project.test.properties"), "name=loader-test\n");
+            Map<Scope, Map<Context, PropFileChain>> loaded = Loader.load(configurationDirectory);
+            PropFileChain compiler = loaded.get(Scope.Default).get(Context.named("compiler"));
+            assertEquals("src/main/java", compiler.get("warnings").value());
+            assertFalse(Loader.refresh(configurationDirectory));
+
+            // a modified file is re-read and replaces its predecessor within the cached chain
+            write(compilerFile, "src.dir=src/main/scala\nwarnings=${compiler.src.dir}\n");
+            assertTrue(Loader.refresh(configurationDirectory));
+            assertTrue(loaded == Loader.load(configurationDirectory));
+            assertEquals("src/main/scala", compiler.get("src.dir").value());
+            assertEquals("src/main/scala", compiler.get("warnings").value());
+            assertEquals("loader", loaded.get(Scope.Default).get(Context.named("project")).get("name").value());
+            assertFalse(Loader.refresh(configurationDirectory));
+
+            // a removed file is replaced by an empty one (and so the scope falls back to the default)
+            PropFileChain projectTest = loaded.get(Scope.named("test")).get(Context.named("project"));
+            assertEquals("loader-test", projectTest.get("name").value());
+            assertTrue(new File(configurationDirectory, "project.test.properties").delete());
+            assertTrue(Loader.refresh(configurationDirectory));
+            assertEquals("loader", projectTest.get("name").value());
+
+            // a file of a new context discards the cached properties
+            write(new File(configurationDirectory, "package.properties"), "type=jar\n");
+            assertTrue(Loader.refresh(configurationDirectory));
+            loaded = Loader.load(configurationDirectory);
+            assertEquals("jar", loaded.get(Scope.Default).get(Context.named("package")).get("type").value());
+            assertFalse(Loader.refresh(configurationDirectory));
+        } finally {
+            Loader.invalidateCaches(configurationDirectory);
+            ConfigSnapshot.of(configurationDirectory).delete();
+            File[] files = configurationDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            configurationDirectory.delete();
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+        // snapshots ignore recently modified files
+        assertTrue(file.setLastModified(System.currentTimeMillis() - 60000L));
+    }
+
 }
@@ -2,8 +2,7 @@ package net.ocheyedan.ply.props;
 
 import org.junit.Test;
 
-import java.util.Collections;
-import java.util.Iterator;
+import java.util.*;
 
 import static junit.framework.Assert.*;
 
@@ -119,4 +118,69 @@ public class PropFileChainTest {
 
     }
     
+    @Test
+    public void propsResolved() {
+        Map<Context, PropFileChain> consultant = new HashMap<Context, PropFileChain>();
+        PropFileChain chain = new PropFileChain(consultant);
+        consultant.put(Context.named("test"), chain);
+        PropFile localFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        localFile.add("dir", "target");
+        localFile.add("classes", "${dir}/classes");
+        chain.set(localFile, PropFile.Loc.Local);
+
+        List<String> values = new ArrayList<String>();
+        for (PropFile.Prop prop : chain.props()) {
+            values.add(prop.name + "=" + prop.value());
+        }
+        assertEquals(Arrays.asList("dir=target", "classes=target/classes"), values);
+        assertEquals("target/classes", chain.get("classes").value());
+        assertSame(PropFile.Prop.Empty, chain.get("missing"));
+
+        // properties added to a chained file are seen by subsequent iterations
+        localFile.add("jar", "${dir}/test.jar");
+        values.clear();
+        for (PropFile.Prop prop : chain.props()) {
+            values.add(prop.name + "=" + prop.value());
+        }
+        assertEquals(Arrays.asList("dir=target", "classes=target/classes", "jar=target/test.jar"), values);
+
+        // as are changed values once the filtered cache is invalidated
+        localFile.set("dir", "build");
+        chain.invalidateFilteredCache();
+        values.clear();
+        for (PropFile.Prop prop : chain.props()) {
+            values.add(prop.name + "=" + prop.value());
+        }
+        assertEquals(Arrays.asList("dir=build", "classes=build/classes", "jar=build/test.jar"), values);
+        assertEquals("build/test.jar", chain.get("jar").value());
+    }
+
+    @Test
+    public void invalidateAdded() {
+        Map<Context, PropFileChain> consultant = new HashMap<Context, PropFileChain>();
+        PropFileChain chain = new PropFileChain(consultant);
+        consultant.put(Context.named("test"), chain);
+        PropFile adHocFile = new PropFile(Context.named("test"), PropFile.Loc.AdHoc);
+        PropFile localFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        localFile.add("dir", "target");
+        localFile.add("classes", "${dir}/classes");
+        localFile.add("version", "1.0");
+        chain.set(adHocFile, PropFile.Loc.AdHoc);
+        chain.set(localFile, PropFile.Loc.Local);
+        assertEquals("target/classes", chain.get("classes").value());
+        PropFile.Prop version = chain.get("version");
+
+        // only the added names and values referencing other properties are re-resolved
+        adHocFile.add("dir", "build");
+        chain.invalidateFilteredCache(Collections.singleton("dir"));
+        assertEquals("build", chain.get("dir").value());
+        assertEquals("build/classes", chain.get("classes").value());
+        assertSame(version, chain.get("version"));
+        List<String> values = new ArrayList<String>();
+        for (PropFile.Prop prop : chain.props()) {
+            values.add(prop.name + "=" + prop.value());
+        }
+        assertEquals(Arrays.asList("dir=build", "classes=build/classes", "version=1.0"), values);
+    }
+
 }
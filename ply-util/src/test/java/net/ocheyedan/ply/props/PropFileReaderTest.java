@@ -4,9 +4,13 @@ import net.ocheyedan.ply.FileUtil;
 import org.junit.Test;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
 import static junit.framework.Assert.fail;
 
 /**
@@ -109,4 +113,85 @@ public class PropFileReaderTest {
         assertEquals("", prop.comments());
     }
 
+    /**
+     * Compares {@link PropFileReader#Default} with the original line by line implementation over the mock files and
+     * randomly generated content (including lines longer than the reader's buffer).
+     */
+    @Test
+    public void loadDifferential() throws IOException {
+        File base;
+        if (FileUtil.getCanonicalPath(new File("./")).contains("ply-util")) {
+            base = new File("./");
+        } else {
+            base = new File("ply-util/");
+        }
+        File[] mockFiles = FileUtil.fromParts(base.getPath(), "src/test/resources/mock-prop-files").listFiles();
+        assertTrue((mockFiles != null) && (mockFiles.length > 0));
+        for (File mockFile : mockFiles) {
+            assertSameLoad(read(mockFile));
+        }
+        assertSameLoad("");
+        assertSameLoad("key=value");
+        assertSameLoad("key=value\\\r\n  continued\r\n#comment\rnext\\=key=value=\\\n\n");
+        assertSameLoad("a=b\\");
+        assertSameLoad("a=b\\\n=c");
+        assertSameLoad("\\ =space\n\\:=colon\n=\n");
+
+        char[] alphabet = { 'a', 'b', 'c', '=', '=', '\\', '\\', ':', ' ', ' ', '\t', '#', '\n', '\n', '\r', '\u00e9' };
+        Random random = new Random(42L);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder content = new StringBuilder();
+            int length = random.nextInt(i % 100 == 0 ? 20000 : 80);
+            for (int j = 0; j < length; j++) {
+                content.append(alphabet[random.nextInt(alphabet.length)]);
+            }
+            assertSameLoad(content.toString());
+        }
+        // many valid properties with long lines spanning the reader's buffer
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            content.append("# comment ").append(i).append('\n');
+            content.append("key.").append(i).append(" = ");
+            for (int j = random.nextInt(i % 50 == 0 ? 10000 : 40); j > 0; j--) {
+                content.append((char) ('a' + random.nextInt(26)));
+            }
+            content.append(i % 7 == 0 ? "\\\r\n continued" : "").append(i % 3 == 0 ? "\r\n" : "\n");
+        }
+        assertSameLoad(content.toString());
+    }
+
+    private static void assertSameLoad(String content) throws IOException {
+        List<String> expected = load(LinePropFileReader.Reader, content);
+        List<String> actual = load(PropFileReader.Default, content);
+        assertEquals(content, expected, actual);
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder content = new StringBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            char[] buffer = new char[4096];
+            for (int read = reader.read(buffer); read != -1; read = reader.read(buffer)) {
+                content.append(buffer, 0, read);
+            }
+        } finally {
+            reader.close();
+        }
+        return content.toString();
+    }
+
+    private static List<String> load(PropFileReader reader, String content) throws IOException {
+        PropFile propFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        List<String> loaded = new ArrayList<String>();
+        try {
+            reader.load(new BufferedReader(new StringReader(content)), propFile);
+        } catch (PropFileReader.Invalid pfri) {
+            loaded.add(String.format("invalid[%s|%s|%s]", pfri.getMessage(), pfri.invalidEntry, pfri.fileName));
+        }
+        for (PropFile.Prop prop : propFile.props()) {
+            loaded.add(String.format("%s=%s#%s", prop.name, prop.unfilteredValue, prop.comments()));
+        }
+        return loaded;
+    }
+
 }
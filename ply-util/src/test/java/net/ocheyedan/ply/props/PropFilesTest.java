@@ -38,6 +38,42 @@ public class PropFilesTest {
         assertEquals(now, (long) Long.valueOf(loaded.get("test").value()));
     }
 
+    @Test
+    public void storeUnchanged() throws IOException {
+        File directory = new File(System.getProperty("java.io.tmpdir"), "ply-prop-files-test-" + System.nanoTime());
+        File file = new File(directory, "test.properties");
+        try {
+            PropFile props = new PropFile(Context.named("test"), PropFile.Loc.Local);
+            props.add("key", "value", "a comment");
+            assertFalse(PropFiles.store(props, file.getPath(), false));
+            assertTrue(PropFiles.store(props, file.getPath(), true));
+            assertTrue(file.exists());
+            long lastModified = System.currentTimeMillis() - 60000L;
+            assertTrue(file.setLastModified(lastModified));
+
+            // storing the same content leaves the file untouched
+            assertTrue(PropFiles.store(props, file.getPath(), true));
+            assertEquals(lastModified / 1000L, file.lastModified() / 1000L);
+
+            props.set("key", "changed");
+            assertTrue(PropFiles.store(props, file.getPath()));
+            PropFile loaded = new PropFile(Context.named("test"), PropFile.Loc.Local);
+            assertTrue(PropFiles.load(file.getPath(), loaded, false, false));
+            assertEquals("changed", loaded.get("key").value());
+            assertEquals("a comment", loaded.get("key").comments());
+            // the temporary file has been renamed
+            assertEquals(1, directory.listFiles().length);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File existing : files) {
+                    existing.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
     @Test
     public void load() throws IOException {
 
@@ -0,0 +1,69 @@
+package net.ocheyedan.ply.props;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class PropTableTest {
+
+    @Test public void order() {
+        PropFile propFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        for (int i = 0; i < 10000; i++) {
+            propFile.add("key" + i, "value" + i, "comment" + i);
+        }
+        assertEquals(10000, propFile.size());
+        // set retains position and comments
+        propFile.set("key5", "changed");
+        assertEquals("changed", propFile.get("key5").value());
+        assertEquals("comment5", propFile.get("key5").comments());
+        // remove and re-add moves to the end
+        assertNotNull(propFile.remove("key2"));
+        assertNull(propFile.remove("key2"));
+        assertFalse(propFile.contains("key2"));
+        propFile.add("key2", "readded");
+        // removing many compacts the table as it grows
+        for (int i = 100; i < 10000; i++) {
+            assertNotNull(propFile.remove("key" + i));
+        }
+        for (int i = 0; i < 10000; i++) {
+            propFile.add("other" + i, "value" + i);
+        }
+        assertEquals(10100, propFile.size());
+
+        List<String> names = new ArrayList<String>();
+        for (PropFile.Prop prop : propFile.props()) {
+            names.add(prop.name);
+        }
+        assertEquals(10100, names.size());
+        assertEquals("key0", names.get(0));
+        assertEquals("key1", names.get(1));
+        assertEquals("key3", names.get(2));
+        assertEquals("key5", names.get(4));
+        assertEquals("key99", names.get(98));
+        assertEquals("key2", names.get(99));
+        assertEquals("other0", names.get(100));
+        assertEquals("other9999", names.get(10099));
+        assertSame(PropFile.Prop.Empty, propFile.get("key100"));
+    }
+
+    @Test public void iterateWhileModified() {
+        PropFile propFile = new PropFile(Context.named("test"), PropFile.Loc.Local);
+        propFile.add("a", "1");
+        propFile.add("b", "2");
+        propFile.add("c", "3");
+        Iterator<PropFile.Prop> iterator = propFile.props().iterator();
+        assertEquals("a", iterator.next().name);
+        propFile.remove("b");
+        for (int i = 0; i < 100; i++) {
+            propFile.add("key" + i, "value"); // rebuilds the table
+        }
+        assertTrue(iterator.hasNext());
+        assertEquals("c", iterator.next().name);
+        assertFalse(iterator.hasNext());
+    }
+
+}
@@ -13,6 +13,10 @@ public class OutputExt {
         Output.printFromExec(message, args);
     }
 
+    public static boolean appendFromExec(StringBuilder into, String prefix, String line) {
+        return Output.appendFromExec(into, prefix, line);
+    }
+
     public static String resolve(String message, Object[] args) {
         return Output.resolve(message, args);
     }
@@ -49,11 +49,55 @@ public final class CommandLineParser {
             return new Update(parseArgs(Iter.sized(args)));
         } else if ("describe".equals(args[0]) || args[0].endsWith(":describe")) {
             return new Describe(parseArgs(Iter.sized(args)));
+        } else if ("daemon".equals(args[0])) {
+            return new Daemon(parseArgs(Iter.sized(args)));
         } else {
-            return new Build(parseArgs(Iter.sized(args)));
+            return new Build(parseBuildArgs(Iter.sized(args)));
         }
     }
 
+    /**
+     * Same as {@link #parseArgs(Iter.Sized)} but also translates {@literal -j N} (or {@literal -jN}) into the ad-hoc
+     * property {@literal ply.submodules.parallelism=N}.  If {@literal N} is omitted, {@literal 0} (the number of
+     * available processors) is used.
+     * @param clArgs to parse
+     * @return the parsed build arguments
+     */
+    static Args parseBuildArgs(Iter.Sized<String> clArgs) {
+        Args parsed = parseArgs(clArgs);
+        List<String> args = new ArrayList<String>(parsed.args.size());
+        List<String> adHocProps = new ArrayList<String>(parsed.adHocProps);
+        for (int i = 0; i < parsed.args.size(); i++) {
+            String arg = parsed.args.get(i);
+            if ("-j".equals(arg)) {
+                String next = ((i + 1) < parsed.args.size() ? parsed.args.get(i + 1) : "");
+                if (isNumber(next)) {
+                    i++;
+                } else {
+                    next = "0";
+                }
+                adHocProps.add("ply.submodules.parallelism=" + next);
+            } else if (arg.startsWith("-j") && isNumber(arg.substring(2))) {
+                adHocProps.add("ply.submodules.parallelism=" + arg.substring(2));
+            } else {
+                args.add(arg);
+            }
+        }
+        return new Args(args, adHocProps);
+    }
+
+    private static boolean isNumber(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (char character : value.toCharArray()) {
+            if (!Character.isDigit(character)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public static Args parseArgs(Iter.Sized<String> clArgs) {
         if ((clArgs == null) || (clArgs.size() < 1)) {
             return NIL;
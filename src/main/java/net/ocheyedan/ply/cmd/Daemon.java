@@ -0,0 +1,58 @@
+package net.ocheyedan.ply.cmd;
+
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.PlyUtil;
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.exec.PrimerDaemon;
+import net.ocheyedan.ply.props.PropFile;
+
+import java.io.IOException;
+
+/**
+ * Starts, stops or reports the status of the {@link PrimerDaemon}.  Starting the daemon blocks (i.e., run it
+ * in the background: {@literal ply daemon &}).  Builds only hand-off to the daemon if {@literal ply.daemon} is true.
+ */
+public final class Daemon extends Command.SystemReliant {
+
+    public Daemon(Args args) {
+        super(args);
+    }
+
+    @Override protected void runBeforeAssumptionsCheck() {
+        OutputExt.init();
+    }
+
+    @Override protected void runAfterAssumptionsCheck() {
+        String action = (args.args.size() > 1 ? args.args.get(1) : "start");
+        if ("stop".equals(action)) {
+            if (PrimerDaemon.stop()) {
+                Output.print("Stopped the ply daemon.");
+            } else {
+                Output.print("No ply daemon is running.");
+            }
+        } else if ("status".equals(action)) {
+            PropFile state = PrimerDaemon.status();
+            if (state == null) {
+                Output.print("No ply daemon is running.");
+            } else {
+                Output.print("ply daemon running on port ^b^%s^r^.", state.get("port").value());
+            }
+        } else if ("start".equals(action)) {
+            if (PrimerDaemon.status() != null) {
+                Output.print("^warn^ a ply daemon is already running.");
+                throw new SystemExit(1);
+            }
+            try {
+                PrimerDaemon.serve(PlyUtil.LOCAL_CONFIG_DIR);
+            } catch (IOException ioe) {
+                Output.print(ioe);
+                throw new SystemExit(1);
+            }
+        } else {
+            Output.print("^error^ Unknown daemon action ^b^%s^r^, expecting ^b^start^r^, ^b^stop^r^ or ^b^status^r^.", action);
+            throw new SystemExit(1);
+        }
+    }
+
+}
@@ -18,12 +18,14 @@ public final class Usage extends Command {
 
     @Override public void run() {
         OutputExt.init();
-        Output.print("ply <^b^command^r^> [--usage|--help|--version] [-PadHocProp]");
+        Output.print("ply <^b^command^r^> [--usage|--help|--version] [-j [N]] [-PadHocProp]");
         Output.print("  where ^b^command^r^ is either:");
         Output.print("    ^b^init^r^");
         Output.print("        initializes the current directory as a ply project");
         Output.print("    ^b^update^r^");
         Output.print("        checks for updates to the ply system itself");
+        Output.print("    ^b^daemon^r^ [start|stop|status]");
+        Output.print("        keeps script JVMs warm across invocations (used by builds when ^b^ply.daemon^r^ is true)");
         Output.print("    ^b^describe^r^");
         Output.print("        lists all local contexts and any non-default scopes");
         Output.print("    ^b^get^r^ [propName] [from ^b^context^r^] [--unfiltered]");
@@ -40,6 +42,7 @@ public final class Usage extends Command {
         Output.print("        removes '^b^propName^b^' from '^b^context^r^' for the project");
         Output.print("    <^b^build-scripts^r^>");
         Output.print("        a space delimited list of build scripts; i.e., ^b^ply clean \"myscript opt1\" compile test^r^");
+        Output.print("  and ^b^-j [N]^r^ builds up to ^b^N^r^ submodules concurrently (default is the number of processors)");
         Output.print("  and ^b^-PadHocProp^r^ is zero to many ad-hoc properties prefixed with ^b^-P^r^ in the format ^b^context[#scope].propName=propValue^r^");
     }
 
@@ -22,7 +22,7 @@ import static net.ocheyedan.ply.props.PropFile.Prop;
  * Date: 1/2/12
  * Time: 12:41 PM
  */
-public final class Alias extends Script {
+public class Alias extends Script {
 
     /**
      * Thrown to indicate an alias has been defined to include itself.
@@ -96,7 +96,19 @@ public final class Alias extends Script {
                                    Map<String, Alias> parsedAliases) {
             List<Script> parsedScripts = new ArrayList<Script>(scripts.size());
             Vertex<String> aliasVertex = cycleDetector.getVertex(name);
-            for (String script : scripts) {
+            for (int i = 0; i < scripts.size(); i++) {
+                String script = scripts.get(i);
+                if (Parallel.isStart(script)) {
+                    List<String> grouped = new ArrayList<String>();
+                    i = Parallel.collect(scripts, i, grouped);
+                    if (i == -1) {
+                        Output.print("^error^ Alias (^b^%s^r^) contains an unclosed ^b^%s^r^ grouping.", name, Parallel.PREFIX);
+                        throw new SystemExit(1);
+                    }
+                    parsedScripts.add(new Parallel(scope, parse(originalScope, scope, name, grouped, unparsedAliases,
+                                                                cycleDetector, parsedAliases)));
+                    continue;
+                }
                 Script parsed = Script.parse(script, scope);
                 Vertex<String> scriptVertex = cycleDetector.addVertex(parsed.name);
                 try {
@@ -0,0 +1,110 @@
+package net.ocheyedan.ply.cmd.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Replaces {@link System#out} and {@link System#err} so that output written by a thread which has called
+ * {@link #buffer()} (or by any thread it subsequently starts) is held in memory until that thread calls
+ * {@link #flush()}, at which point it is written (both stdout and stderr, in the order written) to the original
+ * {@link System#out} in one piece.  Output from all other threads passes straight through.  This allows
+ * concurrently built modules' output to remain contiguous.
+ */
+final class BufferedOutput {
+
+    /**
+     * Dispatches writes to the current thread's buffer, if any, or else to {@link #original}.
+     */
+    private final class Dispatch extends OutputStream {
+
+        private final PrintStream original;
+
+        private Dispatch(PrintStream original) {
+            this.original = original;
+        }
+
+        @Override public void write(int data) throws IOException {
+            ByteArrayOutputStream buffer = buffers.get();
+            if (buffer == null) {
+                original.write(data);
+                return;
+            }
+            synchronized (buffer) {
+                buffer.write(data);
+            }
+        }
+
+        @Override public void write(byte[] data, int offset, int length) throws IOException {
+            ByteArrayOutputStream buffer = buffers.get();
+            if (buffer == null) {
+                original.write(data, offset, length);
+                return;
+            }
+            synchronized (buffer) {
+                buffer.write(data, offset, length);
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            if (buffers.get() == null) {
+                original.flush();
+            }
+        }
+    }
+
+    /**
+     * Inheritable so that threads started on behalf of a module (i.e., by {@link net.ocheyedan.ply.exec.Exec}) buffer
+     * to that module's buffer.
+     */
+    private final InheritableThreadLocal<ByteArrayOutputStream> buffers = new InheritableThreadLocal<ByteArrayOutputStream>();
+
+    private final PrintStream stdout;
+
+    private final PrintStream stderr;
+
+    /**
+     * Replaces {@link System#out} and {@link System#err}; @see {@link #uninstall()}
+     */
+    BufferedOutput() {
+        this.stdout = System.out;
+        this.stderr = System.err;
+        System.setOut(new PrintStream(new Dispatch(stdout), true));
+        System.setErr(new PrintStream(new Dispatch(stderr), true));
+    }
+
+    /**
+     * Starts buffering output written by the current thread (and by any thread it subsequently starts).
+     */
+    void buffer() {
+        buffers.set(new ByteArrayOutputStream(4096));
+    }
+
+    /**
+     * Writes, atomically with respect to other calls to this method, all output buffered by the current thread since
+     * {@link #buffer()} and stops buffering.
+     */
+    void flush() {
+        ByteArrayOutputStream buffer = buffers.get();
+        buffers.remove();
+        if (buffer == null) {
+            return;
+        }
+        synchronized (stdout) {
+            synchronized (buffer) {
+                stdout.write(buffer.toByteArray(), 0, buffer.size());
+            }
+            stdout.flush();
+        }
+    }
+
+    /**
+     * Restores the original {@link System#out} and {@link System#err}.
+     */
+    void uninstall() {
+        System.setOut(stdout);
+        System.setErr(stderr);
+    }
+
+}
@@ -5,15 +5,19 @@ import net.ocheyedan.ply.cmd.Args;
 import net.ocheyedan.ply.cmd.Command;
 import net.ocheyedan.ply.exec.Exec;
 import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.exec.Timeline;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
 import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.Props;
 import net.ocheyedan.ply.submodules.Submodule;
 import net.ocheyedan.ply.submodules.Submodules;
 
 import java.io.File;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * User: blangel
@@ -26,6 +30,11 @@ import java.util.Map;
  */
 public final class Build extends Command.ProjectReliant {
 
+    /**
+     * The modules which bounded the build's time, if known; used by the {@link Timeline}.
+     */
+    private List<String> criticalPath;
+
     public Build(Args args) {
         super(args);
     }
@@ -47,13 +56,26 @@ public final class Build extends Command.ProjectReliant {
         String projectVersion = Props.get("version", Context.named("project")).value();
         Output.printNoLine("^ply^ building ^b^%s^r^, %s", projectName, projectVersion);
 
+        if ("true".equalsIgnoreCase(Props.get("timeline", Context.named("ply")).value())) {
+            Timeline.enable();
+        }
+        try {
+            build(projectName, executions);
+        } finally {
+            if (Timeline.isEnabled()) {
+                writeTimeline(start);
+            }
+        }
+
+        printTime(start, "");
+    }
+
+    private void build(String projectName, List<Execution> executions) {
         List<Submodule> orderedSubmodules = Submodules.getSubmodules(PlyUtil.LOCAL_CONFIG_DIR);
 
         if ((orderedSubmodules == null) || orderedSubmodules.isEmpty()) {
             Output.print("");
-            if (!Exec.invoke(PlyUtil.LOCAL_PROJECT_DIR, executions)) {
-                throw new SystemExit(1);
-            }
+            buildProject(projectName, executions);
         } else {
             Output.print(" and its submodules:");
             for (Submodule submodule : orderedSubmodules) {
@@ -65,63 +87,317 @@ public final class Build extends Command.ProjectReliant {
             Output.print("^ply^");
             Output.print("^ply^ building ^b^%s^r^ itself before its submodules", projectName);
             long projectStart = System.currentTimeMillis();
+            buildProject(projectName, executions);
+            float seconds = printTime(projectStart, String.format("^b^%s^r^ ", projectName));
+            submodulesTimeMap.put(projectName, seconds);
+            Output.print("^ply^");
+
+            int parallelism = getParallelism();
+            if ((parallelism > 1) && definesAdHocProps(orderedSubmodules)) {
+                Output.print("^info^ Aliases of the submodules define ad-hoc properties (which apply to every submodule built thereafter), building serially.");
+                parallelism = 1;
+            }
+            if (parallelism > 1) {
+                Map<String, Float> submodulesWaitMap = new HashMap<String, Float>(orderedSubmodules.size());
+                List<String> criticalPath = buildConcurrently(orderedSubmodules, parallelism, submodulesTimeMap,
+                                                              submodulesWaitMap);
+                this.criticalPath = new ArrayList<String>(criticalPath);
+                this.criticalPath.add(0, projectName);
+                printSummary(submodulesTimeMap, submodulesWaitMap);
+                float criticalSeconds = submodulesTimeMap.get(projectName);
+                StringBuilder path = new StringBuilder(projectName);
+                for (String module : criticalPath) {
+                    path.append(" -> ").append(module);
+                    criticalSeconds += submodulesTimeMap.get(module);
+                }
+                Output.print("^ply^ Critical path ^b^%s^r^ [ ^b^%.3f^r^ seconds ]", path.toString(), criticalSeconds);
+            } else {
+                for (Submodule submodule : orderedSubmodules) {
+                    Float submoduleSeconds = buildSubmodule(submodule, System.currentTimeMillis());
+                    if (submoduleSeconds != null) {
+                        submodulesTimeMap.put(submodule.name, submoduleSeconds);
+                    }
+                }
+                printSummary(submodulesTimeMap, null);
+            }
+
+        }
+    }
+
+    /**
+     * Invokes {@code executions} against the local project.
+     * @param projectName of the local project
+     * @param executions to invoke
+     * @throws SystemExit if the build failed
+     */
+    private void buildProject(String projectName, List<Execution> executions) {
+        long projectStart = System.currentTimeMillis();
+        try {
             if (!Exec.invoke(PlyUtil.LOCAL_PROJECT_DIR, executions)) {
                 throw new SystemExit(1);
             }
-            int maxSubmoduleName = projectName.length();
-            float seconds = printTime(projectStart, String.format("^b^%s^r^ ", projectName));
-            float maxSubmoduleTime = seconds;
-            submodulesTimeMap.put(projectName, seconds);
+        } finally {
+            Timeline.module(projectName, PlyUtil.LOCAL_PROJECT_DIR, projectStart, projectStart, System.currentTimeMillis());
+        }
+    }
+    
+    /**
+     * Builds {@code submodule} by resolving and invoking {@link #args} against it.
+     * @param submodule to build
+     * @param readyAt the time at which {@code submodule} was ready to be built
+     * @return the amount of time in seconds to build {@code submodule} or null if it was skipped
+     * @throws SystemExit if the build of {@code submodule} failed
+     */
+    private Float buildSubmodule(Submodule submodule, long readyAt) {
+        Output.print("^ply^ building ^b^%s^r^", submodule);
+        long submoduleStart = System.currentTimeMillis();
+        File submodulePlyDir = FileUtil
+                .fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name, ".ply");
+        if (!submodulePlyDir.exists()) {
+            File submoduleDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name);
+            if (!submoduleDir.exists()) {
+                Output.print("^warn^ directory ^b^%s^r^ doesn't exist.", submodule.name);
+            } else {
+                Output.print("^warn^ submodule ^b^%s^r^ is not a ply project, skipping.", submodule.name);
+            }
             Output.print("^ply^");
+            return null;
+        }
+        File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(submodulePlyDir), "config");
+        try {
+            List<Execution> submoduleExecutions;
+            synchronized (Exec.RESOLUTION_LOCK) {
+                submoduleExecutions = Module.resolve(args, submoduleConfigDir);
+            }
+            if (!Exec.invoke(submodulePlyDir, submoduleExecutions)) {
+                throw new SystemExit(1);
+            }
+        } finally {
+            Timeline.module(submodule.name, submodulePlyDir, readyAt, submoduleStart, System.currentTimeMillis());
+        }
+        float seconds = printTime(submoduleStart, String.format("^b^%s^r^ ", submodule.name));
+        Output.print("^ply^");
+        return seconds;
+    }
 
-            for (Submodule submodule : orderedSubmodules) {
-                Output.print("^ply^ building ^b^%s^r^", submodule);
-                if (submodule.name.length() > maxSubmoduleName) {
-                    maxSubmoduleName = submodule.name.length();
+    /**
+     * Builds {@code submodules} concurrently; each submodule is started as soon as its prerequisites (@see
+     * {@link Submodules#getPrerequisites(File, List)}) have been built and a worker is available.  Each submodule's
+     * output is buffered and printed once it completes.  If a submodule fails, all running builds are halted
+     * and no others are started.
+     * @param submodules to build, in the order in which to prefer building them
+     * @param parallelism the maximum number of submodules to build at once
+     * @param times into which to place the time, in seconds, taken to build each submodule
+     * @param waits into which to place the time, in seconds, each submodule waited for a worker once its
+     *              prerequisites were built
+     * @return the critical path; i.e., the chain of prerequisite submodules whose build times sum the highest.
+     * @throws SystemExit if any submodule failed
+     */
+    private List<String> buildConcurrently(List<Submodule> submodules, int parallelism, Map<String, Float> times,
+                                           Map<String, Float> waits) {
+        Map<Submodule, Set<Submodule>> prerequisites = Submodules.getPrerequisites(PlyUtil.LOCAL_CONFIG_DIR, submodules);
+        DirectedAcyclicGraph<Submodule> graph = new DirectedAcyclicGraph<Submodule>();
+        for (Submodule submodule : submodules) {
+            graph.addVertex(submodule);
+        }
+        for (Submodule submodule : submodules) {
+            for (Submodule prerequisite : prerequisites.get(submodule)) {
+                try {
+                    graph.addEdge(graph.getVertex(prerequisite), graph.getVertex(submodule));
+                } catch (Graph.CycleException gce) {
+                    Output.print("^error^ Submodules ^b^%s^r^ and ^b^%s^r^ depend upon one another.", prerequisite, submodule);
+                    throw new SystemExit(1);
+                }
+            }
+        }
+        Map<Submodule, Integer> waitingOn = new HashMap<Submodule, Integer>(submodules.size());
+        TreeSet<Integer> ready = new TreeSet<Integer>();
+        Map<Submodule, Long> readyAt = new HashMap<Submodule, Long>(submodules.size());
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < submodules.size(); i++) {
+            Submodule submodule = submodules.get(i);
+            waitingOn.put(submodule, prerequisites.get(submodule).size());
+            if (prerequisites.get(submodule).isEmpty()) {
+                ready.add(i);
+                readyAt.put(submodule, start);
+            }
+        }
+        Map<Submodule, Float> seconds = new HashMap<Submodule, Float>(submodules.size());
+        final BufferedOutput output = new BufferedOutput();
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        CompletionService<Float> completion = new ExecutorCompletionService<Float>(workers);
+        Map<Future<Float>, Submodule> running = new HashMap<Future<Float>, Submodule>(parallelism);
+        boolean failed = false;
+        try {
+            while (true) {
+                while (!failed && !ready.isEmpty() && (running.size() < parallelism)) {
+                    final Submodule submodule = submodules.get(ready.pollFirst());
+                    final long submoduleReadyAt = readyAt.get(submodule);
+                    waits.put(submodule.name, (System.currentTimeMillis() - submoduleReadyAt) / 1000.0f);
+                    running.put(completion.submit(new Callable<Float>() {
+                        @Override public Float call() throws Exception {
+                            output.buffer();
+                            try {
+                                return buildSubmodule(submodule, submoduleReadyAt);
+                            } finally {
+                                output.flush();
+                            }
+                        }
+                    }), submodule);
                 }
-                long submoduleStart = System.currentTimeMillis();
-                File submodulePlyDir = FileUtil
-                        .fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name, ".ply");
-                if (!submodulePlyDir.exists()) {
-                    File submoduleDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name);
-                    if (!submoduleDir.exists()) {
-                        Output.print("^warn^ directory ^b^%s^r^ doesn't exist.", submodule.name);
-                    } else {
-                        Output.print("^warn^ submodule ^b^%s^r^ is not a ply project, skipping.", submodule.name);
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<Float> completed = completion.take();
+                Submodule submodule = running.remove(completed);
+                Float submoduleSeconds;
+                try {
+                    submoduleSeconds = completed.get();
+                } catch (ExecutionException ee) {
+                    if (!(ee.getCause() instanceof SystemExit)) {
+                        Output.print(ee.getCause());
+                    }
+                    if (!failed) {
+                        failed = true;
+                        Exec.halt();
                     }
-                    Output.print("^ply^");
                     continue;
                 }
-                File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(submodulePlyDir), "config");
-                List<Execution> submoduleExecutions = Module.resolve(args, submoduleConfigDir);
-                if (!Exec.invoke(submodulePlyDir, submoduleExecutions)) {
-                    throw new SystemExit(1);
+                if (submoduleSeconds != null) { // null if skipped, which (as when serial) is not reported
+                    seconds.put(submodule, submoduleSeconds);
                 }
-                seconds = printTime(submoduleStart, String.format("^b^%s^r^ ", submodule.name));
-                if (seconds > maxSubmoduleTime) {
-                    maxSubmoduleTime = seconds;
+                for (Vertex<Submodule> child : graph.getVertex(submodule).getChildren()) {
+                    int remaining = waitingOn.get(child.getValue()) - 1;
+                    waitingOn.put(child.getValue(), remaining);
+                    if (remaining == 0) {
+                        ready.add(submodules.indexOf(child.getValue()));
+                        readyAt.put(child.getValue(), System.currentTimeMillis());
+                    }
+                }
+            }
+        } catch (InterruptedException ie) {
+            Output.print(ie);
+            failed = true;
+            Exec.halt();
+        } finally {
+            workers.shutdownNow();
+            output.uninstall();
+        }
+        if (failed) {
+            throw new SystemExit(1);
+        }
+        // record times in the preferred order and compute the critical path
+        Map<Submodule, Float> pathSeconds = new HashMap<Submodule, Float>(submodules.size());
+        Map<Submodule, Submodule> pathPrevious = new HashMap<Submodule, Submodule>(submodules.size());
+        Submodule last = null;
+        for (Submodule submodule : submodules) {
+            if (!seconds.containsKey(submodule)) {
+                continue;
+            }
+            times.put(submodule.name, seconds.get(submodule));
+            float longest = 0.0f;
+            for (Submodule prerequisite : prerequisites.get(submodule)) {
+                Float prerequisiteSeconds = pathSeconds.get(prerequisite);
+                if ((prerequisiteSeconds != null) && (prerequisiteSeconds > longest)) {
+                    longest = prerequisiteSeconds;
+                    pathPrevious.put(submodule, prerequisite);
                 }
-                submodulesTimeMap.put(submodule.name, seconds);
-                Output.print("^ply^");
+            }
+            pathSeconds.put(submodule, longest + seconds.get(submodule));
+            if ((last == null) || (pathSeconds.get(submodule) > pathSeconds.get(last))) {
+                last = submodule;
+            }
+        }
+        LinkedList<String> criticalPath = new LinkedList<String>();
+        while (last != null) {
+            criticalPath.addFirst(last.name);
+            last = pathPrevious.get(last);
+        }
+        return criticalPath;
+    }
 
+    /**
+     * @return the value of {@literal ply.submodules.parallelism} where {@literal 0} is translated to the number
+     *         of available processors.
+     */
+    /**
+     * @param submodules to check
+     * @return true if resolving {@link #args} against any of {@code submodules} would add ad-hoc properties
+     * @see Module#definesAdHocProps(Args, File)
+     */
+    private boolean definesAdHocProps(List<Submodule> submodules) {
+        for (Submodule submodule : submodules) {
+            File submoduleConfigDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", submodule.name,
+                                                         ".ply", "config");
+            if (submoduleConfigDir.exists()
+                    && Module.definesAdHocProps(args, new File(FileUtil.getCanonicalPath(submoduleConfigDir)))) {
+                return true;
             }
+        }
+        return false;
+    }
 
-            Output.print("^ply^ Build Summary");
-            maxSubmoduleName = Math.min(maxSubmoduleName, 80); // don't be ridiculous
-            int maxTimeLength = String.valueOf(Float.valueOf(maxSubmoduleTime).intValue()).length();
-            for (String module : submodulesTimeMap.keySet()) {
-                int pad = Math.max(1, ((maxSubmoduleName + 1) - module.length()));
-                float time = submodulesTimeMap.get(module);
-                int timePad = Math.max(0, (maxTimeLength - String.valueOf(Float.valueOf(time).intValue()).length()));
-                String timePadString = (timePad == 0 ? "" : String.valueOf(timePad));
-                Output.print("^ply^ ^b^%s^r^%" + pad + "s%" + timePadString + "s^b^%.3f^r^ seconds", module, "", "", time);
+    private static int getParallelism() {
+        String value = Props.get("submodules.parallelism", Context.named("ply")).value();
+        int parallelism = 1;
+        if (!value.isEmpty()) {
+            try {
+                parallelism = Integer.parseInt(value);
+            } catch (NumberFormatException nfe) {
+                Output.print("^warn^ Invalid ^b^submodules.parallelism^r^ value [ %s ], defaulting to 1.", value);
             }
+        }
+        return (parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism);
+    }
 
+    /**
+     * Prints the time taken to build each module in {@code times}.
+     * @param times the modules mapped to the time, in seconds, it took to build them
+     * @param waits the modules mapped to the time, in seconds, they waited to be built; may be null
+     */
+    private static void printSummary(Map<String, Float> times, Map<String, Float> waits) {
+        Output.print("^ply^ Build Summary");
+        int maxSubmoduleName = 0;
+        float maxSubmoduleTime = 0.0f;
+        for (String module : times.keySet()) {
+            maxSubmoduleName = Math.max(maxSubmoduleName, module.length());
+            maxSubmoduleTime = Math.max(maxSubmoduleTime, times.get(module));
         }
+        maxSubmoduleName = Math.min(maxSubmoduleName, 80); // don't be ridiculous
+        int maxTimeLength = String.valueOf(Float.valueOf(maxSubmoduleTime).intValue()).length();
+        for (String module : times.keySet()) {
+            int pad = Math.max(1, ((maxSubmoduleName + 1) - module.length()));
+            float time = times.get(module);
+            int timePad = Math.max(0, (maxTimeLength - String.valueOf(Float.valueOf(time).intValue()).length()));
+            String timePadString = (timePad == 0 ? "" : String.valueOf(timePad));
+            Float wait = (waits == null ? null : waits.get(module));
+            if (wait == null) {
+                Output.print("^ply^ ^b^%s^r^%" + pad + "s%" + timePadString + "s^b^%.3f^r^ seconds", module, "", "", time);
+            } else {
+                Output.print("^ply^ ^b^%s^r^%" + pad + "s%" + timePadString + "s^b^%.3f^r^ seconds [ waited ^b^%.3f^r^ seconds ]",
+                        module, "", "", time, wait);
+            }
+        }
+    }
 
-        printTime(start, "");
+    /**
+     * Writes the {@link Timeline} into the project's {@literal reports.dir}.
+     * @param start of the build
+     */
+    private void writeTimeline(long start) {
+        String reportsDirPath = Props.get("reports.dir", Context.named("project")).value();
+        File reportsDir = new File(reportsDirPath);
+        if (!reportsDir.isAbsolute()) {
+            reportsDir = FileUtil.fromParts(PlyUtil.LOCAL_PROJECT_DIR.getPath(), "..", reportsDirPath);
+        }
+        try {
+            Timeline.write(reportsDir, start, criticalPath);
+            Output.print("^ply^ Timeline written to ^b^%s^r^.", FileUtil.getCanonicalPath(reportsDir));
+        } catch (IOException ioe) {
+            Output.print("^warn^ Could not write timeline: %s", ioe.getMessage());
+        }
     }
-    
+
     /**
      * Prints the amount of time used since {@code start} along with the memory usage.
      * @param start time of some task/execution/build
@@ -0,0 +1,270 @@
+package net.ocheyedan.ply.cmd.build;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.PlyUtil;
+import net.ocheyedan.ply.cmd.Args;
+import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.props.*;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * An on-disk cache of the result of {@link Module#resolve()} (the alias look-ups, script probes and filtering) and of
+ * translating the resolved executions (@see {@link net.ocheyedan.ply.exec.Exec#translate(List, File)}, which for jar
+ * scripts includes resolving their dependencies into a class-path).
+ *
+ * A plan is keyed by the invocation's arguments and ad-hoc properties, the modification times of the local and
+ * system configuration files and of the scripts directories as well as of ply's own location, version and working
+ * directory.  A plan additionally records the checksum of each jar script it references and is discarded if any has
+ * changed or if any class-path entry no longer exists.  Plans are stored within {@literal project.ply.plan.dir} and
+ * are only used if {@literal ply.exec.plan.cache} is true.
+ */
+final class ExecutionPlan {
+
+    private static final int VERSION = 1;
+
+    /**
+     * @param args of the invocation
+     * @param configDirectory of the module being resolved
+     * @param projectScriptPath the module's scripts directory
+     * @return the plan for {@code args} or null if plans are not to be used
+     */
+    static ExecutionPlan get(Args args, File configDirectory, String projectScriptPath) {
+        Scope scope = Props.getScope();
+        if (!"true".equalsIgnoreCase(Props.get("exec.plan.cache", Context.named("ply"), scope, configDirectory).value())) {
+            return null;
+        }
+        String planPath = Props.get("ply.plan.dir", Context.named("project"), scope, configDirectory).value();
+        if (planPath.isEmpty()) {
+            return null;
+        }
+        File planDir = new File(planPath);
+        if (!planDir.isAbsolute()) {
+            planDir = FileUtil.fromParts(FileUtil.getCanonicalPath(FileUtil.fromParts(configDirectory.getPath(), "..", "..")),
+                                         planPath);
+        }
+        String key = getKey(args, scope, configDirectory, projectScriptPath);
+        return new ExecutionPlan(new File(planDir, hash(key) + ".plan"), key, configDirectory);
+    }
+
+    static String getKey(Args args, Scope scope, File configDirectory, String projectScriptPath) {
+        StringBuilder key = new StringBuilder();
+        key.append(VERSION).append('\n');
+        key.append(System.getProperty("ply.home")).append('\n');
+        key.append(System.getProperty("ply.version")).append('\n');
+        key.append(System.getProperty("ply.java")).append('\n');
+        key.append(System.getProperty("user.dir")).append('\n');
+        key.append(scope.name).append('\n');
+        for (String arg : args.args) {
+            key.append("arg ").append(arg).append('\n');
+        }
+        List<String> adHocProps = new ArrayList<String>();
+        Map<Scope, Map<Context, PropFile>> adHoc = AdHoc.get();
+        for (Scope adHocScope : adHoc.keySet()) {
+            Map<Context, PropFile> contexts = adHoc.get(adHocScope);
+            for (Context context : contexts.keySet()) {
+                for (PropFile.Prop prop : contexts.get(context).props()) {
+                    adHocProps.add(String.format("ad-hoc %s#%s.%s=%s", context.name, adHocScope.name, prop.name,
+                                                 prop.unfilteredValue));
+                }
+            }
+        }
+        Collections.sort(adHocProps);
+        for (String adHocProp : adHocProps) {
+            key.append(adHocProp).append('\n');
+        }
+        appendModified(key, configDirectory);
+        appendModified(key, PlyUtil.SYSTEM_CONFIG_DIR);
+        appendModified(key, new File(projectScriptPath));
+        appendModified(key, PlyUtil.SYSTEM_SCRIPTS_DIR);
+        return key.toString();
+    }
+
+    /**
+     * Appends the modification time of {@code directory} (which changes as files are added or removed) and of each
+     * {@literal .properties} file within it.
+     */
+    private static void appendModified(StringBuilder key, File directory) {
+        key.append("dir ").append(FileUtil.getCanonicalPath(directory)).append(' ').append(directory.lastModified()).append('\n');
+        File[] files = directory.listFiles(new FilenameFilter() {
+            @Override public boolean accept(File dir, String name) {
+                return name.endsWith(".properties");
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (File file : files) {
+            key.append("file ").append(file.getName()).append(' ').append(file.lastModified()).append(' ')
+               .append(file.length()).append('\n');
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            MessageDigest hash = MessageDigest.getInstance("SHA1");
+            return BitUtil.toHexString(hash.digest(key.getBytes("UTF-8")));
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        } catch (UnsupportedEncodingException uee) {
+            throw new AssertionError(uee);
+        }
+    }
+
+    private final File file;
+
+    private final String key;
+
+    private final File configDirectory;
+
+    ExecutionPlan(File file, String key, File configDirectory) {
+        this.file = file;
+        this.key = key;
+        this.configDirectory = configDirectory;
+    }
+
+    /**
+     * Reads the plan and re-applies the ad-hoc properties defined by its aliases.
+     * @return the translated executions of the plan or null if there is no (valid) plan stored
+     */
+    List<Execution> load() {
+        if (!file.exists()) {
+            return null;
+        }
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if ((input.readInt() != VERSION) || !key.equals(input.readUTF())) {
+                return null;
+            }
+            for (int i = input.readInt(); i > 0; i--) {
+                File jar = new File(input.readUTF());
+                String checksum = input.readUTF();
+                if (!jar.exists() || !checksum.equals(FileUtil.getSha1Hash(jar))) {
+                    Output.print("^dbug^ execution plan stale; %s has changed.", jar.getPath());
+                    return null;
+                }
+            }
+            List<String> adHocProps = new ArrayList<String>();
+            for (int i = input.readInt(); i > 0; i--) {
+                adHocProps.add(input.readUTF());
+            }
+            int size = input.readInt();
+            List<Execution> executions = new ArrayList<Execution>(size);
+            for (int i = 0; i < size; i++) {
+                String name = input.readUTF();
+                String unparsedName = input.readUTF();
+                Scope scope = Scope.named(input.readUTF());
+                Script script = new Script(name, scope, Collections.<String>emptyList(), unparsedName, null);
+                Execution execution = Execution.read(input, script);
+                if (!exists(execution)) {
+                    return null;
+                }
+                executions.add(execution);
+            }
+            if (!adHocProps.isEmpty()) {
+                AdHoc.add(adHocProps);
+                PropsExt.invalidateAdHocFilteredCaches(configDirectory);
+            }
+            Output.print("^dbug^ using execution plan %s", file.getPath());
+            return executions;
+        } catch (IOException ioe) {
+            Output.print("^dbug^ ignoring execution plan %s: %s", file.getPath(), ioe.getMessage());
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * @param execution to check
+     * @return true if each class-path entry of {@code execution} still exists (i.e., has not been removed from the
+     *         local repository)
+     */
+    private boolean exists(Execution execution) {
+        String[] executionArgs = execution.executionArgs;
+        for (int i = 0; i < (executionArgs.length - 1); i++) {
+            String arg = executionArgs[i];
+            if ("-classpath".equals(arg) || "-cp".equals(arg) || "-jar".equals(arg)) {
+                for (String entry : executionArgs[i + 1].split(File.pathSeparator)) {
+                    if (!entry.isEmpty() && !new File(entry).exists()) {
+                        Output.print("^dbug^ execution plan stale; %s no longer exists.", entry);
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stores the plan, ignoring (other than to print) any failure to do so.
+     * @param resolved the resolved (untranslated) executions, from which the jar scripts are determined
+     * @param translated the translated {@code resolved} executions
+     * @param adHocProps the ad-hoc properties defined by the resolved aliases
+     */
+    void store(List<Execution> resolved, List<Execution> translated, List<String> adHocProps) {
+        File directory = file.getParentFile();
+        if (!directory.exists() && !directory.mkdirs()) {
+            Output.print("^dbug^ could not create execution plan directory %s", directory.getPath());
+            return;
+        }
+        Set<String> jars = new LinkedHashSet<String>();
+        for (Execution execution : resolved) {
+            String executable = execution.executionArgs[0];
+            if ((executable.endsWith(".jar") || executable.endsWith(".clj")) && new File(executable).exists()) {
+                jars.add(executable);
+            }
+        }
+        File temp = new File(directory, file.getName() + ".tmp");
+        DataOutputStream output = null;
+        try {
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            output.writeInt(VERSION);
+            output.writeUTF(key);
+            output.writeInt(jars.size());
+            for (String jar : jars) {
+                output.writeUTF(jar);
+                output.writeUTF(FileUtil.getSha1Hash(new File(jar)));
+            }
+            output.writeInt(adHocProps.size());
+            for (String adHocProp : adHocProps) {
+                output.writeUTF(adHocProp);
+            }
+            output.writeInt(translated.size());
+            for (Execution execution : translated) {
+                output.writeUTF(execution.script.name);
+                output.writeUTF(execution.script.unparsedName == null ? "" : execution.script.unparsedName);
+                output.writeUTF(execution.script.scope.name);
+                execution.write(output);
+            }
+        } catch (IOException ioe) {
+            Output.print("^dbug^ could not store execution plan %s: %s", file.getPath(), ioe.getMessage());
+            close(output);
+            temp.delete();
+            return;
+        }
+        close(output);
+        if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+            Output.print("^dbug^ could not store execution plan %s", file.getPath());
+            temp.delete();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ioe) {
+                // ignore
+            }
+        }
+    }
+
+}
@@ -2,9 +2,11 @@ package net.ocheyedan.ply.cmd.build;
 
 import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
 import net.ocheyedan.ply.PlyUtil;
 import net.ocheyedan.ply.SystemExit;
 import net.ocheyedan.ply.cmd.Args;
+import net.ocheyedan.ply.exec.Exec;
 import net.ocheyedan.ply.exec.Execution;
 import net.ocheyedan.ply.props.*;
 
@@ -26,6 +28,38 @@ final class Module {
         return new Module(args, configDirectory).resolve();
     }
 
+    /**
+     * @param args to check
+     * @param configDirectory of the module
+     * @return true if resolving {@code args} against the module at {@code configDirectory} would add ad-hoc
+     *         properties defined by its aliases; as ad-hoc properties are universal (@see {@link AdHoc}) and so apply
+     *         to every module built thereafter, such a module must not be built concurrently with others
+     */
+    static boolean definesAdHocProps(Args args, File configDirectory) {
+        // a resolver of its own so as to not cache aliases ahead of the module's resolution
+        Alias.Resolver resolver = new Alias.Resolver(configDirectory);
+        for (String arg : args.args) {
+            Script parse = Script.parse(arg, Scope.Default);
+            Alias alias = resolver.getAliases(parse.scope).get(parse.name);
+            if ((alias != null) && definesAdHocProps(alias)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean definesAdHocProps(Alias alias) {
+        if (!alias.adHocProps.isEmpty()) {
+            return true;
+        }
+        for (Script script : alias.scripts) {
+            if ((script instanceof Alias) && definesAdHocProps((Alias) script)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private final Args args;
 
     private final File configDirectory;
@@ -46,11 +80,17 @@ final class Module {
     }
 
     List<Execution> resolve() {
+        ExecutionPlan plan = ExecutionPlan.get(args, configDirectory, resolveProjectScriptPath());
+        List<Execution> planned = (plan == null ? null : plan.load());
+        if (planned != null) {
+            return planned;
+        }
         List<Script> scripts = convertArgsToScripts();
         // resolve ad-hoc properties before creating executions (as execution may depend upon a value of an ad-hoc prop).
-        // must invalidate filtered-cache (as ad-hoc props may have changed the filtered values).
-        if (handleAdHoc(scripts)) {
-            PropsExt.invalidateFilteredCaches(configDirectory);
+        // must invalidate filtered values affected by the ad-hoc props (as they may have changed the filtered values).
+        List<String> aliasesAdHocProps = new ArrayList<String>();
+        if (handleAdHoc(scripts, aliasesAdHocProps)) {
+            PropsExt.invalidateAdHocFilteredCaches(configDirectory);
         }
         // now apply resolved ad-hoc properties to scripts themselves
         List<Script> filtered = new ArrayList<Script>(scripts.size());
@@ -58,18 +98,27 @@ final class Module {
             filtered.add(script.filter());
         }
         // now that all ad-hoc props are accounted for and filtered, convert scripts to executions
-        return convertScriptsToExecutions(filtered);
+        List<Execution> executions = convertScriptsToExecutions(filtered);
+        if (plan != null) {
+            // translation may depend upon output settings (which may have been set by the aliases' ad-hoc props)
+            OutputExt.init();
+            List<Execution> translated = Exec.translate(executions, configDirectory);
+            plan.store(executions, translated, aliasesAdHocProps);
+            return translated;
+        }
+        return executions;
     }
     
-    private boolean handleAdHoc(List<Script> scripts) {
+    private boolean handleAdHoc(List<Script> scripts, List<String> aliasesAdHocProps) {
         boolean hasAdHocPropsFromAliases = false;
         for (Script script : scripts) {
             if (script instanceof Alias) {
                 Alias alias = (Alias) script;
                 List<String> adHocProps = alias.adHocProps;
-                hasAdHocPropsFromAliases = (hasAdHocPropsFromAliases || handleAdHoc(alias.scripts));
+                hasAdHocPropsFromAliases = (hasAdHocPropsFromAliases || handleAdHoc(alias.scripts, aliasesAdHocProps));
                 if ((adHocProps != null) && !adHocProps.isEmpty()) {
                     AdHoc.add(adHocProps);
+                    aliasesAdHocProps.addAll(adHocProps);
                     hasAdHocPropsFromAliases = true;
                 }
             }
@@ -173,12 +222,15 @@ final class Module {
         if (scriptsPath.get() != null) {
             return scriptsPath.get();
         }
+        String projectScriptPath = resolveProjectScriptPath();
+        scriptsPath.set(projectScriptPath);
+        return projectScriptPath;
+    }
+
+    private String resolveProjectScriptPath() {
         String projectScriptsDir = Props.get("scripts.dir", Context.named("project"), Props.getScope(), configDirectory).value();
         String scriptsDir = (projectScriptsDir.isEmpty() ? FileUtil.pathFromParts(".", "scripts") : projectScriptsDir);
         String projectConfigPath = FileUtil.getCanonicalPath(configDirectory);
-        String projectScriptPath = FileUtil.getCanonicalPath(
-                FileUtil.fromParts(projectConfigPath, "..", "..", scriptsDir));
-        scriptsPath.set(projectScriptPath);
-        return projectScriptPath;
+        return FileUtil.getCanonicalPath(FileUtil.fromParts(projectConfigPath, "..", "..", scriptsDir));
     }
 }
@@ -0,0 +1,122 @@
+package net.ocheyedan.ply.cmd.build;
+
+import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.props.Scope;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@literal parallel(...)} grouping within an alias definition; i.e., {@literal package=parallel(resolve test:dep) ply-package-1.0.jar}.
+ * Each of the grouping's scripts (and aliases) is a lane and the executions of one lane do not depend upon those of
+ * any other lane, allowing {@link net.ocheyedan.ply.exec.Exec} to run the lanes concurrently.  The executions within
+ * a lane, as well as the grouping with respect to the rest of the alias, remain serial.
+ */
+final class Parallel extends Alias {
+
+    static final String PREFIX = "parallel(";
+
+    /**
+     * Each conversion of a grouping gets its own id so that the same alias used twice yields two distinct groupings.
+     */
+    private static final AtomicInteger GROUPS = new AtomicInteger(0);
+
+    /**
+     * @param token to check
+     * @return true if {@code token} opens a grouping
+     */
+    static boolean isStart(String token) {
+        return ((token != null) && token.startsWith(PREFIX));
+    }
+
+    /**
+     * @param token to check
+     * @return the number of groupings opened by {@code token}; i.e., two for {@literal parallel(parallel(one}
+     */
+    private static int opening(String token) {
+        int count = 0;
+        for (int index = 0; token.startsWith(PREFIX, index); index += PREFIX.length()) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Collects the tokens of the grouping opened by {@code tokens[from]} into {@code into}, stripping the opening
+     * {@literal parallel(} and matching {@literal )}.  Nested groupings are collected as is.
+     * @param tokens the split alias definition
+     * @param from the index of the token opening the grouping
+     * @param into the collection into which to place the grouping's tokens
+     * @return the index of the token closing the grouping or -1 if the grouping is not closed
+     */
+    static int collect(List<String> tokens, int from, List<String> into) {
+        int depth = 0;
+        for (int i = from; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            depth += opening(token);
+            if (i == from) {
+                token = token.substring(PREFIX.length());
+            }
+            int closing = 0;
+            while ((closing < token.length()) && (token.charAt(token.length() - 1 - closing) == ')')) {
+                closing++;
+            }
+            if (closing >= depth) {
+                token = token.substring(0, token.length() - 1);
+                if (!token.isEmpty()) {
+                    into.add(token);
+                }
+                return i;
+            }
+            depth -= closing;
+            if (!token.isEmpty()) {
+                into.add(token);
+            }
+        }
+        return -1;
+    }
+
+    Parallel(Scope scope, List<Script> scripts) {
+        super("parallel", scope, scripts, Collections.<String>emptyList(), Collections.<String>emptyList(), PREFIX + "...)");
+    }
+
+    @Override List<Execution> convert() {
+        return convert(name);
+    }
+
+    /**
+     * Converts each lane within this grouping into {@link Execution} objects marked with their {@link Execution.Lane}.
+     * @param overriddenExecutionName the enclosing alias' name, used for the non-alias scripts within this grouping
+     * @return the converted execution objects
+     */
+    @Override protected List<Execution> convert(String overriddenExecutionName) {
+        int group = GROUPS.incrementAndGet();
+        List<Execution> executions = new ArrayList<Execution>(scripts.size());
+        for (int i = 0; i < scripts.size(); i++) {
+            Execution.Lane lane = new Execution.Lane(group, i);
+            for (Execution execution : scripts.get(i).convert(overriddenExecutionName)) {
+                executions.add(execution.within(lane));
+            }
+        }
+        return executions;
+    }
+
+    @Override Script filter() {
+        List<Script> filteredScripts = new ArrayList<Script>(scripts.size());
+        for (Script script : scripts) {
+            filteredScripts.add(script.filter());
+        }
+        return new Parallel(scope, filteredScripts);
+    }
+
+    @Override Alias with(List<Script> scripts) {
+        return new Parallel(scope, scripts);
+    }
+
+    @Override Alias augment(List<String> arguments, String unparsedName) {
+        throw new UnsupportedOperationException("A parallel grouping cannot have arguments!");
+    }
+
+}
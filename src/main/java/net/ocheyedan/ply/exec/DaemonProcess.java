@@ -0,0 +1,170 @@
+package net.ocheyedan.ply.exec;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * The client side of a process hosted by the {@link PrimerDaemon}.  The stdout of the daemon's process is
+ * de-multiplexed from the socket and exposed via {@link #getInputStream()} and anything written to
+ * {@link #getOutputStream()} is forwarded to the daemon's process' stdin.  As processes are always started with
+ * {@link ProcessBuilder#redirectErrorStream(boolean)} the {@link #getErrorStream()} is always empty.
+ */
+final class DaemonProcess extends Process {
+
+    /**
+     * Reads {@link PrimerDaemon#STDOUT} frames until the {@link PrimerDaemon#EXIT} frame is encountered.
+     */
+    private final class Stdout extends InputStream {
+
+        private int remaining = 0;
+
+        @Override public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return (read == -1 ? -1 : (single[0] & 0xff));
+        }
+
+        @Override public int read(byte[] buffer, int offset, int length) throws IOException {
+            synchronized (DaemonProcess.this) {
+                while (remaining == 0) {
+                    if (exitCode != null) {
+                        return -1;
+                    }
+                    byte response = input.readByte();
+                    if (response == PrimerDaemon.STDOUT) {
+                        remaining = input.readInt();
+                    } else if (response == PrimerDaemon.EXIT) {
+                        exited(input.readInt());
+                    } else if (response == PrimerDaemon.ERROR) {
+                        String message = PrimerDaemon.readString(input, PrimerDaemon.MAX_ERROR_LENGTH);
+                        exited(1);
+                        throw new IOException(String.format("ply daemon error: %s", message));
+                    } else {
+                        exited(1);
+                        throw new IOException(String.format("Unexpected ply daemon response [ %c ]", (char) response));
+                    }
+                }
+                int read = input.read(buffer, offset, Math.min(length, remaining));
+                if (read == -1) {
+                    exited(1);
+                    return -1;
+                }
+                remaining -= read;
+                return read;
+            }
+        }
+
+        @Override public int available() throws IOException {
+            synchronized (DaemonProcess.this) {
+                return Math.min(remaining, input.available());
+            }
+        }
+    }
+
+    /**
+     * Frames writes as {@link PrimerDaemon#STDIN} requests.
+     */
+    private final class Stdin extends OutputStream {
+
+        @Override public void write(int data) throws IOException {
+            write(new byte[] { (byte) data }, 0, 1);
+        }
+
+        @Override public void write(byte[] buffer, int offset, int length) throws IOException {
+            synchronized (output) {
+                if (exitCode != null) {
+                    throw new IOException("Broken pipe"); // mirror a native process' stdin, @see StdinProcessPipe
+                }
+                output.writeByte(PrimerDaemon.STDIN);
+                output.writeInt(length);
+                output.write(buffer, offset, length);
+            }
+        }
+
+        @Override public void flush() throws IOException {
+            synchronized (output) {
+                output.flush();
+            }
+        }
+    }
+
+    private final Socket socket;
+
+    private final DataInputStream input;
+
+    private final DataOutputStream output;
+
+    private final InputStream stdout;
+
+    private final OutputStream stdin;
+
+    private volatile Integer exitCode;
+
+    DaemonProcess(Socket socket, DataOutputStream output) throws IOException {
+        this.socket = socket;
+        this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.output = output;
+        this.stdout = new Stdout();
+        this.stdin = new Stdin();
+    }
+
+    @Override public OutputStream getOutputStream() {
+        return stdin;
+    }
+
+    @Override public InputStream getInputStream() {
+        return stdout;
+    }
+
+    @Override public InputStream getErrorStream() {
+        return new ByteArrayInputStream(new byte[0]);
+    }
+
+    @Override public int waitFor() throws InterruptedException {
+        try {
+            byte[] discard = new byte[4096];
+            while (stdout.read(discard) != -1) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } catch (IOException ioe) {
+            exited(1);
+        }
+        return exitCode;
+    }
+
+    @Override public int exitValue() {
+        Integer exitCode = this.exitCode;
+        if (exitCode == null) {
+            throw new IllegalThreadStateException("process hasn't exited");
+        }
+        return exitCode;
+    }
+
+    @Override public void destroy() {
+        if (exitCode == null) {
+            try {
+                synchronized (output) {
+                    output.writeByte(PrimerDaemon.KILL);
+                    output.flush();
+                }
+            } catch (IOException ioe) {
+                // the daemon's session is already gone
+            }
+        }
+        exited(1);
+    }
+
+    private void exited(int exitCode) {
+        if (this.exitCode == null) {
+            this.exitCode = exitCode;
+        }
+        try {
+            socket.close();
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+
+}
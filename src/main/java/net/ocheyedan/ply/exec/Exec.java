@@ -4,14 +4,19 @@ import net.ocheyedan.ply.FileUtil;
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.OutputExt;
 import net.ocheyedan.ply.cmd.build.ShellScript;
+import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
+import net.ocheyedan.ply.graph.Graph;
+import net.ocheyedan.ply.graph.Vertex;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.Props;
 import net.ocheyedan.ply.props.PropsExt;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -23,6 +28,43 @@ import java.util.concurrent.atomic.AtomicBoolean;
  */
 public final class Exec {
 
+    /**
+     * Guards property resolution, which is not thread-safe, when projects are built concurrently.  Any resolution
+     * of properties done outside of {@link Exec} while another thread may be within {@link #invoke(File, List)} must
+     * hold this lock.
+     */
+    public static final Object RESOLUTION_LOCK = new Object();
+
+    /**
+     * Set once {@link #halt()} has been called.
+     */
+    private static final AtomicBoolean halted = new AtomicBoolean(false);
+
+    /**
+     * The pre-invoked (and possibly running) executions across all concurrent calls to {@link #invoke(File, List)}.
+     */
+    private static final Set<ExecutionWrapper> active = Collections.synchronizedSet(new HashSet<ExecutionWrapper>());
+
+    /**
+     * Kills all active executions and prevents any further executions from being invoked; i.e., to fail-fast when
+     * projects are built concurrently and one has failed.
+     */
+    public static void halt() {
+        halted.set(true);
+        synchronized (active) {
+            for (ExecutionWrapper wrapper : active) {
+                wrapper.execution.kill();
+            }
+        }
+    }
+
+    /**
+     * @return true if {@link #halt()} has been called
+     */
+    static boolean isHalted() {
+        return halted.get();
+    }
+
     /**
      * Invokes all {@code executions}.
      * @param projectPlyDir the {@literal .ply} directory of the project to invoke
@@ -34,33 +76,200 @@ public final class Exec {
         // this provides a consistent view of execution for all scripts.  if a script wants to actually know
         // which directory from which the 'ply' command was invoked, look at 'original.user.dir' environment property.
         File projectRoot = FileUtil.fromParts(projectPlyDir.getPath(), "..");
+        File projectConfigDir = FileUtil.fromParts(projectPlyDir.getPath(), "config");
+        int primerPoolSize, parallelism, lookAhead;
+        synchronized (RESOLUTION_LOCK) {
+            primerPoolSize = getInt("exec.primer.pool", 0, projectConfigDir);
+            parallelism = getInt("exec.parallelism", 0, projectConfigDir);
+            // the number of executions to pre-invoke (i.e., start and pause) while the running execution runs
+            lookAhead = Math.max(1, getInt("exec.lookahead", 1, projectConfigDir));
+            StdinProcessPipe.PIPE.setMode(StdinProcessPipe.Mode.from(Props.get("exec.stdin", Context.named("ply"),
+                    Props.getScope(), projectConfigDir).value()));
+        }
+        PrimerPool primerPool = (primerPoolSize > 0 ? new PrimerPool(primerPoolSize) : null);
+        try {
+            if (hasLanes(executions)) {
+                if (parallelism < 1) {
+                    parallelism = Runtime.getRuntime().availableProcessors();
+                }
+                return invokeConcurrently(executions, projectRoot, primerPool, parallelism);
+            }
+            return invokeSerially(executions, projectRoot, primerPool, lookAhead);
+        } finally {
+            if (primerPool != null) {
+                primerPool.shutdown();
+            }
+        }
+    }
+
+    private static boolean invokeSerially(List<Execution> executions, File projectRoot, PrimerPool primerPool,
+                                          int lookAhead) {
         // track the running and queued callbacks
         ExecutionWrapper running = null;
-        ExecutionWrapper queued = null;
+        LinkedList<ExecutionWrapper> queued = new LinkedList<ExecutionWrapper>();
         for (Execution execution : executions) {
-            // wait for the running task, if any
-            if (!waitFor(running, queued)) {
+            if (halted.get()) {
+                waitFor(running, queued);
                 return false;
             }
-            // the running task has now completed, invoke the queued task
-            running = invoke(queued);
+            if (queued.size() >= lookAhead) {
+                // wait for the running task, if any
+                if (!waitFor(running, queued)) {
+                    return false;
+                }
+                // the running task has now completed, invoke the next queued task
+                running = invoke(queued.removeFirst());
+            }
             // create a new queued task
-            queued = preInvoke(execution, projectRoot);
+            queued.add(preInvoke(execution, projectRoot, primerPool));
         }
         // finish up the running/queued processes
-        if (!waitFor(running, queued)) {
+        while (!queued.isEmpty()) {
+            if (!waitFor(running, queued) || halted.get()) {
+                return false;
+            }
+            running = invoke(queued.removeFirst());
+        }
+        return waitFor(running, queued);
+    }
+
+    /**
+     * Invokes {@code executions} respecting only the dependencies implied by their {@link Execution#lanes}; i.e.,
+     * executions within different lanes of the same {@literal parallel(...)} grouping run concurrently (bounded by
+     * {@code parallelism}) and all others run in declaration order.  Executions are pre-invoked from the calling thread
+     * (property resolution is not thread-safe) and run/waited-upon by a worker.  As each line of a script's output is
+     * printed in one call, output of concurrent executions is interleaved but never within a line.
+     * Upon a failure no further executions are started, those already running are allowed to complete.
+     * @param executions to invoke
+     * @param projectRoot from which to invoke the executions
+     * @param primerPool from which to take already booted processes, may be null
+     * @param parallelism the maximum number of concurrently running executions
+     * @return false if any of the invocations failed for any reason
+     */
+    private static boolean invokeConcurrently(List<Execution> executions, File projectRoot, PrimerPool primerPool,
+                                              int parallelism) {
+        DirectedAcyclicGraph<Integer> graph = createGraph(executions);
+        int[] waitingOn = new int[executions.size()];
+        for (Vertex<Integer> vertex : graph.getVertices()) {
+            for (Vertex<Integer> child : vertex.getChildren()) {
+                waitingOn[child.getValue()]++;
+            }
+        }
+        TreeSet<Integer> ready = new TreeSet<Integer>();
+        for (Vertex<Integer> root : graph.getRootVertices()) {
+            ready.add(root.getValue());
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+        CompletionService<Boolean> completion = new ExecutorCompletionService<Boolean>(workers);
+        Map<Future<Boolean>, Integer> running = new HashMap<Future<Boolean>, Integer>(parallelism);
+        boolean failed = false;
+        try {
+            while (true) {
+                failed = (failed || halted.get());
+                while (!failed && !ready.isEmpty() && (running.size() < parallelism)) {
+                    Integer index = ready.pollFirst();
+                    final ExecutionWrapper wrapper = preInvoke(executions.get(index), projectRoot, primerPool);
+                    running.put(completion.submit(new Callable<Boolean>() {
+                        @Override public Boolean call() throws Exception {
+                            wrapper.invoke();
+                            return waitFor(wrapper, Collections.<ExecutionWrapper>emptyList());
+                        }
+                    }), index);
+                }
+                if (running.isEmpty()) {
+                    break;
+                }
+                Future<Boolean> completed = completion.take();
+                Integer index = running.remove(completed);
+                if (!completed.get()) {
+                    failed = true;
+                    continue;
+                }
+                for (Vertex<Integer> child : graph.getVertex(index).getChildren()) {
+                    if (--waitingOn[child.getValue()] == 0) {
+                        ready.add(child.getValue());
+                    }
+                }
+            }
+            return !failed;
+        } catch (InterruptedException ie) {
+            Output.print(ie);
+            return false;
+        } catch (ExecutionException ee) {
+            Output.print(ee.getCause());
             return false;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * @param executions from which to create the graph
+     * @return a graph of the indices of {@code executions} with an edge from each execution to each later execution
+     *         which depends upon it (@see {@link Execution#isIndependentOf(Execution)})
+     */
+    static DirectedAcyclicGraph<Integer> createGraph(List<Execution> executions) {
+        DirectedAcyclicGraph<Integer> graph = new DirectedAcyclicGraph<Integer>();
+        for (int i = 0; i < executions.size(); i++) {
+            Vertex<Integer> vertex = graph.addVertex(i);
+            for (int j = 0; j < i; j++) {
+                if (!executions.get(i).isIndependentOf(executions.get(j))) {
+                    try {
+                        graph.addEdge(graph.getVertex(j), vertex);
+                    } catch (Graph.CycleException gce) {
+                        throw new AssertionError(gce); // edges only go from earlier to later executions
+                    }
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Translates each of {@code executions} ahead of their invocation (rather than as each is pre-invoked);
+     * @see #handleNonNativeExecutable(Execution, File)
+     * @param executions to translate
+     * @param projectConfigDir the ply configuration directory from which to resolve properties
+     * @return the translated executions
+     */
+    public static List<Execution> translate(List<Execution> executions, File projectConfigDir) {
+        List<Execution> translated = new ArrayList<Execution>(executions.size());
+        synchronized (RESOLUTION_LOCK) {
+            for (Execution execution : executions) {
+                translated.add(handleNonNativeExecutable(execution, projectConfigDir));
+            }
         }
-        running = invoke(queued);
-        return waitFor(running, null);
+        return translated;
     }
 
-    private static ExecutionWrapper preInvoke(Execution execution, File projectRoot) {
+    private static boolean hasLanes(List<Execution> executions) {
+        for (Execution execution : executions) {
+            if (!execution.lanes.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ExecutionWrapper preInvoke(Execution execution, File projectRoot, PrimerPool primerPool) {
         File projectConfigDir = FileUtil.fromParts(projectRoot.getPath(), ".ply", "config");
-        execution = handleNonNativeExecutable(execution, projectConfigDir);
-        long start = System.currentTimeMillis();
-        execution.preInvoke(projectRoot, PropsExt.getPropsForEnv(execution, projectConfigDir, execution.script.scope));
-        return new ExecutionWrapper(execution, start);
+        ExecutionWrapper wrapper;
+        synchronized (RESOLUTION_LOCK) {
+            execution = handleNonNativeExecutable(execution, projectConfigDir);
+            long start = System.currentTimeMillis();
+            Map<String, String> environment = PropsExt.getPropsForEnv(execution, projectConfigDir, execution.script.scope);
+            if (execution.readsEnvironmentFile() && "true".equalsIgnoreCase(Props.get("exec.env.file", Context.named("ply"),
+                    execution.script.scope, projectConfigDir).value())) {
+                environment = PropsExt.getEnvFileHandoff(environment);
+            }
+            execution.preInvoke(projectRoot, environment, primerPool);
+            wrapper = new ExecutionWrapper(execution, projectRoot, start);
+        }
+        active.add(wrapper);
+        if (halted.get()) { // halted while pre-invoking, @see #halt()
+            execution.kill();
+        }
+        return wrapper;
     }
 
     private static ExecutionWrapper invoke(ExecutionWrapper queued) {
@@ -70,14 +279,35 @@ public final class Exec {
         return queued;
     }
 
-    private static boolean waitFor(ExecutionWrapper running, ExecutionWrapper queued) {
-        if (!((running == null) || running.waitFor())) {
-            if (queued != null) {
-                queued.execution.kill();
+    private static boolean waitFor(ExecutionWrapper running, List<ExecutionWrapper> queued) {
+        if (running == null) {
+            return true;
+        }
+        try {
+            if (!running.waitFor()) {
+                for (ExecutionWrapper queuedExecution : queued) {
+                    queuedExecution.execution.kill();
+                    active.remove(queuedExecution);
+                }
+                return false;
             }
-            return false;
+            return true;
+        } finally {
+            active.remove(running);
+        }
+    }
+
+    private static int getInt(String name, int defaultValue, File projectConfigDir) {
+        String value = Props.get(name, Context.named("ply"), Props.getScope(), projectConfigDir).value();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            Output.print("^warn^ Invalid ^b^%s^r^ value [ %s ], defaulting to %d.", name, value, defaultValue);
+            return defaultValue;
         }
-        return true;
     }
 
     /**
@@ -89,6 +319,9 @@ public final class Exec {
      * @return the translated execution.
      */
     private static Execution handleNonNativeExecutable(Execution execution, File configDirectory) {
+        if (execution.getClass() != Execution.class) {
+            return execution; // already translated; i.e., via #translate(List, File)
+        }
         String executable = execution.executionArgs[0];
         if ((execution.script instanceof ShellScript) || executable.endsWith(".sh")) {
             return ShellExecution.createShellExecutable(execution, configDirectory);
@@ -2,12 +2,14 @@ package net.ocheyedan.ply.exec;
 
 import net.ocheyedan.ply.Output;
 import net.ocheyedan.ply.OutputExt;
-import net.ocheyedan.ply.PwdUtil;
 import net.ocheyedan.ply.cmd.build.Script;
 import net.ocheyedan.ply.props.Context;
 
 import java.io.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -23,13 +25,36 @@ import java.util.concurrent.atomic.AtomicReference;
 public class Execution {
 
     /**
-     * A thread-safe pipe to be used as the {@literal stdin} for the {@link Process} created to invoke this execution.
+     * Identifies one member (the {@link #index}) of a {@literal parallel(...)} grouping (the {@link #group}) declared
+     * within an alias.  Executions within different lanes of the same grouping are independent of one another and
+     * may be run concurrently by {@link Exec}.
      */
-    protected static final ThreadLocal<StdinProcessPipe> STDIN_PROCESS_PIPE = new ThreadLocal<StdinProcessPipe>() {
-        @Override protected StdinProcessPipe initialValue() {
-            return new StdinProcessPipe();
+    public static final class Lane {
+
+        public final int group;
+
+        public final int index;
+
+        public Lane(int group, int index) {
+            this.group = group;
+            this.index = index;
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Lane lane = (Lane) o;
+            return (group == lane.group) && (index == lane.index);
         }
-    };
+
+        @Override public int hashCode() {
+            return 31 * group + index;
+        }
+    }
 
     /**
      * A name to use when identifying this execution.
@@ -48,6 +73,12 @@ public class Execution {
      */
     public final String[] executionArgs;
 
+    /**
+     * The {@link Lane} objects, outer-most grouping first, within which this execution was declared.  Empty if this
+     * execution was not declared within a {@literal parallel(...)} grouping.
+     */
+    public final List<Lane> lanes;
+
     /**
      * The {@link ProcessBuilder} which will ultimately creates the {@link Process}.
      * This is typically built within {@link #preInvoke(java.io.File, java.util.Map)}
@@ -57,7 +88,7 @@ public class Execution {
     /**
      * The associated {@link Process} object's stdout.
      */
-    protected final AtomicReference<BufferedReader> processStdout;
+    protected final AtomicReference<Reader> processStdout;
 
     /**
      * The actual {@link Process} created when invoking this execution.  By default, this is set when {@link #invoke(String)}
@@ -66,11 +97,16 @@ public class Execution {
     protected final AtomicReference<Process> process;
 
     public Execution(String name, Script script, String[] executionArgs) {
+        this(name, script, executionArgs, Collections.<Lane>emptyList());
+    }
+
+    public Execution(String name, Script script, String[] executionArgs, List<Lane> lanes) {
         this.name = name;
         this.script = script;
         this.executionArgs = executionArgs;
+        this.lanes = lanes;
         this.processBuilder = new AtomicReference<ProcessBuilder>();
-        this.processStdout = new AtomicReference<BufferedReader>();
+        this.processStdout = new AtomicReference<Reader>();
         this.process = new AtomicReference<Process>();
     }
 
@@ -78,14 +114,43 @@ public class Execution {
         String[] args = new String[this.executionArgs.length + with.length];
         System.arraycopy(this.executionArgs, 0, args, 0, this.executionArgs.length);
         System.arraycopy(with, 0, args, this.executionArgs.length, with.length);
-        return new Execution(name, script, args);
+        return new Execution(name, script, args, lanes);
     }
 
     public Execution with(String executable) {
         String[] args = new String[this.executionArgs.length];
         System.arraycopy(this.executionArgs, 1, args, 1, this.executionArgs.length - 1);
         args[0] = executable;
-        return new Execution(name, this.script, args);
+        return new Execution(name, this.script, args, lanes);
+    }
+
+    /**
+     * @param lane the out-most grouping lane within which this execution has been declared
+     * @return a copy of this execution with {@code lane} prepended to its {@link #lanes}
+     */
+    public Execution within(Lane lane) {
+        List<Lane> lanes = new ArrayList<Lane>(this.lanes.size() + 1);
+        lanes.add(lane);
+        lanes.addAll(this.lanes);
+        return new Execution(name, script, executionArgs, lanes);
+    }
+
+    /**
+     * @param other execution to check
+     * @return true if this execution and {@code other} were declared within different lanes of the same
+     *         {@literal parallel(...)} grouping and so do not depend upon one another.
+     */
+    boolean isIndependentOf(Execution other) {
+        int depth = Math.min(lanes.size(), other.lanes.size());
+        for (int i = 0; i < depth; i++) {
+            Lane lane = lanes.get(i), otherLane = other.lanes.get(i);
+            if (lane.group != otherLane.group) {
+                return false;
+            } else if (lane.index != otherLane.index) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -126,6 +191,25 @@ public class Execution {
         this.processBuilder.set(processBuilder);
     }
 
+    /**
+     * @return true if the invoked process resolves its properties via {@literal ply-util} and so may be handed them
+     *         within an {@link net.ocheyedan.ply.props.EnvironmentFile} rather than as environment variables
+     */
+    boolean readsEnvironmentFile() {
+        return false;
+    }
+
+    /**
+     * Same as {@link #preInvoke(java.io.File, java.util.Map)} but allows implementations to use an already booted
+     * process from {@code primerPool}.  By default the pool is ignored.
+     * @param projectRoot for which to set the root directory for the invoked process
+     * @param supplementalEnvironment environment variables to pass to the invoked process
+     * @param primerPool from which to take an already booted process, may be null
+     */
+    void preInvoke(File projectRoot, Map<String, String> supplementalEnvironment, PrimerPool primerPool) {
+        preInvoke(projectRoot, supplementalEnvironment);
+    }
+
     /**
      * Invokes the execution. Or in the case of execution implementations which implement
      * {@link #preInvoke(java.io.File, java.util.Map)}, starts the process.
@@ -138,9 +222,9 @@ public class Execution {
         this.process.set(process);
 
         // take the parent's input and pipe to the child's output
-        STDIN_PROCESS_PIPE.get().startPipe(process.getOutputStream());
+        StdinProcessPipe.PIPE.attach(process.getOutputStream());
         // capture the child's input for output on parent process
-        this.processStdout.set(new BufferedReader(new InputStreamReader(process.getInputStream())));
+        this.processStdout.set(new InputStreamReader(process.getInputStream()));
     }
 
     /**
@@ -150,30 +234,92 @@ public class Execution {
      */
     int waitFor(String outputScriptName) throws IOException, InterruptedException {
         // take the child's input and reformat for output on parent process
-        String processStdoutLine;
-        while ((processStdoutLine = processStdout.get().readLine()) != null) {
-            PwdUtil.Request request = PwdUtil.isPwdRequest(processStdoutLine);  // determine if the line is a password request
-            OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, request.getLine());
-            if (!request.isPwd()) {
-                continue;
-            }
-            // child-process is requesting a password-read; handle via {@link System#console()} if available
-            Console console = System.console();
-            char[] pwd;
-            if (console != null) {
-                pwd = console.readPassword();
-            } else { // no console available, simply read (potentially with echo-on)
-                BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-                pwd = reader.readLine().toCharArray();
+        OutputPump pump = new OutputPump(processStdout.get(), outputScriptName);
+        while (pump.pump()) {
+            // child-process is requesting a password-read; if the stdin pipe is reading System.in it alone may read
+            // the password, otherwise handle via {@link System#console()} if available
+            char[] pwd = StdinProcessPipe.PIPE.readLine();
+            if (pwd == null) {
+                Console console = System.console();
+                if (console != null) {
+                    pwd = console.readPassword();
+                } else { // no console available, simply read (potentially with echo-on)
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+                    pwd = reader.readLine().toCharArray();
+                }
             }
-            STDIN_PROCESS_PIPE.get().write(pwd);
+            StdinProcessPipe.PIPE.write(process.get().getOutputStream(), pwd);
             Arrays.fill(pwd, ' ');
         }
         int result = process.get().waitFor();
-        STDIN_PROCESS_PIPE.get().pausePipe();
+        StdinProcessPipe.PIPE.detach(process.get().getOutputStream());
         return result;
     }
 
+    /**
+     * Writes this execution, less its {@link #script}, to {@code output}.
+     * @param output to which to write
+     * @throws IOException if {@code output} could not be written to
+     * @see #read(DataInputStream, Script)
+     */
+    public final void write(DataOutputStream output) throws IOException {
+        output.writeUTF(getClass().getSimpleName());
+        PrimerDaemon.writeString(output, name);
+        output.writeInt(executionArgs.length);
+        for (String executionArg : executionArgs) {
+            PrimerDaemon.writeString(output, executionArg);
+        }
+        output.writeInt(lanes.size());
+        for (Lane lane : lanes) {
+            output.writeInt(lane.group);
+            output.writeInt(lane.index);
+        }
+        writeState(output);
+    }
+
+    /**
+     * Writes the state, beyond that of this class, needed to recreate this execution.
+     * @param output to which to write
+     * @throws IOException if {@code output} could not be written to
+     */
+    void writeState(DataOutputStream output) throws IOException { }
+
+    /**
+     * @param input from which to read an execution written by {@link #write(DataOutputStream)}
+     * @param script the execution's script
+     * @return the read execution
+     * @throws IOException if {@code input} could not be read or is not an execution
+     */
+    public static Execution read(DataInputStream input, Script script) throws IOException {
+        String type = input.readUTF();
+        String name = PrimerDaemon.readString(input);
+        String[] executionArgs = new String[input.readInt()];
+        for (int i = 0; i < executionArgs.length; i++) {
+            executionArgs[i] = PrimerDaemon.readString(input);
+        }
+        int size = input.readInt();
+        List<Lane> lanes = new ArrayList<Lane>(size);
+        for (int i = 0; i < size; i++) {
+            lanes.add(new Lane(input.readInt(), input.readInt()));
+        }
+        if (Execution.class.getSimpleName().equals(type)) {
+            return new Execution(name, script, executionArgs, lanes);
+        } else if (ShellExecution.class.getSimpleName().equals(type)) {
+            return new ShellExecution(name, script, executionArgs, lanes);
+        } else if (JvmExecution.class.getSimpleName().equals(type)) {
+            boolean usingJvmPrimer = input.readBoolean();
+            boolean usingDaemon = input.readBoolean();
+            return new JvmExecution(name, script, executionArgs, lanes, usingJvmPrimer, usingDaemon,
+                                    (usingJvmPrimer ? JvmExecution.Generic.from(executionArgs) : null));
+        } else if (InProcessExecution.class.getSimpleName().equals(type)) {
+            JvmExecution.Generic generic = JvmExecution.Generic.from(executionArgs);
+            if (generic != null) {
+                return new InProcessExecution(name, script, executionArgs, lanes, generic);
+            }
+        }
+        throw new IOException(String.format("Cannot read execution of type %s", type));
+    }
+
     /**
      * Kills the associated {@link Process} if any.
      */
@@ -2,6 +2,7 @@ package net.ocheyedan.ply.exec;
 
 import net.ocheyedan.ply.Output;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -20,6 +21,11 @@ final class ExecutionWrapper {
      */
     private final long start;
 
+    /**
+     * The epoch-time at which the {@link Execution} was given the go-ahead (via {@link #invoke()}).
+     */
+    private volatile long invokedAt;
+
     /**
      * The long-form script name (i.e., might include the full {@literal JVM} command-line execution).
      */
@@ -35,13 +41,19 @@ final class ExecutionWrapper {
      */
     final Execution execution;
 
+    /**
+     * The root directory of the project for which {@link #execution} is invoked.
+     */
+    private final File projectRoot;
+
     /**
      * Whether invocation produced an error.
      */
     private final AtomicBoolean errorOnInvoke;
 
-    ExecutionWrapper(Execution execution, long start) {
+    ExecutionWrapper(Execution execution, File projectRoot, long start) {
         this.execution = execution;
+        this.projectRoot = projectRoot;
         this.start = start;
         this.scriptName = Output.isDebug() ? buildScriptName(execution.executionArgs) : "";
         this.outputScriptName = buildExecutionName(execution);
@@ -52,6 +64,7 @@ final class ExecutionWrapper {
      * Wraps error handling around calls to {@link Execution#invoke(String)}
      */
     void invoke() {
+        invokedAt = System.currentTimeMillis();
         try {
             execution.invoke(scriptName);
         } catch (IOException ioe) {
@@ -68,13 +81,18 @@ final class ExecutionWrapper {
      */
     boolean waitFor() {
         if (errorOnInvoke.get()) {
+            Timeline.execution(outputScriptName, projectRoot, start, invokedAt, System.currentTimeMillis(), -1);
             return false;
         }
+        int result = -1;
         try {
-            int result = execution.waitFor(outputScriptName);
-            printTime(start, outputScriptName);
+            result = execution.waitFor(outputScriptName);
+            printTime(start, invokedAt, outputScriptName);
             if (result == 0) {
                 return true;
+            } else if (Exec.isHalted()) {
+                Output.print("^warn^ script ^green^%s^r^ halted.", execution.script.unparsedName);
+                return false;
             }
             Output.print("^error^ script ^green^%s^r^ failed [ exit code = %d ].", execution.script.unparsedName, result);
         } catch (IOException ioe) {
@@ -82,14 +100,20 @@ final class ExecutionWrapper {
             Output.print(ioe);
         } catch (InterruptedException ie) {
             Output.print(ie);
+        } finally {
+            Timeline.execution(outputScriptName, projectRoot, start, invokedAt, System.currentTimeMillis(), result);
         }
         return false;
     }
 
-    private static float printTime(long start, String script) {
+    private static float printTime(long start, long invokedAt, String script) {
         long end = System.currentTimeMillis();
         float seconds = ((end - start) / 1000.0f);
-        Output.print("^dbug^ executed ^b^%s^r^ in ^b^%.3f seconds^r^.", script, seconds);
+        // primed is the time between starting the process and giving it the go-ahead (overlapped with prior executions)
+        float primedSeconds = ((invokedAt - start) / 1000.0f);
+        float ranSeconds = ((end - invokedAt) / 1000.0f);
+        Output.print("^dbug^ executed ^b^%s^r^ in ^b^%.3f seconds^r^ [ primed %.3f seconds, ran %.3f seconds ].", script,
+                seconds, primedSeconds, ranSeconds);
         return seconds;
     }
 
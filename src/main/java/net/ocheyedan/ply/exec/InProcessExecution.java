@@ -0,0 +1,375 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.cmd.build.Script;
+
+import java.io.*;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.Permission;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An execution of a trusted, bundled {@literal JVM} script within the ply process itself.  The script's
+ * main-class is loaded from its own (child-first) class-loader so that its static state (i.e., {@literal Output}
+ * and {@literal Props}) is isolated from ply's and from other scripts'.  The properties which would have been exported
+ * as environment variables are handed to the script's {@literal Props} via {@literal Props#useEnvironment(Map)},
+ * calls to {@link System#exit(int)} from the script are intercepted and become the exit code and stdout/stderr
+ * written by the script's threads is prefixed exactly as {@link Execution#waitFor(String)} would.  As with a forked
+ * {@literal JVM}, the execution only completes once all of the script's non-daemon threads have.
+ *
+ * Scripts are run in-process iff {@literal ply.exec.mode} is {@literal inprocess} and the script's jar is listed
+ * within {@literal ply.exec.inprocess.scripts}.  While the script runs {@link System#out}, {@link System#err} and the
+ * security-manager of the whole process are replaced; output and exit calls from threads outside of the script's
+ * thread-group (ply's own, the stdin pipe's, etc.) pass through untouched, but no other execution may run
+ * concurrently and so scripts which could (within a {@literal parallel(...)} grouping or when building submodules
+ * concurrently) are always forked (@see {@link JvmExecution}).
+ */
+final class InProcessExecution extends Execution {
+
+    /**
+     * How long threads of the script are given to stop, once interrupted, after the script has called
+     * {@link System#exit(int)}.
+     */
+    private static final long EXIT_GRACE_MILLIS = 5000L;
+
+    /**
+     * Thrown (by {@link ExitTrap}) in lieu of exiting the {@literal JVM}.
+     */
+    @SuppressWarnings("serial")
+    private static final class ExitTrapped extends SecurityException {
+        private final int exitCode;
+        private ExitTrapped(int exitCode) {
+            super(String.format("System.exit(%d) intercepted", exitCode));
+            this.exitCode = exitCode;
+        }
+    }
+
+    /**
+     * Intercepts {@link System#exit(int)} calls from threads within {@link #group}; all other checks are permitted.
+     */
+    private static final class ExitTrap extends SecurityManager {
+        private final ThreadGroup group;
+        private final AtomicReference<Integer> exitCode;
+        private ExitTrap(ThreadGroup group, AtomicReference<Integer> exitCode) {
+            this.group = group;
+            this.exitCode = exitCode;
+        }
+        @Override public void checkExit(int status) {
+            if (group.parentOf(Thread.currentThread().getThreadGroup())) {
+                exitCode.compareAndSet(null, status);
+                throw new ExitTrapped(status);
+            }
+        }
+        @Override public void checkPermission(Permission perm) { }
+        @Override public void checkPermission(Permission perm, Object context) { }
+    }
+
+    /**
+     * Line-buffers output from threads within {@link #group} and prints it via
+     * {@link OutputExt#printFromExec(String, Object...)}; output from any other thread (i.e., ply itself) is passed
+     * through to the original stream.
+     */
+    private static final class Capture extends OutputStream {
+        private final ThreadGroup group;
+        private final PrintStream original;
+        private final String outputScriptName;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        private final ThreadLocal<Boolean> forwarding = new ThreadLocal<Boolean>();
+        private Capture(ThreadGroup group, PrintStream original, String outputScriptName) {
+            this.group = group;
+            this.original = original;
+            this.outputScriptName = outputScriptName;
+        }
+        private boolean capturing() {
+            return (forwarding.get() == null) && group.parentOf(Thread.currentThread().getThreadGroup());
+        }
+        @Override public void write(int data) throws IOException {
+            if (!capturing()) {
+                original.write(data);
+                return;
+            }
+            synchronized (line) {
+                if (data == '\n') {
+                    forward();
+                } else {
+                    line.write(data);
+                }
+            }
+        }
+        @Override public void write(byte[] buffer, int offset, int length) throws IOException {
+            if (!capturing()) {
+                original.write(buffer, offset, length);
+                return;
+            }
+            synchronized (line) {
+                for (int i = offset; i < (offset + length); i++) {
+                    if (buffer[i] == '\n') {
+                        forward();
+                    } else {
+                        line.write(buffer[i]);
+                    }
+                }
+            }
+        }
+        @Override public void flush() throws IOException {
+            original.flush();
+        }
+        private void forward() {
+            String value = line.toString();
+            if (value.endsWith("\r")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            line.reset();
+            forwarding.set(Boolean.TRUE);
+            try {
+                OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, value);
+            } finally {
+                forwarding.remove();
+            }
+        }
+        private void drain() {
+            synchronized (line) {
+                if (line.size() > 0) {
+                    forward();
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads classes from the script's own class-path before consulting the parent so that ply's copies of shared
+     * libraries (i.e., {@literal ply-util}) are not used by the script.
+     */
+    private static final class ChildFirstClassLoader extends URLClassLoader {
+        private ChildFirstClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+        @Override protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            Class<?> loaded = findLoadedClass(name);
+            if ((loaded == null) && !name.startsWith("java.")) {
+                try {
+                    loaded = findClass(name);
+                } catch (ClassNotFoundException cnfe) {
+                    // fall-through to parent
+                }
+            }
+            if (loaded == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) {
+                resolveClass(loaded);
+            }
+            return loaded;
+        }
+        @Override public URL getResource(String name) {
+            URL resource = findResource(name);
+            return (resource == null ? super.getResource(name) : resource);
+        }
+    }
+
+    /**
+     * @return true if {@link System#exit(int)} can be intercepted within this {@literal JVM}.
+     */
+    static boolean isSupported() {
+        try {
+            System.setSecurityManager(System.getSecurityManager());
+            return true;
+        } catch (UnsupportedOperationException uoe) {
+            return false;
+        } catch (SecurityException se) {
+            return false;
+        }
+    }
+
+    /**
+     * @param projectConfigDir of the project being built
+     * @return true if scripts of the project at {@code projectConfigDir} can be run in-process; i.e., the script's
+     *         working directory would match ply's (which, unlike the environment, cannot be changed per-script).
+     */
+    static boolean isApplicable(File projectConfigDir) {
+        String projectRoot = FileUtil.getCanonicalPath(FileUtil.fromParts(projectConfigDir.getPath(), "..", ".."));
+        String workingDir = FileUtil.getCanonicalPath(new File(System.getProperty("user.dir")));
+        return projectRoot.equals(workingDir);
+    }
+
+    private final JvmExecution.Generic generic;
+
+    private final AtomicReference<ClassLoader> loader;
+
+    private final AtomicReference<Map<String, String>> environment;
+
+    private final AtomicReference<Thread> runner;
+
+    private final AtomicReference<Integer> exitCode;
+
+    private final AtomicInteger uncaught;
+
+    InProcessExecution(String name, Script script, String[] executionArgs, List<Lane> lanes,
+                       JvmExecution.Generic generic) {
+        super(name, script, executionArgs, lanes);
+        this.generic = generic;
+        this.loader = new AtomicReference<ClassLoader>();
+        this.environment = new AtomicReference<Map<String, String>>();
+        this.runner = new AtomicReference<Thread>();
+        this.exitCode = new AtomicReference<Integer>();
+        this.uncaught = new AtomicInteger(0);
+    }
+
+    /**
+     * Creates the script's class-loader and pre-loads its main-class; the in-process equivalent of booting a
+     * {@literal JvmPrimer}.
+     * @param projectRoot for which to set the root directory for the invoked process
+     * @param supplementalEnvironment the properties to give to the script
+     */
+    @Override void preInvoke(File projectRoot, Map<String, String> supplementalEnvironment) {
+        this.environment.set(supplementalEnvironment);
+        List<String> classpath = generic.classpath;
+        URL[] urls = new URL[classpath.size()];
+        try {
+            for (int i = 0; i < urls.length; i++) {
+                urls[i] = new File(classpath.get(i)).toURI().toURL();
+            }
+            ClassLoader loader = new ChildFirstClassLoader(urls, InProcessExecution.class.getClassLoader());
+            Class.forName(generic.mainClass, false, loader);
+            this.loader.set(loader);
+        } catch (Exception e) {
+            Output.print("^dbug^ could not pre-load %s: %s", generic.mainClass, e.getMessage());
+        }
+    }
+
+    @Override void invoke(final String scriptName) throws IOException {
+        Output.print("^dbug^ invoking in-process %s", scriptName);
+        final ClassLoader loader = this.loader.get();
+        if (loader == null) {
+            throw new IOException(String.format("Could not load main-class %s", generic.mainClass));
+        }
+        final String[] args = generic.args.toArray(new String[generic.args.size()]);
+        ThreadGroup group = new ThreadGroup(String.format("ply-inprocess-%s", name)) {
+            @Override public void uncaughtException(Thread thread, Throwable throwable) {
+                if (!(throwable instanceof ExitTrapped)) { // exit-code already recorded by the ExitTrap
+                    super.uncaughtException(thread, throwable);
+                }
+            }
+        };
+        Thread thread = new Thread(group, new Runnable() {
+            @Override public void run() {
+                try {
+                    Class<?> props = Class.forName("net.ocheyedan.ply.props.Props", true, loader);
+                    props.getMethod("useEnvironment", Map.class).invoke(null, environment.get());
+                } catch (ClassNotFoundException cnfe) {
+                    // script doesn't use ply-util; nothing to hand-off
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                try {
+                    Class<?> mainClass = Class.forName(generic.mainClass, true, loader);
+                    Method method = mainClass.getMethod("main", String[].class);
+                    method.invoke(null, new Object[] { args });
+                } catch (InvocationTargetException ite) {
+                    if (!(ite.getTargetException() instanceof ExitTrapped)) {
+                        uncaught.incrementAndGet();
+                        ite.getTargetException().printStackTrace();
+                    }
+                } catch (ExitTrapped et) {
+                    // exit-code already recorded by the ExitTrap
+                } catch (Exception e) {
+                    uncaught.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }
+        }, String.format("ply-inprocess-%s-main", name));
+        thread.setContextClassLoader(loader);
+        this.runner.set(thread);
+    }
+
+    @Override int waitFor(String outputScriptName) throws IOException, InterruptedException {
+        // System.out/err and the security-manager are global; concurrent in-process executions must take turns
+        synchronized (InProcessExecution.class) {
+            return waitForExclusively(outputScriptName);
+        }
+    }
+
+    private int waitForExclusively(String outputScriptName) throws InterruptedException {
+        Thread thread = runner.get();
+        ThreadGroup group = thread.getThreadGroup();
+        PrintStream stdout = System.out;
+        PrintStream stderr = System.err;
+        SecurityManager securityManager = System.getSecurityManager();
+        Capture capture = new Capture(group, stdout, outputScriptName);
+        PrintStream captured = new PrintStream(capture, true);
+        System.setOut(captured);
+        System.setErr(captured);
+        System.setSecurityManager(new ExitTrap(group, exitCode));
+        boolean stopped;
+        try {
+            thread.start();
+            thread.join();
+            stopped = awaitThreads(group);
+        } finally {
+            System.setSecurityManager(securityManager);
+            capture.drain();
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        Integer exitCode = this.exitCode.get();
+        if (!stopped) {
+            Output.print("^error^ Threads of ^b^%s^r^ did not stop after it exited; failing the execution.", outputScriptName);
+            return ((exitCode != null) && (exitCode != 0) ? exitCode : 1);
+        }
+        return (exitCode != null ? exitCode : (uncaught.get() > 0 ? 1 : 0));
+    }
+
+    /**
+     * Waits, as the {@literal JVM} would before exiting, for the non-daemon threads started by the script.  Once the
+     * script has called {@link System#exit(int)} (which would have ended all of its threads) any which remain are
+     * interrupted and given {@link #EXIT_GRACE_MILLIS} to stop.
+     * @param group of the script's threads
+     * @return true if all the non-daemon threads of the script have stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean awaitThreads(ThreadGroup group) throws InterruptedException {
+        long interruptedAt = -1L;
+        while (true) {
+            List<Thread> running = getNonDaemonThreads(group);
+            if (running.isEmpty()) {
+                return true;
+            }
+            if ((interruptedAt == -1L) && (exitCode.get() != null)) {
+                group.interrupt();
+                interruptedAt = System.currentTimeMillis();
+            } else if ((interruptedAt != -1L) && ((System.currentTimeMillis() - interruptedAt) > EXIT_GRACE_MILLIS)) {
+                return false;
+            }
+            running.get(0).join(100L);
+        }
+    }
+
+    private static List<Thread> getNonDaemonThreads(ThreadGroup group) {
+        Thread[] threads = new Thread[group.activeCount() + 16];
+        int count = group.enumerate(threads, true);
+        List<Thread> nonDaemon = new ArrayList<Thread>(count);
+        for (int i = 0; i < count; i++) {
+            if (threads[i].isAlive() && !threads[i].isDaemon()) {
+                nonDaemon.add(threads[i]);
+            }
+        }
+        return nonDaemon;
+    }
+
+    @Override void kill() {
+        Thread thread = runner.get();
+        if (thread != null) {
+            thread.getThreadGroup().interrupt();
+        }
+    }
+
+}
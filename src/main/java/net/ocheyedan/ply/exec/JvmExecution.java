@@ -29,6 +29,100 @@ import java.util.jar.Manifest;
  */
 final class JvmExecution extends Execution {
 
+    /**
+     * The {@literal JvmPrimer} wrapped execution decomposed into a generic {@literal JVM} command (without a main-class
+     * or class-path) and the class-path, main-class and arguments to send to it at go-time.
+     * @see PrimerPool
+     */
+    static final class Generic {
+
+        private static final String JVM_PRIMER = "net.ocheyedan.ply.JvmPrimer";
+
+        /**
+         * @param executionArgs of a {@literal JvmPrimer} wrapped execution
+         * @return the decomposed {@code executionArgs} or null if {@code executionArgs} doesn't use {@literal JvmPrimer}
+         *         with a static class-path which includes the {@literal ply-jvm-primer} jar.
+         */
+        static Generic from(String[] executionArgs) {
+            int primerIndex = Arrays.asList(executionArgs).indexOf(JVM_PRIMER);
+            if ((primerIndex == -1) || ((primerIndex + 1) >= executionArgs.length)) {
+                return null;
+            }
+            List<String> command = new ArrayList<String>(primerIndex + 3);
+            String classpath = null;
+            for (int i = 0; i < primerIndex; i++) {
+                String arg = executionArgs[i];
+                if (arg.startsWith("-Xbootclasspath/a:")) {
+                    classpath = arg.substring("-Xbootclasspath/a:".length());
+                } else if (("-cp".equals(arg) || "-classpath".equals(arg)) && ((i + 1) < primerIndex)) {
+                    classpath = executionArgs[++i];
+                } else {
+                    command.add(arg);
+                }
+            }
+            if (classpath == null) {
+                return null;
+            }
+            List<String> classpathEntries = new ArrayList<String>();
+            String primerEntry = null;
+            for (String entry : classpath.split(File.pathSeparator)) {
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                classpathEntries.add(entry);
+                if (new File(entry).getName().startsWith("ply-jvm-primer")) {
+                    primerEntry = entry;
+                }
+            }
+            if (primerEntry == null) {
+                return null;
+            }
+            command.add("-cp");
+            command.add(primerEntry);
+            command.add(JVM_PRIMER);
+            List<String> args = new ArrayList<String>(executionArgs.length - primerIndex - 2);
+            args.addAll(Arrays.asList(executionArgs).subList(primerIndex + 2, executionArgs.length));
+            return new Generic(command, classpathEntries, executionArgs[primerIndex + 1], args);
+        }
+
+        final List<String> command;
+
+        final List<String> classpath;
+
+        final String mainClass;
+
+        final List<String> args;
+
+        private Generic(List<String> command, List<String> classpath, String mainClass, List<String> args) {
+            this.command = command;
+            this.classpath = classpath;
+            this.mainClass = mainClass;
+            this.args = args;
+        }
+
+        PrimerDaemon.Spec spec(ProcessBuilder processBuilder) {
+            return new PrimerDaemon.Spec(processBuilder.directory(), command,
+                    new HashMap<String, String>(processBuilder.environment()));
+        }
+
+        /**
+         * Sends the class-path, main-class and arguments to the generic {@literal JvmPrimer} process' stdin.
+         */
+        void write(OutputStream processStdin) throws IOException {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(processStdin));
+            output.writeInt(classpath.size());
+            for (String entry : classpath) {
+                PrimerDaemon.writeString(output, entry);
+            }
+            PrimerDaemon.writeString(output, mainClass);
+            output.writeInt(args.size());
+            for (String arg : args) {
+                PrimerDaemon.writeString(output, arg);
+            }
+            output.flush();
+        }
+    }
+
     /**
      * Translates {@code execution#scriptArgs[0]} into an executable statement for a JVM invoker.
      * The whole command array needs to be processed as parameters to the JVM need to be inserted
@@ -37,7 +131,7 @@ final class JvmExecution extends Execution {
      * @param configDirectory the ply configuration directory from which to resolve properties
      * @return the translated execution
      */
-    static JvmExecution createJarExecutable(Execution execution, File configDirectory) {
+    static Execution createJarExecutable(Execution execution, File configDirectory) {
         String classpath = null;
         AtomicReference<String> mainClass = new AtomicReference<String>();
         AtomicBoolean staticClasspath = new AtomicBoolean(false);
@@ -70,7 +164,14 @@ final class JvmExecution extends Execution {
         }
         System.arraycopy(execution.executionArgs, 1, newCmdArray, options.length + classpathLength + propertyLength + 1,
                 execution.executionArgs.length - 1);
-        return new JvmExecution(execution.name, execution.script, newCmdArray, containsJvmPrimer.get());
+        boolean usingDaemon = containsJvmPrimer.get()
+                && "true".equalsIgnoreCase(Props.get("daemon", Context.named("ply"), execution.script.scope, configDirectory).value());
+        Generic generic = (containsJvmPrimer.get() ? Generic.from(newCmdArray) : null);
+        if ((generic != null) && isInProcess(execution, configDirectory)) {
+            return new InProcessExecution(execution.name, execution.script, newCmdArray, execution.lanes, generic);
+        }
+        return new JvmExecution(execution.name, execution.script, newCmdArray, execution.lanes, containsJvmPrimer.get(),
+                                usingDaemon, generic);
     }
 
     /**
@@ -89,7 +190,7 @@ final class JvmExecution extends Execution {
             Output.print("^error^ Cannot execute clojure script ^b^%s^r^ as the ^b^clojure.home^r^ property was not set within the ^b^scripts-clj^r^ context.", execution.executionArgs[0]);
             throw new SystemExit(1);
         }
-        JvmExecution jarExec = createJarExecutable(execution.with(clojureJar), configDirectory);
+        Execution jarExec = createJarExecutable(execution.with(clojureJar), configDirectory);
         // now augment the jar exec with the 'clojure.main' and the script passed in
         String[] args = jarExec.executionArgs;
         String[] clojureArgs = new String[args.length + 2];
@@ -99,7 +200,7 @@ final class JvmExecution extends Execution {
         }
         clojureArgs[args.length] = "clojure.main";
         clojureArgs[args.length + 1] = execution.executionArgs[0];
-        return new JvmExecution(jarExec.name, jarExec.script, clojureArgs, false);
+        return new JvmExecution(jarExec.name, jarExec.script, clojureArgs, jarExec.lanes, false, false, null);
     }
 
     /**
@@ -154,6 +255,61 @@ final class JvmExecution extends Execution {
         }
     }
 
+    /**
+     * @param execution to check
+     * @param configDirectory the ply configuration directory from which to resolve properties
+     * @return true if {@literal ply.exec.mode} is {@literal inprocess} and {@code execution}'s jar is listed within
+     *         {@literal ply.exec.inprocess.scripts} and the project is able to run scripts in-process.  As in-process
+     *         executions replace the process-wide stdout, stderr and security-manager while running, an execution which
+     *         may run concurrently with any other (one within a {@literal parallel(...)} grouping or any execution
+     *         when submodules are built concurrently, i.e. {@literal -j}) is always forked.
+     */
+    private static boolean isInProcess(Execution execution, File configDirectory) {
+        Context plyContext = Context.named("ply");
+        if (!"inprocess".equals(Props.get("exec.mode", plyContext, execution.script.scope, configDirectory).value())) {
+            return false;
+        }
+        String executable = new File(execution.executionArgs[0]).getName();
+        String scripts = Props.get("exec.inprocess.scripts", plyContext, execution.script.scope, configDirectory).value();
+        if (!Arrays.asList(scripts.split(" ")).contains(executable)) {
+            return false;
+        }
+        if (!execution.lanes.isEmpty()) {
+            Output.print("^dbug^ not running %s in-process as it may run concurrently within a parallel grouping.", executable);
+            return false;
+        }
+        if (getSubmodulesParallelism(execution, configDirectory) > 1) {
+            Output.print("^dbug^ not running %s in-process as submodules are built concurrently.", executable);
+            return false;
+        }
+        if (!InProcessExecution.isApplicable(configDirectory)) {
+            Output.print("^dbug^ not running %s in-process as ply was not invoked from the project directory.", executable);
+            return false;
+        }
+        if (!InProcessExecution.isSupported()) {
+            Output.print("^dbug^ not running %s in-process as this JVM does not allow intercepting System.exit.", executable);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the value of {@literal ply.submodules.parallelism} where {@literal 0} (or less) is translated to the
+     *         number of available processors and an invalid value to {@literal 1} (as when building).
+     */
+    private static int getSubmodulesParallelism(Execution execution, File configDirectory) {
+        String value = Props.get("submodules.parallelism", Context.named("ply"), execution.script.scope, configDirectory).value();
+        if (value.isEmpty()) {
+            return 1;
+        }
+        try {
+            int parallelism = Integer.parseInt(value);
+            return (parallelism < 1 ? Runtime.getRuntime().availableProcessors() : parallelism);
+        } catch (NumberFormatException nfe) {
+            return 1;
+        }
+    }
+
     /**
      * Retrieves the jvm options for {@code execution} or the default options if none have been specified.
      * @param configDirectory the ply configuration directory from which to resolve properties
@@ -191,24 +347,71 @@ final class JvmExecution extends Execution {
      */
     private final boolean usingJvmPrimer;
 
-    JvmExecution(String name, Script script, String[] executionArgs, boolean usingJvmPrimer) {
-        super(name, script, executionArgs);
+    /**
+     * True to indicate that the {@literal JVM} process should be handed off to a running {@link PrimerDaemon} (which
+     * may already have a warm process for this execution), false otherwise.
+     */
+    private final boolean usingDaemon;
+
+    /**
+     * The generic decomposition of this execution or null if this execution cannot be run by a generic
+     * {@literal JvmPrimer} process.
+     */
+    private final Generic generic;
+
+    /**
+     * True if the {@link #process} was taken from a {@link PrimerPool} and so needs to be sent {@link #generic}
+     * upon {@link #invoke(String)}.
+     */
+    private final AtomicBoolean usingGenericProcess;
+
+    JvmExecution(String name, Script script, String[] executionArgs, List<Lane> lanes, boolean usingJvmPrimer,
+                 boolean usingDaemon, Generic generic) {
+        super(name, script, executionArgs, lanes);
         this.usingJvmPrimer = usingJvmPrimer;
+        this.usingDaemon = usingDaemon;
+        this.generic = generic;
+        this.usingGenericProcess = new AtomicBoolean(false);
+    }
+
+    @Override void writeState(DataOutputStream output) throws IOException {
+        output.writeBoolean(usingJvmPrimer);
+        output.writeBoolean(usingDaemon);
+    }
+
+    /**
+     * @return true if {@link #usingJvmPrimer} as then the script is a jar script started as configured by ply
+     */
+    @Override boolean readsEnvironmentFile() {
+        return usingJvmPrimer;
+    }
+
+    @Override void preInvoke(File projectRoot, Map<String, String> supplementalEnvironment) {
+        preInvoke(projectRoot, supplementalEnvironment, null);
     }
 
     /**
      * Override to start the {@literal JVM} process, pausing it until the {@link #invoke(String)} is called.
-     * Note this overridden behavior only happens if {@link #usingJvmPrimer} is true.
+     * Note this overridden behavior only happens if {@link #usingJvmPrimer} is true.  The process is, in order of
+     * preference, handed off to the {@link PrimerDaemon}, taken from {@code primerPool} or started directly.
      * @param projectRoot for which to set the root directory for the invoked process
      * @param supplementalEnvironment environment variables to pass to the invoked process
+     * @param primerPool from which to take an already booted generic process, may be null
      */
-    @Override void preInvoke(File projectRoot, Map<String, String> supplementalEnvironment) {
+    @Override void preInvoke(File projectRoot, Map<String, String> supplementalEnvironment, PrimerPool primerPool) {
         super.preInvoke(projectRoot, supplementalEnvironment);
         if (!usingJvmPrimer) {
             return;
         }
         try {
-            Process process = processBuilder.get().start();
+            Process process = (usingDaemon ? PrimerDaemon.start(processBuilder.get()) : null);
+            if ((process == null) && (primerPool != null) && (generic != null)) {
+                process = primerPool.take(generic.spec(processBuilder.get()));
+                usingGenericProcess.set(process != null);
+            }
+            if (process == null) {
+                process = processBuilder.get().start();
+            }
             this.process.set(process);
         } catch (IOException ioe) {
             this.process.set(null); // null out, reverting to standard execution
@@ -222,11 +425,14 @@ final class JvmExecution extends Execution {
             Output.print("^dbug^ invoking %s", scriptName);
             // send the control character to the JVM
             process.get().getOutputStream().write(0xb);
+            if (usingGenericProcess.get()) {
+                generic.write(process.get().getOutputStream());
+            }
             process.get().getOutputStream().flush();
             // take the parent's input and pipe to the child's output
-            STDIN_PROCESS_PIPE.get().startPipe(process.get().getOutputStream());
+            StdinProcessPipe.PIPE.attach(process.get().getOutputStream());
             // capture the child's input for output on parent process
-            this.processStdout.set(new BufferedReader(new InputStreamReader(process.get().getInputStream())));
+            this.processStdout.set(new InputStreamReader(process.get().getInputStream()));
         }
     }
 
@@ -0,0 +1,130 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.PwdUtil;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Prints the output of an execution's process.  The output is read in large chunks, split into lines (terminated, as
+ * with {@link java.io.BufferedReader#readLine()}, by {@literal \n}, {@literal \r} or {@literal \r\n}) and each line is
+ * prefixed and term-code resolved into one buffer which is written to {@link System#out} once per chunk read (rather
+ * than once per line).  Output is therefore printed as soon as it is available but scripts which output many lines
+ * at once (i.e., the compiler or tests) do so at the cost of a few writes.
+ */
+final class OutputPump {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    /**
+     * The size after which the buffer is written even if the chunk has not been fully consumed.
+     */
+    private static final int FLUSH_THRESHOLD = 4 * CHUNK_SIZE;
+
+    private final Reader processStdout;
+
+    private final String outputScriptName;
+
+    /**
+     * The resolved {@literal [^green^outputScriptName^r^] } prefix.
+     */
+    private final String prefix;
+
+    private final char[] chunk;
+
+    private final StringBuilder line;
+
+    private final StringBuilder buffer;
+
+    private int offset;
+
+    private int length;
+
+    /**
+     * True if the last line ended with {@literal \r}, in which case a subsequent {@literal \n} is skipped.
+     */
+    private boolean skipLineFeed;
+
+    OutputPump(Reader processStdout, String outputScriptName) {
+        this.processStdout = processStdout;
+        this.outputScriptName = outputScriptName;
+        this.prefix = OutputExt.resolve("[^green^%s^r^] ", new Object[] { outputScriptName });
+        this.chunk = new char[CHUNK_SIZE];
+        this.line = new StringBuilder(256);
+        this.buffer = new StringBuilder(2 * CHUNK_SIZE);
+    }
+
+    /**
+     * Prints the process' output until either the process requests a password (@see {@link PwdUtil}) or the output
+     * ends.  In the former case this method should be called again once the password has been handled.
+     * @return true if the process has requested a password (the request having been printed) or false if the
+     *         output has ended
+     * @throws IOException if the process' output could not be read
+     */
+    boolean pump() throws IOException {
+        while (true) {
+            while (offset < length) {
+                char character = chunk[offset++];
+                if (skipLineFeed) {
+                    skipLineFeed = false;
+                    if (character == '\n') {
+                        continue;
+                    }
+                }
+                if ((character == '\n') || (character == '\r')) {
+                    skipLineFeed = (character == '\r');
+                    if (print(takeLine())) {
+                        return true;
+                    }
+                } else {
+                    line.append(character);
+                }
+            }
+            flush();
+            length = processStdout.read(chunk, 0, chunk.length);
+            offset = 0;
+            if (length == -1) {
+                length = 0;
+                boolean passwordRequest = ((line.length() > 0) && print(takeLine()));
+                flush();
+                return passwordRequest;
+            }
+        }
+    }
+
+    private String takeLine() {
+        String value = line.toString();
+        line.setLength(0);
+        return value;
+    }
+
+    /**
+     * @param value the line to print
+     * @return true if {@code value} is a password request
+     */
+    private boolean print(String value) {
+        PwdUtil.Request request = PwdUtil.isPwdRequest(value);
+        if (request.isPwd()) {
+            flush();
+            OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, request.getLine());
+            return true;
+        }
+        if (!OutputExt.appendFromExec(buffer, prefix, value)) {
+            flush();
+            OutputExt.printFromExec("[^green^%s^r^] %s", outputScriptName, value);
+        } else if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+        return false;
+    }
+
+    private void flush() {
+        if (buffer.length() > 0) {
+            System.out.print(buffer.toString());
+            System.out.flush();
+            buffer.setLength(0);
+        }
+    }
+
+}
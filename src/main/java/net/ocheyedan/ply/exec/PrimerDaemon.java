@@ -0,0 +1,741 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.BitUtil;
+import net.ocheyedan.ply.FileUtil;
+import net.ocheyedan.ply.Output;
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.props.Context;
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropFileWriter;
+import net.ocheyedan.ply.props.PropFiles;
+import net.ocheyedan.ply.props.Props;
+import net.ocheyedan.ply.props.PropsExt;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A long-lived, loopback-only daemon which keeps {@literal JvmPrimer} wrapped {@literal JVM} processes booted
+ * across ply invocations.  Each warm process is keyed by its full {@link Spec} (working directory, command line,
+ * environment and the modification times of any jar/class-path entries) so that a hand-off only ever happens to a
+ * process which is indistinguishable from one ply would have forked itself.  This preserves the isolation semantics
+ * of {@link Exec#invoke(java.io.File, java.util.List)} (one {@literal JVM} per script, with its own cwd, {@literal ply_*}
+ * environment and exit code) while moving the {@literal JVM} start-up cost off of the critical path; after a warm
+ * process is handed off, a replacement with the same {@link Spec} is booted so the next invocation also hits warm.
+ *
+ * The client side of the protocol is {@link DaemonProcess}.  Connections are authenticated with a random token
+ * stored (with owner-only permissions) in {@link #STATE_FILE} alongside the daemon's port.  As anything local may
+ * connect, every length and count read from a connection is bounded (@see {@link #MAX_TOKEN_LENGTH},
+ * {@link #MAX_REQUEST_LENGTH}, {@link #MAX_REQUEST_ENTRIES} and {@link #MAX_ERROR_LENGTH}) and checked before anything is allocated for it.
+ */
+public final class PrimerDaemon {
+
+    /**
+     * The file into which a running daemon writes its port and authentication token.
+     */
+    static final File STATE_FILE = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "daemon.properties");
+
+    /**
+     * The maximum length, in bytes, of the token with which a connection authenticates.
+     */
+    static final int MAX_TOKEN_LENGTH = 4 * 1024;
+
+    /**
+     * The maximum length, in bytes, of an {@link #ERROR} response's message.
+     */
+    static final int MAX_ERROR_LENGTH = 4 * 1024;
+
+    /**
+     * The maximum length, in bytes, of a {@link #RUN} request's directory, command and environment combined.
+     */
+    static final int MAX_REQUEST_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * The maximum number of command arguments, or of environment entries, of a {@link #RUN} request.
+     */
+    static final int MAX_REQUEST_ENTRIES = 16 * 1024;
+
+    /**
+     * Requests sent from the client.
+     */
+    static final byte RUN = 'r';
+    static final byte STOP = 's';
+    static final byte STDIN = 'i';
+    static final byte KILL = 'k';
+
+    /**
+     * Responses sent from the daemon.
+     */
+    static final byte STDOUT = 'o';
+    static final byte EXIT = 'x';
+    static final byte ERROR = 'e';
+
+    /**
+     * The full description of a process; two processes with equal {@link Spec} objects are interchangeable.
+     */
+    static final class Spec {
+
+        final File directory;
+
+        final List<String> command;
+
+        final Map<String, String> environment;
+
+        private final String key;
+
+        Spec(File directory, List<String> command, Map<String, String> environment) {
+            this.directory = directory;
+            this.command = command;
+            this.environment = environment;
+            this.key = computeKey();
+        }
+
+        private String computeKey() {
+            StringBuilder buffer = new StringBuilder();
+            buffer.append(directory == null ? "" : directory.getPath()).append('\u0000');
+            for (String arg : command) {
+                buffer.append(arg).append('\u0000');
+                // include modification times of referenced jars/classes so that rebuilt scripts are never served stale;
+                // options (i.e., -Xbootclasspath/a:) are stripped of their name, other args are paths as is
+                String paths = ((arg.startsWith("-") && (arg.indexOf(':') != -1)) ? arg.substring(arg.indexOf(':') + 1) : arg);
+                for (String path : paths.split(File.pathSeparator)) {
+                    File file = new File(path);
+                    if (file.isFile()) {
+                        buffer.append(file.lastModified()).append('\u0000');
+                    }
+                }
+            }
+            for (Map.Entry<String, String> entry : new TreeMap<String, String>(environment).entrySet()) {
+                buffer.append(entry.getKey()).append('=').append(entry.getValue()).append('\u0000');
+            }
+            return buffer.toString();
+        }
+
+        Process start() throws IOException {
+            ProcessBuilder processBuilder = new ProcessBuilder(command).redirectErrorStream(true).directory(directory);
+            Map<String, String> processEnvironment = processBuilder.environment();
+            processEnvironment.clear();
+            processEnvironment.putAll(environment);
+            return processBuilder.start();
+        }
+
+        @Override public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if ((o == null) || (getClass() != o.getClass())) {
+                return false;
+            }
+            Spec spec = (Spec) o;
+            return key.equals(spec.key);
+        }
+
+        @Override public int hashCode() {
+            return key.hashCode();
+        }
+    }
+
+    /**
+     * A booted process waiting (via {@literal JvmPrimer}) for its go-ahead.
+     */
+    private static final class Warm {
+
+        private final Spec spec;
+
+        private final Process process;
+
+        private final long bootedAt;
+
+        private Warm(Spec spec, Process process) {
+            this.spec = spec;
+            this.process = process;
+            this.bootedAt = System.currentTimeMillis();
+        }
+
+        private boolean isAlive() {
+            try {
+                process.exitValue();
+                return false;
+            } catch (IllegalThreadStateException itse) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Warm processes in boot order (oldest first) which allows for simple least-recently-booted eviction.
+     */
+    private final LinkedList<Warm> pool = new LinkedList<Warm>();
+
+    private volatile int poolSize;
+
+    private volatile long idleTimeoutMillis;
+
+    /**
+     * The configuration directory from which {@link #poolSize} and {@link #idleTimeoutMillis} were read, or null if
+     * they were given explicitly.
+     */
+    private final File configDirectory;
+
+    private final String token;
+
+    private final File stateFile;
+
+    private final AtomicBoolean running = new AtomicBoolean(true);
+
+    private volatile ServerSocket serverSocket;
+
+    private PrimerDaemon(File configDirectory, int poolSize, long idleTimeoutMillis, String token, File stateFile) {
+        this.configDirectory = configDirectory;
+        this.poolSize = poolSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.token = token;
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Starts a daemon and blocks until it is stopped (via {@link #stop()}).  The daemon's pool size and idle timeout
+     * are read from {@code configDirectory} and re-read before serving a request if its properties have changed.
+     * @param configDirectory from which to read {@literal daemon.pool.size} and {@literal daemon.idle.timeout}
+     * @throws IOException if the daemon's socket cannot be bound or its state file written
+     */
+    public static void serve(File configDirectory) throws IOException {
+        serve(STATE_FILE, configDirectory, getPoolSize(configDirectory), getIdleTimeoutMillis(configDirectory));
+    }
+
+    /**
+     * @see #serve(File)
+     * @param stateFile into which to write the daemon's port and authentication token
+     * @param poolSize the maximum number of warm processes to keep booted
+     * @param idleTimeoutMillis the time after which an unused warm process is destroyed
+     */
+    static void serve(File stateFile, int poolSize, long idleTimeoutMillis) throws IOException {
+        serve(stateFile, null, poolSize, idleTimeoutMillis);
+    }
+
+    private static void serve(File stateFile, File configDirectory, int poolSize, long idleTimeoutMillis) throws IOException {
+        byte[] tokenBytes = new byte[20];
+        new SecureRandom().nextBytes(tokenBytes);
+        String token = BitUtil.toHexString(tokenBytes);
+        PrimerDaemon daemon = new PrimerDaemon(configDirectory, poolSize, idleTimeoutMillis, token, stateFile);
+        daemon.run();
+    }
+
+    /**
+     * @param configDirectory from which to read the {@literal daemon.pool.size} property
+     * @return the maximum number of warm processes to keep booted
+     */
+    static int getPoolSize(File configDirectory) {
+        return getInt("daemon.pool.size", 16, configDirectory);
+    }
+
+    /**
+     * @param configDirectory from which to read the {@literal daemon.idle.timeout} property (in seconds)
+     * @return the time, in milliseconds, after which an unused warm process is destroyed
+     */
+    static long getIdleTimeoutMillis(File configDirectory) {
+        return getInt("daemon.idle.timeout", 1800, configDirectory) * 1000L;
+    }
+
+    private static int getInt(String name, int defaultValue, File configDirectory) {
+        String value = Props.get(name, Context.named("ply"), Props.getScope(), configDirectory).value();
+        if (value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException nfe) {
+            Output.print("^warn^ Invalid ^b^%s^r^ value [ %s ], defaulting to %d.", name, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return the state ({@literal port} and {@literal token}) of a running daemon or null if none is running
+     */
+    public static PropFile status() {
+        return status(STATE_FILE);
+    }
+
+    static PropFile status(File stateFile) {
+        PropFile state = readState(stateFile);
+        if (state == null) {
+            return null;
+        }
+        Socket socket = connect(state);
+        if (socket == null) {
+            return null;
+        }
+        close(socket);
+        return state;
+    }
+
+    /**
+     * Stops the running daemon, if any.
+     * @return true if a running daemon was signaled to stop
+     */
+    public static boolean stop() {
+        return stop(STATE_FILE);
+    }
+
+    static boolean stop(File stateFile) {
+        PropFile state = readState(stateFile);
+        Socket socket = (state == null ? null : connect(state));
+        if (socket == null) {
+            return false;
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            writeString(output, state.get("token").value());
+            output.writeByte(STOP);
+            output.flush();
+            return true;
+        } catch (IOException ioe) {
+            Output.print(ioe);
+            return false;
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Hands {@code processBuilder} to the running daemon, if any.
+     * @param processBuilder describing the process to start
+     * @return the daemon backed process or null if no daemon is running (in which case the caller should start
+     *         the process itself)
+     */
+    static Process start(ProcessBuilder processBuilder) {
+        return start(STATE_FILE, processBuilder);
+    }
+
+    static Process start(File stateFile, ProcessBuilder processBuilder) {
+        PropFile state = readState(stateFile);
+        Socket socket = (state == null ? null : connect(state));
+        if (socket == null) {
+            Output.print("^dbug^ no ply daemon running, starting process directly.");
+            return null;
+        }
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            writeString(output, state.get("token").value());
+            output.writeByte(RUN);
+            File directory = processBuilder.directory();
+            writeString(output, (directory == null ? "" : directory.getCanonicalPath()));
+            List<String> command = processBuilder.command();
+            output.writeInt(command.size());
+            for (String arg : command) {
+                writeString(output, arg);
+            }
+            Map<String, String> environment = processBuilder.environment();
+            output.writeInt(environment.size());
+            for (Map.Entry<String, String> entry : environment.entrySet()) {
+                writeString(output, entry.getKey());
+                writeString(output, entry.getValue());
+            }
+            output.flush();
+            return new DaemonProcess(socket, output);
+        } catch (IOException ioe) {
+            Output.print("^dbug^ could not hand-off to ply daemon (%s), starting process directly.", ioe.getMessage());
+            close(socket);
+            return null;
+        }
+    }
+
+    private void run() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        writeState(stateFile, serverSocket.getLocalPort(), token);
+        Output.print("ply daemon listening on port ^b^%d^r^ [ pool size %d ].", serverSocket.getLocalPort(), poolSize);
+        startReaper();
+        try {
+            while (running.get()) {
+                final Socket socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException ioe) {
+                    if (running.get()) {
+                        Output.print(ioe);
+                    }
+                    continue;
+                }
+                Thread session = new Thread(new Runnable() {
+                    @Override public void run() {
+                        handle(socket);
+                    }
+                }, "ply-daemon-session");
+                session.setDaemon(true);
+                session.start();
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (!token.equals(readString(input, MAX_TOKEN_LENGTH))) {
+                writeError(output, "invalid token");
+                return;
+            }
+            byte request = input.readByte();
+            if (request == STOP) {
+                running.set(false);
+                close(serverSocket);
+                return;
+            } else if (request != RUN) {
+                writeError(output, String.format("unknown request [ %c ]", (char) request));
+                return;
+            }
+            int[] remaining = { MAX_REQUEST_LENGTH };
+            String directory = readString(input, remaining);
+            int commandSize = readCount(input);
+            List<String> command = new ArrayList<String>(commandSize);
+            for (int i = 0; i < commandSize; i++) {
+                command.add(readString(input, remaining));
+            }
+            int environmentSize = readCount(input);
+            Map<String, String> environment = new HashMap<String, String>(environmentSize);
+            for (int i = 0; i < environmentSize; i++) {
+                environment.put(readString(input, remaining), readString(input, remaining));
+            }
+            refresh();
+            Spec spec = new Spec((directory.isEmpty() ? null : new File(directory)), command, environment);
+            Process process = take(spec);
+            relay(process, input, output);
+        } catch (IOException ioe) {
+            Output.print("^dbug^ ply daemon session ended: %s", ioe.getMessage());
+        } finally {
+            close(socket);
+        }
+    }
+
+    /**
+     * Re-reads the pool size and idle timeout if any properties file of {@link #configDirectory} (or of the system
+     * configuration directory) has changed since it was read; only the changed files are re-read.
+     */
+    private synchronized void refresh() {
+        if ((configDirectory == null) || !PropsExt.refreshCaches(configDirectory)) {
+            return;
+        }
+        poolSize = getPoolSize(configDirectory);
+        idleTimeoutMillis = getIdleTimeoutMillis(configDirectory);
+        Output.print("^dbug^ ply daemon configuration changed [ pool size %d, idle timeout %ds ].", poolSize,
+                (idleTimeoutMillis / 1000L));
+    }
+
+    /**
+     * @param spec of the process to take
+     * @return a warm process for {@code spec} if one exists, otherwise a newly started (cold) process.  In either
+     *         case a replacement warm process for {@code spec} is booted.
+     * @throws IOException if a process could not be started
+     */
+    private Process take(Spec spec) throws IOException {
+        Process taken = null;
+        synchronized (pool) {
+            Iterator<Warm> iterator = pool.iterator();
+            while (iterator.hasNext()) {
+                Warm warm = iterator.next();
+                if (!warm.isAlive()) {
+                    iterator.remove();
+                } else if (warm.spec.equals(spec)) {
+                    iterator.remove();
+                    taken = warm.process;
+                    break;
+                }
+            }
+        }
+        Output.print("^dbug^ ply daemon %s for %s", (taken == null ? "miss" : "hit"), spec.command);
+        if (taken == null) {
+            taken = spec.start();
+        }
+        boot(spec);
+        return taken;
+    }
+
+    private void boot(final Spec spec) {
+        Thread boot = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    Warm warm = new Warm(spec, spec.start());
+                    List<Warm> evicted = new ArrayList<Warm>(1);
+                    synchronized (pool) {
+                        pool.add(warm);
+                        while (pool.size() > poolSize) {
+                            evicted.add(pool.removeFirst());
+                        }
+                    }
+                    for (Warm evict : evicted) {
+                        evict.process.destroy();
+                    }
+                } catch (IOException ioe) {
+                    Output.print("^dbug^ ply daemon could not boot warm process: %s", ioe.getMessage());
+                }
+            }
+        }, "ply-daemon-boot");
+        boot.setDaemon(true);
+        boot.start();
+    }
+
+    /**
+     * Relays {@code process}'s stdout to the client and the client's stdin to {@code process} until the process
+     * exits, at which point its exit code is sent.
+     */
+    private void relay(final Process process, final DataInputStream input, DataOutputStream output) throws IOException {
+        Thread stdin = new Thread(new Runnable() {
+            @Override public void run() {
+                OutputStream processStdin = process.getOutputStream();
+                byte[] buffer = new byte[8192];
+                try {
+                    while (true) {
+                        byte request = input.readByte();
+                        if (request == KILL) {
+                            process.destroy();
+                            return;
+                        } else if (request != STDIN) {
+                            return;
+                        }
+                        int length = input.readInt();
+                        if (length < 0) {
+                            return;
+                        }
+                        while (length > 0) { // relayed in pieces, the length is never allocated
+                            int read = input.read(buffer, 0, Math.min(length, buffer.length));
+                            if (read == -1) {
+                                return;
+                            }
+                            processStdin.write(buffer, 0, read);
+                            length -= read;
+                        }
+                        processStdin.flush();
+                    }
+                } catch (IOException ioe) {
+                    // client closed or process exited; nothing further to relay
+                }
+            }
+        }, "ply-daemon-stdin");
+        stdin.setDaemon(true);
+        stdin.start();
+
+        InputStream processStdout = process.getInputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = processStdout.read(buffer)) != -1) {
+            output.writeByte(STDOUT);
+            output.writeInt(read);
+            output.write(buffer, 0, read);
+            if (processStdout.available() < 1) {
+                output.flush();
+            }
+        }
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            exitCode = 1;
+        }
+        output.writeByte(EXIT);
+        output.writeInt(exitCode);
+        output.flush();
+    }
+
+    private void startReaper() {
+        Thread reaper = new Thread(new Runnable() {
+            @Override public void run() {
+                while (running.get()) {
+                    try {
+                        Thread.sleep(Math.max(1000L, idleTimeoutMillis / 4));
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    long now = System.currentTimeMillis();
+                    List<Warm> expired = new ArrayList<Warm>(2);
+                    synchronized (pool) {
+                        Iterator<Warm> iterator = pool.iterator();
+                        while (iterator.hasNext()) {
+                            Warm warm = iterator.next();
+                            if ((now - warm.bootedAt) > idleTimeoutMillis) {
+                                iterator.remove();
+                                expired.add(warm);
+                            }
+                        }
+                    }
+                    for (Warm warm : expired) {
+                        warm.process.destroy();
+                    }
+                }
+            }
+        }, "ply-daemon-reaper");
+        reaper.setDaemon(true);
+        reaper.start();
+    }
+
+    private void shutdown() {
+        synchronized (pool) {
+            for (Warm warm : pool) {
+                warm.process.destroy();
+            }
+            pool.clear();
+        }
+        if (!stateFile.delete()) {
+            Output.print("^warn^ could not delete ply daemon state file ^b^%s^r^", stateFile.getPath());
+        }
+        Output.print("ply daemon stopped.");
+    }
+
+    /**
+     * Writes {@code port} and {@code token} into {@code stateFile}.  As the token authenticates connections it must
+     * never be readable by anyone but the owner, so the state is written into an (empty) temporary file which is
+     * first restricted to the owner and only then renamed to {@code stateFile}.
+     */
+    static void writeState(File stateFile, int port, String token) {
+        File parent = stateFile.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            Output.print("^error^ could not create directory ^b^%s^r^", parent.getPath());
+            throw new SystemExit(1);
+        }
+        PropFile state = new PropFile(Context.named("daemon"), PropFile.Loc.System);
+        state.add("port", String.valueOf(port));
+        state.add("token", token);
+        File temp = null;
+        try {
+            temp = File.createTempFile("." + stateFile.getName() + ".", ".tmp", parent);
+            if (!(temp.setReadable(false, false) && temp.setReadable(true, true)
+                    && temp.setWritable(false, false) && temp.setWritable(true, true))) {
+                throw new IOException(String.format("Could not restrict %s to its owner.", temp.getPath()));
+            }
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temp), "UTF-8"));
+            try {
+                PropFileWriter.Default.store(writer, state);
+            } finally {
+                writer.close();
+            }
+            if (!temp.renameTo(stateFile) && !(stateFile.delete() && temp.renameTo(stateFile))) {
+                throw new IOException(String.format("Could not rename %s to %s.", temp.getPath(), stateFile.getPath()));
+            }
+        } catch (IOException ioe) {
+            if (temp != null) {
+                temp.delete();
+            }
+            Output.print("^error^ could not write ply daemon state file ^b^%s^r^", stateFile.getPath());
+            Output.print(ioe);
+            throw new SystemExit(1);
+        }
+    }
+
+    static PropFile readState(File stateFile) {
+        if (!stateFile.exists()) {
+            return null;
+        }
+        PropFile state = new PropFile(Context.named("daemon"), PropFile.Loc.System);
+        if (!PropFiles.load(stateFile.getPath(), state, false, false)
+                || !state.contains("port") || !state.contains("token")) {
+            return null;
+        }
+        return state;
+    }
+
+    private static Socket connect(PropFile state) {
+        try {
+            int port = Integer.parseInt(state.get("port").value());
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 250);
+            socket.setTcpNoDelay(true);
+            return socket;
+        } catch (NumberFormatException nfe) {
+            return null;
+        } catch (IOException ioe) {
+            return null; // daemon not running (stale state file)
+        }
+    }
+
+    private static void writeError(DataOutputStream output, String message) throws IOException {
+        output.writeByte(ERROR);
+        writeString(output, message);
+        output.flush();
+    }
+
+    /**
+     * Writes {@code value} as length-prefixed UTF-8 (unlike {@link DataOutputStream#writeUTF(String)} this is not
+     * limited to 64k, which environment values like class-paths may exceed).
+     */
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    static String readString(DataInputStream input) throws IOException {
+        return readString(input, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param input from which to read a string written by {@link #writeString(DataOutputStream, String)}
+     * @param maxLength the maximum length, in bytes, of the string
+     * @return the read string
+     * @throws IOException if {@code input} could not be read or if the string's length is negative or exceeds
+     *                     {@code maxLength} (in which case nothing is allocated for it)
+     */
+    static String readString(DataInputStream input, int maxLength) throws IOException {
+        return new String(readBytes(input, maxLength), "UTF-8");
+    }
+
+    /**
+     * Reads a string deducting its length from {@code remaining[0]}, the bytes remaining of the request.
+     */
+    private static String readString(DataInputStream input, int[] remaining) throws IOException {
+        byte[] bytes = readBytes(input, remaining[0]);
+        remaining[0] -= bytes.length;
+        return new String(bytes, "UTF-8");
+    }
+
+    private static byte[] readBytes(DataInputStream input, int maxLength) throws IOException {
+        int length = input.readInt();
+        if ((length < 0) || (length > maxLength)) {
+            throw new IOException(String.format("Invalid string length %d (maximum %d).", length, maxLength));
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+
+    private static int readCount(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if ((count < 0) || (count > MAX_REQUEST_ENTRIES)) {
+            throw new IOException(String.format("Invalid request entry count %d (maximum %d).", count, MAX_REQUEST_ENTRIES));
+        }
+        return count;
+    }
+
+    private static void close(Socket socket) {
+        if (socket == null) {
+            return;
+        }
+        try {
+            socket.close();
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+
+    private static void close(ServerSocket serverSocket) {
+        if (serverSocket == null) {
+            return;
+        }
+        try {
+            serverSocket.close();
+        } catch (IOException ioe) {
+            // ignore
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.Output;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * A pool of generic, already booted {@literal JvmPrimer} processes.  A generic process is started without a
+ * main-class or class-path and so can be handed to any {@link JvmExecution} sharing its {@link PrimerDaemon.Spec}
+ * (i.e., the same {@literal JVM} options, working directory and environment); the main-class, class-path and
+ * arguments are sent over stdin at go-time.  Pools live for the duration of one {@link Exec#invoke(java.io.File, java.util.List)}.
+ */
+final class PrimerPool {
+
+    private final int size;
+
+    private final Map<PrimerDaemon.Spec, LinkedList<Process>> pool;
+
+    PrimerPool(int size) {
+        this.size = size;
+        this.pool = new HashMap<PrimerDaemon.Spec, LinkedList<Process>>(2, 1.0f);
+    }
+
+    /**
+     * @param spec of the generic process to take
+     * @return an already booted generic process for {@code spec} or null if none is available.  In either case
+     *         the pool is replenished for {@code spec}.
+     */
+    Process take(PrimerDaemon.Spec spec) {
+        LinkedList<Process> processes = pool.get(spec);
+        if (processes == null) {
+            processes = new LinkedList<Process>();
+            pool.put(spec, processes);
+        }
+        Process taken = null;
+        while ((taken == null) && !processes.isEmpty()) {
+            Process process = processes.removeFirst();
+            if (isAlive(process)) {
+                taken = process;
+            }
+        }
+        while (processes.size() < size) {
+            try {
+                processes.add(spec.start());
+            } catch (IOException ioe) {
+                Output.print("^dbug^ could not boot generic jvm: %s", ioe.getMessage());
+                break;
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Destroys all processes remaining in the pool.
+     */
+    void shutdown() {
+        for (LinkedList<Process> processes : pool.values()) {
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+        pool.clear();
+    }
+
+    private static boolean isAlive(Process process) {
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException itse) {
+            return true;
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import net.ocheyedan.ply.props.Context;
 import net.ocheyedan.ply.props.Props;
 
 import java.io.File;
+import java.util.List;
 import java.util.regex.Pattern;
 
 /**
@@ -47,9 +48,9 @@ final class ShellExecution extends Execution {
         // passed to script and not to shell)
         args[supplimentalArgLength] = combine(execution.executionArgs);
         if (Output.isDebug() && (execution.script instanceof ShellScript)) {
-            return new ShellExecution(executable, execution.script, args);
+            return new ShellExecution(executable, execution.script, args, execution.lanes);
         } else {
-            return new ShellExecution(execution.name, execution.script, args);
+            return new ShellExecution(execution.name, execution.script, args, execution.lanes);
         }
     }
 
@@ -66,8 +67,8 @@ final class ShellExecution extends Execution {
         return buffer.toString();
     }
 
-    ShellExecution(String name, Script script, String[] executionArgs) {
-        super(name, script, executionArgs);
+    ShellExecution(String name, Script script, String[] executionArgs, List<Lane> lanes) {
+        super(name, script, executionArgs, lanes);
     }
 
     /**
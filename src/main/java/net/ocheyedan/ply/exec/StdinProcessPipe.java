@@ -1,6 +1,12 @@
 package net.ocheyedan.ply.exec;
 
+import net.ocheyedan.ply.Output;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -9,86 +15,283 @@ import java.util.concurrent.atomic.AtomicReference;
  * Date: 11/19/11
  * Time: 4:23 PM
  *
- * Pipes {@link System#in} to the {@link Runner#processStdin}.
+ * Pipes {@link System#in} to the stdin of the currently attached child process.
  *
- * This class can be instantiated once for all executions.  Multiple calls to {@link #start()} have no negative
- * effect; the first call actually starts and all subsequent calls are no-ops.
+ * There is one pipe for all executions ({@link #PIPE}).  Its thread is only started once a child is first attached
+ * and then blocks reading {@link System#in}; there is no polling and so no cost while idle.  Input read while no child
+ * is attached is held and given to the next attached child.  Whether input is forwarded at all is governed by
+ * {@literal ply.exec.stdin} (@see {@link Mode}).  Once started, the pipe's thread is the only reader of
+ * {@link System#in}; ply itself reads input (i.e., a password requested by the child) via {@link #readLine()} which
+ * disables the terminal's echo while the line is read.
  */
-final class StdinProcessPipe extends Thread {
-
-    static final class Runner implements Runnable {
-
-        final AtomicReference<OutputStream> processStdin;
+final class StdinProcessPipe implements Runnable {
 
-        Runner(AtomicReference<OutputStream> processStdin) {
-            this.processStdin = processStdin;
-        }
+    static enum Mode {
+        /**
+         * Always forward input.
+         */
+        Always,
+        /**
+         * Forward input only if ply is attached to a console; i.e., so as not to consume the input of a parent
+         * process (like a shell loop invoking ply) or of a non-interactive (CI) run.
+         */
+        Auto,
+        /**
+         * Never forward input; {@link System#in} is left untouched.
+         */
+        Never;
 
-        // TODO - should only slurp input if requested by our child process
-        // TODO - otherwise, if ply is being invoked from within the context of a script (loop) reading input
-        // TODO - ply will consume the input from the parent process
-        @Override public void run() {
-            byte[] buffer = new byte[4096];
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    int avail = System.in.available();
-                    if (avail > 0) {
-                        int read = System.in.read(buffer, 0, Math.min(avail, buffer.length));
-                        OutputStream stdin = processStdin.get();
-                        if (stdin != null) {
-                            stdin.write(buffer, 0, read);
-                            stdin.flush();
-                        }
-                    } else {
-                        Thread.sleep(100);
-                    }
-                } catch (IOException ioe) {
-                    if (ioe.getMessage().contains("Broken pipe")) { // old process died
-                        processStdin.set(null);
-                    } else {
-                        throw new AssertionError(ioe);
-                    }
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                }
+        /**
+         * @param value of the {@literal ply.exec.stdin} property
+         * @return the mode for {@code value}, defaulting to {@link #Always}
+         */
+        static Mode from(String value) {
+            if ((value == null) || value.isEmpty() || "always".equalsIgnoreCase(value)) {
+                return Always;
+            } else if ("auto".equalsIgnoreCase(value)) {
+                return Auto;
+            } else if ("never".equalsIgnoreCase(value)) {
+                return Never;
             }
+            Output.print("^warn^ Invalid ^b^exec.stdin^r^ value [ %s ], expecting always, auto or never; defaulting to always.", value);
+            return Always;
         }
     }
 
-    final AtomicBoolean started;
+    static final StdinProcessPipe PIPE = new StdinProcessPipe(System.in);
+
+    private final InputStream input;
+
+    private final AtomicReference<Mode> mode;
+
+    private final AtomicBoolean started;
+
+    private final AtomicReference<OutputStream> processStdin;
+
+    /**
+     * Input read while no child was attached, guarded by {@code this}.
+     */
+    private final ByteArrayOutputStream pending;
+
+    /**
+     * The line requested via {@link #readLine()}, guarded by {@code this}; while non-null input is diverted into it
+     * rather than forwarded to the child.  As it may be a password it is zeroed once read (or grown).
+     */
+    private byte[] line;
+
+    /**
+     * The number of bytes of {@code line} which have been read, guarded by {@code this}.
+     */
+    private int lineLength;
 
-    final AtomicReference<OutputStream> processStdin;
+    /**
+     * True once {@code line} has been read up to its new-line, guarded by {@code this}.
+     */
+    private boolean lineRead;
 
-    public StdinProcessPipe() {
-        this(new AtomicReference<OutputStream>(null));
+    /**
+     * True once {@code input} has ended, guarded by {@code this}.
+     */
+    private boolean ended;
+
+    StdinProcessPipe(InputStream input) {
+        this.input = input;
+        this.mode = new AtomicReference<Mode>(Mode.Always);
+        this.started = new AtomicBoolean(false);
+        this.processStdin = new AtomicReference<OutputStream>(null);
+        this.pending = new ByteArrayOutputStream();
+    }
+
+    void setMode(Mode mode) {
+        this.mode.set(mode);
+    }
+
+    /**
+     * Forwards subsequent input (and any pending input) to {@code processStdin} and starts the pipe's thread if not
+     * already started.  This is a no-op if the {@link Mode} disallows forwarding.
+     * @param processStdin the stdin of the child process
+     */
+    void attach(OutputStream processStdin) {
+        Mode mode = this.mode.get();
+        if ((mode == Mode.Never) || ((mode == Mode.Auto) && (System.console() == null))) {
+            return;
+        }
+        synchronized (this) {
+            this.processStdin.set(processStdin);
+            if (pending.size() > 0) {
+                byte[] held = pending.toByteArray();
+                pending.reset();
+                forward(held, held.length);
+            }
+        }
+        if (!started.getAndSet(true)) {
+            Thread thread = new Thread(this, "ply-stdin");
+            thread.setDaemon(true);
+            thread.start();
+        }
     }
 
-    private StdinProcessPipe(AtomicReference<OutputStream> processStdin) {
-        super(new Runner(processStdin));
-        setDaemon(true);
-        started = new AtomicBoolean(false);
-        this.processStdin = processStdin;
+    /**
+     * Stops forwarding input to {@code processStdin} if it is still the attached child's stdin.
+     * @param processStdin the stdin of the child process
+     */
+    void detach(OutputStream processStdin) {
+        this.processStdin.compareAndSet(processStdin, null);
     }
 
-    void write(char[] buffer) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(this.processStdin.get()));
+    /**
+     * Writes {@code buffer} followed by a new-line to {@code processStdin} irrespective of the {@link Mode}; i.e.,
+     * to respond to a password request from the child.
+     * @param processStdin the stdin of the child process
+     * @param buffer to write
+     * @throws IOException if {@code processStdin} could not be written to
+     */
+    synchronized void write(OutputStream processStdin, char[] buffer) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(processStdin));
         writer.write(buffer, 0, buffer.length);
         writer.write('\n');
         writer.flush();
     }
 
-    public void pausePipe() {
-        this.processStdin.set(null);
+    /**
+     * Reads the next line of input for ply itself; i.e., to respond to a password request from the child.  Once the
+     * pipe's thread is reading {@link System#in} any other reader (including {@link Console#readPassword()}) would
+     * race it for the input, so instead the next line read by the pipe is diverted to the caller rather than being
+     * forwarded to the child.  As with {@link Console#readPassword()}, the terminal's echo is disabled while the line
+     * is read.
+     * @return the line, without its line terminator (and empty if the input has ended), or null if the pipe's thread
+     *         has not been started in which case the caller may read {@link System#in} directly
+     * @throws InterruptedException if interrupted while waiting for the line
+     */
+    synchronized char[] readLine() throws InterruptedException {
+        if (!started.get()) {
+            return null;
+        }
+        Console console = System.console();
+        boolean echoDisabled = false;
+        if (console != null) {
+            echoDisabled = echo(false);
+            if (!echoDisabled) {
+                Output.print("^warn^ Could not disable the terminal's echo; the input will be shown.");
+            }
+        }
+        line = new byte[128];
+        lineLength = 0;
+        lineRead = false;
+        try {
+            if (pending.size() > 0) { // held input precedes any further input
+                byte[] held = pending.toByteArray();
+                pending.reset();
+                forward(held, held.length);
+                Arrays.fill(held, (byte) 0);
+            }
+            while (!lineRead && !ended) {
+                wait();
+            }
+            int length = lineLength;
+            if ((length > 0) && (line[length - 1] == '\r')) {
+                length--;
+            }
+            CharBuffer decoded = Charset.defaultCharset().decode(ByteBuffer.wrap(line, 0, length));
+            char[] read = new char[decoded.remaining()];
+            decoded.get(read);
+            if (decoded.hasArray()) {
+                Arrays.fill(decoded.array(), ' ');
+            }
+            return read;
+        } finally {
+            Arrays.fill(line, (byte) 0);
+            line = null;
+            if (echoDisabled) {
+                echo(true);
+                console.writer().println(); // the line's terminator was not echoed
+                console.writer().flush();
+            }
+        }
     }
 
-    public void startPipe(OutputStream processStdin) {
-        this.processStdin.set(processStdin);
-        start();
+    /**
+     * Sets the echo of the controlling terminal via {@literal stty} as, other than {@link Console#readPassword()}
+     * (which cannot be used while the pipe's thread reads {@link System#in}), there is no means to do so from Java.
+     * @param on true to enable echo, false to disable
+     * @return true if the terminal's echo was set
+     */
+    private static boolean echo(boolean on) {
+        if (!new File("/dev/tty").exists()) {
+            return false;
+        }
+        try {
+            Process stty = new ProcessBuilder("/bin/sh", "-c", (on ? "stty echo" : "stty -echo") + " < /dev/tty")
+                    .redirectErrorStream(true).start();
+            InputStream output = stty.getInputStream();
+            while (output.read() != -1) { }
+            return (stty.waitFor() == 0);
+        } catch (IOException ioe) {
+            Output.print("^dbug^ could not set terminal echo: %s", ioe.getMessage());
+            return false;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
     }
 
-    @Override public void start() {
-        if (!started.getAndSet(true)) {
-            super.start();
+    @Override public void run() {
+        byte[] buffer = new byte[4096];
+        try {
+            int read;
+            while ((read = input.read(buffer, 0, buffer.length)) != -1) { // blocks until input is available
+                synchronized (this) {
+                    forward(buffer, read);
+                }
+                Arrays.fill(buffer, 0, read, (byte) 0); // may have been a password
+            }
+        } catch (IOException ioe) {
+            Output.print("^dbug^ stopped forwarding stdin: %s", ioe.getMessage());
+        } finally {
+            synchronized (this) {
+                ended = true;
+                notifyAll();
+            }
         }
     }
+
+    /**
+     * Must be called while holding the lock on {@code this}.
+     */
+    private void forward(byte[] buffer, int length) {
+        int offset = 0;
+        if ((line != null) && !lineRead) {
+            while (offset < length) {
+                byte next = buffer[offset++];
+                if (next == '\n') {
+                    lineRead = true;
+                    notifyAll();
+                    break;
+                }
+                if (lineLength == line.length) {
+                    byte[] grown = Arrays.copyOf(line, line.length * 2);
+                    Arrays.fill(line, (byte) 0);
+                    line = grown;
+                }
+                line[lineLength++] = next;
+            }
+            length -= offset;
+            if (length == 0) {
+                return;
+            }
+        }
+        OutputStream stdin = processStdin.get();
+        if (stdin == null) {
+            pending.write(buffer, offset, length);
+            return;
+        }
+        try {
+            stdin.write(buffer, offset, length);
+            stdin.flush();
+        } catch (IOException ioe) { // child exited (broken pipe); hold for the next child
+            processStdin.compareAndSet(stdin, null);
+            pending.write(buffer, offset, length);
+        }
+    }
+
 }
@@ -0,0 +1,311 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.FileUtil;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records, when enabled (via {@literal ply.timeline}), when each module was built and when each execution was
+ * started, given the go-ahead and exited.  The recording can be written as a {@literal Chrome} trace-event file
+ * (viewable via {@literal chrome://tracing}) and as a plain-text summary of the critical path and the time spent
+ * priming (i.e., {@literal JVM} start-up) versus running each script.
+ */
+public final class Timeline {
+
+    /**
+     * A recorded span of time.  For modules {@link #invoked} is when the module started building (after having waited
+     * for its prerequisites and a worker since {@link #start}) and for executions it is when the execution was given
+     * the go-ahead (after having been primed since {@link #start}).
+     */
+    static final class Span {
+
+        final String name;
+
+        final String projectRoot;
+
+        final long start;
+
+        final long invoked;
+
+        final long end;
+
+        final int exitCode;
+
+        Span(String name, String projectRoot, long start, long invoked, long end, int exitCode) {
+            this.name = name;
+            this.projectRoot = projectRoot;
+            this.start = start;
+            this.invoked = invoked;
+            this.end = end;
+            this.exitCode = exitCode;
+        }
+
+        float waitSeconds() {
+            return ((invoked - start) / 1000.0f);
+        }
+
+        float runSeconds() {
+            return ((end - invoked) / 1000.0f);
+        }
+
+        float seconds() {
+            return ((end - start) / 1000.0f);
+        }
+    }
+
+    private static final AtomicBoolean enabled = new AtomicBoolean(false);
+
+    private static final List<Span> modules = Collections.synchronizedList(new ArrayList<Span>());
+
+    private static final List<Span> executions = Collections.synchronizedList(new ArrayList<Span>());
+
+    /**
+     * Starts recording.
+     */
+    public static void enable() {
+        enabled.set(true);
+    }
+
+    /**
+     * @return true if recording
+     */
+    public static boolean isEnabled() {
+        return enabled.get();
+    }
+
+    /**
+     * Records the build of a module.
+     * @param name of the module
+     * @param projectPlyDir the {@literal .ply} directory of the module
+     * @param readyAt when the module was ready to be built
+     * @param start when the module started building
+     * @param end when the module finished building
+     */
+    public static void module(String name, File projectPlyDir, long readyAt, long start, long end) {
+        if (enabled.get()) {
+            String projectRoot = FileUtil.getCanonicalPath(FileUtil.fromParts(projectPlyDir.getPath(), ".."));
+            modules.add(new Span(name, projectRoot, readyAt, start, end, 0));
+        }
+    }
+
+    /**
+     * Records an execution.
+     * @param name of the execution
+     * @param projectRoot of the module for which the execution ran
+     * @param start when the execution's process was started
+     * @param invokedAt when the execution was given the go-ahead
+     * @param end when the execution exited
+     * @param exitCode of the execution
+     */
+    static void execution(String name, File projectRoot, long start, long invokedAt, long end, int exitCode) {
+        if (enabled.get()) {
+            executions.add(new Span(name, FileUtil.getCanonicalPath(projectRoot), start, invokedAt, end, exitCode));
+        }
+    }
+
+    /**
+     * Writes the recording into {@code reportsDir} as {@literal timeline.json} (trace-event format) and
+     * {@literal timeline.txt}.
+     * @param reportsDir into which to write
+     * @param buildStart when the build started
+     * @param criticalPath the names of the modules which bounded the build's time or null if not known
+     * @throws IOException if the files could not be written
+     */
+    public static void write(File reportsDir, long buildStart, List<String> criticalPath) throws IOException {
+        if (!reportsDir.exists() && !reportsDir.mkdirs()) {
+            throw new IOException(String.format("Could not create directory %s", reportsDir.getPath()));
+        }
+        List<Span> modules, executions;
+        synchronized (Timeline.modules) {
+            modules = new ArrayList<Span>(Timeline.modules);
+        }
+        synchronized (Timeline.executions) {
+            executions = new ArrayList<Span>(Timeline.executions);
+        }
+        write(new File(reportsDir, "timeline.json"), toTraceEvents(modules, executions, buildStart));
+        write(new File(reportsDir, "timeline.txt"), toSummary(modules, executions, buildStart, criticalPath));
+    }
+
+    /**
+     * Each module is a trace-event process; its build (and wait to be built) is thread 0 and its executions are
+     * placed on threads 1 to n such that no two executions on the same thread overlap (with look-ahead an execution
+     * is primed while its predecessor runs).
+     */
+    static String toTraceEvents(List<Span> modules, List<Span> executions, long buildStart) {
+        StringBuilder buffer = new StringBuilder("{\"traceEvents\":[");
+        Map<String, Integer> pids = new LinkedHashMap<String, Integer>();
+        for (Span module : modules) {
+            int pid = pids.size() + 1;
+            pids.put(module.projectRoot, pid);
+            appendEvent(buffer, "M", "process_name", null, pid, 0, 0, 0, "name", module.name);
+            if (module.invoked > module.start) {
+                appendEvent(buffer, "X", "waiting", "module", pid, 0, module.start - buildStart,
+                            module.invoked - module.start, null, null);
+            }
+            appendEvent(buffer, "X", module.name, "module", pid, 0, module.invoked - buildStart,
+                        module.end - module.invoked, null, null);
+        }
+        List<Span> sorted = new ArrayList<Span>(executions);
+        Collections.sort(sorted, new Comparator<Span>() {
+            @Override public int compare(Span left, Span right) {
+                return (left.start < right.start ? -1 : (left.start == right.start ? 0 : 1));
+            }
+        });
+        Map<Integer, List<Long>> laneEnds = new HashMap<Integer, List<Long>>();
+        for (Span execution : sorted) {
+            Integer pid = pids.get(execution.projectRoot);
+            if (pid == null) {
+                pid = pids.size() + 1;
+                pids.put(execution.projectRoot, pid);
+                appendEvent(buffer, "M", "process_name", null, pid, 0, 0, 0, "name", new File(execution.projectRoot).getName());
+            }
+            List<Long> ends = laneEnds.get(pid);
+            if (ends == null) {
+                ends = new ArrayList<Long>();
+                laneEnds.put(pid, ends);
+            }
+            int lane = 0;
+            while ((lane < ends.size()) && (ends.get(lane) > execution.start)) {
+                lane++;
+            }
+            if (lane == ends.size()) {
+                ends.add(execution.end);
+            } else {
+                ends.set(lane, execution.end);
+            }
+            int tid = lane + 1;
+            appendEvent(buffer, "X", execution.name, "script", pid, tid, execution.start - buildStart,
+                        execution.end - execution.start, "exit", String.valueOf(execution.exitCode));
+            appendEvent(buffer, "X", "prime", "prime", pid, tid, execution.start - buildStart,
+                        execution.invoked - execution.start, null, null);
+            appendEvent(buffer, "X", "run", "run", pid, tid, execution.invoked - buildStart,
+                        execution.end - execution.invoked, null, null);
+        }
+        if (buffer.charAt(buffer.length() - 1) == ',') {
+            buffer.setLength(buffer.length() - 1);
+        }
+        buffer.append("],\"displayTimeUnit\":\"ms\"}\n");
+        return buffer.toString();
+    }
+
+    static String toSummary(List<Span> modules, List<Span> executions, long buildStart, List<String> criticalPath) {
+        StringBuilder buffer = new StringBuilder();
+        long buildEnd = buildStart;
+        for (Span module : modules) {
+            buildEnd = Math.max(buildEnd, module.end);
+        }
+        buffer.append(String.format("Build timeline [ %.3f seconds ]%n", (buildEnd - buildStart) / 1000.0f));
+        Map<String, Span> modulesByName = new LinkedHashMap<String, Span>();
+        for (Span module : modules) {
+            modulesByName.put(module.name, module);
+        }
+        if ((criticalPath == null) || criticalPath.isEmpty()) {
+            criticalPath = new ArrayList<String>(modulesByName.keySet());
+        }
+        float criticalSeconds = 0.0f;
+        for (String module : criticalPath) {
+            Span span = modulesByName.get(module);
+            criticalSeconds += (span == null ? 0.0f : span.runSeconds());
+        }
+        buffer.append(String.format("%nCritical path [ %.3f seconds ]%n", criticalSeconds));
+        for (String module : criticalPath) {
+            Span span = modulesByName.get(module);
+            if (span == null) {
+                continue;
+            }
+            buffer.append(String.format("  %-40s %10.3f seconds [ waited %.3f seconds ]%n", module, span.runSeconds(),
+                                        span.waitSeconds()));
+            for (Span execution : executions) {
+                if (execution.projectRoot.equals(span.projectRoot)) {
+                    buffer.append(String.format("    %-38s %10.3f seconds [ primed %.3f, ran %.3f ]%s%n", execution.name,
+                            execution.seconds(), execution.waitSeconds(), execution.runSeconds(),
+                            (execution.exitCode == 0 ? "" : String.format(" exit code %d", execution.exitCode))));
+                }
+            }
+        }
+        // aggregate scripts across modules to expose where time goes (i.e., jvm start-up versus javac)
+        final Map<String, float[]> byScript = new HashMap<String, float[]>();
+        float primed = 0.0f, ran = 0.0f;
+        for (Span execution : executions) {
+            float[] totals = byScript.get(execution.name);
+            if (totals == null) {
+                totals = new float[3];
+                byScript.put(execution.name, totals);
+            }
+            totals[0] += execution.waitSeconds();
+            totals[1] += execution.runSeconds();
+            totals[2]++;
+            primed += execution.waitSeconds();
+            ran += execution.runSeconds();
+        }
+        List<String> scripts = new ArrayList<String>(byScript.keySet());
+        Collections.sort(scripts, new Comparator<String>() {
+            @Override public int compare(String left, String right) {
+                float leftTotal = byScript.get(left)[0] + byScript.get(left)[1];
+                float rightTotal = byScript.get(right)[0] + byScript.get(right)[1];
+                return Float.compare(rightTotal, leftTotal);
+            }
+        });
+        buffer.append(String.format("%nScripts by total time [ primed %.3f seconds, ran %.3f seconds, %d executions ]%n",
+                                    primed, ran, executions.size()));
+        for (String script : scripts) {
+            float[] totals = byScript.get(script);
+            buffer.append(String.format("  %-40s %10.3f seconds [ primed %.3f, ran %.3f ] x %d%n", script,
+                                        totals[0] + totals[1], totals[0], totals[1], (int) totals[2]));
+        }
+        return buffer.toString();
+    }
+
+    private static void appendEvent(StringBuilder buffer, String phase, String name, String category, int pid, int tid,
+                                    long startMillis, long durationMillis, String argName, String argValue) {
+        buffer.append("{\"ph\":\"").append(phase).append("\",\"name\":\"").append(escape(name)).append('"');
+        if (category != null) {
+            buffer.append(",\"cat\":\"").append(category).append('"');
+        }
+        buffer.append(",\"pid\":").append(pid).append(",\"tid\":").append(tid);
+        if (!"M".equals(phase)) {
+            buffer.append(",\"ts\":").append(startMillis * 1000L).append(",\"dur\":").append(durationMillis * 1000L);
+        }
+        if (argName != null) {
+            buffer.append(",\"args\":{\"").append(argName).append("\":\"").append(escape(argValue)).append("\"}");
+        }
+        buffer.append("},");
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            switch (character) {
+                case '"': escaped.append("\\\""); break;
+                case '\\': escaped.append("\\\\"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': escaped.append("\\r"); break;
+                case '\t': escaped.append("\\t"); break;
+                default:
+                    if (character < 0x20) {
+                        escaped.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        escaped.append(character);
+                    }
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(contents);
+        } finally {
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private Timeline() { }
+
+}
@@ -7,7 +7,10 @@ import net.ocheyedan.ply.cmd.build.Script;
 import net.ocheyedan.ply.exec.Execution;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import static net.ocheyedan.ply.props.PropFile.Prop;
@@ -27,6 +30,19 @@ public final class PropsExt {
      */
     private static final Map<String, Map<String, String>> RESOLVED_ENV_CACHE = new HashMap<String, Map<String, String>>();
 
+    /**
+     * A cache of resolved environment properties (as returned by {@link #getPropsForEnv(Execution, File, Scope)}) to
+     * the environment handing them off via an {@link EnvironmentFile}.
+     */
+    private static final Map<Map<String, String>, Map<String, String>> ENV_FILE_CACHE
+            = new IdentityHashMap<Map<String, String>, Map<String, String>>();
+
+    /**
+     * The directory in which {@link EnvironmentFile} objects are written.  This is not within the project's build
+     * directory as that may be cleaned while already started processes have yet to read their file.
+     */
+    private static final File ENV_FILE_DIR = FileUtil.fromParts(System.getProperty("user.home"), ".ply", "env");
+
     /**
      * Environment variable name prefix to distinguish ply variables from other system environment variables.
      */
@@ -84,6 +100,27 @@ public final class PropsExt {
         return envProps;
     }
 
+    /**
+     * @param envProps the resolved environment properties as returned by {@link #getPropsForEnv(Execution, File, Scope)}
+     * @return an environment consisting solely of the location of the {@link EnvironmentFile} containing
+     *         {@code envProps} or {@code envProps} itself if the file could not be written
+     */
+    public static Map<String, String> getEnvFileHandoff(Map<String, String> envProps) {
+        Map<String, String> handoff = ENV_FILE_CACHE.get(envProps);
+        if (handoff == null) {
+            try {
+                File envFile = EnvironmentFile.write(envProps, ENV_FILE_DIR);
+                handoff = Collections.singletonMap(EnvironmentFile.KEY, envFile.getPath());
+            } catch (IOException ioe) {
+                Output.print("^warn^ Could not write environment file, exporting properties as environment variables: %s",
+                             ioe.getMessage());
+                handoff = envProps;
+            }
+            ENV_FILE_CACHE.put(envProps, handoff);
+        }
+        return handoff;
+    }
+
     /**
      * @param configurationDirectory @see {@link Props#invalidateFilteredCaches(java.io.File)}
      * @see Props#invalidateFilteredCaches(java.io.File)
@@ -92,6 +129,14 @@ public final class PropsExt {
         Props.invalidateFilteredCaches(configurationDirectory);
     }
 
+    /**
+     * @param configurationDirectory @see {@link Props#invalidateAdHocFilteredCaches(java.io.File)}
+     * @see Props#invalidateAdHocFilteredCaches(java.io.File)
+     */
+    public static void invalidateAdHocFilteredCaches(File configurationDirectory) {
+        Props.invalidateAdHocFilteredCaches(configurationDirectory);
+    }
+
     /**
      * @param configurationDirectory @see {@link Props#invalidateFilteredCaches(java.io.File)}
      * @see Props#invalidateFilteredCaches(java.io.File)
@@ -102,6 +147,15 @@ public final class PropsExt {
         Props.invalidateFilteredCaches(configurationDirectory);
     }
 
+    /**
+     * @param configurationDirectory @see {@link Loader#refresh(java.io.File)}
+     * @return true if any properties have changed since loaded
+     * @see Loader#refresh(java.io.File)
+     */
+    public static boolean refreshCaches(File configurationDirectory) {
+        return Loader.refresh(configurationDirectory);
+    }
+
     private PropsExt() { }
 
 }
@@ -36,14 +36,42 @@ public final class Submodules {
      * @return all {@link Submodule} based on {@code localConfigDir} mapped to their own {@link Submodule} objects.
      */
     public static List<Submodule> getSubmodules(File configDirectory) {
-        Prop submodulesScopeProp = Props.get("submodules.scope", Context.named("project"), Props.getScope(), configDirectory);
-        Scope submodulesScope = (submodulesScopeProp == null ? Scope.Default : Scope.named(submodulesScopeProp.value()));
+        Scope submodulesScope = getSubmodulesScope(configDirectory);
         Map<String, Submodule> submodules = new HashMap<String, Submodule>();
         List<String> ordering = new LinkedList<String>();
         getSubmodules(configDirectory, submodulesScope, "", submodules, ordering);
         return sortSubmodules(submodules, ordering, configDirectory, submodulesScope);
     }
 
+    /**
+     * @param configDirectory location from which the {@code submodules} were retrieved
+     * @param submodules as returned by {@link #getSubmodules(File)}
+     * @return each of {@code submodules} mapped to those of {@code submodules} which must be built before it; i.e., the
+     *         submodules upon which it depends and the submodule within which it is nested, if any.
+     */
+    public static Map<Submodule, Set<Submodule>> getPrerequisites(File configDirectory, List<Submodule> submodules) {
+        Map<String, Submodule> byDependencyName = new HashMap<String, Submodule>(submodules.size());
+        for (Submodule submodule : submodules) {
+            byDependencyName.put(submodule.dependencyName, submodule);
+        }
+        Map<Submodule, Set<String>> submoduleDepMap = getDependencies(byDependencyName, configDirectory,
+                                                                      getSubmodulesScope(configDirectory));
+        Map<Submodule, Set<Submodule>> prerequisites = new HashMap<Submodule, Set<Submodule>>(submodules.size());
+        for (Submodule submodule : submodules) {
+            Set<Submodule> required = new HashSet<Submodule>();
+            for (String dep : submoduleDepMap.get(submodule)) {
+                required.add(byDependencyName.get(dep));
+            }
+            for (Submodule parent : submodules) {
+                if (submodule.name.startsWith(parent.name + File.separator)) {
+                    required.add(parent);
+                }
+            }
+            prerequisites.put(submodule, required);
+        }
+        return prerequisites;
+    }
+
     /**
      * Retrieves the {@literal submodules} from directory {@code configDirectory} for scope {@code scope}.
      * Note, for each submodule found, this method recurs and collects any of its submodules as well.
@@ -95,17 +123,8 @@ public final class Submodules {
         if ((submodules == null) || submodules.isEmpty()) {
             return Collections.emptyList();
         }
-        List<Submodule> orderedSubmodules = new ArrayList<Submodule>();
-        final Map<Submodule, Set<String>> submoduleDepMap = new HashMap<Submodule, Set<String>>();
-        for (String submoduleDepName : submodules.keySet()) {
-            Submodule submodule = submodules.get(submoduleDepName);
-            orderedSubmodules.add(submodule);
-            File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(configDirectory), "..", "..",
-                                                         submodule.name, ".ply", "config");
-            PropFileChain depProps = Props.get(Context.named("dependencies"), scope, submoduleConfigDir);
-            Set<String> deps = convertDeps(depProps, submodules);
-            submoduleDepMap.put(submodule, deps);
-        }
+        List<Submodule> orderedSubmodules = new ArrayList<Submodule>(submodules.values());
+        final Map<Submodule, Set<String>> submoduleDepMap = getDependencies(submodules, configDirectory, scope);
         // if submoduleA depends upon submoduleB then submoduleB goes first
         // if submoduleA is child of submoduleB then submoduleB goes first
         // if submoduleA is a child but submoduleB isn't then submoduleB goes first
@@ -138,6 +157,30 @@ public final class Submodules {
         return orderedSubmodules;
     }
 
+    /**
+     * @param submodules mapped by their dependency name
+     * @param configDirectory the configuration directory of the project from which the {@code submodules} originated
+     * @param scope of the retrieved {@code submodules}
+     * @return each of {@code submodules} mapped to the dependency names of the {@code submodules} upon which it
+     *         directly depends
+     */
+    private static Map<Submodule, Set<String>> getDependencies(Map<String, Submodule> submodules, File configDirectory,
+                                                               Scope scope) {
+        Map<Submodule, Set<String>> submoduleDepMap = new HashMap<Submodule, Set<String>>(submodules.size());
+        for (Submodule submodule : submodules.values()) {
+            File submoduleConfigDir = FileUtil.fromParts(FileUtil.getCanonicalPath(configDirectory), "..", "..",
+                                                         submodule.name, ".ply", "config");
+            PropFileChain depProps = Props.get(Context.named("dependencies"), scope, submoduleConfigDir);
+            submoduleDepMap.put(submodule, convertDeps(depProps, submodules));
+        }
+        return submoduleDepMap;
+    }
+
+    private static Scope getSubmodulesScope(File configDirectory) {
+        Prop submodulesScopeProp = Props.get("submodules.scope", Context.named("project"), Props.getScope(), configDirectory);
+        return (submodulesScopeProp == null ? Scope.Default : Scope.named(submodulesScopeProp.value()));
+    }
+
     /**
      * @param submodule to see if it depends upon {@code dependencyToCheck}
      * @param dependencyToCheck whether it is a dependency of {@code submodule}
@@ -174,4 +174,41 @@ public class CommandLineParserTest {
         assertEquals(0, args.adHocProps.size());
     }
 
+    @Test
+    public void parseBuildArgs() {
+        String[] rawArgs = new String[] { "clean", "-j", "4", "install" };
+        Args args = CommandLineParser.parseBuildArgs(Iter.sized(rawArgs));
+        assertEquals(2, args.args.size());
+        assertEquals("clean", args.args.get(0));
+        assertEquals("install", args.args.get(1));
+        assertEquals(1, args.adHocProps.size());
+        assertEquals("ply.submodules.parallelism=4", args.adHocProps.get(0));
+
+        rawArgs = new String[] { "-j8", "install", "-Pply.color=false" };
+        args = CommandLineParser.parseBuildArgs(Iter.sized(rawArgs));
+        assertEquals(1, args.args.size());
+        assertEquals("install", args.args.get(0));
+        assertEquals(2, args.adHocProps.size());
+        assertEquals("ply.color=false", args.adHocProps.get(0));
+        assertEquals("ply.submodules.parallelism=8", args.adHocProps.get(1));
+
+        rawArgs = new String[] { "install", "-j" };
+        args = CommandLineParser.parseBuildArgs(Iter.sized(rawArgs));
+        assertEquals(1, args.args.size());
+        assertEquals("install", args.args.get(0));
+        assertEquals(1, args.adHocProps.size());
+        assertEquals("ply.submodules.parallelism=0", args.adHocProps.get(0));
+
+        rawArgs = new String[] { "-jar", "install" };
+        args = CommandLineParser.parseBuildArgs(Iter.sized(rawArgs));
+        assertEquals(2, args.args.size());
+        assertEquals("-jar", args.args.get(0));
+        assertEquals(0, args.adHocProps.size());
+
+        Command command = CommandLineParser.parse(new String[] { "-j", "2", "compile" });
+        assertTrue(command instanceof Build);
+        assertEquals(1, command.args.args.size());
+        assertEquals("ply.submodules.parallelism=2", command.args.adHocProps.get(0));
+    }
+
 }
@@ -1,11 +1,15 @@
 package net.ocheyedan.ply.cmd.build;
 
+import net.ocheyedan.ply.SystemExit;
+import net.ocheyedan.ply.exec.Execution;
 import net.ocheyedan.ply.graph.DirectedAcyclicGraph;
 import net.ocheyedan.ply.props.*;
 import org.junit.Test;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -270,4 +274,85 @@ public class AliasTest {
         assertEquals("foo", alias.scripts.get(2).scope.name);
     }
 
+    @Test public void parseParallelAlias() {
+        Alias.Resolver resolver = new Alias.Resolver(new File("./ply/config"));
+        String name = "build", value = "first parallel(one parallel(two three) four) last";
+        Map<String, Prop> unparsedAliases = new HashMap<String, Prop>();
+        PropFile container = new PropFile(Context.named("aliases"), PropFile.Loc.Local);
+        unparsedAliases.put(name, container.add(name, value));
+        Alias alias = resolver.parseAlias(Scope.Default, Script.parse(name, Scope.Default), value, unparsedAliases,
+                                       new DirectedAcyclicGraph<String>(), new HashMap<String, Alias>(), new ArrayList<String>());
+        assertEquals("build", alias.name);
+        assertEquals(3, alias.scripts.size());
+        assertEquals("first", alias.scripts.get(0).name);
+        assertTrue(alias.scripts.get(1).getClass() == Parallel.class);
+        Parallel parallel = (Parallel) alias.scripts.get(1);
+        assertEquals(3, parallel.scripts.size());
+        assertEquals("one", parallel.scripts.get(0).name);
+        assertTrue(parallel.scripts.get(1).getClass() == Parallel.class);
+        assertEquals(2, ((Parallel) parallel.scripts.get(1)).scripts.size());
+        assertEquals("two", ((Parallel) parallel.scripts.get(1)).scripts.get(0).name);
+        assertEquals("three", ((Parallel) parallel.scripts.get(1)).scripts.get(1).name);
+        assertEquals("four", parallel.scripts.get(2).name);
+        assertEquals("last", alias.scripts.get(2).name);
+        // spaces within the grouping's parenthesis
+        value = "parallel( one two )";
+        alias = resolver.parseAlias(Scope.Default, Script.parse(name, Scope.Default), value, unparsedAliases,
+                                 new DirectedAcyclicGraph<String>(), new HashMap<String, Alias>(), new ArrayList<String>());
+        assertEquals(1, alias.scripts.size());
+        assertEquals(2, ((Parallel) alias.scripts.get(0)).scripts.size());
+        assertEquals("one", ((Parallel) alias.scripts.get(0)).scripts.get(0).name);
+        assertEquals("two", ((Parallel) alias.scripts.get(0)).scripts.get(1).name);
+        // a nested grouping as the first member of a grouping
+        value = "parallel(parallel(parallel(one two) three) four) last";
+        alias = resolver.parseAlias(Scope.Default, Script.parse(name, Scope.Default), value, unparsedAliases,
+                                 new DirectedAcyclicGraph<String>(), new HashMap<String, Alias>(), new ArrayList<String>());
+        assertEquals(2, alias.scripts.size());
+        parallel = (Parallel) alias.scripts.get(0);
+        assertEquals(2, parallel.scripts.size());
+        assertEquals("four", parallel.scripts.get(1).name);
+        Parallel nested = (Parallel) parallel.scripts.get(0);
+        assertEquals(2, nested.scripts.size());
+        assertEquals("three", nested.scripts.get(1).name);
+        assertEquals(2, ((Parallel) nested.scripts.get(0)).scripts.size());
+        assertEquals("one", ((Parallel) nested.scripts.get(0)).scripts.get(0).name);
+        assertEquals("two", ((Parallel) nested.scripts.get(0)).scripts.get(1).name);
+        assertEquals("last", alias.scripts.get(1).name);
+        // circular reference within a grouping
+        value = "parallel(one build)";
+        try {
+            resolver.parseAlias(Scope.Default, Script.parse(name, Scope.Default), value, unparsedAliases,
+                    new DirectedAcyclicGraph<String>(), new HashMap<String, Alias>(), new ArrayList<String>());
+            fail("Expected a circular reference exception");
+        } catch (Alias.CircularReference cr) {
+            // expected
+        }
+        // unclosed grouping
+        value = "parallel(one two";
+        try {
+            resolver.parseAlias(Scope.Default, Script.parse(name, Scope.Default), value, unparsedAliases,
+                    new DirectedAcyclicGraph<String>(), new HashMap<String, Alias>(), new ArrayList<String>());
+            fail("Expected a system exit");
+        } catch (SystemExit se) {
+            // expected
+        }
+        // conversion marks each lane's executions
+        Parallel lanes = new Parallel(Scope.Default, Arrays.<Script>asList(
+                new ShellScript(Script.parse("`echo one`", Scope.Default)),
+                new ShellScript(Script.parse("`echo two`", Scope.Default))));
+        alias = new Alias("build", Scope.Default, Arrays.<Script>asList(new ShellScript(Script.parse("`echo first`", Scope.Default)),
+                lanes, new ShellScript(Script.parse("`echo last`", Scope.Default))), Collections.<String>emptyList(),
+                Collections.<String>emptyList(), "build");
+        List<Execution> executions = alias.convert();
+        assertEquals(4, executions.size());
+        assertTrue(executions.get(0).lanes.isEmpty());
+        assertEquals("build", executions.get(1).name);
+        assertEquals(1, executions.get(1).lanes.size());
+        assertEquals(0, executions.get(1).lanes.get(0).index);
+        assertEquals(1, executions.get(2).lanes.size());
+        assertEquals(1, executions.get(2).lanes.get(0).index);
+        assertEquals(executions.get(1).lanes.get(0).group, executions.get(2).lanes.get(0).group);
+        assertTrue(executions.get(3).lanes.isEmpty());
+    }
+
 }
@@ -0,0 +1,121 @@
+package net.ocheyedan.ply.cmd.build;
+
+import net.ocheyedan.ply.cmd.Args;
+import net.ocheyedan.ply.exec.Execution;
+import net.ocheyedan.ply.props.Scope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class ExecutionPlanTest {
+
+    private File directory;
+
+    private File jar;
+
+    private File dependency;
+
+    @Before public void setUp() throws IOException {
+        directory = new File(System.getProperty("java.io.tmpdir"), "ply-execution-plan-test-" + System.nanoTime());
+        assertTrue(new File(directory, "config").mkdirs());
+        assertTrue(new File(directory, "scripts").mkdirs());
+        jar = new File(directory, "scripts/compile.jar");
+        write(jar, "compile");
+        dependency = new File(directory, "dependency.jar");
+        write(dependency, "dependency");
+    }
+
+    @After public void tearDown() {
+        delete(directory);
+    }
+
+    @Test public void storeAndLoad() throws IOException {
+        Script script = new Script("compile", Scope.named("test"), "test:compile");
+        List<Execution.Lane> lanes = Collections.singletonList(new Execution.Lane(1, 2));
+        List<Execution> resolved = Collections.singletonList(
+                new Execution("compile", script, new String[] { jar.getPath() }, lanes));
+        String[] translatedArgs = { "java", "-cp", jar.getPath() + File.pathSeparator + dependency.getPath(),
+                "net.ocheyedan.ply.script.Main" };
+        List<Execution> translated = Collections.singletonList(new Execution("compile", script, translatedArgs, lanes));
+
+        File file = new File(directory, "plans/plan");
+        ExecutionPlan plan = new ExecutionPlan(file, "key", new File(directory, "config"));
+        assertNull(plan.load());
+        plan.store(resolved, translated, Collections.<String>emptyList());
+        assertTrue(file.exists());
+
+        List<Execution> loaded = plan.load();
+        assertNotNull(loaded);
+        assertEquals(1, loaded.size());
+        Execution execution = loaded.get(0);
+        assertEquals("compile", execution.name);
+        assertTrue(Arrays.equals(translatedArgs, execution.executionArgs));
+        assertEquals(lanes, execution.lanes);
+        assertEquals("compile", execution.script.name);
+        assertEquals("test:compile", execution.script.unparsedName);
+        assertEquals(Scope.named("test"), execution.script.scope);
+
+        // a plan stored for another key is not used
+        assertNull(new ExecutionPlan(file, "other", new File(directory, "config")).load());
+
+        // nor once a jar script has changed
+        write(jar, "changed");
+        assertNull(plan.load());
+        plan.store(resolved, translated, Collections.<String>emptyList());
+        assertNotNull(plan.load());
+
+        // nor once a class-path entry no longer exists
+        assertTrue(dependency.delete());
+        assertNull(plan.load());
+    }
+
+    @Test public void getKey() throws IOException, InterruptedException {
+        Args args = new Args(Collections.singletonList("compile"), Collections.<String>emptyList());
+        File config = new File(directory, "config");
+        String scripts = new File(directory, "scripts").getPath();
+        String key = ExecutionPlan.getKey(args, Scope.Default, config, scripts);
+        assertEquals(key, ExecutionPlan.getKey(args, Scope.Default, config, scripts));
+
+        // the key changes with the invocation's arguments and scope
+        Args other = new Args(Collections.singletonList("test"), Collections.<String>emptyList());
+        assertFalse(key.equals(ExecutionPlan.getKey(other, Scope.Default, config, scripts)));
+        assertFalse(key.equals(ExecutionPlan.getKey(args, Scope.named("test"), config, scripts)));
+
+        // and whenever a configuration file changes, even if the directory's modification time does not
+        File properties = new File(config, "project.properties");
+        write(properties, "name=ply\n");
+        String added = ExecutionPlan.getKey(args, Scope.Default, config, scripts);
+        assertFalse(key.equals(added));
+        long modified = config.lastModified();
+        write(properties, "name=ply-changed\n");
+        assertTrue(config.setLastModified(modified));
+        assertFalse(added.equals(ExecutionPlan.getKey(args, Scope.Default, config, scripts)));
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
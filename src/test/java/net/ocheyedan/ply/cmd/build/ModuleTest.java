@@ -7,10 +7,13 @@ import org.junit.Test;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertTrue;
 
 /**
  * User: blangel
@@ -128,4 +131,16 @@ public class ModuleTest {
         assertEquals("arg1", executions.get(0).executionArgs[1]);
     }
 
+
+    @Test public void definesAdHocProps() {
+        File mockConfigDir = new File("./src/test/resources/dot-ply/config");
+        assertFalse(Module.definesAdHocProps(new Args(Arrays.asList("mock-clean.jar", "run"),
+                Collections.<String>emptyList()), mockConfigDir));
+        assertTrue(Module.definesAdHocProps(new Args(Arrays.asList("clean", "quiet"),
+                Collections.<String>emptyList()), mockConfigDir));
+        // via a nested alias
+        assertTrue(Module.definesAdHocProps(new Args(Collections.singletonList("quietly"),
+                Collections.<String>emptyList()), mockConfigDir));
+    }
+
 }
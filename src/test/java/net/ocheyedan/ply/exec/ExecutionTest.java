@@ -0,0 +1,72 @@
+package net.ocheyedan.ply.exec;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+public class ExecutionTest {
+
+    @Test public void writeAndRead() throws IOException {
+        List<Execution.Lane> lanes = Arrays.asList(new Execution.Lane(1, 0), new Execution.Lane(2, 3));
+        // not limited to 64k, as class-paths may not be
+        char[] longArg = new char[70000];
+        Arrays.fill(longArg, 'a');
+        String[] args = { "/bin/script.sh", "arg with spaces", "\u00e9", new String(longArg) };
+
+        Execution execution = roundTrip(new Execution("plain", null, args, lanes));
+        assertEquals(Execution.class, execution.getClass());
+        assertEquals("plain", execution.name);
+        assertTrue(Arrays.equals(args, execution.executionArgs));
+        assertEquals(lanes, execution.lanes);
+
+        execution = roundTrip(new ShellExecution("shell", null, args, Collections.<Execution.Lane>emptyList()));
+        assertEquals(ShellExecution.class, execution.getClass());
+        assertEquals("shell", execution.name);
+        assertTrue(Arrays.equals(args, execution.executionArgs));
+        assertTrue(execution.lanes.isEmpty());
+
+        String[] primed = { "java", "-Xmx32m", "-cp", "/lib/script.jar:/lib/ply-jvm-primer-1.0.jar",
+                "net.ocheyedan.ply.JvmPrimer", "net.ocheyedan.ply.script.Main", "arg" };
+        execution = roundTrip(new JvmExecution("jvm", null, primed, lanes, true, false, JvmExecution.Generic.from(primed)));
+        assertEquals(JvmExecution.class, execution.getClass());
+        assertTrue(Arrays.equals(primed, execution.executionArgs));
+        assertTrue(execution.readsEnvironmentFile());
+        assertEquals(lanes, execution.lanes);
+        execution = roundTrip(new JvmExecution("jvm", null, args, lanes, false, false, null));
+        assertFalse(execution.readsEnvironmentFile());
+
+        execution = roundTrip(new InProcessExecution("in-process", null, primed, lanes, JvmExecution.Generic.from(primed)));
+        assertEquals(InProcessExecution.class, execution.getClass());
+        assertEquals("in-process", execution.name);
+        assertTrue(Arrays.equals(primed, execution.executionArgs));
+
+        // an in-process execution whose arguments do not use the primer can't be read
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new InProcessExecution("in-process", null, args, lanes, JvmExecution.Generic.from(primed))
+                .write(new DataOutputStream(bytes));
+        try {
+            Execution.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), null);
+            fail("Expected an IOException.");
+        } catch (IOException ioe) {
+            // expected
+        }
+    }
+
+    private static Execution roundTrip(Execution execution) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        execution.write(output);
+        output.writeInt(42); // nothing beyond the execution is consumed
+        output.flush();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Execution read = Execution.read(input, null);
+        assertEquals(42, input.readInt());
+        return read;
+    }
+
+}
@@ -0,0 +1,137 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.OutputExt;
+import net.ocheyedan.ply.props.Props;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Runs {@link Main} in-process, as ply would a bundled script.
+ */
+public class InProcessExecutionTest {
+
+    /**
+     * The in-process script; {@code args[0]} is either an exit code, {@literal return}, {@literal throw},
+     * {@literal thread} (exits from a non-daemon thread after main returns) or {@literal block} (exits while a
+     * non-daemon thread is blocked).
+     */
+    public static final class Main {
+
+        static final AtomicInteger invocations = new AtomicInteger(0);
+
+        public static void main(String[] args) {
+            System.out.println(String.format("invocation %d with %s", invocations.incrementAndGet(),
+                    Props.getenv("ply_test")));
+            System.err.print("without new-line");
+            if ("throw".equals(args[0])) {
+                throw new IllegalStateException("thrown");
+            } else if ("thread".equals(args[0])) {
+                new Thread(new Runnable() {
+                    @Override public void run() {
+                        sleep(200L);
+                        System.out.println("from thread");
+                        System.exit(4);
+                    }
+                }).start();
+            } else if ("block".equals(args[0])) {
+                new Thread(new Runnable() {
+                    @Override public void run() {
+                        sleep(60000L);
+                    }
+                }).start();
+                System.exit(5);
+            } else if (!"return".equals(args[0])) {
+                System.exit(Integer.parseInt(args[0]));
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test public void waitFor() throws IOException, InterruptedException, URISyntaxException {
+        if (!InProcessExecution.isSupported()) {
+            return;
+        }
+        OutputExt.init("false", "true", "warn,info");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        // exit codes are trapped
+        assertEquals(3, run("exits", "3", output));
+        String printed = output.toString("UTF-8");
+        // output is prefixed with the script name, line by line (including the unterminated last line)
+        assertTrue(printed, printed.contains("[exits] invocation 1 with env\n"));
+        assertTrue(printed, printed.contains("[exits] without new-line\n"));
+
+        // each execution has its own class-loader and so its own static state, distinct from ply's
+        output.reset();
+        assertEquals(0, run("returns", "return", output));
+        printed = output.toString("UTF-8");
+        assertTrue(printed, printed.contains("[returns] invocation 1 with env\n"));
+        assertEquals(0, Main.invocations.get());
+        assertNull(Props.getenv("ply_test"));
+
+        // an uncaught exception fails the execution
+        output.reset();
+        assertEquals(1, run("throws", "throw", output));
+        printed = output.toString("UTF-8");
+        // stdout and stderr share a line, as when forked (with the error stream redirected)
+        assertTrue(printed, printed.contains("[throws] without new-linejava.lang.IllegalStateException: thrown\n"));
+        assertTrue(printed, printed.contains("[throws] \tat " + Main.class.getName() + ".main("));
+
+        // the script's non-daemon threads are waited for, their output and exit still trapped
+        output.reset();
+        assertEquals(4, run("threaded", "thread", output));
+        printed = output.toString("UTF-8");
+        assertTrue(printed, printed.contains("from thread\n"));
+        assertFalse(printed, printed.contains("intercepted"));
+
+        // and upon exit, any remaining are interrupted
+        long start = System.currentTimeMillis();
+        assertEquals(5, run("blocks", "block", output));
+        assertTrue((System.currentTimeMillis() - start) < 30000L);
+    }
+
+    private static int run(String name, String arg, ByteArrayOutputStream into)
+            throws IOException, InterruptedException, URISyntaxException {
+        String classpath = location(Main.class) + File.pathSeparator + location(Props.class)
+                + File.pathSeparator + "ply-jvm-primer-1.0.jar";
+        JvmExecution.Generic generic = JvmExecution.Generic.from(new String[] { "java", "-cp", classpath,
+                "net.ocheyedan.ply.JvmPrimer", Main.class.getName(), arg });
+        assertNotNull(generic);
+        InProcessExecution execution = new InProcessExecution(name, null, new String[0],
+                Collections.<Execution.Lane>emptyList(), generic);
+        Map<String, String> environment = new HashMap<String, String>();
+        environment.put("ply_test", "env");
+        execution.preInvoke(new File(System.getProperty("user.dir")), environment);
+        execution.invoke(name);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(into, true, "UTF-8"));
+        try {
+            return execution.waitFor(name);
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    private static String location(Class<?> type) throws URISyntaxException {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+}
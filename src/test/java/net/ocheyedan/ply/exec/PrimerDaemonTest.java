@@ -0,0 +1,257 @@
+package net.ocheyedan.ply.exec;
+
+import net.ocheyedan.ply.props.PropFile;
+import net.ocheyedan.ply.props.PropsExt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Drives a {@link PrimerDaemon}, serving from a temporary state file, over its socket protocol.
+ */
+public class PrimerDaemonTest {
+
+    private File directory;
+
+    private File stateFile;
+
+    private Thread daemon;
+
+    @Before public void start() throws InterruptedException {
+        directory = new File(System.getProperty("java.io.tmpdir"), "ply-primer-daemon-test-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        stateFile = new File(directory, "daemon.properties");
+        daemon = new Thread(new Runnable() {
+            @Override public void run() {
+                try {
+                    PrimerDaemon.serve(stateFile, 1, 60000L);
+                } catch (IOException ioe) {
+                    throw new AssertionError(ioe);
+                }
+            }
+        });
+        daemon.setDaemon(true);
+        daemon.start();
+        for (int i = 0; (i < 500) && (PrimerDaemon.status(stateFile) == null); i++) {
+            Thread.sleep(10L);
+        }
+        assertNotNull(PrimerDaemon.status(stateFile));
+    }
+
+    @After public void stop() throws InterruptedException {
+        PrimerDaemon.stop(stateFile);
+        daemon.join(5000L);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test public void spec() throws IOException {
+        File first = new File(directory, "first.jar"), second = new File(directory, "second.jar"),
+             boot = new File(directory, "boot.jar");
+        for (File file : new File[] { first, second, boot }) {
+            assertTrue(file.createNewFile());
+        }
+        List<String> command = Arrays.asList("java", "-Xbootclasspath/a:" + boot.getPath(), "-cp",
+                first.getPath() + File.pathSeparator + second.getPath(), "net.ocheyedan.ply.JvmPrimer");
+        Map<String, String> environment = Collections.singletonMap("ply_ply.invoker", "ply");
+        PrimerDaemon.Spec spec = new PrimerDaemon.Spec(directory, command, environment);
+        assertEquals(spec, new PrimerDaemon.Spec(directory, command, environment));
+        // a rebuilt jar, whichever its position within the class-path, yields a distinct spec
+        for (File file : new File[] { first, second, boot }) {
+            assertTrue(file.setLastModified(file.lastModified() - 10000L));
+            PrimerDaemon.Spec changed = new PrimerDaemon.Spec(directory, command, environment);
+            assertFalse(file.getName(), spec.equals(changed));
+            spec = changed;
+        }
+    }
+
+    @Test public void configuration() throws IOException {
+        File config = new File(directory, "config");
+        assertTrue(config.mkdirs());
+        File properties = new File(config, "ply.properties");
+        try {
+            write(properties, "daemon.pool.size=2\ndaemon.idle.timeout=60\n");
+            assertEquals(2, PrimerDaemon.getPoolSize(config));
+            assertEquals(60000L, PrimerDaemon.getIdleTimeoutMillis(config));
+            assertFalse(PropsExt.refreshCaches(config));
+
+            // a changed file is picked up once refreshed, as the daemon does before serving a request
+            write(properties, "daemon.pool.size=12\n");
+            assertEquals(2, PrimerDaemon.getPoolSize(config));
+            assertTrue(PropsExt.refreshCaches(config));
+            assertEquals(12, PrimerDaemon.getPoolSize(config));
+            assertEquals(1800000L, PrimerDaemon.getIdleTimeoutMillis(config));
+        } finally {
+            properties.delete();
+            config.delete();
+        }
+    }
+
+    @Test public void stateFile() {
+        PropFile state = PrimerDaemon.readState(stateFile);
+        assertNotNull(state);
+        String token = state.get("token").value();
+        int port = Integer.parseInt(state.get("port").value());
+        assertEquals(40, token.length());
+        assertTrue(port > 0);
+        // written via a temporary file, none of which remain
+        assertEquals(1, directory.listFiles().length);
+
+        // rewriting replaces the existing state
+        PrimerDaemon.writeState(stateFile, 1, "token");
+        state = PrimerDaemon.readState(stateFile);
+        assertEquals("1", state.get("port").value());
+        assertEquals("token", state.get("token").value());
+        assertEquals(1, directory.listFiles().length);
+        assertNull(PrimerDaemon.status(stateFile)); // nothing listening on port 1
+
+        PrimerDaemon.writeState(stateFile, port, token);
+        assertNotNull(PrimerDaemon.status(stateFile));
+        assertNull(PrimerDaemon.readState(new File(directory, "missing.properties")));
+    }
+
+    @Test public void run() throws IOException, InterruptedException {
+        if (!new File("/bin/sh").exists()) {
+            return;
+        }
+        ProcessBuilder processBuilder = new ProcessBuilder("/bin/sh", "-c", "read line; echo \"got $line $PLY_TEST\"; exit 3");
+        processBuilder.directory(directory);
+        Map<String, String> environment = processBuilder.environment();
+        environment.clear();
+        environment.put("PLY_TEST", "env");
+        Process process = PrimerDaemon.start(stateFile, processBuilder);
+        assertNotNull(process);
+        OutputStream stdin = process.getOutputStream();
+        stdin.write("hello\n".getBytes("UTF-8"));
+        stdin.flush();
+        BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        assertEquals("got hello env", stdout.readLine());
+        assertEquals(3, process.waitFor());
+        assertEquals(3, process.exitValue());
+
+        // the replacement warm process (booted for the same spec) is handed off next
+        process = PrimerDaemon.start(stateFile, processBuilder);
+        assertNotNull(process);
+        process.getOutputStream().write("again\n".getBytes("UTF-8"));
+        process.getOutputStream().flush();
+        stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        assertEquals("got again env", stdout.readLine());
+        assertEquals(3, process.waitFor());
+    }
+
+    @Test public void invalidToken() throws IOException {
+        Socket socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            PrimerDaemon.writeString(output, "not-the-token");
+            output.writeByte(PrimerDaemon.STOP);
+            output.flush();
+            DataInputStream input = new DataInputStream(socket.getInputStream());
+            assertEquals(PrimerDaemon.ERROR, input.readByte());
+            assertEquals("invalid token", PrimerDaemon.readString(input, PrimerDaemon.MAX_ERROR_LENGTH));
+        } finally {
+            socket.close();
+        }
+        // the daemon was not stopped
+        assertNotNull(PrimerDaemon.status(stateFile));
+    }
+
+    @Test public void oversizedToken() throws IOException {
+        Socket socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(Integer.MAX_VALUE);
+            output.flush();
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+        socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeInt(-2);
+            output.flush();
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+        assertNotNull(PrimerDaemon.status(stateFile));
+    }
+
+    @Test public void oversizedRequest() throws IOException {
+        String token = PrimerDaemon.readState(stateFile).get("token").value();
+        // too many command arguments
+        Socket socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            PrimerDaemon.writeString(output, token);
+            output.writeByte(PrimerDaemon.RUN);
+            PrimerDaemon.writeString(output, "");
+            output.writeInt(PrimerDaemon.MAX_REQUEST_ENTRIES + 1);
+            output.flush();
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+        // an argument longer than the request
+        socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            PrimerDaemon.writeString(output, token);
+            output.writeByte(PrimerDaemon.RUN);
+            PrimerDaemon.writeString(output, "");
+            output.writeInt(1);
+            output.writeInt(PrimerDaemon.MAX_REQUEST_LENGTH + 1);
+            output.flush();
+            assertClosed(socket);
+        } finally {
+            socket.close();
+        }
+        assertNotNull(PrimerDaemon.status(stateFile));
+    }
+
+    private Socket connect() throws IOException {
+        int port = Integer.parseInt(PrimerDaemon.readState(stateFile).get("port").value());
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), port), 1000);
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static void assertClosed(Socket socket) {
+        try {
+            assertEquals(-1, socket.getInputStream().read());
+        } catch (SocketTimeoutException ste) {
+            fail("Expected the daemon to close the connection.");
+        } catch (IOException ioe) {
+            // reset by the daemon, also closed
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content.getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package net.ocheyedan.ply.exec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.*;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Uses shell processes, which record their pid and then echo their input, in place of generic {@literal JvmPrimer}
+ * processes.
+ */
+public class PrimerPoolTest {
+
+    private File directory;
+
+    private File jar;
+
+    @Before public void setUp() throws IOException {
+        directory = new File(System.getProperty("java.io.tmpdir"), "ply-primer-pool-test-" + System.nanoTime());
+        assertTrue(directory.mkdirs());
+        jar = new File(directory, "script.jar");
+        assertTrue(jar.createNewFile());
+    }
+
+    @After public void tearDown() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Test public void take() throws IOException, InterruptedException {
+        if (!new File("/bin/sh").exists()) {
+            return;
+        }
+        PrimerPool pool = new PrimerPool(1);
+        List<String> pids;
+        try {
+            PrimerDaemon.Spec spec = spec("-Xmx32m");
+            // nothing booted yet, one is booted for the next take
+            assertNull(pool.take(spec));
+            Process taken = pool.take(spec);
+            assertNotNull(taken);
+            assertEquals("go", echo(taken, "go"));
+            taken.destroy();
+            // and again, the pool was replenished
+            taken = pool.take(spec);
+            assertNotNull(taken);
+            assertEquals("again", echo(taken, "again"));
+            taken.destroy();
+
+            // a process booted with other jvm options is never handed out
+            assertNull(pool.take(spec("-Xmx64m")));
+            taken = pool.take(spec("-Xmx64m"));
+            assertNotNull(taken);
+            taken.destroy();
+            // nor is one whose class-path has since changed
+            assertTrue(jar.setLastModified(jar.lastModified() - 10000L));
+            PrimerDaemon.Spec changed = spec("-Xmx32m");
+            assertFalse(changed.equals(spec));
+            assertNull(pool.take(changed));
+            // nor is one which has since died
+            pids = pids(6); // three booted for spec, two for the other options and one for changed
+            for (String pid : pids) {
+                kill("-9", pid);
+            }
+            awaitDead(pids);
+            assertNull(pool.take(changed));
+            pids = pids(7);
+        } finally {
+            pool.shutdown();
+        }
+        // every pooled process is destroyed upon shutdown
+        awaitDead(pids);
+    }
+
+    private PrimerDaemon.Spec spec(String jvmOption) {
+        // $0 is the class-path entry and $1 the jvm option
+        List<String> command = Arrays.asList("/bin/sh", "-c", "echo $$ > pid-$$; exec cat", jar.getPath(), jvmOption);
+        return new PrimerDaemon.Spec(directory, command, new HashMap<String, String>(System.getenv()));
+    }
+
+    private static String echo(Process process, String line) throws IOException {
+        OutputStream stdin = process.getOutputStream();
+        stdin.write((line + "\n").getBytes("UTF-8"));
+        stdin.flush();
+        return new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8")).readLine();
+    }
+
+    /**
+     * @param expected number of processes which have been booted
+     * @return the pid of each process which has been booted, once {@code expected} have recorded their pid
+     */
+    private List<String> pids(int expected) throws IOException, InterruptedException {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; (i < 500) && (files.size() < expected); i++) {
+            files.clear();
+            for (File file : directory.listFiles()) {
+                if (file.getName().startsWith("pid-")) {
+                    files.add(file);
+                }
+            }
+            if (files.size() < expected) {
+                Thread.sleep(10L);
+            }
+        }
+        assertEquals(expected, files.size());
+        List<String> pids = new ArrayList<String>(expected);
+        for (File file : files) {
+            for (int i = 0; (i < 500) && (file.length() == 0L); i++) { // created, but perhaps not yet written
+                Thread.sleep(10L);
+            }
+            BufferedReader reader = new BufferedReader(new FileReader(file));
+            try {
+                pids.add(reader.readLine().trim());
+            } finally {
+                reader.close();
+            }
+        }
+        return pids;
+    }
+
+    private static void awaitDead(List<String> pids) throws IOException, InterruptedException {
+        for (String pid : pids) {
+            for (int i = 0; (i < 500) && (kill("-0", pid) == 0); i++) {
+                Thread.sleep(10L);
+            }
+            assertFalse(String.format("Process %s is alive.", pid), kill("-0", pid) == 0);
+        }
+    }
+
+    private static int kill(String signal, String pid) throws IOException, InterruptedException {
+        Process kill = new ProcessBuilder("kill", signal, pid).redirectErrorStream(true).start();
+        InputStream output = kill.getInputStream();
+        while (output.read() != -1) { }
+        return kill.waitFor();
+    }
+
+}
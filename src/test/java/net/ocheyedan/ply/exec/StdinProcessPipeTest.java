@@ -0,0 +1,98 @@
+package net.ocheyedan.ply.exec;
+
+import org.junit.Test;
+
+import java.io.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Drives a {@link StdinProcessPipe} with a fake {@link System#in}.
+ */
+public class StdinProcessPipeTest {
+
+    @Test public void pipe() throws Exception {
+        PipedOutputStream in = new PipedOutputStream();
+        final StdinProcessPipe pipe = new StdinProcessPipe(new PipedInputStream(in));
+        // not yet reading input, the caller reads for itself
+        assertNull(pipe.readLine());
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        pipe.attach(first);
+        write(in, "one\n");
+        await(first, "one\n");
+
+        // a requested line is diverted from the attached child
+        FutureTask<char[]> line = readLine(pipe);
+        write(in, "secret\r\ntwo\n");
+        assertEquals("secret", new String(line.get(5, TimeUnit.SECONDS)));
+        await(first, "one\ntwo\n");
+
+        // input read while no child is attached is held for the next child
+        pipe.detach(first);
+        write(in, "held\n");
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        Thread.sleep(100L);
+        pipe.attach(second);
+        await(second, "held\n");
+        assertEquals("one\ntwo\n", toString(first));
+
+        // held input is the start of a requested line
+        pipe.detach(second);
+        write(in, "pass");
+        Thread.sleep(100L);
+        line = readLine(pipe);
+        write(in, "word\nthree\n");
+        assertEquals("password", new String(line.get(5, TimeUnit.SECONDS)));
+        Thread.sleep(100L);
+        pipe.attach(second);
+        await(second, "held\nthree\n");
+
+        // once the input has ended a requested line is empty
+        in.close();
+        line = readLine(pipe);
+        assertEquals(0, line.get(5, TimeUnit.SECONDS).length);
+    }
+
+    private static FutureTask<char[]> readLine(final StdinProcessPipe pipe) throws InterruptedException {
+        FutureTask<char[]> line = new FutureTask<char[]>(new Callable<char[]>() {
+            @Override public char[] call() throws Exception {
+                return pipe.readLine();
+            }
+        });
+        Thread thread = new Thread(line);
+        thread.setDaemon(true);
+        thread.start();
+        // wait for the request to be registered before providing input
+        for (int i = 0; (i < 500) && (thread.getState() != Thread.State.WAITING) && !line.isDone(); i++) {
+            Thread.sleep(10L);
+        }
+        return line;
+    }
+
+    private static void write(OutputStream in, String content) throws IOException {
+        in.write(content.getBytes("UTF-8"));
+        in.flush();
+    }
+
+    private static void await(ByteArrayOutputStream stdin, String expected) throws InterruptedException {
+        for (int i = 0; (i < 500) && !expected.equals(toString(stdin)); i++) {
+            Thread.sleep(10L);
+        }
+        assertEquals(expected, toString(stdin));
+    }
+
+    private static String toString(ByteArrayOutputStream stdin) {
+        synchronized (stdin) {
+            try {
+                return stdin.toString("UTF-8");
+            } catch (UnsupportedEncodingException uee) {
+                throw new AssertionError(uee);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package net.ocheyedan.ply.exec;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static junit.framework.Assert.*;
+
+/**
+ * Times are milliseconds since the build started (at 0).
+ */
+public class TimelineTest {
+
+    private static final List<Timeline.Span> MODULES = Arrays.asList(
+            new Timeline.Span("root", "/p", 0L, 0L, 1000L, 0),
+            new Timeline.Span("sub \"quoted\" \\", "/p/sub", 1000L, 1500L, 4000L, 0));
+
+    // out of start order; test is primed while compile runs and so overlaps it
+    private static final List<Timeline.Span> EXECUTIONS = Arrays.asList(
+            new Timeline.Span("test", "/p/sub", 2500L, 3000L, 3500L, 0),
+            new Timeline.Span("compile", "/p/sub", 1500L, 2000L, 3000L, 0),
+            new Timeline.Span("package", "/p/sub", 3000L, 3100L, 3600L, 0),
+            new Timeline.Span("compile", "/q/other", 0L, 1000L, 1200L, 0),
+            new Timeline.Span("a\tb\u0001", "/p", 100L, 100L, 200L, 1));
+
+    @Test public void toTraceEvents() {
+        String json = Timeline.toTraceEvents(MODULES, EXECUTIONS, 0L);
+        assertTrue(json, json.startsWith("{\"traceEvents\":[{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":1,\"tid\":0,\"args\":{\"name\":\"root\"}},"));
+        assertTrue(json, json.endsWith("}],\"displayTimeUnit\":\"ms\"}\n"));
+
+        // modules are processes; a module which didn't wait has no waiting event
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"root\",\"cat\":\"module\",\"pid\":1,\"tid\":0,\"ts\":0,\"dur\":1000000}"));
+        assertFalse(json, json.contains("{\"ph\":\"X\",\"name\":\"waiting\",\"cat\":\"module\",\"pid\":1,"));
+        assertTrue(json, json.contains("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":2,\"tid\":0,\"args\":{\"name\":\"sub \\\"quoted\\\" \\\\\"}}"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"waiting\",\"cat\":\"module\",\"pid\":2,\"tid\":0,\"ts\":1000000,\"dur\":500000}"));
+
+        // overlapping executions are placed on separate lanes, a lane is reused once its execution has ended
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"compile\",\"cat\":\"script\",\"pid\":2,\"tid\":1,\"ts\":1500000,\"dur\":1500000,\"args\":{\"exit\":\"0\"}}"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"prime\",\"cat\":\"prime\",\"pid\":2,\"tid\":1,\"ts\":1500000,\"dur\":500000}"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"run\",\"cat\":\"run\",\"pid\":2,\"tid\":1,\"ts\":2000000,\"dur\":1000000}"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"test\",\"cat\":\"script\",\"pid\":2,\"tid\":2,\"ts\":2500000,\"dur\":1000000,"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"package\",\"cat\":\"script\",\"pid\":2,\"tid\":1,\"ts\":3000000,\"dur\":600000,"));
+
+        // an execution of an unrecorded module gets its own process, named by its directory
+        assertTrue(json, json.contains("{\"ph\":\"M\",\"name\":\"process_name\",\"pid\":3,\"tid\":0,\"args\":{\"name\":\"other\"}}"));
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"compile\",\"cat\":\"script\",\"pid\":3,\"tid\":1,\"ts\":0,\"dur\":1200000,"));
+
+        // control characters are escaped
+        assertTrue(json, json.contains("{\"ph\":\"X\",\"name\":\"a\\tb\\u0001\",\"cat\":\"script\",\"pid\":1,\"tid\":1,\"ts\":100000,\"dur\":100000,\"args\":{\"exit\":\"1\"}}"));
+
+        assertEquals("{\"traceEvents\":[],\"displayTimeUnit\":\"ms\"}\n",
+                Timeline.toTraceEvents(Collections.<Timeline.Span>emptyList(), Collections.<Timeline.Span>emptyList(), 0L));
+    }
+
+    @Test public void toSummary() {
+        String summary = Timeline.toSummary(MODULES, EXECUTIONS, 0L, null);
+        assertTrue(summary, summary.startsWith(String.format("Build timeline [ 4.000 seconds ]%n")));
+        // without a known critical path, every module is on it
+        assertTrue(summary, summary.contains(String.format("%nCritical path [ 3.500 seconds ]%n")));
+        assertTrue(summary, summary.contains(String.format("  %-40s %10.3f seconds [ waited %.3f seconds ]%n", "root", 1.0f, 0.0f)));
+        assertTrue(summary, summary.contains(String.format("    %-38s %10.3f seconds [ primed %.3f, ran %.3f ] exit code 1%n",
+                "a\tb\u0001", 0.1f, 0.0f, 0.1f)));
+        assertTrue(summary, summary.contains(String.format("  %-40s %10.3f seconds [ waited %.3f seconds ]%n",
+                "sub \"quoted\" \\", 2.5f, 0.5f)));
+        assertTrue(summary, summary.contains(String.format("    %-38s %10.3f seconds [ primed %.3f, ran %.3f ]%n",
+                "test", 1.0f, 0.5f, 0.5f)));
+
+        // scripts are totaled across modules, the most time first
+        String scripts = summary.substring(summary.indexOf(String.format("%nScripts by total time")));
+        assertEquals(String.format("%nScripts by total time [ primed %.3f seconds, ran %.3f seconds, %d executions ]%n", 2.1f, 2.3f, 5)
+                + String.format("  %-40s %10.3f seconds [ primed %.3f, ran %.3f ] x %d%n", "compile", 2.7f, 1.5f, 1.2f, 2)
+                + String.format("  %-40s %10.3f seconds [ primed %.3f, ran %.3f ] x %d%n", "test", 1.0f, 0.5f, 0.5f, 1)
+                + String.format("  %-40s %10.3f seconds [ primed %.3f, ran %.3f ] x %d%n", "package", 0.6f, 0.1f, 0.5f, 1)
+                + String.format("  %-40s %10.3f seconds [ primed %.3f, ran %.3f ] x %d%n", "a\tb\u0001", 0.1f, 0.0f, 0.1f, 1),
+                scripts);
+
+        // a known critical path only includes its modules
+        summary = Timeline.toSummary(MODULES, EXECUTIONS, 0L, Collections.singletonList("sub \"quoted\" \\"));
+        assertTrue(summary, summary.contains(String.format("%nCritical path [ 2.500 seconds ]%n")));
+        assertFalse(summary, summary.contains(String.format("  %-40s", "root")));
+    }
+
+}